@@ -0,0 +1,155 @@
+package com.yuzhengchua.cinema.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+
+/**
+ * Measures how fast a {@link BookingServiceImpl} recovers from its booking log,
+ * by replaying the whole log and by restoring a snapshot of it. The score is the
+ * recovery rate in bookings per second.
+ * <p>
+ * The log holds {@value #BOOKINGS} bookings of 1 to 6 seats on a 26x50 hall.
+ * The oldest bookings are cancelled as the hall fills up, so about as many
+ * cancellations as bookings are replayed.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    static final int BOOKINGS = 100_000;
+
+    private Path directory;
+
+    private Path logFile;
+
+    private Path snapshotLogFile;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        logFile = directory.resolve("screen.wal");
+        Random random = new Random(42);
+        boolean[][] booked = new boolean[26][50];
+        ArrayDeque<int[][]> liveBookings = new ArrayDeque<>();
+        ArrayDeque<Integer> liveNumbers = new ArrayDeque<>();
+        int liveSeats = 0;
+        try (BookingLog log = BookingLog.open(logFile, 26, 50, new NoReplay())) {
+            for (int bookingNumber = 1; bookingNumber <= BOOKINGS; bookingNumber++) {
+                // Cancel the oldest bookings to keep a third of the hall free
+                while (liveSeats > 26 * 50 * 2 / 3) {
+                    int[][] cancelled = liveBookings.poll();
+                    log.appendCancel(liveNumbers.poll());
+                    for (int[] seat : cancelled) {
+                        booked[seat[0]][seat[1]] = false;
+                    }
+                    liveSeats -= cancelled.length;
+                }
+                int[][] seats = new int[1 + random.nextInt(6)][];
+                for (int i = 0; i < seats.length; i++) {
+                    int row;
+                    int col;
+                    do {
+                        row = random.nextInt(26);
+                        col = random.nextInt(50);
+                    } while (booked[row][col]);
+                    booked[row][col] = true;
+                    seats[i] = new int[] { row, col };
+                }
+                log.appendConfirm(bookingNumber, seats);
+                liveBookings.add(seats);
+                liveNumbers.add(bookingNumber);
+                liveSeats += seats.length;
+            }
+        }
+
+        // Snapshot a copy of the log, then book one more seat so the tail is short
+        Path snapshotDirectory = Files.createDirectories(directory.resolve("snapshot"));
+        snapshotLogFile = snapshotDirectory.resolve("screen.wal");
+        for (Path segment : listSegments()) {
+            Files.copy(segment, snapshotDirectory.resolve(segment.getFileName()));
+        }
+        BookingServiceImpl bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        try (BookingStore store = bookingService.openBookingLog(snapshotLogFile, 1)) {
+            bookingService.confirmBooking(bookingService.planSeats(1, null));
+            store.awaitSnapshot();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKINGS)
+    public int replay() throws IOException {
+        BookingServiceImpl bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        bookingService.openBookingLog(logFile).close();
+        return bookingService.getSeatMap().getAvailableSeats();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOOKINGS)
+    public int restoreSnapshot() throws IOException {
+        BookingServiceImpl bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        bookingService.openBookingLog(snapshotLogFile).close();
+        return bookingService.getSeatMap().getAvailableSeats();
+    }
+
+    /**
+     * Lists the segments of the log written in setup.
+     */
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("screen.wal."))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Ignores the records of the log being written.
+     */
+    static class NoReplay implements BookingLog.Replay {
+        @Override
+        public void confirmed(int bookingNumber, int[][] seats) {
+        }
+
+        @Override
+        public void cancelled(int bookingNumber) {
+        }
+    }
+}
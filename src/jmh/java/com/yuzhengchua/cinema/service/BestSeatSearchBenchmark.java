@@ -0,0 +1,109 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * Compares the sequential and the parallel search of the
+ * {@link BestAvailableStrategy} over hall sizes, to find the hall size from
+ * which the parallel search pays for its fork/join overhead:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="BestSeatSearchBenchmark"
+ * </pre>
+ *
+ * A party of four is planned in halls that are:
+ * <ul>
+ * <li>{@code EMPTY}: the search stops after the preferred row.</li>
+ * <li>{@code FRAGMENTED}: every other seat is booked in a checkerboard, so
+ * every row is rejected without scanning it.</li>
+ * <li>{@code SCATTERED}: every third seat is booked, so no row has four seats
+ * together and every row that can beat a split party is scanned.</li>
+ * </ul>
+ * The parallel search runs on a pool with one thread per processor, and at
+ * least two, so it is measured even on a single processor, where it can only
+ * show its overhead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BestSeatSearchBenchmark {
+
+    /**
+     * How the hall is booked before the benchmark starts.
+     */
+    public enum Occupancy {
+        EMPTY, FRAGMENTED, SCATTERED
+    }
+
+    @Param({ "26x50", "64x100", "128x200", "320x300", "702x999" })
+    public String hall;
+
+    @Param({ "EMPTY", "FRAGMENTED", "SCATTERED" })
+    public Occupancy occupancy;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    ForkJoinPool pool;
+
+    BookingServiceImpl bookingService;
+
+    PlanningSession session;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.OFF);
+        String[] size = hall.split("x");
+        int rows = Integer.parseInt(size[0]);
+        int seatsPerRow = Integer.parseInt(size[1]);
+        pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        bookingService = new BookingServiceImpl(new SeatMap(rows, seatsPerRow));
+        bookingService.setSeatAllocationStrategy(new BestAvailableStrategy(2.0 / 3, 1, 1, 0.5,
+                parallel ? 0 : Integer.MAX_VALUE, pool));
+        if (occupancy != Occupancy.EMPTY) {
+            int[][] row = new int[seatsPerRow][];
+            for (int r = 0; r < rows; r++) {
+                int count = 0;
+                for (int c = 0; c < seatsPerRow; c++) {
+                    if (occupancy == Occupancy.FRAGMENTED ? (r + c) % 2 == 0 : c % 3 == 2) {
+                        row[count++] = new int[] { r, c };
+                    }
+                }
+                bookingService.confirmBooking(Arrays.copyOf(row, count));
+            }
+        }
+        session = bookingService.openSession();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[][] planBestAvailable() {
+        return bookingService.planSeats(session, 4, null);
+    }
+}
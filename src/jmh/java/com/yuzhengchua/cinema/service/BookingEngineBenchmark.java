@@ -0,0 +1,257 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.util.RowLabels;
+
+/**
+ * The benchmark suite of the booking engine, measuring every operation of a
+ * booking on its own: building the seat map, planning seats from the back row,
+ * in the best available seats and around a designated seat, confirming,
+ * cancelling, checking a booking and rendering a plan. Run it before and after a performance change:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="BookingEngineBenchmark"
+ * </pre>
+ *
+ * Every operation is parameterised over the hall size, from a single seat to a
+ * 96,000-seat arena, and the booking operations also
+ * over how full the hall is and how many seats a booking takes:
+ * <ul>
+ * <li>{@code EMPTY}: no seat is booked.</li>
+ * <li>{@code HALF}: the back half of the hall is booked, as the planner fills
+ * it from the back row.</li>
+ * <li>{@code NEARLY_FULL}: all but the front 5% of the hall is booked.</li>
+ * <li>{@code FRAGMENTED}: every other seat is booked in a checkerboard, so no
+ * two free seats are next to each other.</li>
+ * </ul>
+ * In halls too small for a group, the group takes every seat; in halls too
+ * full for it, enough seats are left free for two groups, one planned in the
+ * session and one booked for checking.
+ * <p>
+ * Logging is switched off, so the benchmarks measure the engine alone;
+ * {@link LoggingProfileBenchmark} measures what logging adds.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class BookingEngineBenchmark {
+
+    /**
+     * How full the hall is before a benchmark starts.
+     */
+    public enum Occupancy {
+        EMPTY, HALF, NEARLY_FULL, FRAGMENTED
+    }
+
+    @State(Scope.Thread)
+    public static class Hall {
+
+        @Param({ "1x1", "8x10", "26x50", "26x99", "320x300" })
+        public String hall;
+
+        int rows;
+
+        int seatsPerRow;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Configurator.setRootLevel(org.apache.logging.log4j.Level.OFF);
+            String[] size = hall.split("x");
+            rows = Integer.parseInt(size[0]);
+            seatsPerRow = Integer.parseInt(size[1]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Engine {
+
+        @Param({ "EMPTY", "HALF", "NEARLY_FULL", "FRAGMENTED" })
+        public Occupancy occupancy;
+
+        @Param({ "1", "4", "10" })
+        public int groupSize;
+
+        BookingServiceImpl bookingService;
+
+        PlanningSession session;
+
+        /**
+         * The number of seats a booking takes in this hall.
+         */
+        int seats;
+
+        /**
+         * The seat in the middle of the hall, as typed on the console.
+         */
+        String designatedSeat;
+
+        /**
+         * A confirmed booking of a group, left in place for checking.
+         */
+        String bookingId;
+
+        /**
+         * The booking confirmed or to be cancelled by the current invocation.
+         */
+        String nextBookingId;
+
+        @Setup(Level.Iteration)
+        public void setUp(Hall hall) {
+            int capacity = hall.rows * hall.seatsPerRow;
+            seats = Math.min(groupSize, capacity);
+            bookingService = new BookingServiceImpl(new SeatMap(hall.rows, hall.seatsPerRow));
+            bookingService.setSeatAllocationStrategy(strategy());
+            fill(hall, capacity);
+            if (bookingService.getSeatMap().getAvailableSeats() >= 2 * seats) {
+                bookingId = bookingService.getBookingId();
+                bookingService.confirmBooking(bookingService.planSeats(seats, null));
+            }
+            session = bookingService.openSession();
+            int designatedRow = hall.rows / 2;
+            int seatNumber = hall.seatsPerRow / 2 + 1;
+            designatedSeat = String.format("%s%02d", RowLabels.label(hall.rows - 1 - designatedRow), seatNumber);
+            bookingService.planSeats(session, seats, designatedSeat);
+        }
+
+        /**
+         * Gets the strategy the engine plans seats with.
+         */
+        SeatAllocationStrategy strategy() {
+            return SeatAllocationStrategy.BACK_ROW_FIRST;
+        }
+
+        /**
+         * Books the seats of the occupancy, one booking per row, leaving at least
+         * two groups of seats free: one for the session and one for checking.
+         */
+        private void fill(Hall hall, int capacity) {
+            int toBook = switch (occupancy) {
+                case EMPTY -> 0;
+                case HALF, FRAGMENTED -> capacity / 2;
+                case NEARLY_FULL -> capacity - capacity / 20;
+            };
+            toBook = Math.min(toBook, capacity - 2 * seats);
+            int[][] row = new int[hall.seatsPerRow][];
+            for (int r = hall.rows - 1; r >= 0 && toBook > 0; r--) {
+                int count = 0;
+                for (int c = 0; c < hall.seatsPerRow && toBook > 0; c++) {
+                    if (occupancy != Occupancy.FRAGMENTED || (r + c) % 2 == 0) {
+                        row[count++] = new int[] { r, c };
+                        toBook--;
+                    }
+                }
+                if (count > 0) {
+                    bookingService.confirmBooking(Arrays.copyOf(row, count));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public SeatMap constructSeatMap(Hall hall) {
+        return new SeatMap(hall.rows, hall.seatsPerRow);
+    }
+
+    @Benchmark
+    public int[][] planFromBackRow(Engine engine) {
+        return engine.bookingService.planSeats(engine.session, engine.seats, null);
+    }
+
+    /**
+     * An engine planning with the {@link BestAvailableStrategy}, which scores
+     * every row instead of filling the hall from the back row.
+     */
+    @State(Scope.Thread)
+    public static class BestAvailable extends Engine {
+
+        @Override
+        SeatAllocationStrategy strategy() {
+            return new BestAvailableStrategy();
+        }
+    }
+
+    @Benchmark
+    public int[][] planBestAvailable(BestAvailable engine) {
+        return engine.bookingService.planSeats(engine.session, engine.seats, null);
+    }
+
+    @Benchmark
+    public int[][] planFromDesignatedSeat(Engine engine) {
+        return engine.bookingService.planSeats(engine.session, engine.seats, engine.designatedSeat);
+    }
+
+    @Benchmark
+    public String checkBooking(Engine engine) {
+        return engine.bookingId == null ? null : engine.bookingService.checkBooking(engine.bookingId);
+    }
+
+    @Benchmark
+    public String printSeatMapPlan(Engine engine) {
+        return engine.bookingService.printSeatMapPlan(engine.session);
+    }
+
+    /**
+     * An engine confirming a group freshly planned in the session; the booking
+     * is cancelled after every invocation so the hall stays as full as the
+     * occupancy says.
+     */
+    @State(Scope.Thread)
+    public static class Confirm extends Engine {
+
+        @Setup(Level.Invocation)
+        public void plan() {
+            nextBookingId = bookingService.getBookingId();
+            bookingService.planSeats(session, seats, null);
+        }
+
+        @TearDown(Level.Invocation)
+        public void cancel() {
+            bookingService.cancelBooking(nextBookingId);
+        }
+    }
+
+    @Benchmark
+    public boolean confirmBooking(Confirm engine) {
+        return engine.bookingService.confirmSession(engine.session);
+    }
+
+    /**
+     * An engine cancelling a freshly confirmed group.
+     */
+    @State(Scope.Thread)
+    public static class Cancel extends Engine {
+
+        @Setup(Level.Invocation)
+        public void book() {
+            nextBookingId = bookingService.getBookingId();
+            bookingService.planSeats(session, seats, null);
+            bookingService.confirmSession(session);
+        }
+    }
+
+    @Benchmark
+    public void cancelBooking(Cancel engine) {
+        engine.bookingService.cancelBooking(engine.nextBookingId);
+    }
+}
@@ -0,0 +1,146 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * Compares plan-then-confirm throughput under contention for a synchronized
+ * {@link BookingServiceImpl}, the striped-lock
+ * {@link ConcurrentBookingServiceImpl} and the compare-and-set
+ * {@link OptimisticBookingServiceImpl} at 1, 4, 16 and 64 threads.
+ * <p>
+ * Every operation books two seats from a random designated seat of a 26x50 hall
+ * and cancels them again, so the hall never fills up. Rejected confirmations
+ * count as completed operations.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfirmContentionBenchmark {
+
+    /**
+     * A booking terminal: books seats and cancels them by booking ID.
+     */
+    interface Terminal {
+        String book(int seatsToBook, String designatedSeat);
+
+        void cancel(String bookingId);
+    }
+
+    @Param({ "synchronized", "striped", "optimistic" })
+    public String service;
+
+    private Terminal terminal;
+
+    private String[] seatCodes;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        SeatMap seatMap = new SeatMap(26, 50);
+        switch (service) {
+            case "synchronized":
+                terminal = synchronizedTerminal(new BookingServiceImpl(seatMap));
+                break;
+            case "striped":
+                terminal = concurrentTerminal(new ConcurrentBookingServiceImpl(seatMap));
+                break;
+            default:
+                terminal = concurrentTerminal(new OptimisticBookingServiceImpl(seatMap));
+        }
+        seatCodes = new String[26 * 49];
+        for (int row = 0; row < 26; row++) {
+            for (int col = 1; col < 50; col++) {
+                seatCodes[row * 49 + col - 1] = (char) ('A' + row) + String.format("%02d", col);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads01() {
+        return bookAndCancel();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads04() {
+        return bookAndCancel();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String threads16() {
+        return bookAndCancel();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String threads64() {
+        return bookAndCancel();
+    }
+
+    private String bookAndCancel() {
+        String seat = seatCodes[ThreadLocalRandom.current().nextInt(seatCodes.length)];
+        try {
+            String bookingId = terminal.book(2, seat);
+            terminal.cancel(bookingId);
+            return bookingId;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The coarse baseline: a single monitor around planning and confirmation.
+     */
+    private static Terminal synchronizedTerminal(BookingServiceImpl bookingService) {
+        return new Terminal() {
+            @Override
+            public synchronized String book(int seatsToBook, String designatedSeat) {
+                int[][] plan = bookingService.planSeats(seatsToBook, designatedSeat);
+                String bookingId = bookingService.getBookingId();
+                bookingService.confirmBooking(plan);
+                return bookingId;
+            }
+
+            @Override
+            public synchronized void cancel(String bookingId) {
+                bookingService.cancelBooking(bookingId);
+            }
+        };
+    }
+
+    private static Terminal concurrentTerminal(ConcurrentBookingServiceImpl bookingService) {
+        return new Terminal() {
+            @Override
+            public String book(int seatsToBook, String designatedSeat) {
+                return bookingService.bookSeats(bookingService.planSeats(seatsToBook, designatedSeat));
+            }
+
+            @Override
+            public void cancel(String bookingId) {
+                bookingService.cancelBooking(bookingId);
+            }
+        };
+    }
+}
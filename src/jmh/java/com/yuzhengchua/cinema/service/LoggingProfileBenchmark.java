@@ -0,0 +1,68 @@
+package com.yuzhengchua.cinema.service;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * Compares booking throughput under the default logging configuration, with
+ * the root logger at trace level writing synchronously to a rolling file, and
+ * under the production profile, with an asynchronous root logger at info level.
+ * <p>
+ * Every operation plans two seats from a designated seat of a 26x50 hall,
+ * confirms them and cancels the booking again, so the hall never fills up.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingProfileBenchmark {
+
+    @Param({ "log4j2.xml", "log4j2-prod.xml" })
+    public String config;
+
+    private BookingServiceImpl bookingService;
+
+    @Setup(Level.Trial)
+    public void configureLogging() throws URISyntaxException {
+        Configurator.reconfigure(getClass().getResource("/" + config).toURI());
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopLogging() {
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public String bookAndCancel() {
+        String bookingId = bookingService.getBookingId();
+        bookingService.confirmBooking(bookingService.planSeats(2, "M25"));
+        bookingService.cancelBooking(bookingId);
+        return bookingId;
+    }
+}
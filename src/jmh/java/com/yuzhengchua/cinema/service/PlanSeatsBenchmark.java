@@ -0,0 +1,71 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * Measures planning four seats in a 26x50 hall through the packed API, with a
+ * reused session and seat buffer, against the coordinate array API. Run with
+ * {@code -prof gc}: the packed API should allocate nothing per operation.
+ * <p>
+ * Every operation replans the same session, alternately from the back row and
+ * from a designated seat, so the hall never fills up and no plan is confirmed.
+ * </p>
+ * <p>
+ * Logging is switched off, as in {@link BookingEngineBenchmark}, so the
+ * benchmarks measure the planner alone.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PlanSeatsBenchmark {
+
+    private BookingServiceImpl bookingService;
+
+    private PlanningSession session;
+
+    private final int[] seatBuffer = new int[4];
+
+    private int designatedSeat;
+
+    private boolean fromBackRow;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.OFF);
+        bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        session = bookingService.openSession();
+        designatedSeat = bookingService.locateSeat("M25");
+    }
+
+    @Benchmark
+    public int packed() {
+        fromBackRow = !fromBackRow;
+        return bookingService.planSeats(session, 4, fromBackRow ? BookingServiceImpl.NO_DESIGNATED_SEAT
+                : designatedSeat, seatBuffer);
+    }
+
+    @Benchmark
+    public int[][] coordinates() {
+        fromBackRow = !fromBackRow;
+        return bookingService.planSeats(session, 4, fromBackRow ? null : "M25");
+    }
+}
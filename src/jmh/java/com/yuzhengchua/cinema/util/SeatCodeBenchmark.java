@@ -0,0 +1,94 @@
+package com.yuzhengchua.cinema.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures validating and decoding a seat code of a 26x50 hall with
+ * {@link SeatCodes} against the regex validation and re-parsing it replaced.
+ * Run with {@code -prof gc}: {@code parser} should allocate nothing per
+ * operation.
+ * <p>
+ * Every operation decodes the next code of a mix of valid codes, codes outside
+ * the hall and malformed codes, so no single branch is always taken. The number
+ * checks of the console input are measured the same way.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SeatCodeBenchmark {
+
+    private static final int ROWS = 26;
+
+    private static final int SEATS_PER_ROW = 50;
+
+    private static final String[] CODES = { "A01", "M25", "Z50", "B7", "C100", "AA1", "b03", "A-1", "Q12", "H049" };
+
+    private static final String[] NUMBERS = { "4", "12", "abc", "10", "2.5", "" };
+
+    private int next;
+
+    @Benchmark
+    public int parser() {
+        return SeatCodes.parse(nextCode(), ROWS, SEATS_PER_ROW);
+    }
+
+    /**
+     * The regex validation and decoding that {@link SeatCodes} replaced.
+     */
+    @Benchmark
+    public int regex() {
+        String code = nextCode();
+        if (!code.matches("^[A-Z]0[1-9]$|^[A-Z][1-9]$|^[A-Z][1-4][\\d]$|^[A-Z]50$")) {
+            return SeatCodes.MALFORMED;
+        }
+        int row = ROWS - 1 - (Character.toUpperCase(code.charAt(0)) - 'A');
+        int col = Integer.parseInt(code.substring(1)) - 1;
+        if (row < 0 || col >= SEATS_PER_ROW) {
+            return SeatCodes.OUTSIDE_HALL;
+        }
+        return row * SEATS_PER_ROW + col;
+    }
+
+    @Benchmark
+    public boolean isInteger() {
+        return SeatCodes.isInteger(nextNumber());
+    }
+
+    /**
+     * The exception-driven number check that {@link SeatCodes#isInteger}
+     * replaced.
+     */
+    @Benchmark
+    public boolean parseInt() {
+        try {
+            Integer.parseInt(nextNumber());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String nextCode() {
+        next = next == CODES.length - 1 ? 0 : next + 1;
+        return CODES[next];
+    }
+
+    private String nextNumber() {
+        next = next == NUMBERS.length - 1 ? 0 : next + 1;
+        return NUMBERS[next];
+    }
+}
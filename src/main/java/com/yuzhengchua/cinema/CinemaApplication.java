@@ -3,11 +3,36 @@ package com.yuzhengchua.cinema;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import com.yuzhengchua.cinema.constants.Constants;
+
 @SpringBootApplication
 public class CinemaApplication {
 
 	public static void main(String[] args) {
+		if (System.getProperty(Constants.KIOSK_PORT_PROPERTY) != null) {
+			useKioskLogging();
+		}
 		SpringApplication.run(CinemaApplication.class, args);
 	}
 
+	/**
+	 * Stops log4j from keeping a reusable log event, message and encoder buffers
+	 * for every thread that logs. Kiosk sessions each run on a thread of their
+	 * own, and with many idle kiosks those buffers of over 12 KiB per thread take
+	 * most of the heap; events are allocated per event instead. log4j reads these
+	 * properties once, so this must run before the first logger is created. Other
+	 * runs keep log4j's garbage-free defaults. A property given on the command line
+	 * wins.
+	 */
+	static void useKioskLogging() {
+		setIfAbsent("log4j2.enableThreadlocals", "false");
+		setIfAbsent("log4j2.enableDirectEncoders", "false");
+	}
+
+	private static void setIfAbsent(String key, String value) {
+		if (System.getProperty(key) == null) {
+			System.setProperty(key, value);
+		}
+	}
+
 }
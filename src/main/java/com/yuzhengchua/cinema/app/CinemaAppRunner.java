@@ -1,5 +1,18 @@
 package com.yuzhengchua.cinema.app;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;
 
 import org.apache.logging.log4j.Logger;
@@ -7,9 +20,15 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
-import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.constants.Constants;
+import com.yuzhengchua.cinema.models.Showtime;
+import com.yuzhengchua.cinema.server.KioskServer;
+import com.yuzhengchua.cinema.server.ScriptReplayer;
+import com.yuzhengchua.cinema.service.BookingService;
 import com.yuzhengchua.cinema.service.BookingServiceImpl;
 import com.yuzhengchua.cinema.service.CinemaWorkflowService;
+import com.yuzhengchua.cinema.service.SharedBookingSession;
+import com.yuzhengchua.cinema.service.ShowtimeRegistry;
 import com.yuzhengchua.cinema.util.InputValidator;
 import com.yuzhengchua.cinema.util.MovieSeatMapGenerator;
 
@@ -44,6 +63,11 @@ public class CinemaAppRunner implements CommandLineRunner {
      */
     private final Scanner scanner;
 
+    /**
+     * The registry holding the screenings defined through the console.
+     */
+    private final ShowtimeRegistry showtimeRegistry;
+
     /**
      * Default constructor using System.in.
      */
@@ -56,6 +80,81 @@ public class CinemaAppRunner implements CommandLineRunner {
      */
     public CinemaAppRunner(Scanner scanner) {
         this.scanner = scanner;
+        this.showtimeRegistry = createShowtimeRegistry();
+    }
+
+    /**
+     * Creates the showtime registry, logging bookings to the directory named by
+     * the {@value Constants#BOOKING_LOG_DIR_PROPERTY} system property if it is
+     * set.
+     *
+     * @return The showtime registry.
+     */
+    private static ShowtimeRegistry createShowtimeRegistry() {
+        String logDirectory = System.getProperty(Constants.BOOKING_LOG_DIR_PROPERTY);
+        if (logDirectory == null || logDirectory.isBlank()) {
+            return new ShowtimeRegistry();
+        }
+        try {
+            logger.info("Recording bookings in {}", logDirectory);
+            return new ShowtimeRegistry(Path.of(logDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Identifies the screening defined through the console. The screen and start
+     * time are those named by the {@value Constants#SCREEN_PROPERTY} and
+     * {@value Constants#SHOWTIME_PROPERTY} system properties if they are set.
+     * Otherwise the screen is named after the movie and hall, and the screening
+     * starts at midnight of the current day, so that a booking log recovered on
+     * a restart always belongs to the same movie in a hall of the same size.
+     *
+     * @param title       The title of the movie being shown.
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return The showtime of the screening.
+     * @throws IllegalArgumentException if the start time is not an ISO-8601 local
+     *                                  date and time.
+     */
+    static Showtime consoleShowtime(String title, int rows, int seatsPerRow) throws IllegalArgumentException {
+        String screen = System.getProperty(Constants.SCREEN_PROPERTY);
+        if (screen == null || screen.isBlank()) {
+            screen = title + "-" + rows + "x" + seatsPerRow;
+        }
+        String startTime = System.getProperty(Constants.SHOWTIME_PROPERTY);
+        if (startTime == null || startTime.isBlank()) {
+            return new Showtime(screen.trim(), LocalDate.now().atStartOfDay());
+        }
+        try {
+            return new Showtime(screen.trim(), LocalDateTime.parse(startTime.trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid showtime: " + startTime, e);
+        }
+    }
+
+    /**
+     * Starts a kiosk server for a screening on the port named by the
+     * {@value Constants#KIOSK_PORT_PROPERTY} system property if it is set. The
+     * server runs until the application exits.
+     *
+     * @param bookingService The booking service of the screening.
+     * @param title          The title of the movie being shown.
+     * @return true if a kiosk server was started.
+     */
+    private static boolean startKioskServer(BookingServiceImpl bookingService, String title) {
+        String port = System.getProperty(Constants.KIOSK_PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return false;
+        }
+        try {
+            new KioskServer(bookingService, title).listen(new InetSocketAddress(Integer.parseInt(port.trim())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Kiosks can connect on port {}", port);
+        return true;
     }
 
     /**
@@ -71,12 +170,50 @@ public class CinemaAppRunner implements CommandLineRunner {
      */
     @Override
     public void run(String... args) throws Exception {
+        String script = System.getProperty(Constants.SCRIPT_PROPERTY);
+        if (script != null && !script.isBlank()) {
+            replayScript(Path.of(script.trim()), System.getProperty(Constants.SCRIPT_OUTPUT_PROPERTY));
+            return;
+        }
         do {
             initialiseCinema();
         } while (true);
         
     }
 
+    /**
+     * Replays a script of booking commands with a {@link ScriptReplayer} instead
+     * of running the console, writing the results to a file or, if none is
+     * given, to standard output.
+     *
+     * @param script The script file.
+     * @param output The results file, or null for standard output.
+     * @throws IOException if the script cannot be read or the results cannot be
+     *                     written.
+     */
+    void replayScript(Path script, String output) throws IOException {
+        logger.info("Replaying script {}", script);
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            if (output == null || output.isBlank()) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                new ScriptReplayer().replay(reader, writer);
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Path.of(output.trim()), StandardCharsets.UTF_8)) {
+                    new ScriptReplayer().replay(reader, writer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the registry holding the screenings defined through the console.
+     *
+     * @return The showtime registry.
+     */
+    ShowtimeRegistry getShowtimeRegistry() {
+        return showtimeRegistry;
+    }
+
     /**
      * This method prompts the user to define the movie title, number of rows,
      * and number of seats per row for the cinema's seating map. It validates the
@@ -88,9 +225,8 @@ public class CinemaAppRunner implements CommandLineRunner {
      */
     void initialiseCinema() {
         logger.info("GIC Cinemas application started.");
-        BookingServiceImpl bookingService;
         CinemaWorkflowService cinemaWorkflowService;
-        SeatMap seatMap;
+        ShowtimeRegistry.Screening screening;
         String title;
         System.out.println("Please define movie title and seating map in [Title] [Row] [SeatsPerRow] format:");
         String input = scanner.nextLine();
@@ -110,12 +246,25 @@ public class CinemaAppRunner implements CommandLineRunner {
                 logger.info("Valid input. Proceeding with the application.");
 
                 // Initialize the cinema services
-                seatMap = new SeatMap(rows, seatsPerRow);
-                bookingService = new BookingServiceImpl(seatMap);
-                cinemaWorkflowService = new CinemaWorkflowService(scanner, bookingService, seatMap, title);
+                try {
+                    screening = showtimeRegistry.register(consoleShowtime(title, rows, seatsPerRow), title, rows,
+                            seatsPerRow);
+                } catch (IllegalArgumentException | UncheckedIOException e) {
+                    logger.error("Failed to register screening: {}", e.getMessage());
+                    System.out.println("Unable to open screening: " + e.getMessage());
+                    return;
+                }
+                BookingService bookingService = screening.getBookingService();
+                if (startKioskServer(screening.getBookingService(), title)) {
+                    // the console becomes one more kiosk of the screening
+                    bookingService = new SharedBookingSession(screening.getBookingService());
+                }
+                cinemaWorkflowService = new CinemaWorkflowService(scanner, bookingService, screening.getSeatMap(),
+                        title);
                 cinemaWorkflowService.listActions();
             } else {
-                System.out.println("Invalid input. Rows should be > 0 and <= 26 while seats per row should be > 0 and <= 50");
+                System.out.println("Invalid input. Rows should be > 0 and <= " + Constants.MAX_ROWS
+                        + " while seats per row should be > 0 and <= " + Constants.MAX_SEATS_PER_ROW);
             }
         } else {
             System.out.println("Invalid input. Please provide a valid format: [Title] [Row] [SeatsPerRow].");
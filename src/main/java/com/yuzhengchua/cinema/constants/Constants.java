@@ -5,7 +5,18 @@ public class Constants {
         throw new UnsupportedOperationException("Constants class");
     }
     public static final int MIN_ROWS = 1;
-    public static final int MAX_ROWS = 26;
+    public static final int MAX_ROWS = 702;
     public static final int MIN_SEATS_PER_ROW = 1;
-    public static final int MAX_SEATS_PER_ROW = 50;
+    public static final int MAX_SEATS_PER_ROW = 999;
+    public static final long HOLD_TTL_MILLIS = 5 * 60 * 1000L;
+    public static final long HOLD_WHEEL_TICK_MILLIS = 1000L;
+    public static final int HOLD_WHEEL_TICKS = 512;
+    public static final String BOOKING_LOG_DIR_PROPERTY = "cinema.booking-log.dir";
+    public static final String SCREEN_PROPERTY = "cinema.screen";
+    public static final String SHOWTIME_PROPERTY = "cinema.showtime";
+    public static final int SNAPSHOT_INTERVAL_RECORDS = 10_000;
+    public static final int SEAT_EVENT_BUFFER_SIZE = 1024;
+    public static final String KIOSK_PORT_PROPERTY = "cinema.kiosk.port";
+    public static final String SCRIPT_PROPERTY = "cinema.script";
+    public static final String SCRIPT_OUTPUT_PROPERTY = "cinema.script.output";
 }
@@ -0,0 +1,174 @@
+package com.yuzhengchua.cinema.events;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SeatEvent} class records a change of seats in a hall, published
+ * on a {@link SeatEventBus} by the booking service after the change is made.
+ * An event covers every seat changed by one operation, such as all the seats
+ * of a confirmed booking, and is immutable, so one event is shared by every
+ * subscriber.
+ * <p>
+ * Seats are kept as packed indexes {@code row * seatsPerRow + col}, with the
+ * front row first like the seat map; {@link #getRow(int)} and
+ * {@link #getCol(int)} unpack them.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SeatEvent {
+
+    /**
+     * What happened to the seats.
+     */
+    public enum Type {
+        /**
+         * The seats were planned and are held for the planning session.
+         */
+        HELD,
+        /**
+         * The hold of the seats was given up before it expired, because the
+         * session planned again or was closed.
+         */
+        RELEASED,
+        /**
+         * The seats were booked, ending any hold on them.
+         */
+        CONFIRMED,
+        /**
+         * The booking of the seats was cancelled and the seats are free again.
+         */
+        CANCELLED,
+        /**
+         * The hold of the seats expired before it was confirmed.
+         */
+        EXPIRED
+    }
+
+    /**
+     * The position of the event in the stream of its bus.
+     */
+    private final long sequence;
+
+    /**
+     * What happened to the seats.
+     */
+    private final Type type;
+
+    /**
+     * The ID of the booking, or null for holds.
+     */
+    private final String bookingId;
+
+    /**
+     * The packed indexes of the seats.
+     */
+    private final int[] seats;
+
+    /**
+     * The number of seats per row the indexes are packed with.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The time of the change, in milliseconds, on the clock of the booking
+     * service.
+     */
+    private final long timeMillis;
+
+    SeatEvent(long sequence, Type type, String bookingId, int[] seats, int seatsPerRow, long timeMillis) {
+        this.sequence = sequence;
+        this.type = type;
+        this.bookingId = bookingId;
+        this.seats = seats;
+        this.seatsPerRow = seatsPerRow;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Gets the position of the event in the stream of its bus. Sequences start
+     * at 0 and grow by one per event, so a gap between two events received by a
+     * subscriber means events were overwritten before it read them.
+     *
+     * @return The sequence of the event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets what happened to the seats.
+     *
+     * @return The type of the event.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the booking the seats were confirmed or cancelled in.
+     *
+     * @return The booking ID, or null for holds.
+     */
+    public String getBookingId() {
+        return bookingId;
+    }
+
+    /**
+     * Gets the number of seats changed.
+     *
+     * @return The number of seats.
+     */
+    public int getSeatCount() {
+        return seats.length;
+    }
+
+    /**
+     * Gets the row of a seat.
+     *
+     * @param index The index of the seat in the event.
+     * @return The row, with the front row first like the seat map.
+     */
+    public int getRow(int index) {
+        return seats[index] / seatsPerRow;
+    }
+
+    /**
+     * Gets the column of a seat.
+     *
+     * @param index The index of the seat in the event.
+     * @return The column.
+     */
+    public int getCol(int index) {
+        return seats[index] % seatsPerRow;
+    }
+
+    /**
+     * Gets the coordinates of the seats, as accepted by
+     * {@code BookingServiceImpl.confirmBooking}.
+     *
+     * @return A new array of the row and column of every seat.
+     */
+    public int[][] getSeats() {
+        int[][] coordinates = new int[seats.length][];
+        for (int i = 0; i < seats.length; i++) {
+            coordinates[i] = new int[] { getRow(i), getCol(i) };
+        }
+        return coordinates;
+    }
+
+    /**
+     * Gets the time of the change.
+     *
+     * @return The time, in milliseconds, on the clock of the booking service.
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + (bookingId == null ? "" : " " + bookingId) + " "
+                + Arrays.deepToString(getSeats());
+    }
+}
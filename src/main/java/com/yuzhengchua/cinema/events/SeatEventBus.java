@@ -0,0 +1,383 @@
+package com.yuzhengchua.cinema.events;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.yuzhengchua.cinema.constants.Constants;
+
+/**
+ * The {@code SeatEventBus} class streams {@link SeatEvent}s from a booking
+ * service to any number of subscribers, such as seat map displays, analytics
+ * and an audit log, through a bounded ring buffer.
+ * <p>
+ * There is a single producer, the booking service the bus is attached to, and
+ * publishing never blocks or takes a lock: it writes the event into the next
+ * slot of the ring and advances a cursor. Every subscriber reads the ring on
+ * its own thread at its own pace, by polling its {@link Subscription}.
+ * <p>
+ * Every event is written to the ring, so a subscriber that falls behind never
+ * holds back the others. What happens to the events a subscriber has not read
+ * when the producer comes round the ring again depends on the policy the
+ * subscriber chose:
+ * </p>
+ * <ul>
+ * <li>{@link OverflowPolicy#DROP_OLDEST}: the events are overwritten. The
+ * subscriber skips to the oldest event left, sees a jump in the sequences of
+ * the events it reads and counts the events it lost in
+ * {@link Subscription#getDroppedCount()}. This suits a seat map display that
+ * only needs the latest events.</li>
+ * <li>{@link OverflowPolicy#BACK_PRESSURE}: before overwriting an event the
+ * subscriber has not read, the producer moves it into the subscriber's own
+ * spill queue, which holds as many events as the ring. The subscriber reads the
+ * spilled events first, so it loses nothing while it is less than two rings
+ * behind. Only when its spill queue is full too is the event lost, as with
+ * {@code DROP_OLDEST}, and {@link #publish} returns false so the producer can
+ * count it or slow down. This suits an audit log.</li>
+ * </ul>
+ *
+ * @since 1.1
+ */
+public final class SeatEventBus {
+
+    /**
+     * What happens to the events a subscriber has not read when the producer
+     * comes round the ring again.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST, BACK_PRESSURE
+    }
+
+    /**
+     * No subscriptions.
+     */
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    /**
+     * The ring of events, indexed by sequence modulo the capacity.
+     */
+    private final AtomicReferenceArray<SeatEvent> ring;
+
+    /**
+     * The number of slots in the ring, a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * The mask turning a sequence into a slot.
+     */
+    private final int mask;
+
+    /**
+     * The sequence of the last published event, or -1 before the first.
+     */
+    private volatile long cursor = -1;
+
+    /**
+     * The number of events a back-pressure subscriber lost because its spill
+     * queue was full, written by the producer only.
+     */
+    private volatile long overrunCount;
+
+    /**
+     * The current subscriptions, replaced as a whole when a subscriber comes or
+     * goes so the producer iterates them without locking.
+     */
+    private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+    /**
+     * Constructs a bus of {@link Constants#SEAT_EVENT_BUFFER_SIZE} events.
+     */
+    public SeatEventBus() {
+        this(Constants.SEAT_EVENT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a bus holding up to the given number of unread events.
+     *
+     * @param capacity The number of slots in the ring, a power of two.
+     * @throws IllegalArgumentException if the capacity is not a positive power of
+     *                                  two.
+     */
+    public SeatEventBus(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Seat event buffer size must be a power of two: " + capacity);
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Gets the number of slots in the ring.
+     *
+     * @return The capacity of the bus.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @param policy What happens to the events the subscriber has not read when
+     *               the producer comes round the ring again.
+     * @return The subscription to poll, from a single thread.
+     */
+    public synchronized Subscription subscribe(OverflowPolicy policy) {
+        Subscription subscription = new Subscription(policy, cursor + 1);
+        Subscription[] current = subscriptions;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, updated, i, current.length - 1 - i);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to every subscriber. Only the producer calls this
+     * method, from one thread at a time; it never blocks. The event it
+     * overwrites is first spilled for every back-pressure subscriber that has
+     * not read it.
+     *
+     * @param type        What happened to the seats.
+     * @param bookingId   The ID of the booking, or null for holds.
+     * @param seats       The packed indexes of the seats, owned by the event from
+     *                    now on.
+     * @param seatsPerRow The number of seats per row the indexes are packed with.
+     * @param timeMillis  The time of the change, in milliseconds.
+     * @return true if the event was published without a back-pressure subscriber
+     *         losing an event, false if the spill queue of a back-pressure
+     *         subscriber was full and it lost the overwritten event.
+     */
+    public boolean publish(SeatEvent.Type type, String bookingId, int[] seats, int seatsPerRow, long timeMillis) {
+        long sequence = cursor + 1;
+        boolean overrun = false;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.policy == OverflowPolicy.BACK_PRESSURE && sequence - subscription.next >= capacity) {
+                overrun |= !subscription.spill(ring.get((int) sequence & mask));
+            }
+        }
+        ring.set((int) sequence & mask,
+                new SeatEvent(sequence, type, bookingId, seats, seatsPerRow, timeMillis));
+        cursor = sequence;
+        if (overrun) {
+            overrunCount++;
+        }
+        return !overrun;
+    }
+
+    /**
+     * Gets the number of events a back-pressure subscriber lost because its
+     * spill queue was full.
+     *
+     * @return The number of events that overran a back-pressure subscriber.
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * The {@code Subscription} class is the read position of one subscriber in
+     * the ring. A subscription is polled from a single thread; different
+     * subscriptions are polled concurrently.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        /**
+         * What happens to the events the subscriber has not read when the
+         * producer comes round the ring again.
+         */
+        private final OverflowPolicy policy;
+
+        /**
+         * The events the producer overwrote before the subscriber read them, in
+         * sequence order, or null for a drop-oldest subscriber. Indexed like the
+         * ring.
+         */
+        private final AtomicReferenceArray<SeatEvent> spilled;
+
+        /**
+         * The number of events taken from the spill queue, written by the
+         * subscriber only.
+         */
+        private volatile long spillHead;
+
+        /**
+         * The number of events put into the spill queue, written by the producer
+         * only.
+         */
+        private volatile long spillTail;
+
+        /**
+         * The sequence of the next event to read, written by the subscriber only.
+         */
+        private volatile long next;
+
+        /**
+         * The number of events overwritten before they were read, written by the
+         * subscriber only.
+         */
+        private volatile long droppedCount;
+
+        /**
+         * Whether the subscription is closed.
+         */
+        private volatile boolean closed;
+
+        private Subscription(OverflowPolicy policy, long next) {
+            this.policy = policy;
+            this.next = next;
+            this.spilled = policy == OverflowPolicy.BACK_PRESSURE ? new AtomicReferenceArray<>(capacity) : null;
+        }
+
+        /**
+         * Gets what happens to the events the subscriber has not read when the
+         * producer comes round the ring again.
+         *
+         * @return The overflow policy.
+         */
+        public OverflowPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * Takes the next event, without waiting for one.
+         *
+         * @return The next event, or null if there is none or the subscription is
+         *         closed.
+         */
+        public SeatEvent poll() {
+            while (!closed) {
+                long available = cursor;
+                long sequence = next;
+                // read after the cursor, so every event overwritten up to it has been spilled
+                SeatEvent spilledEvent = peekSpilled(sequence);
+                if (spilledEvent != null && spilledEvent.getSequence() == sequence) {
+                    spilled.set((int) spillHead & mask, null);
+                    spillHead++;
+                    next = sequence + 1;
+                    return spilledEvent;
+                }
+                if (sequence > available) {
+                    return null;
+                }
+                long oldest = available - capacity + 1;
+                if (sequence < oldest) {
+                    // overwritten while the subscriber was away, and not spilled
+                    long resume = spilledEvent != null ? Math.min(spilledEvent.getSequence(), oldest) : oldest;
+                    droppedCount += resume - sequence;
+                    next = resume;
+                    continue;
+                }
+                SeatEvent event = ring.get((int) sequence & mask);
+                if (event.getSequence() == sequence) {
+                    next = sequence + 1;
+                    return event;
+                }
+                // overwritten since the cursor was read; look again
+            }
+            return null;
+        }
+
+        /**
+         * Gets the first spilled event the subscriber has not read, discarding
+         * the spilled events it read from the ring before they were overwritten.
+         *
+         * @param sequence The sequence of the next event to read.
+         * @return The first spilled event from the sequence on, or null if there
+         *         is none or the subscriber does not spill.
+         */
+        private SeatEvent peekSpilled(long sequence) {
+            if (spilled == null) {
+                return null;
+            }
+            while (spillHead < spillTail) {
+                int slot = (int) spillHead & mask;
+                SeatEvent event = spilled.get(slot);
+                if (event.getSequence() >= sequence) {
+                    return event;
+                }
+                spilled.set(slot, null);
+                spillHead++;
+            }
+            return null;
+        }
+
+        /**
+         * Moves an event the producer is about to overwrite into the spill
+         * queue. Only the producer calls this method.
+         *
+         * @param event The event about to be overwritten.
+         * @return true if the event was spilled, false if the spill queue is
+         *         full.
+         */
+        private boolean spill(SeatEvent event) {
+            long tail = spillTail;
+            if (tail - spillHead >= capacity) {
+                return false;
+            }
+            spilled.set((int) tail & mask, event);
+            spillTail = tail + 1;
+            return true;
+        }
+
+        /**
+         * Takes the available events, up to a limit, and hands them to a consumer
+         * in order.
+         *
+         * @param consumer  The consumer of the events.
+         * @param maxEvents The most events to take.
+         * @return The number of events taken.
+         */
+        public int drain(Consumer<? super SeatEvent> consumer, int maxEvents) {
+            int drained = 0;
+            SeatEvent event;
+            while (drained < maxEvents && (event = poll()) != null) {
+                consumer.accept(event);
+                drained++;
+            }
+            return drained;
+        }
+
+        /**
+         * Gets the number of events published since the subscriber last read.
+         *
+         * @return The number of events waiting, including any that will be
+         *         dropped.
+         */
+        public long getLag() {
+            return Math.max(0, cursor + 1 - next);
+        }
+
+        /**
+         * Gets the number of events overwritten before the subscriber read them
+         * and not spilled.
+         *
+         * @return The number of dropped events.
+         */
+        public long getDroppedCount() {
+            return droppedCount;
+        }
+
+        /**
+         * Unsubscribes, so the producer no longer checks the subscription.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            unsubscribe(this);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.yuzhengchua.cinema.metrics;
+
+import java.util.Locale;
+
+/**
+ * The {@code BookingMetrics} class holds the meters of the booking operations,
+ * looked up once in a {@link MeterRegistry} so recording is a plain call on the
+ * booking path. One instance is shared by the booking services of every
+ * screening:
+ * <ul>
+ * <li>{@code booking.latency{operation}}: a timer of every attempt of an
+ * operation.</li>
+ * <li>{@code booking.requests{operation,outcome}}: a counter of the attempts
+ * of an operation by outcome. An attempt that fails for any reason other than
+ * invalid input, such as a booking log that cannot be written, ends in
+ * {@code error}.</li>
+ * <li>{@code booking.plan.scan.steps}: a counter of the rows visited by
+ * successful plans, and {@code booking.plan.scan.steps.mean} a gauge of the
+ * rows visited per plan.</li>
+ * <li>{@code booking.hold.expiries}: a counter of the seat holds that
+ * expired before being confirmed.</li>
+ * <li>{@code booking.events.overrun}: a counter of the seat events that
+ * cost a back-pressure subscriber an event because its spill queue was
+ * full.</li>
+ * </ul>
+ * With {@link #NOOP} nothing is recorded and the clock is not read.
+ *
+ * @since 1.1
+ */
+public final class BookingMetrics {
+
+    /**
+     * The metrics recording nothing.
+     */
+    public static final BookingMetrics NOOP = new BookingMetrics(MeterRegistry.NOOP);
+
+    /**
+     * A booking operation.
+     */
+    public enum Operation {
+        PLAN, CONFIRM, CANCEL, CHECK, BATCH
+    }
+
+    /**
+     * The outcome of a booking operation.
+     */
+    public enum Outcome {
+        SUCCESS, REJECTED, NOT_ENOUGH_SEATS, ERROR
+    }
+
+    /**
+     * Whether anything is recorded.
+     */
+    private final boolean enabled;
+
+    /**
+     * The latency timer of every operation.
+     */
+    private final MeterRegistry.Timer[] latency;
+
+    /**
+     * The counter of every operation and outcome.
+     */
+    private final MeterRegistry.Counter[][] requests;
+
+    /**
+     * The counter of the rows visited by successful plans.
+     */
+    private final MeterRegistry.Counter scanSteps;
+
+    /**
+     * The counter of expired seat holds.
+     */
+    private final MeterRegistry.Counter holdExpiries;
+
+    /**
+     * The counter of seat events that overran a back-pressure subscriber.
+     */
+    private final MeterRegistry.Counter overrunEvents;
+
+    /**
+     * Registers the booking meters in a registry.
+     *
+     * @param registry The registry to record in.
+     */
+    public BookingMetrics(MeterRegistry registry) {
+        this.enabled = registry != MeterRegistry.NOOP;
+        Operation[] operations = Operation.values();
+        Outcome[] outcomes = Outcome.values();
+        this.latency = new MeterRegistry.Timer[operations.length];
+        this.requests = new MeterRegistry.Counter[operations.length][outcomes.length];
+        for (Operation operation : operations) {
+            String operationTag = operation.name().toLowerCase(Locale.ROOT);
+            latency[operation.ordinal()] = registry.timer("booking.latency", "operation", operationTag);
+            for (Outcome outcome : outcomes) {
+                requests[operation.ordinal()][outcome.ordinal()] = registry.counter("booking.requests",
+                        "operation", operationTag, "outcome", outcome.name().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.scanSteps = registry.counter("booking.plan.scan.steps");
+        this.holdExpiries = registry.counter("booking.hold.expiries");
+        this.overrunEvents = registry.counter("booking.events.overrun");
+        MeterRegistry.Counter plans = requests[Operation.PLAN.ordinal()][Outcome.SUCCESS.ordinal()];
+        registry.gauge("booking.plan.scan.steps.mean", () -> {
+            long planCount = plans.count();
+            return planCount == 0 ? 0 : (double) scanSteps.count() / planCount;
+        });
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return The start time to pass to {@link #record}.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the end of an operation.
+     *
+     * @param operation The operation.
+     * @param outcome   How the operation ended.
+     * @param start     The start time returned by {@link #start()}.
+     */
+    public void record(Operation operation, Outcome outcome, long start) {
+        if (enabled) {
+            latency[operation.ordinal()].record(System.nanoTime() - start);
+            requests[operation.ordinal()][outcome.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records the end of a successful plan.
+     *
+     * @param steps The number of rows the plan visited.
+     * @param start The start time returned by {@link #start()}.
+     */
+    public void recordPlan(int steps, long start) {
+        if (enabled) {
+            record(Operation.PLAN, Outcome.SUCCESS, start);
+            scanSteps.increment(steps);
+        }
+    }
+
+    /**
+     * Records an expired seat hold.
+     */
+    public void recordHoldExpiry() {
+        holdExpiries.increment();
+    }
+
+    /**
+     * Records a seat event that overran a back-pressure subscriber.
+     */
+    public void recordOverrunEvent() {
+        overrunEvents.increment();
+    }
+}
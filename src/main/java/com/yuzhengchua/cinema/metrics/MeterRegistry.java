@@ -0,0 +1,114 @@
+package com.yuzhengchua.cinema.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The {@code MeterRegistry} interface is the pluggable registry the booking
+ * engine records its metrics in. Meters are identified by a name and tags,
+ * given as alternating keys and values such as
+ * {@code counter("booking.requests", "operation", "plan")}; asking twice for the
+ * same meter returns the same meter, so callers look meters up once and keep
+ * them.
+ * <p>
+ * Implementations must record without taking locks, as meters are recorded on
+ * the booking path of every thread. {@link #NOOP} records nothing, and
+ * {@link SimpleMeterRegistry} keeps everything in memory for reading back.
+ * </p>
+ *
+ * @since 1.1
+ */
+public interface MeterRegistry {
+
+    /**
+     * The registry recording nothing.
+     */
+    MeterRegistry NOOP = new NoopMeterRegistry();
+
+    /**
+     * A monotonically increasing count.
+     */
+    interface Counter {
+        /**
+         * Adds to the count.
+         *
+         * @param amount The amount to add.
+         */
+        void increment(long amount);
+
+        /**
+         * Adds one to the count.
+         */
+        default void increment() {
+            increment(1);
+        }
+
+        /**
+         * Gets the count.
+         *
+         * @return The count so far.
+         */
+        long count();
+    }
+
+    /**
+     * A distribution of durations.
+     */
+    interface Timer {
+        /**
+         * Records a duration.
+         *
+         * @param nanos The duration, in nanoseconds.
+         */
+        void record(long nanos);
+
+        /**
+         * Gets the number of durations recorded.
+         *
+         * @return The number of durations recorded so far.
+         */
+        long count();
+    }
+
+    /**
+     * Gets or creates a counter.
+     *
+     * @param name The name of the counter.
+     * @param tags The tags of the counter, as alternating keys and values.
+     * @return The counter.
+     * @throws IllegalArgumentException if a tag has no value or another kind of
+     *                                  meter has the same name and tags.
+     */
+    Counter counter(String name, String... tags) throws IllegalArgumentException;
+
+    /**
+     * Gets or creates a timer.
+     *
+     * @param name The name of the timer.
+     * @param tags The tags of the timer, as alternating keys and values.
+     * @return The timer.
+     * @throws IllegalArgumentException if a tag has no value or another kind of
+     *                                  meter has the same name and tags.
+     */
+    Timer timer(String name, String... tags) throws IllegalArgumentException;
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name and tags. The
+     * value is read whenever the gauge is exported, possibly from another
+     * thread.
+     *
+     * @param name  The name of the gauge.
+     * @param value The supplier of the current value.
+     * @param tags  The tags of the gauge, as alternating keys and values.
+     * @throws IllegalArgumentException if a tag has no value or another kind of
+     *                                  meter has the same name and tags.
+     */
+    void gauge(String name, DoubleSupplier value, String... tags) throws IllegalArgumentException;
+
+    /**
+     * Removes a meter, such as the gauge of a screening taken off sale.
+     *
+     * @param name The name of the meter.
+     * @param tags The tags of the meter, as alternating keys and values.
+     */
+    void remove(String name, String... tags);
+}
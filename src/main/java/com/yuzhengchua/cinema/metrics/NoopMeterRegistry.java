@@ -0,0 +1,56 @@
+package com.yuzhengchua.cinema.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The registry behind {@link MeterRegistry#NOOP}, handing out meters that
+ * record nothing.
+ *
+ * @since 1.1
+ */
+final class NoopMeterRegistry implements MeterRegistry {
+
+    private static final Counter COUNTER = new Counter() {
+        @Override
+        public void increment(long amount) {
+            // records nothing
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+    };
+
+    private static final Timer TIMER = new Timer() {
+        @Override
+        public void record(long nanos) {
+            // records nothing
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+    };
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        return COUNTER;
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        return TIMER;
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier value, String... tags) {
+        // records nothing
+    }
+
+    @Override
+    public void remove(String name, String... tags) {
+        // records nothing
+    }
+}
@@ -0,0 +1,232 @@
+package com.yuzhengchua.cinema.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The {@code SimpleMeterRegistry} class keeps every meter in memory and exports
+ * them on demand, for tests and for reading the metrics of a running process.
+ * <p>
+ * Counters are {@link LongAdder}s and timers record into an HdrHistogram
+ * {@link Recorder}, so recording never blocks, even while another thread
+ * exports. Timers keep their durations in nanoseconds to three significant
+ * digits.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class SimpleMeterRegistry implements MeterRegistry {
+
+    /**
+     * The number of significant digits kept by the timers.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * The meters, keyed by their name and tags.
+     */
+    private final Map<String, Object> meters = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name, String... tags) throws IllegalArgumentException {
+        return meter(name, tags, SimpleCounter.class);
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) throws IllegalArgumentException {
+        return meter(name, tags, HistogramTimer.class);
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier value, String... tags) throws IllegalArgumentException {
+        meters.compute(id(name, tags), (id, meter) -> {
+            if (meter != null && !(meter instanceof DoubleSupplier)) {
+                throw new IllegalArgumentException("Meter already registered as another type: " + id);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void remove(String name, String... tags) {
+        meters.remove(id(name, tags));
+    }
+
+    /**
+     * Gets the count of a counter or timer.
+     *
+     * @param name The name of the meter.
+     * @param tags The tags of the meter, as alternating keys and values.
+     * @return The count so far.
+     * @throws IllegalArgumentException if there is no such counter or timer.
+     */
+    public long getCount(String name, String... tags) throws IllegalArgumentException {
+        Object meter = find(name, tags);
+        if (meter instanceof Counter counter) {
+            return counter.count();
+        }
+        if (meter instanceof Timer timer) {
+            return timer.count();
+        }
+        throw new IllegalArgumentException("Meter has no count: " + id(name, tags));
+    }
+
+    /**
+     * Gets a copy of the durations recorded by a timer.
+     *
+     * @param name The name of the timer.
+     * @param tags The tags of the timer, as alternating keys and values.
+     * @return The histogram of the durations, in nanoseconds.
+     * @throws IllegalArgumentException if there is no such timer.
+     */
+    public Histogram getHistogram(String name, String... tags) throws IllegalArgumentException {
+        if (find(name, tags) instanceof HistogramTimer timer) {
+            return timer.snapshot();
+        }
+        throw new IllegalArgumentException("Meter is not a timer: " + id(name, tags));
+    }
+
+    /**
+     * Reads the current value of a gauge.
+     *
+     * @param name The name of the gauge.
+     * @param tags The tags of the gauge, as alternating keys and values.
+     * @return The current value.
+     * @throws IllegalArgumentException if there is no such gauge.
+     */
+    public double getGauge(String name, String... tags) throws IllegalArgumentException {
+        if (find(name, tags) instanceof DoubleSupplier gauge) {
+            return gauge.getAsDouble();
+        }
+        throw new IllegalArgumentException("Meter is not a gauge: " + id(name, tags));
+    }
+
+    /**
+     * Exports every meter as a line of text, ordered by name and tags:
+     *
+     * <pre>
+     * booking.requests{operation=plan,outcome=success} 42
+     * booking.latency{operation=plan} count=42 mean=350.2 p50=311 p99=1207 max=5023
+     * booking.occupancy{screen=1,start=2025-01-01T20:00} 0.25
+     * </pre>
+     *
+     * Timer durations are in nanoseconds.
+     *
+     * @return The exported meters.
+     */
+    public String scrape() {
+        StringBuilder export = new StringBuilder();
+        for (Map.Entry<String, Object> entry : new ConcurrentSkipListMap<>(meters).entrySet()) {
+            export.append(entry.getKey()).append(' ');
+            Object meter = entry.getValue();
+            if (meter instanceof Counter counter) {
+                export.append(counter.count());
+            } else if (meter instanceof HistogramTimer timer) {
+                Histogram histogram = timer.snapshot();
+                export.append("count=").append(histogram.getTotalCount())
+                        .append(" mean=").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()))
+                        .append(" p50=").append(histogram.getValueAtPercentile(50))
+                        .append(" p99=").append(histogram.getValueAtPercentile(99))
+                        .append(" max=").append(histogram.getMaxValue());
+            } else {
+                export.append(((DoubleSupplier) meter).getAsDouble());
+            }
+            export.append('\n');
+        }
+        return export.toString();
+    }
+
+    private Object find(String name, String... tags) throws IllegalArgumentException {
+        Object meter = meters.get(id(name, tags));
+        if (meter == null) {
+            throw new IllegalArgumentException("Meter not found: " + id(name, tags));
+        }
+        return meter;
+    }
+
+    private <T> T meter(String name, String[] tags, Class<T> type) throws IllegalArgumentException {
+        String id = id(name, tags);
+        Object meter = meters.computeIfAbsent(id, key -> type == SimpleCounter.class ? new SimpleCounter()
+                : new HistogramTimer());
+        if (!type.isInstance(meter)) {
+            throw new IllegalArgumentException("Meter already registered as another type: " + id);
+        }
+        return type.cast(meter);
+    }
+
+    /**
+     * Builds the identity of a meter, such as
+     * {@code booking.requests{operation=plan,outcome=success}}.
+     *
+     * @param name The name of the meter.
+     * @param tags The tags of the meter, as alternating keys and values.
+     * @return The identity of the meter.
+     * @throws IllegalArgumentException if a tag has no value.
+     */
+    private static String id(String name, String[] tags) throws IllegalArgumentException {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tag without value: " + tags[tags.length - 1]);
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    /**
+     * A counter adding up in a {@link LongAdder}.
+     */
+    private static final class SimpleCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long count() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A timer recording into an HdrHistogram {@link Recorder}. Reading drains the
+     * recorder into a histogram of everything recorded so far.
+     */
+    private static final class HistogramTimer implements Timer {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram recorded = new Histogram(SIGNIFICANT_DIGITS);
+        private Histogram interval;
+
+        @Override
+        public void record(long nanos) {
+            recorder.recordValue(Math.max(nanos, 0));
+        }
+
+        @Override
+        public long count() {
+            return snapshot().getTotalCount();
+        }
+
+        synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            recorded.add(interval);
+            return recorded.copy();
+        }
+    }
+}
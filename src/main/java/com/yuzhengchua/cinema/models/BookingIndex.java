@@ -0,0 +1,584 @@
+package com.yuzhengchua.cinema.models;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * The BookingIndex class maps booking numbers to the seats of each booking
+ * without boxing. Booking numbers are kept in an open-addressing table with
+ * linear probing, and the seats of every booking are packed into one shared
+ * {@code int} arena: a seat count followed by one {@code row << 16 | col} entry
+ * per seat.
+ * <p>
+ * A booking costs two table slots and one arena entry per seat plus one, instead
+ * of a key string, a hash map entry and an array per seat. The space of removed
+ * bookings is reclaimed by compacting the arena when it has to grow. Lookups
+ * return the arena offset of a booking, from which its seats are read with
+ * {@link #seatCount(int)}, {@link #seatRow(int, int)} and
+ * {@link #seatCol(int, int)} without allocating; the offset stays valid until
+ * the next booking is added.
+ * </p>
+ * <p>
+ * The index is not thread-safe.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class BookingIndex {
+
+    /**
+     * Marks a table slot that has never been used.
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * Marks a table slot whose booking was removed.
+     */
+    private static final int REMOVED = -1;
+
+    /**
+     * The initial number of table slots.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The initial number of arena entries.
+     */
+    private static final int INITIAL_ARENA = 64;
+
+    /**
+     * The booking number in every table slot, or {@link #EMPTY} or
+     * {@link #REMOVED}.
+     */
+    private int[] numbers;
+
+    /**
+     * The arena offset of the booking in every table slot.
+     */
+    private int[] offsets;
+
+    /**
+     * The packed seats of all bookings.
+     */
+    private int[] arena;
+
+    /**
+     * The number of arena entries in use, including those of removed bookings.
+     */
+    private int arenaSize;
+
+    /**
+     * The number of arena entries of removed bookings.
+     */
+    private int arenaGarbage;
+
+    /**
+     * The number of bookings.
+     */
+    private int size;
+
+    /**
+     * The number of table slots holding a booking or a removal marker.
+     */
+    private int usedSlots;
+
+    /**
+     * Constructs an empty BookingIndex.
+     */
+    public BookingIndex() {
+        this.numbers = new int[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY];
+        this.arena = new int[INITIAL_ARENA];
+    }
+
+    /**
+     * Adds a booking, replacing any booking with the same number.
+     *
+     * @param bookingNumber The positive number of the booking.
+     * @param seats         The coordinates of the booked seats.
+     * @throws IllegalArgumentException if the booking number is not positive or a
+     *                                  seat coordinate does not fit in 16 bits.
+     */
+    public void put(int bookingNumber, int[][] seats) throws IllegalArgumentException {
+        if (bookingNumber <= 0) {
+            throw new IllegalArgumentException("Booking number must be positive: " + bookingNumber);
+        }
+        for (int[] seat : seats) {
+            if ((seat[0] & ~0xFFFF) != 0 || (seat[1] & ~0xFFFF) != 0) {
+                throw new IllegalArgumentException("Invalid seat coordinates: " + Arrays.toString(seat));
+            }
+        }
+        remove(bookingNumber);
+        int offset = allocate(1 + seats.length);
+        arena[offset] = seats.length;
+        for (int i = 0; i < seats.length; i++) {
+            arena[offset + 1 + i] = seats[i][0] << 16 | seats[i][1];
+        }
+        link(bookingNumber, offset);
+    }
+
+    /**
+     * Finds the seats of a booking.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The arena offset of the booking, or -1 if there is no such booking.
+     */
+    public int find(int bookingNumber) {
+        if (bookingNumber <= 0) {
+            return -1;
+        }
+        int mask = numbers.length - 1;
+        for (int slot = hash(bookingNumber) & mask;; slot = (slot + 1) & mask) {
+            int number = numbers[slot];
+            if (number == bookingNumber) {
+                return offsets[slot];
+            }
+            if (number == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a booking exists.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return true if the booking exists.
+     */
+    public boolean contains(int bookingNumber) {
+        return find(bookingNumber) >= 0;
+    }
+
+    /**
+     * Gets the number of seats of a booking.
+     *
+     * @param offset The arena offset returned by {@link #find(int)}.
+     * @return The number of seats.
+     */
+    public int seatCount(int offset) {
+        return arena[offset];
+    }
+
+    /**
+     * Gets the row of a seat of a booking.
+     *
+     * @param offset The arena offset returned by {@link #find(int)}.
+     * @param seat   The index of the seat within the booking.
+     * @return The row of the seat.
+     */
+    public int seatRow(int offset, int seat) {
+        return arena[offset + 1 + seat] >>> 16;
+    }
+
+    /**
+     * Gets the column of a seat of a booking.
+     *
+     * @param offset The arena offset returned by {@link #find(int)}.
+     * @param seat   The index of the seat within the booking.
+     * @return The column of the seat.
+     */
+    public int seatCol(int offset, int seat) {
+        return arena[offset + 1 + seat] & 0xFFFF;
+    }
+
+    /**
+     * Gets a copy of the seats of a booking.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The coordinates of the seats, or null if there is no such booking.
+     */
+    public int[][] get(int bookingNumber) {
+        int offset = find(bookingNumber);
+        return offset < 0 ? null : seats(offset);
+    }
+
+    /**
+     * Removes a booking.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return true if the booking existed.
+     */
+    public boolean remove(int bookingNumber) {
+        if (bookingNumber <= 0) {
+            return false;
+        }
+        int mask = numbers.length - 1;
+        for (int slot = hash(bookingNumber) & mask;; slot = (slot + 1) & mask) {
+            int number = numbers[slot];
+            if (number == bookingNumber) {
+                numbers[slot] = REMOVED;
+                arenaGarbage += 1 + arena[offsets[slot]];
+                size--;
+                return true;
+            }
+            if (number == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes every booking.
+     */
+    public void clear() {
+        Arrays.fill(numbers, EMPTY);
+        size = 0;
+        usedSlots = 0;
+        arenaSize = 0;
+        arenaGarbage = 0;
+    }
+
+    /**
+     * Gets the number of bookings.
+     *
+     * @return The number of bookings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Hands every booking to an action, in no particular order. The seats are
+     * copies.
+     *
+     * @param action Receives the seats and the number of every booking.
+     */
+    public void forEach(ObjIntConsumer<int[][]> action) {
+        for (int slot = 0; slot < numbers.length; slot++) {
+            if (numbers[slot] > 0) {
+                action.accept(seats(offsets[slot]), numbers[slot]);
+            }
+        }
+    }
+
+    /**
+     * Makes this index a copy of another. The table and the arena are copied in
+     * bulk, so the cost is a few array copies however many bookings there are.
+     *
+     * @param other The index to copy.
+     */
+    public void copyFrom(BookingIndex other) {
+        numbers = other.numbers.clone();
+        offsets = other.offsets.clone();
+        arena = Arrays.copyOf(other.arena, Math.max(other.arenaSize, INITIAL_ARENA));
+        arenaSize = other.arenaSize;
+        arenaGarbage = other.arenaGarbage;
+        size = other.size;
+        usedSlots = other.usedSlots;
+    }
+
+    /**
+     * Gets the number of bytes {@link #writeTo(ByteBuffer)} writes.
+     *
+     * @return The serialised size of the index.
+     */
+    public int serializedSize() {
+        int length = 4;
+        for (int slot = 0; slot < numbers.length; slot++) {
+            if (numbers[slot] > 0) {
+                length += 4 + 4 + arena[offsets[slot]] * 4;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the bookings straight from the arena: the number of bookings, then
+     * for every booking its number, its seat count and one
+     * {@code row << 16 | col} entry per seat.
+     *
+     * @param buffer The buffer to write to.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(size);
+        for (int slot = 0; slot < numbers.length; slot++) {
+            if (numbers[slot] > 0) {
+                int offset = offsets[slot];
+                int seatCount = arena[offset];
+                buffer.putInt(numbers[slot]);
+                for (int i = 0; i <= seatCount; i++) {
+                    buffer.putInt(arena[offset + i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads bookings written by {@link #writeTo(ByteBuffer)} straight into the
+     * arena of a new index.
+     *
+     * @param buffer The buffer to read from.
+     * @return The index.
+     * @throws IllegalArgumentException if a booking number or seat count is
+     *                                  invalid.
+     * @throws java.nio.BufferUnderflowException if the buffer ends early.
+     */
+    public static BookingIndex readFrom(ByteBuffer buffer) throws IllegalArgumentException {
+        BookingIndex index = new BookingIndex();
+        int bookingCount = buffer.getInt();
+        if (bookingCount < 0) {
+            throw new IllegalArgumentException("Invalid booking count: " + bookingCount);
+        }
+        for (int i = 0; i < bookingCount; i++) {
+            int bookingNumber = buffer.getInt();
+            int seatCount = buffer.getInt();
+            if (bookingNumber <= 0 || seatCount < 0 || seatCount > buffer.remaining() / 4) {
+                throw new IllegalArgumentException(
+                        "Invalid booking " + bookingNumber + " with " + seatCount + " seat(s)");
+            }
+            index.remove(bookingNumber);
+            int offset = index.allocate(1 + seatCount);
+            index.arena[offset] = seatCount;
+            for (int seat = 1; seat <= seatCount; seat++) {
+                index.arena[offset + seat] = buffer.getInt();
+            }
+            index.link(bookingNumber, offset);
+        }
+        return index;
+    }
+
+    /**
+     * Gets a map view of the index keyed by formatted booking IDs. Reads and
+     * writes go through to the index; keys that do not parse to a booking number
+     * are treated as absent.
+     *
+     * @param formatter Formats a booking number as a booking ID.
+     * @param parser    Parses a booking ID into a booking number, returning a
+     *                  non-positive value for an invalid ID.
+     * @return The map view.
+     */
+    public Map<String, int[][]> asMap(IntFunction<String> formatter, ToIntFunction<String> parser) {
+        return new MapView(formatter, parser);
+    }
+
+    /**
+     * Copies the seats of a booking out of the arena.
+     *
+     * @param offset The arena offset of the booking.
+     * @return The coordinates of the seats.
+     */
+    private int[][] seats(int offset) {
+        int[][] seats = new int[arena[offset]][];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] = new int[] { seatRow(offset, i), seatCol(offset, i) };
+        }
+        return seats;
+    }
+
+    /**
+     * Enters a booking whose seats are already in the arena into the table.
+     *
+     * @param bookingNumber The number of the booking, not in the table.
+     * @param offset        The arena offset of the booking.
+     */
+    private void link(int bookingNumber, int offset) {
+        if ((usedSlots + 1) * 2 > numbers.length) {
+            rehash(size + 1 > numbers.length / 4 ? numbers.length * 2 : numbers.length);
+        }
+        int slot = slotFor(bookingNumber);
+        if (numbers[slot] == EMPTY) {
+            usedSlots++;
+        }
+        numbers[slot] = bookingNumber;
+        offsets[slot] = offset;
+        size++;
+    }
+
+    /**
+     * Reserves arena entries, compacting the arena first if removed bookings hold
+     * at least half of it, and growing it otherwise.
+     *
+     * @param length The number of entries to reserve.
+     * @return The offset of the first reserved entry.
+     */
+    private int allocate(int length) {
+        if (arenaSize + length > arena.length) {
+            if (arenaGarbage * 2 >= arenaSize) {
+                compact(Math.max(arena.length, (arenaSize - arenaGarbage + length) * 2));
+            } else {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+            }
+        }
+        int offset = arenaSize;
+        arenaSize += length;
+        return offset;
+    }
+
+    /**
+     * Copies the seats of the live bookings into a new arena.
+     *
+     * @param capacity The number of entries of the new arena.
+     */
+    private void compact(int capacity) {
+        int[] compacted = new int[capacity];
+        int compactedSize = 0;
+        for (int slot = 0; slot < numbers.length; slot++) {
+            if (numbers[slot] > 0) {
+                int offset = offsets[slot];
+                int length = 1 + arena[offset];
+                System.arraycopy(arena, offset, compacted, compactedSize, length);
+                offsets[slot] = compactedSize;
+                compactedSize += length;
+            }
+        }
+        arena = compacted;
+        arenaSize = compactedSize;
+        arenaGarbage = 0;
+    }
+
+    /**
+     * Rebuilds the table without removal markers.
+     *
+     * @param capacity The new number of table slots, a power of two.
+     */
+    private void rehash(int capacity) {
+        int[] oldNumbers = numbers;
+        int[] oldOffsets = offsets;
+        numbers = new int[capacity];
+        offsets = new int[capacity];
+        usedSlots = 0;
+        for (int slot = 0; slot < oldNumbers.length; slot++) {
+            if (oldNumbers[slot] > 0) {
+                int newSlot = slotFor(oldNumbers[slot]);
+                numbers[newSlot] = oldNumbers[slot];
+                offsets[newSlot] = oldOffsets[slot];
+                usedSlots++;
+            }
+        }
+    }
+
+    /**
+     * Finds the first slot that can take a booking number not in the table.
+     *
+     * @param bookingNumber The booking number.
+     * @return The first empty or removed slot of its probe sequence.
+     */
+    private int slotFor(int bookingNumber) {
+        int mask = numbers.length - 1;
+        int slot = hash(bookingNumber) & mask;
+        while (numbers[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(int bookingNumber) {
+        int h = bookingNumber * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A map view of the index keyed by formatted booking IDs.
+     */
+    private final class MapView extends AbstractMap<String, int[][]> {
+        private final IntFunction<String> formatter;
+        private final ToIntFunction<String> parser;
+
+        MapView(IntFunction<String> formatter, ToIntFunction<String> parser) {
+            this.formatter = formatter;
+            this.parser = parser;
+        }
+
+        private int parse(Object key) {
+            return key instanceof String ? parser.applyAsInt((String) key) : -1;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return contains(parse(key));
+        }
+
+        @Override
+        public int[][] get(Object key) {
+            return BookingIndex.this.get(parse(key));
+        }
+
+        @Override
+        public int[][] put(String key, int[][] seats) {
+            int bookingNumber = parse(key);
+            if (bookingNumber <= 0) {
+                throw new IllegalArgumentException("Invalid booking ID: " + key);
+            }
+            int[][] previous = BookingIndex.this.get(bookingNumber);
+            BookingIndex.this.put(bookingNumber, seats);
+            return previous;
+        }
+
+        @Override
+        public int[][] remove(Object key) {
+            int bookingNumber = parse(key);
+            int[][] previous = BookingIndex.this.get(bookingNumber);
+            BookingIndex.this.remove(bookingNumber);
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            BookingIndex.this.clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, int[][]>> entrySet() {
+            return new AbstractSet<Map.Entry<String, int[][]>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, int[][]>> iterator() {
+                    return new Iterator<Map.Entry<String, int[][]>>() {
+                        private int next = advance(0);
+                        private int last = -1;
+
+                        private int advance(int slot) {
+                            while (slot < numbers.length && numbers[slot] <= 0) {
+                                slot++;
+                            }
+                            return slot;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < numbers.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, int[][]> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            last = next;
+                            next = advance(next + 1);
+                            return new SimpleImmutableEntry<>(formatter.apply(numbers[last]),
+                                    seats(offsets[last]));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0) {
+                                throw new IllegalStateException();
+                            }
+                            BookingIndex.this.remove(numbers[last]);
+                            last = -1;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.yuzhengchua.cinema.models;
+
+/**
+ * The FreeRunIndex class keeps, for every row of a cinema hall, the sorted list
+ * of runs of consecutive free seats. Each run is stored as a start column and an
+ * exclusive end column.
+ * <p>
+ * The index is maintained incrementally: occupying a seat splits or shrinks the
+ * run that contains it and releasing a seat extends or merges the neighbouring
+ * runs, so callers never have to rescan a row to find its free blocks.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class FreeRunIndex {
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats in each row of the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The start column of every free run, per row.
+     */
+    private final int[][] runStarts;
+
+    /**
+     * The exclusive end column of every free run, per row.
+     */
+    private final int[][] runEnds;
+
+    /**
+     * The number of free runs in each row.
+     */
+    private final int[] runCounts;
+
+    /**
+     * The number of free seats in each row.
+     */
+    private final int[] freeSeats;
+
+    /**
+     * Constructs a new FreeRunIndex for a hall where every seat is free.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     */
+    public FreeRunIndex(int rows, int seatsPerRow) {
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        int maxRuns = Math.max(1, (seatsPerRow + 1) / 2);
+        this.runStarts = new int[rows][maxRuns];
+        this.runEnds = new int[rows][maxRuns];
+        this.runCounts = new int[rows];
+        this.freeSeats = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            resetRow(row);
+        }
+    }
+
+    /**
+     * Rebuilds the whole index from an occupancy bitmap, where a set bit
+     * represents an occupied seat.
+     *
+     * @param occupancy The occupancy bitmap to index.
+     */
+    public void rebuild(SeatBitmap occupancy) {
+        for (int row = 0; row < rows; row++) {
+            rebuildRow(occupancy, row);
+        }
+    }
+
+    /**
+     * Rebuilds the runs of one row from an occupancy bitmap, where a set bit
+     * represents an occupied seat.
+     *
+     * @param occupancy The occupancy bitmap to index.
+     * @param row       The row to rebuild.
+     */
+    public void rebuildRow(SeatBitmap occupancy, int row) {
+        runCounts[row] = 0;
+        freeSeats[row] = 0;
+        int col = occupancy.nextClearSeat(row, 0);
+        while (col >= 0 && col < seatsPerRow) {
+            int end = occupancy.nextMarkedSeat(row, col);
+            if (end < 0) {
+                end = seatsPerRow;
+            }
+            runStarts[row][runCounts[row]] = col;
+            runEnds[row][runCounts[row]] = end;
+            runCounts[row]++;
+            freeSeats[row] += end - col;
+            col = end < seatsPerRow ? occupancy.nextClearSeat(row, end) : -1;
+        }
+    }
+
+    /**
+     * Marks a seat as occupied, splitting or shrinking the run that contains it.
+     * Occupying a seat that is already occupied has no effect.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void occupy(int row, int col) {
+        int run = findRun(row, col);
+        if (run == runCounts[row] || runStarts[row][run] > col) {
+            return;
+        }
+        int start = runStarts[row][run];
+        int end = runEnds[row][run];
+        if (end - start == 1) {
+            removeRun(row, run);
+        } else if (col == start) {
+            runStarts[row][run] = start + 1;
+        } else if (col == end - 1) {
+            runEnds[row][run] = end - 1;
+        } else {
+            insertRun(row, run + 1, col + 1, end);
+            runEnds[row][run] = col;
+        }
+        freeSeats[row]--;
+    }
+
+    /**
+     * Marks a seat as free, extending or merging the neighbouring runs. Releasing
+     * a seat that is already free has no effect.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void release(int row, int col) {
+        int run = findRun(row, col);
+        if (run < runCounts[row] && runStarts[row][run] <= col) {
+            return;
+        }
+        boolean joinsLeft = run > 0 && runEnds[row][run - 1] == col;
+        boolean joinsRight = run < runCounts[row] && runStarts[row][run] == col + 1;
+        if (joinsLeft && joinsRight) {
+            runEnds[row][run - 1] = runEnds[row][run];
+            removeRun(row, run);
+        } else if (joinsLeft) {
+            runEnds[row][run - 1] = col + 1;
+        } else if (joinsRight) {
+            runStarts[row][run] = col;
+        } else {
+            insertRun(row, run, col, col + 1);
+        }
+        freeSeats[row]++;
+    }
+
+    /**
+     * Finds the first run in a row that ends after the given column, which is
+     * either the run containing the column or the next run to its right.
+     *
+     * @param row The row to search.
+     * @param col The column to search from.
+     * @return The index of the run, or the run count if there is none.
+     */
+    public int findRun(int row, int col) {
+        int[] ends = runEnds[row];
+        int low = 0;
+        int high = runCounts[row];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= col) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the number of free runs in a row.
+     *
+     * @param row The row to check.
+     * @return The number of free runs.
+     */
+    public int getRunCount(int row) {
+        return runCounts[row];
+    }
+
+    /**
+     * Gets the start column of a free run.
+     *
+     * @param row The row of the run.
+     * @param run The index of the run within the row.
+     * @return The first free column of the run.
+     */
+    public int getRunStart(int row, int run) {
+        return runStarts[row][run];
+    }
+
+    /**
+     * Gets the exclusive end column of a free run.
+     *
+     * @param row The row of the run.
+     * @param run The index of the run within the row.
+     * @return The column after the last free column of the run.
+     */
+    public int getRunEnd(int row, int run) {
+        return runEnds[row][run];
+    }
+
+    /**
+     * Gets the number of free seats in a row.
+     *
+     * @param row The row to check.
+     * @return The number of free seats.
+     */
+    public int getFreeSeats(int row) {
+        return freeSeats[row];
+    }
+
+    private void resetRow(int row) {
+        runStarts[row][0] = 0;
+        runEnds[row][0] = seatsPerRow;
+        runCounts[row] = seatsPerRow > 0 ? 1 : 0;
+        freeSeats[row] = seatsPerRow;
+    }
+
+    private void insertRun(int row, int run, int start, int end) {
+        int count = runCounts[row];
+        System.arraycopy(runStarts[row], run, runStarts[row], run + 1, count - run);
+        System.arraycopy(runEnds[row], run, runEnds[row], run + 1, count - run);
+        runStarts[row][run] = start;
+        runEnds[row][run] = end;
+        runCounts[row] = count + 1;
+    }
+
+    private void removeRun(int row, int run) {
+        int count = runCounts[row];
+        System.arraycopy(runStarts[row], run + 1, runStarts[row], run, count - run - 1);
+        System.arraycopy(runEnds[row], run + 1, runEnds[row], run, count - run - 1);
+        runCounts[row] = count - 1;
+    }
+}
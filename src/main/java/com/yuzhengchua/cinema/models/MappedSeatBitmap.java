@@ -0,0 +1,220 @@
+package com.yuzhengchua.cinema.models;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The MappedSeatBitmap class is a {@link SeatBitmap} whose words live in a
+ * memory-mapped file instead of on the heap. Opening the file of a hall again
+ * brings its seats back as they were, without replaying any booking, and the
+ * operating system pages the words of hot and cold halls in and out.
+ * <p>
+ * The file holds a header recording the size of the hall, followed by the
+ * packed words in little-endian order, row after row, exactly as a heap bitmap
+ * lays them out. Words are read and updated in place, including the volatile
+ * reads and compare-and-set used by lock-free callers.
+ * </p>
+ * <p>
+ * Changes reach the file when the mapping is written back. {@link #commit()},
+ * called once a booking has been made or cancelled, either forces the mapping
+ * to disk before returning or asks for it to be written back in the
+ * background, depending on the {@link Durability} the file was opened with.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class MappedSeatBitmap extends SeatBitmap {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(MappedSeatBitmap.class);
+
+    /**
+     * When committed changes are written to disk.
+     */
+    public enum Durability {
+        /**
+         * Committed changes are written back in the background; a crash can lose
+         * the last few bookings.
+         */
+        ASYNC,
+
+        /**
+         * Every commit forces the mapping to disk before it returns.
+         */
+        FORCE
+    }
+
+    /**
+     * Identifies a seat inventory file: "GICM".
+     */
+    private static final int MAGIC = 0x4749434D;
+
+    /**
+     * The format version of the file.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The length of the header: magic, version, padding, rows, seats per row and
+     * padding up to a word boundary.
+     */
+    private static final int HEADER_LENGTH = 16;
+
+    /**
+     * Access to the words of the mapping.
+     */
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Writes back the mappings committed asynchronously, one at a time.
+     */
+    private static final ExecutorService SYNC_WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "seat-inventory-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The file of the mapping.
+     */
+    private final Path file;
+
+    /**
+     * The mapped header and words.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * When committed changes are written to disk.
+     */
+    private final Durability durability;
+
+    /**
+     * Whether an asynchronous write-back is queued and not yet started.
+     */
+    private final AtomicBoolean syncPending = new AtomicBoolean();
+
+    private MappedSeatBitmap(Path file, MappedByteBuffer buffer, int rows, int seatsPerRow,
+            Durability durability) {
+        super(rows, seatsPerRow, false);
+        this.file = file;
+        this.buffer = buffer;
+        this.durability = durability;
+    }
+
+    /**
+     * Maps the seat inventory file of a hall, creating it with every seat
+     * unmarked if it does not exist.
+     *
+     * @param file        The seat inventory file.
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @param durability  When committed changes are written to disk.
+     * @return The mapped bitmap.
+     * @throws IOException              if the file cannot be mapped.
+     * @throws IllegalArgumentException if the file is not a seat inventory file
+     *                                  of a hall of the given size.
+     */
+    public static MappedSeatBitmap open(Path file, int rows, int seatsPerRow, Durability durability)
+            throws IOException {
+        long length = HEADER_LENGTH + (long) Math.max(0, rows) * wordsPerRow(seatsPerRow) * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size != 0 && size != length) {
+                throw new IllegalArgumentException("Not a seat inventory file of a " + rows + " x " + seatsPerRow
+                        + " seat map: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (size == 0) {
+                buffer.putInt(0, MAGIC).putShort(4, VERSION).putInt(8, rows).putInt(12, seatsPerRow);
+                buffer.force();
+                logger.info("Created seat inventory {} for {} rows and {} seats per row", file, rows, seatsPerRow);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IllegalArgumentException("Not a seat inventory file: " + file);
+            } else if (buffer.getInt(8) != rows || buffer.getInt(12) != seatsPerRow) {
+                throw new IllegalArgumentException("Seat inventory " + file + " belongs to a " + buffer.getInt(8)
+                        + " x " + buffer.getInt(12) + " seat map, not " + rows + " x " + seatsPerRow);
+            }
+            return new MappedSeatBitmap(file, buffer, rows, seatsPerRow, durability);
+        }
+    }
+
+    /**
+     * Makes the changes so far durable according to the durability of the file:
+     * forces them to disk, or queues a background write-back if none is queued
+     * yet.
+     */
+    public void commit() {
+        if (durability == Durability.FORCE) {
+            buffer.force();
+        } else if (syncPending.compareAndSet(false, true)) {
+            SYNC_WRITER.execute(() -> {
+                syncPending.set(false);
+                buffer.force();
+            });
+        }
+    }
+
+    /**
+     * Forces every change so far to disk, whatever the durability of the file.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Gets when committed changes are written to disk.
+     *
+     * @return The durability of the file.
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Gets the seat inventory file.
+     *
+     * @return The file of the mapping.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    long word(int index) {
+        return (long) WORDS.get(buffer, offset(index));
+    }
+
+    @Override
+    void putWord(int index, long value) {
+        WORDS.set(buffer, offset(index), value);
+    }
+
+    @Override
+    long wordVolatile(int index) {
+        return (long) WORDS.getVolatile(buffer, offset(index));
+    }
+
+    @Override
+    boolean compareAndSetWord(int index, long expected, long updated) {
+        return WORDS.compareAndSet(buffer, offset(index), expected, updated);
+    }
+
+    private static int offset(int index) {
+        return HEADER_LENGTH + index * Long.BYTES;
+    }
+}
@@ -0,0 +1,420 @@
+package com.yuzhengchua.cinema.models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The SeatBitmap class is a packed seat storage engine for a cinema hall. Every
+ * row is stored as one or more {@code long} words where each bit represents a
+ * single seat: bit {@code col} of the row is set when the seat is marked.
+ * <p>
+ * Rows with up to 64 seats occupy exactly one word, so counting the marked seats
+ * in a row is a single {@link Long#bitCount(long)}. Wider rows fall back to
+ * several consecutive words per row. Rows never share a word, which keeps every
+ * row independently updatable, and words can also be read and updated atomically
+ * with {@link #getWordVolatile(int, int)} and
+ * {@link #compareAndSetWord(int, int, long, long)} for lock-free callers.
+ * </p>
+ * <p>
+ * The words live on the heap; {@link MappedSeatBitmap} keeps them in a
+ * memory-mapped file instead.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class SeatBitmap {
+
+    /**
+     * Number of seats that fit in a single word.
+     */
+    private static final int BITS_PER_WORD = Long.SIZE;
+
+    /**
+     * Atomic access to the elements of the word array.
+     */
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats in each row of the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The number of words used to store a single row.
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Mask of the valid seat bits in the last word of a row.
+     */
+    private final long lastWordMask;
+
+    /**
+     * The packed seat words, row after row, or null if the words are stored
+     * elsewhere by a subclass.
+     */
+    private final long[] words;
+
+    /**
+     * Constructs a new SeatBitmap with every seat unmarked.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     */
+    public SeatBitmap(int rows, int seatsPerRow) {
+        this(rows, seatsPerRow, true);
+    }
+
+    /**
+     * Constructs a new SeatBitmap, allocating its words on the heap only if asked
+     * to.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @param onHeap      Whether the words are stored in a heap array.
+     */
+    SeatBitmap(int rows, int seatsPerRow, boolean onHeap) {
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.wordsPerRow = wordsPerRow(seatsPerRow);
+        int remainder = seatsPerRow % BITS_PER_WORD;
+        this.lastWordMask = remainder == 0 ? -1L : (1L << remainder) - 1;
+        this.words = onHeap ? new long[Math.max(0, rows) * wordsPerRow] : null;
+    }
+
+    /**
+     * Computes the number of words used to store a single row.
+     *
+     * @param seatsPerRow The number of seats per row.
+     * @return The number of words per row.
+     */
+    static int wordsPerRow(int seatsPerRow) {
+        return Math.max(1, (seatsPerRow + BITS_PER_WORD - 1) / BITS_PER_WORD);
+    }
+
+    /**
+     * Gets the number of rows in the cinema hall.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Gets the number of seats per row in the cinema hall.
+     *
+     * @return The number of seats per row.
+     */
+    public int getSeatsPerRow() {
+        return this.seatsPerRow;
+    }
+
+    /**
+     * Gets the number of words used to store a single row.
+     *
+     * @return The number of words per row.
+     */
+    public int getWordsPerRow() {
+        return this.wordsPerRow;
+    }
+
+    /**
+     * Checks whether a seat is marked.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     * @return true if the seat is marked.
+     */
+    public boolean get(int row, int col) {
+        return (word(wordIndex(row, col)) & bit(col)) != 0;
+    }
+
+    /**
+     * Marks a seat.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void set(int row, int col) {
+        int index = wordIndex(row, col);
+        putWord(index, word(index) | bit(col));
+    }
+
+    /**
+     * Unmarks a seat.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void clear(int row, int col) {
+        int index = wordIndex(row, col);
+        putWord(index, word(index) & ~bit(col));
+    }
+
+    /**
+     * Unmarks every seat in the hall.
+     */
+    public void clear() {
+        if (words != null) {
+            Arrays.fill(words, 0L);
+            return;
+        }
+        for (int index = 0, count = wordCount(); index < count; index++) {
+            putWord(index, 0L);
+        }
+    }
+
+    /**
+     * Counts the marked seats in a row.
+     *
+     * @param row The row to count.
+     * @return The number of marked seats in the row.
+     */
+    public int cardinality(int row) {
+        int base = row * wordsPerRow;
+        int count = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+            count += Long.bitCount(word(base + w));
+        }
+        return count;
+    }
+
+    /**
+     * Counts the marked seats in the whole hall.
+     *
+     * @return The number of marked seats.
+     */
+    public int cardinality() {
+        int count = 0;
+        for (int index = 0, wordCount = wordCount(); index < wordCount; index++) {
+            count += Long.bitCount(word(index));
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first unmarked seat in a row at or after the given column.
+     *
+     * @param row     The row to search.
+     * @param fromCol The column to start searching from.
+     * @return The column of the first unmarked seat, or -1 if there is none.
+     */
+    public int nextClearSeat(int row, int fromCol) {
+        if (fromCol < 0) {
+            fromCol = 0;
+        }
+        int base = row * wordsPerRow;
+        for (int w = fromCol / BITS_PER_WORD; w < wordsPerRow; w++) {
+            long free = ~word(base + w) & validMask(w);
+            if (w == fromCol / BITS_PER_WORD) {
+                free &= -1L << (fromCol % BITS_PER_WORD);
+            }
+            if (free != 0) {
+                return w * BITS_PER_WORD + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first marked seat in a row at or after the given column.
+     *
+     * @param row     The row to search.
+     * @param fromCol The column to start searching from.
+     * @return The column of the first marked seat, or -1 if there is none.
+     */
+    public int nextMarkedSeat(int row, int fromCol) {
+        if (fromCol < 0) {
+            fromCol = 0;
+        }
+        int base = row * wordsPerRow;
+        for (int w = fromCol / BITS_PER_WORD; w < wordsPerRow; w++) {
+            long marked = word(base + w);
+            if (w == fromCol / BITS_PER_WORD) {
+                marked &= -1L << (fromCol % BITS_PER_WORD);
+            }
+            if (marked != 0) {
+                return w * BITS_PER_WORD + Long.numberOfTrailingZeros(marked);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a raw word of the bitmap.
+     *
+     * @param row  The row of the word.
+     * @param word The index of the word within the row.
+     * @return The word value.
+     */
+    public long getWord(int row, int word) {
+        return word(row * wordsPerRow + word);
+    }
+
+    /**
+     * Replaces a raw word of the bitmap.
+     *
+     * @param row   The row of the word.
+     * @param word  The index of the word within the row.
+     * @param value The new word value.
+     */
+    public void setWord(int row, int word, long value) {
+        putWord(row * wordsPerRow + word, value & validMask(word));
+    }
+
+    /**
+     * Reads a raw word of the bitmap with volatile semantics, so that updates made
+     * by {@link #compareAndSetWord(int, int, long, long)} in other threads are
+     * visible.
+     *
+     * @param row  The row of the word.
+     * @param word The index of the word within the row.
+     * @return The word value.
+     */
+    public long getWordVolatile(int row, int word) {
+        return wordVolatile(row * wordsPerRow + word);
+    }
+
+    /**
+     * Atomically replaces a raw word of the bitmap if it still holds the expected
+     * value.
+     *
+     * @param row      The row of the word.
+     * @param word     The index of the word within the row.
+     * @param expected The value the word is expected to hold.
+     * @param updated  The new word value.
+     * @return true if the word was replaced, false if it held another value.
+     */
+    public boolean compareAndSetWord(int row, int word, long expected, long updated) {
+        return compareAndSetWord(row * wordsPerRow + word, expected, updated & validMask(word));
+    }
+
+    /**
+     * Copies every word of another bitmap of the same geometry into this one.
+     *
+     * @param other The bitmap to copy from.
+     */
+    public void copyFrom(SeatBitmap other) {
+        if (this.words != null && other.words != null) {
+            System.arraycopy(other.words, 0, this.words, 0, this.words.length);
+            return;
+        }
+        for (int index = 0, count = wordCount(); index < count; index++) {
+            putWord(index, other.word(index));
+        }
+    }
+
+    /**
+     * Copies the words of a single row of another bitmap of the same geometry
+     * into this one.
+     *
+     * @param other The bitmap to copy from.
+     * @param row   The row to copy.
+     */
+    public void copyRowFrom(SeatBitmap other, int row) {
+        int base = row * wordsPerRow;
+        if (this.words != null && other.words != null) {
+            System.arraycopy(other.words, base, this.words, base, wordsPerRow);
+            return;
+        }
+        for (int w = 0; w < wordsPerRow; w++) {
+            putWord(base + w, other.word(base + w));
+        }
+    }
+
+    /**
+     * Materialises the bitmap as a 2D array where a marked seat has the given
+     * value and an unmarked seat is 0.
+     *
+     * @param markedValue The value to use for marked seats.
+     * @return A new 2D array representing the bitmap.
+     */
+    public int[][] toArray(int markedValue) {
+        int[][] seats = new int[rows][seatsPerRow];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < seatsPerRow; j++) {
+                if (get(i, j)) {
+                    seats[i][j] = markedValue;
+                }
+            }
+        }
+        return seats;
+    }
+
+    /**
+     * Gets the total number of words of the bitmap.
+     *
+     * @return The number of words.
+     */
+    final int wordCount() {
+        return Math.max(0, rows) * wordsPerRow;
+    }
+
+    /**
+     * Reads a word by its index in the bitmap.
+     *
+     * @param index The index of the word.
+     * @return The word value.
+     */
+    long word(int index) {
+        return words[index];
+    }
+
+    /**
+     * Writes a word by its index in the bitmap.
+     *
+     * @param index The index of the word.
+     * @param value The new word value.
+     */
+    void putWord(int index, long value) {
+        words[index] = value;
+    }
+
+    /**
+     * Reads a word by its index in the bitmap with volatile semantics.
+     *
+     * @param index The index of the word.
+     * @return The word value.
+     */
+    long wordVolatile(int index) {
+        return (long) WORDS.getVolatile(words, index);
+    }
+
+    /**
+     * Atomically replaces a word by its index in the bitmap if it still holds
+     * the expected value.
+     *
+     * @param index    The index of the word.
+     * @param expected The value the word is expected to hold.
+     * @param updated  The new word value.
+     * @return true if the word was replaced.
+     */
+    boolean compareAndSetWord(int index, long expected, long updated) {
+        return WORDS.compareAndSet(words, index, expected, updated);
+    }
+
+    /**
+     * Gets the mask of valid seat bits for a word within a row.
+     *
+     * @param word The index of the word within the row.
+     * @return The mask of valid seat bits.
+     */
+    private long validMask(int word) {
+        return word == wordsPerRow - 1 ? lastWordMask : -1L;
+    }
+
+    private int wordIndex(int row, int col) {
+        return row * wordsPerRow + col / BITS_PER_WORD;
+    }
+
+    private static long bit(int col) {
+        return 1L << (col % BITS_PER_WORD);
+    }
+}
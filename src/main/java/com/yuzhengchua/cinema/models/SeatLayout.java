@@ -0,0 +1,252 @@
+package com.yuzhengchua.cinema.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yuzhengchua.cinema.constants.Constants;
+
+/**
+ * The {@code SeatLayout} class describes the geometry of a hall that is not a
+ * full rectangle of seats: aisles, missing seats and shorter, curved rows. It is
+ * parsed from a compact descriptor listing the rows from row A, the back row, to
+ * the front row, closest to the screen, separated by {@code /}:
+ *
+ * <pre>
+ * 4x20,_2,40,_2,20/10x24,_2,48,_2,24/60
+ * </pre>
+ *
+ * Each row is a comma-separated list of seat blocks ({@code 20}) and gaps
+ * ({@code _2}), and a row can be repeated with a count prefix ({@code 4x}). The
+ * hall is as wide as its widest row; shorter rows are centred, which draws
+ * curved rows. Seats are numbered by their position across the full width, so
+ * the seat numbers of a column line up from row to row.
+ * <p>
+ * The layout keeps the positions that are not seats in a {@link SeatBitmap} of
+ * the rectangle enclosing the hall. A {@link SeatMap} of a layout marks them as
+ * occupied, so the seat planner skips them like booked seats and planning costs
+ * the same as in a rectangular hall.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SeatLayout {
+
+    /**
+     * The descriptor the layout was parsed from.
+     */
+    private final String descriptor;
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of positions in the widest row of the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The number of seats in the cinema hall.
+     */
+    private final int capacity;
+
+    /**
+     * The positions that are not seats, with the front row first like the seat
+     * map.
+     */
+    private final SeatBitmap missingSeats;
+
+    /**
+     * The column of the first seat of every row, with the front row first.
+     */
+    private final int[] firstSeats;
+
+    private SeatLayout(String descriptor, int seatsPerRow, int capacity, SeatBitmap missingSeats, int[] firstSeats) {
+        this.descriptor = descriptor;
+        this.rows = firstSeats.length;
+        this.seatsPerRow = seatsPerRow;
+        this.capacity = capacity;
+        this.missingSeats = missingSeats;
+        this.firstSeats = firstSeats;
+    }
+
+    /**
+     * Parses a seat layout descriptor.
+     *
+     * @param descriptor The descriptor, such as {@code 4x20,_2,40,_2,20/60}.
+     * @return The seat layout.
+     * @throws IllegalArgumentException if the descriptor is malformed, the hall
+     *                                  exceeds {@link Constants#MAX_ROWS} rows or
+     *                                  {@link Constants#MAX_SEATS_PER_ROW} seats
+     *                                  per row, or it has no seats.
+     */
+    public static SeatLayout parse(String descriptor) throws IllegalArgumentException {
+        if (descriptor == null || descriptor.isBlank()) {
+            throw new IllegalArgumentException("Invalid seat layout: " + descriptor);
+        }
+        // the blocks of every row, from row A, with gaps as negative widths
+        List<int[]> rowBlocks = new ArrayList<>();
+        int seatsPerRow = 0;
+        for (String group : descriptor.trim().split("/", -1)) {
+            int repeat = group.indexOf('x');
+            int count = repeat < 0 ? 1 : parseWidth(group.substring(0, repeat), descriptor);
+            String[] items = group.substring(repeat + 1).split(",", -1);
+            int[] blocks = new int[items.length];
+            int width = 0;
+            for (int i = 0; i < items.length; i++) {
+                boolean gap = items[i].startsWith("_");
+                int blockWidth = parseWidth(gap ? items[i].substring(1) : items[i], descriptor);
+                blocks[i] = gap ? -blockWidth : blockWidth;
+                width += blockWidth;
+                if (width > Constants.MAX_SEATS_PER_ROW) {
+                    throw tooLarge(descriptor);
+                }
+            }
+            if (count > Constants.MAX_ROWS - rowBlocks.size()) {
+                throw tooLarge(descriptor);
+            }
+            for (int i = 0; i < count; i++) {
+                rowBlocks.add(blocks);
+            }
+            seatsPerRow = Math.max(seatsPerRow, width);
+        }
+
+        int rows = rowBlocks.size();
+        SeatBitmap missingSeats = new SeatBitmap(rows, seatsPerRow);
+        int[] firstSeats = new int[rows];
+        int capacity = 0;
+        for (int i = 0; i < rows; i++) {
+            int row = rows - 1 - i;
+            int[] blocks = rowBlocks.get(i);
+            int width = 0;
+            for (int block : blocks) {
+                width += Math.abs(block);
+            }
+            int col = (seatsPerRow - width) / 2;
+            markMissing(missingSeats, row, 0, col);
+            firstSeats[row] = -1;
+            for (int block : blocks) {
+                if (block < 0) {
+                    markMissing(missingSeats, row, col, col - block);
+                } else {
+                    capacity += block;
+                    if (firstSeats[row] < 0) {
+                        firstSeats[row] = col;
+                    }
+                }
+                col += Math.abs(block);
+            }
+            markMissing(missingSeats, row, col, seatsPerRow);
+            firstSeats[row] = Math.max(firstSeats[row], 0);
+        }
+        if (capacity == 0) {
+            throw new IllegalArgumentException("Seat layout has no seats: " + descriptor);
+        }
+        return new SeatLayout(descriptor.trim(), seatsPerRow, capacity, missingSeats, firstSeats);
+    }
+
+    private static int parseWidth(String width, String descriptor) throws IllegalArgumentException {
+        if (width.isEmpty() || width.length() > 4) {
+            throw new IllegalArgumentException("Invalid seat layout: " + descriptor);
+        }
+        int value = 0;
+        for (int i = 0; i < width.length(); i++) {
+            char c = width.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid seat layout: " + descriptor);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value == 0) {
+            throw new IllegalArgumentException("Invalid seat layout: " + descriptor);
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException tooLarge(String descriptor) {
+        return new IllegalArgumentException("Seat layout exceeds " + Constants.MAX_ROWS + " rows or "
+                + Constants.MAX_SEATS_PER_ROW + " seats per row: " + descriptor);
+    }
+
+    private static void markMissing(SeatBitmap missingSeats, int row, int fromCol, int toCol) {
+        for (int col = fromCol; col < toCol; col++) {
+            missingSeats.set(row, col);
+        }
+    }
+
+    /**
+     * Gets the number of rows in the cinema hall.
+     *
+     * @return The number of rows in the cinema hall.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of positions in the widest row of the cinema hall.
+     *
+     * @return The number of seats per row of the enclosing rectangle.
+     */
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    /**
+     * Gets the number of seats in the cinema hall.
+     *
+     * @return The number of seats, excluding aisles and missing seats.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Checks whether a position of the enclosing rectangle is a seat.
+     *
+     * @param row The row of the position, with the front row first.
+     * @param col The column of the position.
+     * @return true if there is a seat at the position.
+     */
+    public boolean isSeat(int row, int col) {
+        return !missingSeats.get(row, col);
+    }
+
+    /**
+     * Gets the column of the first seat of a row, where a centred row starts.
+     *
+     * @param row The row, with the front row first.
+     * @return The column of the first seat, or 0 if the row has no seats.
+     */
+    public int getFirstSeat(int row) {
+        return firstSeats[row];
+    }
+
+    /**
+     * Marks the positions that are not seats in a bitmap of the enclosing
+     * rectangle, one word at a time.
+     *
+     * @param bitmap The bitmap to mark, such as the occupancy of a seat map.
+     */
+    public void markMissingSeats(SeatBitmap bitmap) {
+        for (int row = 0; row < rows; row++) {
+            for (int word = 0; word < missingSeats.getWordsPerRow(); word++) {
+                long missing = missingSeats.getWord(row, word);
+                if (missing != 0) {
+                    bitmap.setWord(row, word, bitmap.getWord(row, word) | missing);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the descriptor of the layout.
+     *
+     * @return The descriptor the layout was parsed from.
+     */
+    @Override
+    public String toString() {
+        return descriptor;
+    }
+}
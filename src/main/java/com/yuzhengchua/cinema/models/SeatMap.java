@@ -1,12 +1,22 @@
 package com.yuzhengchua.cinema.models;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * The SeatMap class represents a seating arrangement for a cinema hall. It maintains
  * the details of the number of rows, seats per row, and the current availability of seats.
- * The seat map is stored in a 2D array where each seat can be marked as available (0) or booked (1).
+ * The seat map is stored in a packed {@link SeatBitmap} where each seat can be marked as available or booked,
+ * and is exposed as a 2D array where each seat is available (0) or booked (1).
  * <p>
  * The class provides methods for retrieving and modifying the seating arrangement, as well as tracking
- * the number of available seats.
+ * the number of available seats. A seat map created with {@link #map(Path, int, int, MappedSeatBitmap.Durability)}
+ * keeps its occupancy in a memory-mapped file behind the same accessors, so its seats survive a restart.
+ * </p>
+ * <p>
+ * A seat map created from a {@link SeatLayout} keeps the positions that are not seats marked as booked, so
+ * they are never planned, and counts only the seats of the layout as available.
  * </p>
  * 
  * @since 1.0
@@ -26,18 +36,38 @@ public class SeatMap {
     /**
      * The number of available seats in the cinema hall.
      */
-    private int availableSeats;
+    private final AtomicInteger availableSeats;
+
+    /**
+     * The packed seat occupancy of the cinema hall, where a set bit represents a
+     * booked seat.
+     */
+    private final SeatBitmap occupancy;
+
+    /**
+     * The occupancy if it is kept in a memory-mapped file, or null if it is kept
+     * on the heap.
+     */
+    private final MappedSeatBitmap mappedOccupancy;
+
+    /**
+     * The layout of the cinema hall, or null if every position is a seat.
+     */
+    private final SeatLayout layout;
 
     /**
-     * A 2D array representing the seat map. Each element is an integer where:
-     * 0 represents an available seat, and 1 represents a booked seat.
+     * The number of changes made to the occupancy, used by indexes derived from
+     * the seat map to detect that they are out of date. The count is only exact
+     * while the seat map is changed from one thread at a time: the concurrent
+     * booking services change seats from several threads at once and track their
+     * changes themselves.
      */
-    private int[][] seatMapArr;
+    private int modCount;
 
     /**
      * Constructs a new SeatMap with the given number of rows and seats per row.
      * The available seats are calculated as the product of rows and seats per row.
-     * The seat map array is initialized with all seats marked as available (0).
+     * All seats are initially marked as available.
      * 
      * @param rows The number of rows in the cinema hall.
      * @param seatsPerRow The number of seats per row in the cinema hall.
@@ -45,23 +75,55 @@ public class SeatMap {
     public SeatMap(int rows, int seatsPerRow) {
         this.rows = rows;
         this.seatsPerRow = seatsPerRow;
-        this.availableSeats = rows * seatsPerRow;
-        this.seatMapArr = init();
+        this.availableSeats = new AtomicInteger(rows * seatsPerRow);
+        this.occupancy = new SeatBitmap(rows, seatsPerRow);
+        this.mappedOccupancy = null;
+        this.layout = null;
     }
 
     /**
-     * Initializes the seat map array, setting all seats to available (0).
+     * Constructs a new SeatMap of a hall with the given seat layout. All seats
+     * are initially marked as available, and the positions that are not seats
+     * as booked.
      * 
-     * @return A 2D array representing the seat map where all seats are available.
+     * @param layout The seat layout of the cinema hall.
      */
-    private int[][] init() {
-        int[][] seatMap = new int[rows][seatsPerRow];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < seatsPerRow; j++) {
-                seatMap[i][j] = 0; // 0 indicates available seat
-            }
-        }
-        return seatMap;
+    public SeatMap(SeatLayout layout) {
+        this.rows = layout.getRows();
+        this.seatsPerRow = layout.getSeatsPerRow();
+        this.availableSeats = new AtomicInteger(layout.getCapacity());
+        this.occupancy = new SeatBitmap(rows, seatsPerRow);
+        this.mappedOccupancy = null;
+        this.layout = layout;
+        layout.markMissingSeats(this.occupancy);
+    }
+
+    private SeatMap(MappedSeatBitmap occupancy) {
+        this.rows = occupancy.getRows();
+        this.seatsPerRow = occupancy.getSeatsPerRow();
+        this.availableSeats = new AtomicInteger(rows * seatsPerRow - occupancy.cardinality());
+        this.occupancy = occupancy;
+        this.mappedOccupancy = occupancy;
+        this.layout = null;
+    }
+
+    /**
+     * Opens a SeatMap whose occupancy is kept in a memory-mapped seat inventory
+     * file, creating the file with all seats available if it does not exist. The
+     * seats booked when the file was last used are booked again, and the
+     * available seats are counted from them.
+     * 
+     * @param file The seat inventory file of the cinema hall.
+     * @param rows The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @param durability When changes made by {@link #commit()} are written to disk.
+     * @return The mapped seat map.
+     * @throws IOException if the file cannot be mapped.
+     * @throws IllegalArgumentException if the file is not a seat inventory file of a hall of the given size.
+     */
+    public static SeatMap map(Path file, int rows, int seatsPerRow, MappedSeatBitmap.Durability durability)
+            throws IOException {
+        return new SeatMap(MappedSeatBitmap.open(file, rows, seatsPerRow, durability));
     }
 
     /**
@@ -82,13 +144,31 @@ public class SeatMap {
         return this.seatsPerRow;
     }
 
+    /**
+     * Gets the number of seats in the cinema hall.
+     * 
+     * @return The number of seats, excluding the positions that are not seats in its layout.
+     */
+    public int getCapacity() {
+        return this.layout == null ? this.rows * this.seatsPerRow : this.layout.getCapacity();
+    }
+
+    /**
+     * Gets the seat layout of the cinema hall.
+     * 
+     * @return The seat layout, or null if every position of the hall is a seat.
+     */
+    public SeatLayout getLayout() {
+        return this.layout;
+    }
+
     /**
      * Gets the current number of available seats in the cinema hall.
      * 
      * @return The number of available seats.
      */
     public int getAvailableSeats() {
-        return this.availableSeats;
+        return this.availableSeats.get();
     }
 
     /**
@@ -97,28 +177,170 @@ public class SeatMap {
      * @param availableSeats The new number of available seats.
      */
     public void setAvailableSeats(int availableSeats) {
-        this.availableSeats = availableSeats;
+        this.availableSeats.set(availableSeats);
     }
 
     /**
-     * Gets the 2D array representing the seat map.
+     * Atomically adds to the number of available seats in the cinema hall, so
+     * that concurrent bookings and cancellations never lose an update.
      * 
-     * @return A 2D array of integers representing the seat map, where 0 indicates available and 1 indicates booked.
+     * @param delta The number of seats to add, negative when seats are booked.
+     * @return The new number of available seats.
+     */
+    public int addAvailableSeats(int delta) {
+        return this.availableSeats.addAndGet(delta);
+    }
+
+    /**
+     * Gets the packed seat occupancy of the cinema hall.
+     * 
+     * @return The occupancy bitmap, where a set bit represents a booked seat.
+     */
+    public SeatBitmap getOccupancy() {
+        return this.occupancy;
+    }
+
+    /**
+     * Checks whether a seat is booked.
+     * 
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     * @return true if the seat is booked.
+     */
+    public boolean isBooked(int row, int col) {
+        return this.occupancy.get(row, col);
+    }
+
+    /**
+     * Marks a seat as booked. The available seat count is not changed.
+     * 
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void bookSeat(int row, int col) {
+        this.occupancy.set(row, col);
+        this.modCount++;
+    }
+
+    /**
+     * Marks a seat as available. The available seat count is not changed.
+     * 
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    public void releaseSeat(int row, int col) {
+        this.occupancy.clear(row, col);
+        this.modCount++;
+    }
+
+    /**
+     * Atomically replaces a word of the occupancy if it still holds the expected
+     * value. This is the only safe way to change seats while other threads update
+     * the same occupancy without locks. The available seat count is not changed.
+     * 
+     * @param row      The row of the word.
+     * @param word     The index of the word within the row.
+     * @param expected The value the word is expected to hold.
+     * @param updated  The new word value.
+     * @return true if the word was replaced, false if another thread changed it first.
+     */
+    public boolean compareAndSetOccupancyWord(int row, int word, long expected, long updated) {
+        if (this.occupancy.compareAndSetWord(row, word, expected, updated)) {
+            this.modCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of available seats in a row.
+     * 
+     * @param row The row to check.
+     * @return The number of available seats in the row.
+     */
+    public int getAvailableSeatsInRow(int row) {
+        return this.seatsPerRow - this.occupancy.cardinality(row);
+    }
+
+    /**
+     * Makes the seats booked and released so far durable if the occupancy is kept
+     * in a memory-mapped file, according to the durability it was opened with.
+     * Does nothing for a seat map kept on the heap.
+     */
+    public void commit() {
+        if (this.mappedOccupancy != null) {
+            this.mappedOccupancy.commit();
+        }
+    }
+
+    /**
+     * Checks whether the occupancy is kept in a memory-mapped file.
+     * 
+     * @return true if the seat map was opened with
+     *         {@link #map(Path, int, int, MappedSeatBitmap.Durability)}.
+     */
+    public boolean isMapped() {
+        return this.mappedOccupancy != null;
+    }
+
+    /**
+     * Gets the number of changes made to the occupancy so far. Only meaningful
+     * while the seat map is changed from one thread at a time.
+     * 
+     * @return The modification count of the occupancy.
+     */
+    public int getModCount() {
+        return this.modCount;
+    }
+
+    /**
+     * Gets a 2D array representing the seat map, copied from the packed occupancy
+     * on every call.
+     * <p>
+     * The array is a snapshot the caller owns: writes to it are not reflected in
+     * the seat map. Use {@link #bookSeat(int, int)}, {@link #releaseSeat(int, int)}
+     * or {@link #setSeatMapArr(int[][])} to change the seat map.
+     * </p>
+     * 
+     * @return A new 2D array of integers representing the seat map, where 0 indicates available and 1 indicates booked.
      */
     public int[][] getSeatMapArr() {
-        return this.seatMapArr;
+        return this.occupancy.toArray(1);
     }
 
     /**
-     * Sets the seat map array with a new 2D array of seat data.
+     * Sets the seat map array with a new 2D array of seat data. Any non-zero
+     * element marks the seat as booked; the positions that are not seats stay booked.
      * 
      * @param seatMapArr The new 2D array representing the seat map.
      */
     public void setSeatMapArr(int[][] seatMapArr) {
         for (int i = 0; i < seatMapArr.length; i++) {
             for (int j = 0; j < seatMapArr[0].length; j++) {
-                this.seatMapArr[i][j] = seatMapArr[i][j];
+                if (seatMapArr[i][j] != 0) {
+                    this.occupancy.set(i, j);
+                } else {
+                    this.occupancy.clear(i, j);
+                }
             }
         }
+        if (this.layout != null) {
+            this.layout.markMissingSeats(this.occupancy);
+        }
+        this.modCount++;
+    }
+
+    /**
+     * Replaces the occupancy with the contents of another bitmap of the same
+     * geometry, copying whole words at a time.
+     * 
+     * @param occupancy The new occupancy bitmap.
+     */
+    public void setOccupancy(SeatBitmap occupancy) {
+        this.occupancy.copyFrom(occupancy);
+        if (this.layout != null) {
+            this.layout.markMissingSeats(this.occupancy);
+        }
+        this.modCount++;
     }
 }
@@ -0,0 +1,92 @@
+package com.yuzhengchua.cinema.models;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * The Showtime class identifies a screening by the screen it runs on and its
+ * start time. It is immutable and used as the lookup key of the screenings held
+ * by the showtime registry.
+ *
+ * @since 1.1
+ */
+public final class Showtime implements Comparable<Showtime> {
+
+    /**
+     * The name of the screen.
+     */
+    private final String screen;
+
+    /**
+     * The start time of the screening.
+     */
+    private final LocalDateTime startTime;
+
+    /**
+     * Constructs a new Showtime.
+     *
+     * @param screen    The name of the screen.
+     * @param startTime The start time of the screening.
+     * @throws IllegalArgumentException if the screen is null or empty or the start
+     *                                  time is null.
+     */
+    public Showtime(String screen, LocalDateTime startTime) {
+        if (screen == null || screen.isEmpty()) {
+            throw new IllegalArgumentException("Screen should not be null or empty");
+        }
+        if (startTime == null) {
+            throw new IllegalArgumentException("Start time should not be null");
+        }
+        this.screen = screen;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Gets the name of the screen.
+     *
+     * @return The name of the screen.
+     */
+    public String getScreen() {
+        return screen;
+    }
+
+    /**
+     * Gets the start time of the screening.
+     *
+     * @return The start time.
+     */
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Orders showtimes by screen and then by start time.
+     */
+    @Override
+    public int compareTo(Showtime other) {
+        int byScreen = screen.compareTo(other.screen);
+        return byScreen != 0 ? byScreen : startTime.compareTo(other.startTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Showtime)) {
+            return false;
+        }
+        Showtime other = (Showtime) o;
+        return screen.equals(other.screen) && startTime.equals(other.startTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(screen, startTime);
+    }
+
+    @Override
+    public String toString() {
+        return screen + " @ " + startTime;
+    }
+}
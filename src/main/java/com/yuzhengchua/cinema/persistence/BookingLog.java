@@ -0,0 +1,994 @@
+package com.yuzhengchua.cinema.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code BookingLog} class is an append-only write-ahead log of the
+ * confirmed and cancelled bookings of one seat map, written through a
+ * {@link FileChannel}.
+ * <p>
+ * The log is a sequence of segment files named after the log file and the
+ * sequence number of their first record, such as {@code screen.wal.0000000001}.
+ * Every segment starts with a header recording the size of the hall and its first
+ * sequence number, followed by one frame per booking event: the payload length,
+ * the payload and a CRC32C of the payload. A confirm payload holds the booking
+ * number and the coordinates of its seats; a cancel payload holds only the
+ * booking number; a batch payload holds a run of consecutively numbered
+ * bookings, which are therefore replayed all or none. On open, the records
+ * after a given sequence number are replayed in order and a torn or corrupt
+ * tail left by a crash in the last segment is cut off, so appending resumes
+ * after the last complete record. A corrupt record in an earlier segment, or a
+ * missing segment, fails the open and leaves the files as they are, since the
+ * records after it were already acknowledged.
+ * </p>
+ * <p>
+ * Appends are durable when they return. Concurrent appends are group committed:
+ * a thread that finds its record not yet on disk forces the channel once for
+ * every record written so far, so many appends share a single fsync. A caller
+ * that must not wait while holding a lock of its own writes the record with
+ * one of the {@code write} methods instead, and waits for it with
+ * {@link #awaitDurable(long)} after releasing the lock. Rolling
+ * over to a new segment lets the segments covered by a snapshot be deleted
+ * whole.
+ * </p>
+ * <p>
+ * Rolling over does not wait for the disk either. The new segment is written
+ * under a temporary name and only renamed to its segment name by the next
+ * fsync, after the closed segment has been forced. A segment with a segment
+ * name therefore always follows complete segments, and a crash before the
+ * rename only loses records that were never acknowledged.
+ * </p>
+ * <p>
+ * A failed append leaves nothing behind to replay. If a frame cannot be
+ * written, the segment is truncated back to where the frame started. If the
+ * channel cannot be forced, the records written since the last fsync are
+ * truncated away and the log fails: an fsync cannot be retried safely, so every
+ * later append throws until the log is reopened.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class BookingLog implements Closeable {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(BookingLog.class);
+
+    /**
+     * Receives the booking events of a log during replay.
+     */
+    public interface Replay {
+        /**
+         * Called for a confirmed booking.
+         *
+         * @param bookingNumber The number of the booking.
+         * @param seats         The coordinates of the booked seats.
+         */
+        void confirmed(int bookingNumber, int[][] seats);
+
+        /**
+         * Called for a cancelled booking.
+         *
+         * @param bookingNumber The number of the booking.
+         */
+        void cancelled(int bookingNumber);
+    }
+
+    /**
+     * Identifies a booking log segment: "GICW".
+     */
+    private static final int MAGIC = 0x47494357;
+
+    /**
+     * The format version of the log.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The length of the segment header: magic, version, rows, seats per row and
+     * first sequence number.
+     */
+    private static final int HEADER_LENGTH = 4 + 2 + 4 + 4 + 8;
+
+    /**
+     * The length of the frame around a payload: length and checksum.
+     */
+    private static final int FRAME_OVERHEAD = 4 + 4;
+
+    /**
+     * Payload type of a confirmed booking.
+     */
+    private static final byte CONFIRM = 1;
+
+    /**
+     * Payload type of a cancelled booking.
+     */
+    private static final byte CANCEL = 2;
+
+    /**
+     * Payload type of a batch of confirmed bookings.
+     */
+    private static final byte CONFIRM_BATCH = 3;
+
+    /**
+     * The initial size of the replay read buffer.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The number of digits of the sequence number in segment file names.
+     */
+    private static final int SEGMENT_DIGITS = 10;
+
+    /**
+     * The file the segment names are derived from.
+     */
+    private final Path file;
+
+    /**
+     * The number of rows of the seat map.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats per row of the seat map.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The segment files by first sequence number, guarded by the write lock.
+     */
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    /**
+     * Guards writes to the channel, the written sequence and the segments.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Serialises forcing the channel to disk and renaming rolled segments.
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * The channel of the current segment.
+     */
+    private FileChannel channel;
+
+    /**
+     * The sequence number of the last record written.
+     */
+    private long writtenSeq;
+
+    /**
+     * The sequence number of the last record known to be on disk.
+     */
+    private volatile long syncedSeq;
+
+    /**
+     * The position in the current segment after the last record known to be on
+     * disk, guarded by the write lock.
+     */
+    private long syncedPosition;
+
+    /**
+     * The roll over to the current segment if it has not been forced and renamed
+     * yet, or null, guarded by the write lock.
+     */
+    private Roll pendingRoll;
+
+    /**
+     * The error that failed the log, or null while appends are accepted.
+     */
+    private volatile IOException failure;
+
+    /**
+     * The number of times the channel was forced to disk.
+     */
+    private volatile long syncCount;
+
+    /**
+     * A roll over to a new segment that is not yet on disk.
+     */
+    private static final class Roll {
+        /**
+         * The channel of the closed segment.
+         */
+        private final FileChannel closed;
+
+        /**
+         * The temporary file the new segment is written to until it is renamed.
+         */
+        private final Path temporary;
+
+        /**
+         * The segment file the new segment is renamed to.
+         */
+        private final Path segment;
+
+        /**
+         * The position in the closed segment after the last record known to be
+         * on disk, guarded by the write lock.
+         */
+        private long closedSyncedPosition;
+
+        private Roll(FileChannel closed, long closedSyncedPosition, Path temporary, Path segment) {
+            this.closed = closed;
+            this.closedSyncedPosition = closedSyncedPosition;
+            this.temporary = temporary;
+            this.segment = segment;
+        }
+    }
+
+    private BookingLog(Path file, int rows, int seatsPerRow) {
+        this.file = file;
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+    }
+
+    /**
+     * Opens a booking log, creating it if it does not exist, and replays all of
+     * its records in order.
+     *
+     * @param file        The file the segment names are derived from.
+     * @param rows        The number of rows of the seat map the log belongs to.
+     * @param seatsPerRow The number of seats per row of the seat map.
+     * @param replay      The receiver of the replayed booking events.
+     * @return The opened log, positioned after its last complete record.
+     * @throws IOException              if the log cannot be read or written,
+     *                                  records are missing, or a segment before
+     *                                  the last is corrupt.
+     * @throws IllegalArgumentException if the file is not a booking log of a seat
+     *                                  map of the given size.
+     */
+    public static BookingLog open(Path file, int rows, int seatsPerRow, Replay replay) throws IOException {
+        return open(file, rows, seatsPerRow, 0, replay);
+    }
+
+    /**
+     * Opens a booking log, creating it if it does not exist, and replays the
+     * records after a sequence number, such as the last record covered by a
+     * snapshot.
+     *
+     * @param file        The file the segment names are derived from.
+     * @param rows        The number of rows of the seat map the log belongs to.
+     * @param seatsPerRow The number of seats per row of the seat map.
+     * @param afterSeq    The sequence number of the last record not to replay.
+     * @param replay      The receiver of the replayed booking events.
+     * @return The opened log, positioned after its last complete record.
+     * @throws IOException              if the log cannot be read or written,
+     *                                  records after the sequence number are
+     *                                  missing, or a segment before the last is
+     *                                  corrupt.
+     * @throws IllegalArgumentException if the file is not a booking log of a seat
+     *                                  map of the given size.
+     */
+    public static BookingLog open(Path file, int rows, int seatsPerRow, long afterSeq, Replay replay)
+            throws IOException {
+        BookingLog log = new BookingLog(file, rows, seatsPerRow);
+        try {
+            log.recover(afterSeq, replay);
+            return log;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a confirmed booking and waits until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @param seats         The coordinates of the booked seats.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendConfirm(int bookingNumber, int[][] seats) throws IOException {
+        long seq = writeConfirm(bookingNumber, seats);
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Writes a confirmed booking without waiting until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @param seats         The coordinates of the booked seats.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeConfirm(int bookingNumber, int[][] seats) throws IOException {
+        int payloadLength = 1 + 4 + 4 + seats.length * 4;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_OVERHEAD + payloadLength);
+        frame.putInt(payloadLength);
+        frame.put(CONFIRM);
+        frame.putInt(bookingNumber);
+        frame.putInt(seats.length);
+        for (int[] seat : seats) {
+            frame.putShort((short) seat[0]);
+            frame.putShort((short) seat[1]);
+        }
+        return write(frame, payloadLength);
+    }
+
+    /**
+     * Appends a batch of confirmed bookings numbered consecutively as a single
+     * record and waits until it is on disk.
+     *
+     * @param firstBookingNumber The number of the first booking of the batch.
+     * @param seats              The coordinates of the booked seats of every
+     *                           booking of the batch.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendConfirmBatch(int firstBookingNumber, int[][][] seats) throws IOException {
+        long seq = writeConfirmBatch(firstBookingNumber, seats);
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Writes a batch of confirmed bookings numbered consecutively as a single
+     * record without waiting until it is on disk.
+     *
+     * @param firstBookingNumber The number of the first booking of the batch.
+     * @param seats              The coordinates of the booked seats of every
+     *                           booking of the batch.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeConfirmBatch(int firstBookingNumber, int[][][] seats) throws IOException {
+        int payloadLength = 1 + 4 + 4 + seats.length * 4;
+        for (int[][] bookingSeats : seats) {
+            payloadLength += bookingSeats.length * 4;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_OVERHEAD + payloadLength);
+        frame.putInt(payloadLength);
+        frame.put(CONFIRM_BATCH);
+        frame.putInt(firstBookingNumber);
+        frame.putInt(seats.length);
+        for (int[][] bookingSeats : seats) {
+            frame.putInt(bookingSeats.length);
+            for (int[] seat : bookingSeats) {
+                frame.putShort((short) seat[0]);
+                frame.putShort((short) seat[1]);
+            }
+        }
+        return write(frame, payloadLength);
+    }
+
+    /**
+     * Appends a cancelled booking and waits until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendCancel(int bookingNumber) throws IOException {
+        long seq = writeCancel(bookingNumber);
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Writes a cancelled booking without waiting until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeCancel(int bookingNumber) throws IOException {
+        int payloadLength = 1 + 4;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_OVERHEAD + payloadLength);
+        frame.putInt(payloadLength);
+        frame.put(CANCEL);
+        frame.putInt(bookingNumber);
+        return write(frame, payloadLength);
+    }
+
+    /**
+     * Closes the current segment and starts a new one, so that every record
+     * written so far can later be deleted with the segments before it. Nothing is
+     * forced: the new segment gets its header under a temporary name, and the
+     * next fsync forces the closed segment and renames the new one, so rolling
+     * over costs no more than creating a file. If the last roll over is not on
+     * disk yet, or no record was written since, the current segment is kept.
+     *
+     * @return The sequence number of the last record of the closed segments.
+     * @throws IOException if the new segment cannot be created or the log has
+     *                     failed.
+     */
+    public long rollSegment() throws IOException {
+        synchronized (writeLock) {
+            checkNotFailed();
+            if (segments.lastKey() == writtenSeq + 1 || pendingRoll != null) {
+                return segments.lastKey() - 1;
+            }
+            Path segment = segmentFile(writtenSeq + 1);
+            Path temporary = temporaryFile(segment);
+            FileChannel next = writeHeader(temporary, writtenSeq + 1);
+            pendingRoll = new Roll(channel, syncedPosition, temporary, segment);
+            channel = next;
+            syncedPosition = HEADER_LENGTH;
+            segments.put(writtenSeq + 1, segment);
+            return writtenSeq;
+        }
+    }
+
+    /**
+     * Forces the segment closed by the last {@link #rollSegment()} and renames
+     * the new segment, if that has not happened yet. Meant for a background
+     * thread, so that no append waits for the roll over.
+     *
+     * @throws IOException if the segments cannot be forced or renamed or the log
+     *                     has failed.
+     */
+    public void syncRolledSegment() throws IOException {
+        syncLock.lock();
+        try {
+            Roll roll;
+            synchronized (writeLock) {
+                roll = pendingRoll;
+            }
+            if (roll != null) {
+                checkNotFailed();
+                sync();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the closed segments holding only records up to a sequence number.
+     *
+     * @param coveredSeq The sequence number of the last record that is no longer
+     *                   needed.
+     * @return The number of segments deleted.
+     * @throws IOException if a segment cannot be deleted.
+     */
+    public int deleteSegmentsThrough(long coveredSeq) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        synchronized (writeLock) {
+            while (segments.size() > 1) {
+                Long second = segments.higherKey(segments.firstKey());
+                if (second - 1 > coveredSeq) {
+                    break;
+                }
+                obsolete.add(segments.pollFirstEntry().getValue());
+            }
+        }
+        for (Path segment : obsolete) {
+            Files.deleteIfExists(segment);
+            logger.debug("Deleted booking log segment {}", segment);
+        }
+        return obsolete.size();
+    }
+
+    /**
+     * Gets the sequence number of the last record written.
+     *
+     * @return The last sequence number, or 0 if the log is empty.
+     */
+    public long getLastSeq() {
+        synchronized (writeLock) {
+            return writtenSeq;
+        }
+    }
+
+    /**
+     * Gets the number of times the log was forced to disk.
+     *
+     * @return The number of fsyncs.
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Gets the file the segment names are derived from.
+     *
+     * @return The file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the segment files of the log, oldest first.
+     *
+     * @return The segment files.
+     */
+    public List<Path> getSegments() {
+        synchronized (writeLock) {
+            return new ArrayList<>(segments.values());
+        }
+    }
+
+    /**
+     * Closes the log, first renaming a segment rolled over to and forcing the
+     * segment before it, so that the records written to it are found on open.
+     *
+     * @throws IOException if the segments cannot be forced or renamed, or the
+     *                     channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (failure == null) {
+                syncRolledSegment();
+            }
+        } finally {
+            synchronized (writeLock) {
+                if (pendingRoll != null) {
+                    pendingRoll.closed.close();
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checksums a frame and writes it, without waiting for it to be on disk.
+     *
+     * @param frame         The frame with the length and payload filled in.
+     * @param payloadLength The length of the payload.
+     * @return The sequence number of the record.
+     * @throws IOException if the frame cannot be written or the log has failed.
+     */
+    private long write(ByteBuffer frame, int payloadLength) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), 4, payloadLength);
+        frame.putInt((int) crc.getValue());
+        frame.flip();
+        long seq;
+        synchronized (writeLock) {
+            checkNotFailed();
+            long start = channel.position();
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                // cut off the torn frame, so later records are not lost behind it on replay
+                try {
+                    channel.truncate(start);
+                    channel.position(start);
+                } catch (IOException truncateError) {
+                    e.addSuppressed(truncateError);
+                    failure = e;
+                }
+                logger.error("Failed to append to booking log {}", file, e);
+                throw e;
+            }
+            seq = ++writtenSeq;
+        }
+        return seq;
+    }
+
+    /**
+     * Waits until a record is on disk, forcing the channel for every record
+     * written so far if no other thread has done so. If the channel cannot be
+     * forced, the record is truncated away with every other record not yet on
+     * disk, and the log fails.
+     *
+     * @param seq The sequence number of the record.
+     * @throws IOException if the channel cannot be forced or the log has failed.
+     */
+    public void awaitDurable(long seq) throws IOException {
+        if (syncedSeq >= seq) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            checkNotFailed();
+            sync();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Forces every record written so far to disk. A pending roll over is
+     * completed first: the closed segment is forced, and the new segment is
+     * renamed once its own records are on disk. Called with the sync lock held.
+     *
+     * @throws IOException if the segments cannot be forced or renamed.
+     */
+    private void sync() throws IOException {
+        long target;
+        long targetPosition;
+        FileChannel current;
+        Roll roll;
+        synchronized (writeLock) {
+            target = writtenSeq;
+            targetPosition = channel.position();
+            current = channel;
+            roll = pendingRoll;
+        }
+        try {
+            if (roll != null) {
+                roll.closed.force(false);
+            }
+            current.force(false);
+            if (roll != null) {
+                Files.move(roll.temporary, roll.segment, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                forceDirectory(roll.segment);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        syncCount++;
+        synchronized (writeLock) {
+            syncedSeq = target;
+            if (channel == current) {
+                syncedPosition = targetPosition;
+            } else if (pendingRoll != null && pendingRoll.closed == current) {
+                // rolled over while forcing, so the forced channel is now the closed segment
+                pendingRoll.closedSyncedPosition = targetPosition;
+            }
+            if (roll != null && pendingRoll == roll) {
+                pendingRoll = null;
+            }
+        }
+        if (roll != null) {
+            roll.closed.close();
+        }
+    }
+
+    /**
+     * Throws the error that failed the log, if any.
+     *
+     * @throws IOException if the log has failed.
+     */
+    private void checkNotFailed() throws IOException {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IOException("Booking log " + file + " failed", cause);
+        }
+    }
+
+    /**
+     * Fails the log after the channel could not be forced, and truncates the
+     * records written since the last fsync, which every waiting append reports as
+     * failed. Called with the sync lock held.
+     *
+     * @param e The error forcing the channel.
+     */
+    private void fail(IOException e) {
+        logger.error("Failed to force booking log {}", file, e);
+        synchronized (writeLock) {
+            failure = e;
+            writtenSeq = syncedSeq;
+            try {
+                if (pendingRoll != null) {
+                    pendingRoll.closed.truncate(pendingRoll.closedSyncedPosition);
+                }
+                channel.truncate(syncedPosition);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+        }
+    }
+
+    /**
+     * Replays the segments, cuts off an incomplete tail and opens the last
+     * segment for appending.
+     *
+     * @param afterSeq The sequence number of the last record not to replay.
+     * @param replay   The receiver of the replayed booking events.
+     * @throws IOException if the segments cannot be read or written, records
+     *                     are missing, or a segment before the last is corrupt.
+     */
+    private void recover(long afterSeq, Replay replay) throws IOException {
+        findSegments();
+        if (segments.isEmpty()) {
+            writtenSeq = afterSeq;
+            syncedSeq = afterSeq;
+            channel = createSegment(afterSeq + 1);
+            syncedPosition = HEADER_LENGTH;
+            return;
+        }
+        long firstSeq = segments.firstKey();
+        if (firstSeq > afterSeq + 1) {
+            throw new IOException("Booking log " + file + " is missing records " + (afterSeq + 1) + " to "
+                    + (firstSeq - 1));
+        }
+        long seq = firstSeq - 1;
+        long replayed = 0;
+        for (Long segmentSeq : new ArrayList<>(segments.keySet())) {
+            Path segment = segments.get(segmentSeq);
+            if (segmentSeq != seq + 1) {
+                throw new IOException("Booking log segment " + segment + " starts at record " + segmentSeq
+                        + " after a gap at record " + (seq + 1));
+            }
+            if (segmentSeq.equals(segments.lastKey()) && Files.size(segment) < HEADER_LENGTH) {
+                // created without an atomic rename and cut short by a crash before it had any records
+                logger.warn("Recreating booking log segment {} with an incomplete header", segment);
+                channel = createSegment(segmentSeq);
+                syncedPosition = HEADER_LENGTH;
+                break;
+            }
+            FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                checkHeader(segmentChannel, segment, segmentSeq);
+                long[] position = { HEADER_LENGTH, seq };
+                replayRecords(segmentChannel, position, afterSeq, replay);
+                replayed += Math.max(0, position[1] - Math.max(seq, afterSeq));
+                seq = position[1];
+                if (position[0] < segmentChannel.size()) {
+                    if (!segmentSeq.equals(segments.lastKey())) {
+                        // only the last segment can have been cut short by a crash; later segments
+                        // hold records that were already acknowledged
+                        throw new IOException("Booking log segment " + segment + " is corrupt at byte "
+                                + position[0] + " before the last segment");
+                    }
+                    logger.warn("Truncating {} bytes of incomplete records from {}",
+                            segmentChannel.size() - position[0], segment);
+                    segmentChannel.truncate(position[0]);
+                    segmentChannel.force(true);
+                }
+                if (segmentSeq.equals(segments.lastKey())) {
+                    segmentChannel.position(position[0]);
+                    syncedPosition = position[0];
+                    channel = segmentChannel;
+                    segmentChannel = null;
+                }
+            } finally {
+                if (segmentChannel != null) {
+                    segmentChannel.close();
+                }
+            }
+        }
+        if (seq < afterSeq) {
+            throw new IOException("Booking log " + file + " ends at record " + seq + " before " + afterSeq);
+        }
+        writtenSeq = seq;
+        syncedSeq = seq;
+        logger.info("Replayed {} booking records from {}", replayed, file);
+    }
+
+    /**
+     * Finds the segment files of the log.
+     *
+     * @throws IOException if the directory cannot be listed.
+     */
+    private void findSegments() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path segment : stream) {
+                String suffix = segment.getFileName().toString().substring(prefix.length());
+                if (suffix.length() == SEGMENT_DIGITS && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), segment);
+                } else if (suffix.endsWith(".tmp")) {
+                    // a segment rolled over to but never renamed holds no acknowledged records
+                    Files.deleteIfExists(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new segment and writes its header. The header is written to a
+     * temporary file, forced to disk and atomically renamed, so a crash never
+     * leaves a segment without a complete header.
+     *
+     * @param firstSeq The sequence number of the first record of the segment.
+     * @return The channel of the segment, positioned after the header.
+     * @throws IOException if the segment cannot be written.
+     */
+    private FileChannel createSegment(long firstSeq) throws IOException {
+        Path segment = segmentFile(firstSeq);
+        Path temporary = temporaryFile(segment);
+        try (FileChannel headerChannel = writeHeader(temporary, firstSeq)) {
+            headerChannel.force(true);
+        }
+        Files.move(temporary, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(segment);
+        FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentChannel.position(HEADER_LENGTH);
+        segments.put(firstSeq, segment);
+        return segmentChannel;
+    }
+
+    /**
+     * Creates a file holding a segment header, without forcing it.
+     *
+     * @param path     The file to create.
+     * @param firstSeq The sequence number of the first record of the segment.
+     * @return The channel of the file, positioned after the header.
+     * @throws IOException if the file cannot be written.
+     */
+    private FileChannel writeHeader(Path path, long firstSeq) throws IOException {
+        FileChannel headerChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putShort(VERSION).putInt(rows).putInt(seatsPerRow).putLong(firstSeq).flip();
+            while (header.hasRemaining()) {
+                headerChannel.write(header);
+            }
+        } catch (IOException e) {
+            headerChannel.close();
+            throw e;
+        }
+        return headerChannel;
+    }
+
+    /**
+     * Gets the segment file whose first record has a sequence number.
+     *
+     * @param firstSeq The sequence number of the first record of the segment.
+     * @return The segment file.
+     */
+    private Path segmentFile(long firstSeq) {
+        return file.resolveSibling(file.getFileName() + "." + String.format("%0" + SEGMENT_DIGITS + "d", firstSeq));
+    }
+
+    /**
+     * Gets the temporary file a segment is written to before it is renamed.
+     *
+     * @param segment The segment file.
+     * @return The temporary file.
+     */
+    private static Path temporaryFile(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ".tmp");
+    }
+
+    /**
+     * Forces the directory of a file to disk, so a file just created or renamed
+     * in it survives a crash. Does nothing on platforms that cannot open a
+     * directory, such as Windows, where renames are durable without it.
+     *
+     * @param file The file whose directory is forced.
+     * @throws IOException if the directory cannot be forced.
+     */
+    static void forceDirectory(Path file) throws IOException {
+        FileChannel directory;
+        try {
+            directory = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            logger.debug("Cannot open the directory of {} to force it", file, e);
+            return;
+        }
+        try (directory) {
+            directory.force(true);
+        }
+    }
+
+    /**
+     * Checks that a segment belongs to a seat map of the size of this log.
+     *
+     * @param segmentChannel The channel of the segment.
+     * @param segment        The segment file.
+     * @param firstSeq       The first sequence number in the segment name.
+     * @throws IOException if the header cannot be read.
+     */
+    private void checkHeader(FileChannel segmentChannel, Path segment, long firstSeq) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        segmentChannel.position(0);
+        while (header.hasRemaining() && segmentChannel.read(header) >= 0) {
+            // Read the whole header
+        }
+        header.flip();
+        if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IllegalArgumentException("Not a booking log: " + segment);
+        }
+        int logRows = header.getInt();
+        int logSeatsPerRow = header.getInt();
+        if (logRows != rows || logSeatsPerRow != seatsPerRow) {
+            throw new IllegalArgumentException("Booking log " + segment + " belongs to a " + logRows + " x "
+                    + logSeatsPerRow + " seat map, not " + rows + " x " + seatsPerRow);
+        }
+        if (header.getLong() != firstSeq) {
+            throw new IllegalArgumentException("Booking log segment " + segment + " was renamed");
+        }
+    }
+
+    /**
+     * Reads the records of a segment after its header and hands those after a
+     * sequence number to the replay.
+     *
+     * @param segmentChannel The channel of the segment.
+     * @param position       The file position and sequence number after the last
+     *                       complete record, updated as records are read.
+     * @param afterSeq       The sequence number of the last record not to replay.
+     * @param replay         The receiver of the replayed booking events.
+     * @throws IOException if the segment cannot be read.
+     */
+    private static void replayRecords(FileChannel segmentChannel, long[] position, long afterSeq, Replay replay)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CRC32C crc = new CRC32C();
+        long fileSize = segmentChannel.size();
+        boolean endOfFile = false;
+        segmentChannel.position(position[0]);
+        scan: while (!endOfFile) {
+            endOfFile = segmentChannel.read(buffer) < 0;
+            buffer.flip();
+            while (buffer.remaining() >= 4) {
+                int payloadLength = buffer.getInt(buffer.position());
+                if (payloadLength <= 0 || position[0] + FRAME_OVERHEAD + payloadLength > fileSize) {
+                    break scan;
+                }
+                int frameLength = FRAME_OVERHEAD + payloadLength;
+                if (buffer.remaining() < frameLength) {
+                    break;
+                }
+                int payloadStart = buffer.position() + 4;
+                crc.reset();
+                crc.update(buffer.array(), payloadStart, payloadLength);
+                if ((int) crc.getValue() != buffer.getInt(payloadStart + payloadLength)) {
+                    break scan;
+                }
+                if (++position[1] > afterSeq) {
+                    decode(buffer, payloadStart, replay);
+                }
+                buffer.position(buffer.position() + frameLength);
+                position[0] += frameLength;
+            }
+            if (buffer.remaining() >= 4 && buffer.remaining() == buffer.capacity()) {
+                int frameLength = FRAME_OVERHEAD + buffer.getInt(buffer.position());
+                ByteBuffer larger = ByteBuffer.allocate(frameLength);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Decodes a checksummed payload and hands it to the replay.
+     *
+     * @param buffer       The buffer holding the payload.
+     * @param payloadStart The offset of the payload in the buffer.
+     * @param replay       The receiver of the booking event.
+     */
+    private static void decode(ByteBuffer buffer, int payloadStart, Replay replay) {
+        byte type = buffer.get(payloadStart);
+        int bookingNumber = buffer.getInt(payloadStart + 1);
+        if (type == CANCEL) {
+            replay.cancelled(bookingNumber);
+            return;
+        }
+        int bookingCount = type == CONFIRM_BATCH ? buffer.getInt(payloadStart + 5) : 1;
+        int offset = type == CONFIRM_BATCH ? payloadStart + 9 : payloadStart + 5;
+        for (int booking = 0; booking < bookingCount; booking++) {
+            int seatCount = buffer.getInt(offset);
+            offset += 4;
+            int[][] seats = new int[seatCount][2];
+            for (int i = 0; i < seatCount; i++, offset += 4) {
+                seats[i][0] = buffer.getShort(offset);
+                seats[i][1] = buffer.getShort(offset + 2);
+            }
+            replay.confirmed(bookingNumber + booking, seats);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.yuzhengchua.cinema.persistence;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+import com.yuzhengchua.cinema.models.BookingIndex;
+import com.yuzhengchua.cinema.models.SeatBitmap;
+
+/**
+ * The {@code BookingSnapshot} class is a point-in-time image of the bookings of
+ * one seat map: its packed occupancy, the seats of every booking and the next
+ * booking number, together with the sequence number of the last booking log
+ * record it includes.
+ * <p>
+ * A snapshot is written to a temporary file, forced to disk and then atomically
+ * renamed to {@code <log file>.snap.<sequence number>}, with the rename forced
+ * to disk before the log segments it covers can be deleted. It ends with a
+ * CRC32C of its contents. A snapshot that is torn or corrupt fails the checksum
+ * on load and the previous snapshot is used instead.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class BookingSnapshot {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(BookingSnapshot.class);
+
+    /**
+     * Identifies a booking snapshot: "GICS".
+     */
+    private static final int MAGIC = 0x47494353;
+
+    /**
+     * The format version of the snapshot.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * The infix between the log file name and the sequence number.
+     */
+    private static final String SUFFIX = ".snap.";
+
+    /**
+     * The number of digits of the sequence number in snapshot file names.
+     */
+    private static final int SEQ_DIGITS = 10;
+
+    /**
+     * The sequence number of the last log record included.
+     */
+    private final long lastSeq;
+
+    /**
+     * The booking number the next booking will be given.
+     */
+    private final int nextBookingNumber;
+
+    /**
+     * The booked seats.
+     */
+    private final SeatBitmap occupancy;
+
+    /**
+     * The seats of every booking.
+     */
+    private final BookingIndex bookings;
+
+    /**
+     * Constructs a snapshot. The snapshot takes ownership of the occupancy and the
+     * bookings, which the caller must not change afterwards.
+     *
+     * @param lastSeq           The sequence number of the last log record
+     *                          included.
+     * @param nextBookingNumber The booking number the next booking will be given.
+     * @param occupancy         A copy of the booked seats.
+     * @param bookings          A copy of the seats of every booking.
+     */
+    public BookingSnapshot(long lastSeq, int nextBookingNumber, SeatBitmap occupancy, BookingIndex bookings) {
+        this.lastSeq = lastSeq;
+        this.nextBookingNumber = nextBookingNumber;
+        this.occupancy = occupancy;
+        this.bookings = bookings;
+    }
+
+    /**
+     * Gets the sequence number of the last log record included.
+     *
+     * @return The last sequence number.
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Gets the booking number the next booking will be given.
+     *
+     * @return The next booking number.
+     */
+    public int getNextBookingNumber() {
+        return nextBookingNumber;
+    }
+
+    /**
+     * Gets the booked seats.
+     *
+     * @return The occupancy bitmap.
+     */
+    public SeatBitmap getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Gets the seats of every booking. The index belongs to the snapshot and
+     * must not be changed.
+     *
+     * @return The seats by booking number.
+     */
+    public BookingIndex getBookings() {
+        return bookings;
+    }
+
+    /**
+     * Writes the snapshot next to a booking log, replacing any snapshot of the
+     * same sequence number.
+     *
+     * @param logFile The file the booking log segment names are derived from.
+     * @return The snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public Path write(Path logFile) throws IOException {
+        int rows = occupancy.getRows();
+        int wordsPerRow = occupancy.getWordsPerRow();
+        int length = 4 + 2 + 4 + 4 + 8 + 4 + 4 + rows * wordsPerRow * 8 + bookings.serializedSize();
+        ByteBuffer buffer = ByteBuffer.allocate(length + 4);
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(rows).putInt(occupancy.getSeatsPerRow());
+        buffer.putLong(lastSeq).putInt(nextBookingNumber).putInt(wordsPerRow);
+        for (int row = 0; row < rows; row++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                buffer.putLong(occupancy.getWord(row, word));
+            }
+        }
+        bookings.writeTo(buffer);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path temporary = logFile.resolveSibling(logFile.getFileName() + SUFFIX + "tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Path file = fileOf(logFile, lastSeq);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        BookingLog.forceDirectory(file);
+        return file;
+    }
+
+    /**
+     * Loads the newest snapshot of a booking log that is intact, skipping torn or
+     * corrupt snapshots.
+     *
+     * @param logFile     The file the booking log segment names are derived from.
+     * @param rows        The number of rows of the seat map.
+     * @param seatsPerRow The number of seats per row of the seat map.
+     * @return The newest intact snapshot, or null if there is none.
+     * @throws IOException              if the directory cannot be listed.
+     * @throws IllegalArgumentException if a snapshot belongs to a seat map of
+     *                                  another size.
+     */
+    public static BookingSnapshot loadLatest(Path logFile, int rows, int seatsPerRow) throws IOException {
+        List<Path> files = list(logFile);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            BookingSnapshot snapshot = read(file, rows, seatsPerRow);
+            if (snapshot != null) {
+                logger.info("Loaded booking snapshot {} with {} booking(s)", file, snapshot.bookings.size());
+                return snapshot;
+            }
+            logger.warn("Skipping torn or corrupt booking snapshot {}", file);
+        }
+        return null;
+    }
+
+    /**
+     * Lists the snapshot files of a booking log, oldest first.
+     *
+     * @param logFile The file the booking log segment names are derived from.
+     * @return The snapshot files ordered by sequence number.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public static List<Path> list(Path logFile) throws IOException {
+        Path directory = logFile.toAbsolutePath().getParent();
+        String prefix = logFile.getFileName() + SUFFIX;
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : stream) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.length() == SEQ_DIGITS && suffix.chars().allMatch(Character::isDigit)) {
+                    files.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * Gets the snapshot file of a booking log for a sequence number.
+     *
+     * @param logFile The file the booking log segment names are derived from.
+     * @param lastSeq The sequence number of the last log record included.
+     * @return The snapshot file.
+     */
+    static Path fileOf(Path logFile, long lastSeq) {
+        return logFile.resolveSibling(
+                logFile.getFileName() + SUFFIX + String.format("%0" + SEQ_DIGITS + "d", lastSeq));
+    }
+
+    /**
+     * Reads and verifies a snapshot file.
+     *
+     * @param file        The snapshot file.
+     * @param rows        The number of rows of the seat map.
+     * @param seatsPerRow The number of seats per row of the seat map.
+     * @return The snapshot, or null if the file is torn or corrupt.
+     * @throws IllegalArgumentException if the snapshot belongs to a seat map of
+     *                                  another size.
+     */
+    private static BookingSnapshot read(Path file, int rows, int seatsPerRow) {
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(file);
+        } catch (IOException e) {
+            logger.warn("Failed to read booking snapshot {}", file, e);
+            return null;
+        }
+        if (contents.length < 4) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        CRC32C crc = new CRC32C();
+        crc.update(contents, 0, contents.length - 4);
+        if ((int) crc.getValue() != buffer.getInt(contents.length - 4)) {
+            return null;
+        }
+        buffer.limit(contents.length - 4);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                return null;
+            }
+            int snapshotRows = buffer.getInt();
+            int snapshotSeatsPerRow = buffer.getInt();
+            if (snapshotRows != rows || snapshotSeatsPerRow != seatsPerRow) {
+                throw new IllegalArgumentException("Booking snapshot " + file + " belongs to a " + snapshotRows
+                        + " x " + snapshotSeatsPerRow + " seat map, not " + rows + " x " + seatsPerRow);
+            }
+            long lastSeq = buffer.getLong();
+            int nextBookingNumber = buffer.getInt();
+            SeatBitmap occupancy = new SeatBitmap(rows, seatsPerRow);
+            int wordsPerRow = buffer.getInt();
+            if (wordsPerRow != occupancy.getWordsPerRow()) {
+                return null;
+            }
+            for (int row = 0; row < rows; row++) {
+                for (int word = 0; word < wordsPerRow; word++) {
+                    occupancy.setWord(row, word, buffer.getLong());
+                }
+            }
+            BookingIndex bookings;
+            try {
+                bookings = BookingIndex.readFrom(buffer);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return new BookingSnapshot(lastSeq, nextBookingNumber, occupancy, bookings);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.yuzhengchua.cinema.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The {@code BookingStore} class keeps the bookings of one seat map durable in a
+ * {@link BookingLog} and compacts the log with periodic
+ * {@link BookingSnapshot}s.
+ * <p>
+ * Every time the given number of records has been appended since the last
+ * snapshot, the caller captures the state of its seat map in
+ * {@link #maybeSnapshot(Supplier)} and the snapshot is written in the
+ * background, so appends are not held up by it. The log rolls over to a new
+ * segment at the capture, which only creates a file; forcing the closed segment
+ * and deleting obsolete files is left to the background writer. Once a snapshot is on disk, the
+ * log segments and snapshots covered by the snapshot before it are deleted: the
+ * newest snapshot and the log after the previous one are always kept, so a torn
+ * newest snapshot can fall back to the previous one.
+ * </p>
+ * <p>
+ * On open, the newest intact snapshot is restored and only the log records
+ * after it are replayed.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class BookingStore implements Closeable {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(BookingStore.class);
+
+    /**
+     * Receives the state of a store during recovery: first the snapshot, if any,
+     * and then the booking events logged after it.
+     */
+    public interface Recovery extends BookingLog.Replay {
+        /**
+         * Called with the newest intact snapshot before any event is replayed.
+         *
+         * @param snapshot The snapshot to restore.
+         */
+        void restore(BookingSnapshot snapshot);
+    }
+
+    /**
+     * Writes the snapshots of all stores, one at a time, off the booking path.
+     */
+    private static final ExecutorService SNAPSHOT_WRITER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "booking-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The file the log segment and snapshot names are derived from.
+     */
+    private final Path file;
+
+    /**
+     * The log of the bookings.
+     */
+    private final BookingLog log;
+
+    /**
+     * The number of records appended between snapshots.
+     */
+    private final int snapshotInterval;
+
+    /**
+     * Whether a snapshot is being written.
+     */
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    /**
+     * The sequence number of the last snapshot captured.
+     */
+    private volatile long capturedSeq;
+
+    /**
+     * The sequence number of the newest snapshot on disk, or 0 if there is none.
+     */
+    private volatile long snapshotSeq;
+
+    /**
+     * The sequence number of the snapshot on disk before the newest one, or 0 if
+     * there is none. Only used by the snapshot writer.
+     */
+    private long previousSnapshotSeq;
+
+    /**
+     * The snapshot being written, or null if none was started.
+     */
+    private volatile Future<?> pendingSnapshot;
+
+    private BookingStore(Path file, BookingLog log, int snapshotInterval, long snapshotSeq) {
+        this.file = file;
+        this.log = log;
+        this.snapshotInterval = snapshotInterval;
+        this.capturedSeq = snapshotSeq;
+        this.snapshotSeq = snapshotSeq;
+    }
+
+    /**
+     * Opens the booking store of a seat map, restoring its newest intact snapshot
+     * and replaying the log records after it.
+     *
+     * @param file             The file the log segment and snapshot names are
+     *                         derived from.
+     * @param rows             The number of rows of the seat map.
+     * @param seatsPerRow      The number of seats per row of the seat map.
+     * @param snapshotInterval The number of records appended between snapshots.
+     * @param recovery         The receiver of the recovered state.
+     * @return The opened store.
+     * @throws IOException              if the store cannot be read or written, or
+     *                                  log records after the snapshot are missing.
+     * @throws IllegalArgumentException if the snapshot interval is not positive or
+     *                                  the store belongs to a seat map of another
+     *                                  size.
+     */
+    public static BookingStore open(Path file, int rows, int seatsPerRow, int snapshotInterval, Recovery recovery)
+            throws IOException {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        BookingSnapshot snapshot = BookingSnapshot.loadLatest(file, rows, seatsPerRow);
+        long snapshotSeq = 0;
+        if (snapshot != null) {
+            recovery.restore(snapshot);
+            snapshotSeq = snapshot.getLastSeq();
+        }
+        BookingLog log = BookingLog.open(file, rows, seatsPerRow, snapshotSeq, recovery);
+        return new BookingStore(file, log, snapshotInterval, snapshotSeq);
+    }
+
+    /**
+     * Appends a confirmed booking and waits until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @param seats         The coordinates of the booked seats.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendConfirm(int bookingNumber, int[][] seats) throws IOException {
+        return log.appendConfirm(bookingNumber, seats);
+    }
+
+    /**
+     * Appends a batch of consecutively numbered bookings as a single record and
+     * waits until it is on disk.
+     *
+     * @param firstBookingNumber The number of the first booking of the batch.
+     * @param seats              The coordinates of the booked seats of every
+     *                           booking of the batch.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendConfirmBatch(int firstBookingNumber, int[][][] seats) throws IOException {
+        return log.appendConfirmBatch(firstBookingNumber, seats);
+    }
+
+    /**
+     * Appends a cancelled booking and waits until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The sequence number of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public long appendCancel(int bookingNumber) throws IOException {
+        return log.appendCancel(bookingNumber);
+    }
+
+    /**
+     * Writes a confirmed booking without waiting until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @param seats         The coordinates of the booked seats.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeConfirm(int bookingNumber, int[][] seats) throws IOException {
+        return log.writeConfirm(bookingNumber, seats);
+    }
+
+    /**
+     * Writes a batch of consecutively numbered bookings as a single record
+     * without waiting until it is on disk.
+     *
+     * @param firstBookingNumber The number of the first booking of the batch.
+     * @param seats              The coordinates of the booked seats of every
+     *                           booking of the batch.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeConfirmBatch(int firstBookingNumber, int[][][] seats) throws IOException {
+        return log.writeConfirmBatch(firstBookingNumber, seats);
+    }
+
+    /**
+     * Writes a cancelled booking without waiting until it is on disk.
+     *
+     * @param bookingNumber The number of the booking.
+     * @return The sequence number of the record, to pass to
+     *         {@link #awaitDurable(long)}.
+     * @throws IOException if the record cannot be written.
+     */
+    public long writeCancel(int bookingNumber) throws IOException {
+        return log.writeCancel(bookingNumber);
+    }
+
+    /**
+     * Waits until a written record and every record before it are on disk.
+     *
+     * @param seq The sequence number of the record.
+     * @throws IOException if the log cannot be forced or has failed.
+     */
+    public void awaitDurable(long seq) throws IOException {
+        log.awaitDurable(seq);
+    }
+
+    /**
+     * Starts writing a snapshot in the background if enough records have been
+     * appended since the last one and no snapshot is being written. The log is
+     * rolled over to a new segment, without forcing anything, and the capture
+     * runs on the calling thread. It must return a copy of the state including
+     * every record up to {@link #getLastSeq()}, so its cost, a copy of the whole
+     * state, is paid by the append that triggers the snapshot.
+     *
+     * @param capture Captures the state of the seat map.
+     * @return true if a snapshot was started.
+     */
+    public boolean maybeSnapshot(Supplier<BookingSnapshot> capture) {
+        if (log.getLastSeq() - capturedSeq < snapshotInterval || !snapshotting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            log.rollSegment();
+        } catch (IOException e) {
+            logger.error("Failed to roll over booking log {} for a snapshot", file, e);
+            snapshotting.set(false);
+            return false;
+        }
+        BookingSnapshot snapshot;
+        try {
+            snapshot = capture.get();
+        } catch (RuntimeException e) {
+            snapshotting.set(false);
+            throw e;
+        }
+        capturedSeq = snapshot.getLastSeq();
+        pendingSnapshot = SNAPSHOT_WRITER.submit(() -> {
+            try {
+                writeSnapshot(snapshot);
+            } catch (IOException e) {
+                logger.error("Failed to write booking snapshot of {} at record {}", file, snapshot.getLastSeq(), e);
+            } finally {
+                snapshotting.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits until the snapshot being written, if any, is done.
+     *
+     * @throws IOException if the wait is interrupted.
+     */
+    public void awaitSnapshot() throws IOException {
+        Future<?> pending = pendingSnapshot;
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for booking snapshot", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write booking snapshot", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last record appended.
+     *
+     * @return The last sequence number.
+     */
+    public long getLastSeq() {
+        return log.getLastSeq();
+    }
+
+    /**
+     * Gets the sequence number of the newest snapshot on disk.
+     *
+     * @return The sequence number of the last record in the snapshot, or 0 if
+     *         there is none.
+     */
+    public long getSnapshotSeq() {
+        return snapshotSeq;
+    }
+
+    /**
+     * Gets the log of the store.
+     *
+     * @return The booking log.
+     */
+    public BookingLog getLog() {
+        return log;
+    }
+
+    /**
+     * Gets the file the log segment and snapshot names are derived from.
+     *
+     * @return The file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Waits for the snapshot being written and closes the log.
+     *
+     * @throws IOException if the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitSnapshot();
+        } catch (IOException e) {
+            logger.warn("Closing {} without its last snapshot", file, e);
+        }
+        log.close();
+    }
+
+    /**
+     * Forces the segment closed for a snapshot, writes the snapshot and deletes
+     * the segments and snapshots covered by the snapshot before it.
+     *
+     * @param snapshot The snapshot to write.
+     * @throws IOException if the log cannot be forced, the snapshot cannot be
+     *                     written or an obsolete file cannot be deleted.
+     */
+    private void writeSnapshot(BookingSnapshot snapshot) throws IOException {
+        // the capture may include records written but not yet forced; never snapshot past the durable log
+        log.syncRolledSegment();
+        log.awaitDurable(snapshot.getLastSeq());
+        Path written = snapshot.write(file);
+        previousSnapshotSeq = snapshotSeq;
+        snapshotSeq = snapshot.getLastSeq();
+        int segments = previousSnapshotSeq > 0 ? log.deleteSegmentsThrough(previousSnapshotSeq) : 0;
+        List<Path> snapshots = BookingSnapshot.list(file);
+        for (Path obsolete : snapshots) {
+            if (obsolete.equals(BookingSnapshot.fileOf(file, previousSnapshotSeq)) || obsolete.equals(written)) {
+                break;
+            }
+            Files.deleteIfExists(obsolete);
+        }
+        logger.info("Wrote booking snapshot {} and deleted {} log segment(s)", written, segments);
+    }
+}
@@ -0,0 +1,209 @@
+package com.yuzhengchua.cinema.server;
+
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.PlanningSession;
+import com.yuzhengchua.cinema.util.RowLabels;
+
+/**
+ * The {@code BookingProtocol} class executes the requests of the booking server
+ * against a {@link BookingServiceImpl}. A request is a line of text made of a
+ * command and its arguments separated by spaces, and is answered by a single
+ * line:
+ *
+ * <pre>
+ * PLAN &lt;seats&gt; [&lt;seat&gt;]   OK &lt;seat&gt; ...      plans seats, replacing the plan of the connection
+ * CONFIRM                 OK &lt;booking id&gt;    books the plan of the connection
+ * BOOK &lt;seats&gt; [&lt;seat&gt;]   OK &lt;booking id&gt; &lt;seat&gt; ...
+ *                                            plans and books seats in one request
+ * CANCEL &lt;booking id&gt;     OK                 cancels a booking
+ * CHECK &lt;booking id&gt;      OK &lt;seat&gt; ...      lists the seats of a booking
+ * </pre>
+ *
+ * A request that fails is answered with {@code ERR} followed by the reason.
+ * Seats are written as on the console, such as {@code B03}. The booking service
+ * is not thread-safe, so its calls are made while holding
+ * {@link BookingServiceImpl#getLock()}; requests are parsed and responses
+ * formatted outside it, so the selector loops only queue for the service
+ * itself, and requests that record bookings wait for them to be on disk after
+ * releasing it, so concurrent connections share an fsync. A {@code BOOK} whose
+ * plan is not confirmed releases the plan before it is answered, rather than
+ * holding the seats until the hold expires.
+ *
+ * @since 1.1
+ */
+final class BookingProtocol {
+
+    /**
+     * The booking service requests are executed against.
+     */
+    private final BookingServiceImpl bookingService;
+
+    /**
+     * The lock of the booking service.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * Constructs the protocol of a booking service.
+     *
+     * @param bookingService The booking service requests are executed against.
+     */
+    BookingProtocol(BookingServiceImpl bookingService) {
+        this.bookingService = bookingService;
+        this.lock = bookingService.getLock();
+        this.rows = bookingService.getSeatMap().getRows();
+    }
+
+    /**
+     * Opens the planning session of a new connection.
+     *
+     * @return The planning session.
+     */
+    PlanningSession openSession() {
+        lock.lock();
+        try {
+            return bookingService.openSession();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the planning session of a closed connection, releasing the seats it
+     * holds.
+     *
+     * @param session The planning session.
+     */
+    void closeSession(PlanningSession session) {
+        lock.lock();
+        try {
+            bookingService.closeSession(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes a request.
+     *
+     * @param session The planning session of the connection.
+     * @param request The request line, without the line terminator.
+     * @return The response line, without the line terminator.
+     */
+    String execute(PlanningSession session, String request) {
+        String[] parts = request.trim().split(" +");
+        try {
+            switch (parts[0].toUpperCase(Locale.ROOT)) {
+                case "PLAN": {
+                    checkArguments(parts, 2, 3);
+                    int seatsToBook = Integer.parseInt(parts[1]);
+                    String designatedSeat = parts.length == 3 ? parts[2] : null;
+                    int[][] planned;
+                    lock.lock();
+                    try {
+                        planned = bookingService.planSeats(session, seatsToBook, designatedSeat);
+                    } finally {
+                        lock.unlock();
+                    }
+                    return seats("OK", planned);
+                }
+                case "CONFIRM": {
+                    checkArguments(parts, 1, 1);
+                    String bookingId;
+                    lock.lock();
+                    try {
+                        bookingId = bookingService.getBookingId();
+                        bookingService.confirmSession(session);
+                    } finally {
+                        bookingService.unlockAndAwaitDurable();
+                    }
+                    return "OK " + bookingId;
+                }
+                case "BOOK": {
+                    checkArguments(parts, 2, 3);
+                    int seatsToBook = Integer.parseInt(parts[1]);
+                    String designatedSeat = parts.length == 3 ? parts[2] : null;
+                    int[][] planned;
+                    String bookingId;
+                    lock.lock();
+                    try {
+                        planned = bookingService.planSeats(session, seatsToBook, designatedSeat);
+                        bookingId = bookingService.getBookingId();
+                        try {
+                            bookingService.confirmSession(session);
+                        } catch (IllegalArgumentException | UncheckedIOException e) {
+                            bookingService.closeSession(session);
+                            throw e;
+                        }
+                    } finally {
+                        bookingService.unlockAndAwaitDurable();
+                    }
+                    return seats("OK " + bookingId, planned);
+                }
+                case "CANCEL":
+                    checkArguments(parts, 2, 2);
+                    lock.lock();
+                    try {
+                        bookingService.cancelBooking(parts[1]);
+                    } finally {
+                        bookingService.unlockAndAwaitDurable();
+                    }
+                    return "OK";
+                case "CHECK": {
+                    checkArguments(parts, 2, 2);
+                    int[][] seats;
+                    lock.lock();
+                    try {
+                        seats = bookingService.getBookingIdCache().get(parts[1]);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (seats == null) {
+                        throw new IllegalArgumentException("Booking ID not found: " + parts[1]);
+                    }
+                    return seats("OK", seats);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + parts[0]);
+            }
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    private static void checkArguments(String[] parts, int min, int max) {
+        if (parts.length < min || parts.length > max) {
+            throw new IllegalArgumentException("Wrong number of arguments for " + parts[0]);
+        }
+    }
+
+    /**
+     * Appends the seat codes of the given coordinates to a response.
+     *
+     * @param status The response status.
+     * @param seats  The coordinates of the seats.
+     * @return The response.
+     */
+    private String seats(String status, int[][] seats) {
+        StringBuilder response = new StringBuilder(status.length() + seats.length * 4);
+        response.append(status);
+        for (int[] seat : seats) {
+            int seatNumber = seat[1] + 1;
+            response.append(' ').append(RowLabels.label(rows - 1 - seat[0]));
+            if (seatNumber < 10) {
+                response.append('0');
+            }
+            response.append(seatNumber);
+        }
+        return response.toString();
+    }
+}
@@ -0,0 +1,383 @@
+package com.yuzhengchua.cinema.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.PlanningSession;
+
+/**
+ * The BookingServer class serves a {@link BookingServiceImpl} over TCP, speaking
+ * the line protocol of {@link BookingProtocol}. Each connection has its own
+ * planning session, so every client plans and holds seats independently.
+ * <p>
+ * Connections are non-blocking and spread round robin over a few event loops,
+ * each a thread with its own {@link Selector}, so a handful of threads serve
+ * thousands of connections. Requests may be pipelined: a client can send many
+ * lines without waiting, and every complete line read is answered in order.
+ * While a connection has responses the client has not read yet, no more of its
+ * requests are read.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class BookingServer implements Closeable {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(BookingServer.class);
+
+    /**
+     * The longest request line accepted, in bytes.
+     */
+    private static final int MAX_REQUEST_LENGTH = 1024;
+
+    /**
+     * The initial size of the response buffer of a connection, in bytes.
+     */
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
+
+    /**
+     * The protocol requests are executed with.
+     */
+    private final BookingProtocol protocol;
+
+    /**
+     * The channel accepting connections.
+     */
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * The event loops serving the connections; the first one also accepts them.
+     */
+    private final EventLoop[] eventLoops;
+
+    /**
+     * The event loop the next accepted connection is handed to, only used by
+     * the accepting loop.
+     */
+    private int nextEventLoop;
+
+    /**
+     * Whether the server has been closed.
+     */
+    private volatile boolean closed;
+
+    private BookingServer(BookingServiceImpl bookingService, ServerSocketChannel serverChannel, int eventLoops)
+            throws IOException {
+        this.protocol = new BookingProtocol(bookingService);
+        this.serverChannel = serverChannel;
+        this.eventLoops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            this.eventLoops[i] = new EventLoop(i);
+        }
+    }
+
+    /**
+     * Starts a server for a booking service.
+     *
+     * @param bookingService The booking service to serve.
+     * @param address        The address to listen on; port 0 picks a free port.
+     * @param eventLoops     The number of event loop threads.
+     * @return The started server, which the caller closes.
+     * @throws IOException              if the address cannot be bound.
+     * @throws IllegalArgumentException if the number of event loops is not
+     *                                  positive.
+     */
+    public static BookingServer start(BookingServiceImpl bookingService, InetSocketAddress address, int eventLoops)
+            throws IOException {
+        if (eventLoops <= 0) {
+            throw new IllegalArgumentException("Event loops must be positive: " + eventLoops);
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address, 1024);
+            serverChannel.configureBlocking(false);
+            BookingServer server = new BookingServer(bookingService, serverChannel, eventLoops);
+            serverChannel.register(server.eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+            for (EventLoop eventLoop : server.eventLoops) {
+                eventLoop.thread.start();
+            }
+            logger.info("Booking server listening on {} with {} event loop(s)", serverChannel.getLocalAddress(),
+                    eventLoops);
+            return server;
+        } catch (IOException | RuntimeException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the address the server listens on.
+     *
+     * @return The bound address.
+     * @throws IOException if the address cannot be read.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops accepting connections, closes every connection and waits for the
+     * event loops to stop.
+     *
+     * @throws IOException if the server channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverChannel.close();
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.selector.wakeup();
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            try {
+                eventLoop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.info("Booking server stopped");
+    }
+
+    /**
+     * A thread multiplexing the connections registered with its selector.
+     */
+    private final class EventLoop implements Runnable {
+
+        /**
+         * The selector of the connections of this loop.
+         */
+        private final Selector selector;
+
+        /**
+         * The connections accepted for this loop and not registered yet.
+         */
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The thread running the loop.
+         */
+        private final Thread thread;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "booking-server-" + index);
+        }
+
+        /**
+         * Hands an accepted connection to this loop.
+         *
+         * @param channel The connection.
+         */
+        void adopt(SocketChannel channel) {
+            accepted.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    registerAccepted();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        handle(key);
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                logger.error("Booking server event loop {} failed", thread.getName(), e);
+            } finally {
+                closeConnections();
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isWritable()) {
+                    connection.write();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    connection.read();
+                }
+            } catch (IOException e) {
+                logger.debug("Closing connection {}: {}", connection.channel, e.getMessage());
+                connection.close();
+            }
+        }
+
+        private void accept() {
+            try {
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    eventLoops[nextEventLoop].adopt(channel);
+                    nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                }
+            } catch (IOException e) {
+                logger.error("Failed to accept connection", e);
+            }
+        }
+
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                Connection connection = new Connection(channel, protocol.openSession());
+                try {
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void closeConnections() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close connection", e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid() && key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close selector", e);
+            }
+        }
+    }
+
+    /**
+     * A client connection with its planning session and buffers.
+     */
+    private final class Connection {
+
+        /**
+         * The channel of the connection.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * The planning session of the client.
+         */
+        private final PlanningSession session;
+
+        /**
+         * The bytes read and not yet parsed into requests.
+         */
+        private final ByteBuffer requests = ByteBuffer.allocate(MAX_REQUEST_LENGTH);
+
+        /**
+         * The responses not yet written, in write mode.
+         */
+        private ByteBuffer responses = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+
+        /**
+         * The key of the connection in its selector.
+         */
+        private SelectionKey key;
+
+        Connection(SocketChannel channel, PlanningSession session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        /**
+         * Reads what the client sent, answers every complete request and writes
+         * the responses.
+         *
+         * @throws IOException if the connection fails or the client closed it.
+         */
+        void read() throws IOException {
+            if (channel.read(requests) < 0) {
+                throw new IOException("closed by client");
+            }
+            requests.flip();
+            int start = requests.position();
+            for (int i = start; i < requests.limit(); i++) {
+                if (requests.get(i) == '\n') {
+                    int end = i > start && requests.get(i - 1) == '\r' ? i - 1 : i;
+                    respond(protocol.execute(session, new String(requests.array(), start, end - start,
+                            StandardCharsets.ISO_8859_1)));
+                    start = i + 1;
+                }
+            }
+            requests.position(start);
+            requests.compact();
+            if (!requests.hasRemaining()) {
+                respond("ERR Request too long");
+                write();
+                throw new IOException("request too long");
+            }
+            write();
+        }
+
+        /**
+         * Writes as many pending responses as the socket takes, and reads no more
+         * requests until all of them are written.
+         *
+         * @throws IOException if the connection fails.
+         */
+        void write() throws IOException {
+            responses.flip();
+            channel.write(responses);
+            responses.compact();
+            key.interestOps(responses.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private void respond(String response) {
+            int length = response.length() + 1;
+            if (responses.remaining() < length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(responses.capacity() * 2,
+                        responses.position() + length));
+                responses.flip();
+                grown.put(responses);
+                responses = grown;
+            }
+            for (int i = 0; i < response.length(); i++) {
+                responses.put((byte) response.charAt(i));
+            }
+            responses.put((byte) '\n');
+        }
+
+        void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close connection", e);
+            }
+            protocol.closeSession(session);
+        }
+    }
+}
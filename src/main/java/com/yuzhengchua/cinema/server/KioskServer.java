@@ -0,0 +1,443 @@
+package com.yuzhengchua.cinema.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.CinemaWorkflowService;
+import com.yuzhengchua.cinema.service.SharedBookingSession;
+
+/**
+ * The KioskServer class runs many interactive {@link CinemaWorkflowService}
+ * sessions at once, one per kiosk, all booking from one shared
+ * {@link BookingServiceImpl}. Every session reads from and prints to streams of
+ * its own, either those of a socket accepted by {@link #listen} or those given
+ * to {@link #open} for a simulated kiosk, and books through a
+ * {@link SharedBookingSession}.
+ * <p>
+ * The workflow is written as blocking loops, so every session runs on a thread
+ * of its own. On Java 21 and later these are virtual threads, which cost a few
+ * hundred bytes of heap while a kiosk waits for input rather than a platform
+ * thread stack, so tens of thousands of idle kiosks fit in a small heap. On
+ * older runtimes sessions fall back to platform threads.
+ * </p>
+ * <p>
+ * Every session prints through one {@link PrintStream} shared by the server,
+ * since a print stream of its own would keep some 24 KiB of encoder buffers per
+ * idle kiosk. The shared stream encodes into a small buffer of the printing
+ * session, which is sent to the kiosk before the session waits for input, so
+ * a slow kiosk never holds up the others.
+ * </p>
+ * <p>
+ * A session ends when its kiosk exits from the menu, its input ends, or the
+ * server is closed.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class KioskServer implements Closeable {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(KioskServer.class);
+
+    /**
+     * The size of the buffer decoding the input of a session, in bytes; kiosk
+     * input is a line at a time, so the default of 8 KiB per session is waste.
+     */
+    private static final int INPUT_BUFFER_SIZE = 256;
+
+    /**
+     * The largest output buffer a session keeps while it waits for input, in
+     * bytes; a larger one, such as after printing the seat map, is dropped.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 256;
+
+    /**
+     * The factory of virtual threads, or null if the runtime has none.
+     */
+    private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+
+    /**
+     * The booking service shared by every session.
+     */
+    private final BookingServiceImpl bookingService;
+
+    /**
+     * The title of the movie being shown.
+     */
+    private final String title;
+
+    /**
+     * The executor running the sessions, one thread per session.
+     */
+    private final ExecutorService sessions;
+
+    /**
+     * The output of the session running on the current thread.
+     */
+    private final ThreadLocal<KioskOutput> currentOutput = new ThreadLocal<>();
+
+    /**
+     * The stream every session prints to, encoding into the output of the
+     * session running on the printing thread.
+     */
+    private final PrintStream printer = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+            currentOutput.get().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            currentOutput.get().write(bytes, offset, length);
+        }
+    }, false, StandardCharsets.UTF_8);
+
+    /**
+     * The input of every running session, closed when the server is closed.
+     */
+    private final Set<Closeable> inputs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of running sessions.
+     */
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    /**
+     * The socket accepting kiosk connections, or null if not listening.
+     */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Whether the server has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a kiosk server for a booking service.
+     *
+     * @param bookingService The booking service shared by every session.
+     * @param title          The title of the movie being shown.
+     */
+    public KioskServer(BookingServiceImpl bookingService, String title) {
+        this.bookingService = bookingService;
+        this.title = title;
+        ThreadFactory threads = VIRTUAL_THREADS;
+        if (threads == null) {
+            AtomicInteger count = new AtomicInteger();
+            threads = task -> {
+                Thread thread = new Thread(task, "kiosk-session-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        this.sessions = Executors.newCachedThreadPool(threads);
+    }
+
+    /**
+     * Creates a factory of virtual threads through reflection, so that the
+     * server builds for Java 17 and still uses them on Java 21.
+     *
+     * @return The factory, or null if the runtime has no virtual threads.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "kiosk-session-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether sessions run on virtual threads.
+     *
+     * @return true on Java 21 and later.
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    /**
+     * Starts accepting kiosk connections, running a session for each one.
+     *
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException           if the address cannot be bound.
+     * @throws IllegalStateException if the server already listens or is closed.
+     */
+    public synchronized void listen(InetSocketAddress address) throws IOException {
+        if (closed || serverSocket != null) {
+            throw new IllegalStateException("Kiosk server already listening or closed");
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.bind(address, 1024);
+        serverSocket = socket;
+        Thread acceptor = new Thread(this::accept, "kiosk-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Kiosk server listening on {}", socket.getLocalSocketAddress());
+    }
+
+    /**
+     * Gets the address the server listens on.
+     *
+     * @return The bound address, or null if not listening.
+     */
+    public InetSocketAddress getAddress() {
+        ServerSocket socket = serverSocket;
+        return socket == null ? null : (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    private void accept() {
+        ServerSocket socket = serverSocket;
+        while (!closed) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Failed to accept kiosk connection", e);
+                }
+                return;
+            }
+            try {
+                open(connection.getInputStream(), connection.getOutputStream(), connection);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to open kiosk session", e);
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * Opens a session for a kiosk reading from and printing to the given
+     * streams, which the session closes when it ends.
+     *
+     * @param in  The input of the kiosk.
+     * @param out The output of the kiosk.
+     * @return The running session, done once it ends.
+     * @throws java.util.concurrent.RejectedExecutionException if the server is
+     *                                                         closed.
+     */
+    public Future<?> open(InputStream in, OutputStream out) {
+        return open(in, out, () -> {
+            try {
+                in.close();
+            } finally {
+                out.close();
+            }
+        });
+    }
+
+    private Future<?> open(InputStream in, OutputStream out, Closeable connection) {
+        return sessions.submit(() -> runSession(in, out, connection));
+    }
+
+    private void runSession(InputStream in, OutputStream out, Closeable connection) {
+        activeSessions.incrementAndGet();
+        inputs.add(connection);
+        SharedBookingSession booking = new SharedBookingSession(bookingService);
+        KioskOutput output = new KioskOutput(out);
+        currentOutput.set(output);
+        try {
+            if (!closed) {
+                SeatMap seatMap = bookingService.getSeatMap();
+                CinemaWorkflowService workflow = new CinemaWorkflowService(
+                        new Scanner(new KioskInput(in, output)), printer, booking, seatMap, title, () -> {
+                            throw new SessionExit();
+                        });
+                workflow.listActions();
+            }
+        } catch (SessionExit | NoSuchElementException e) {
+            logger.debug("Kiosk session ended");
+        } catch (RuntimeException e) {
+            logger.error("Kiosk session failed", e);
+        } finally {
+            try {
+                output.send();
+            } catch (IOException e) {
+                logger.debug("Failed to print to kiosk", e);
+            }
+            currentOutput.remove();
+            booking.close();
+            inputs.remove(connection);
+            closeQuietly(connection);
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of running sessions.
+     *
+     * @return The number of running sessions.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Stops accepting connections, ends every session and waits briefly for
+     * them to finish.
+     *
+     * @throws IOException if the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            socket.close();
+        }
+        for (Closeable input : inputs) {
+            closeQuietly(input);
+        }
+        sessions.shutdownNow();
+        try {
+            if (!sessions.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("{} kiosk session(s) still running", activeSessions.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Kiosk server stopped");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close kiosk connection", e);
+        }
+    }
+
+    /**
+     * The output of a session, holding what the session printed until it is
+     * sent to the kiosk. Only the thread of the session touches it.
+     */
+    private static final class KioskOutput {
+        private static final byte[] EMPTY = new byte[0];
+        private final OutputStream out;
+        private byte[] buffer = EMPTY;
+        private int count;
+
+        KioskOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        /**
+         * Sends what the session printed to the kiosk.
+         *
+         * @throws IOException if the kiosk cannot be written to.
+         */
+        void send() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            try {
+                out.write(buffer, 0, count);
+                out.flush();
+            } finally {
+                count = 0;
+                if (buffer.length > OUTPUT_BUFFER_SIZE) {
+                    buffer = EMPTY;
+                }
+            }
+        }
+
+        private void ensureCapacity(int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(count + length, Math.max(OUTPUT_BUFFER_SIZE,
+                        buffer.length * 2)));
+            }
+        }
+    }
+
+    /**
+     * The input of a session, decoding UTF-8 through a small buffer. What the
+     * session printed is sent to the kiosk before waiting for more input. Reading
+     * does not hold a monitor, so a virtual thread waiting for input unmounts
+     * from its carrier.
+     */
+    private static final class KioskInput implements Readable {
+        private final InputStream in;
+        private final KioskOutput output;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(INPUT_BUFFER_SIZE).flip();
+
+        KioskInput(InputStream in, KioskOutput output) {
+            this.in = in;
+            this.output = output;
+        }
+
+        @Override
+        public int read(CharBuffer chars) throws IOException {
+            int start = chars.position();
+            while (true) {
+                decoder.decode(bytes, chars, false);
+                if (chars.position() > start || !chars.hasRemaining()) {
+                    return chars.position() - start;
+                }
+                output.send();
+                bytes.compact();
+                int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+                bytes.flip();
+                if (read < 0) {
+                    return -1;
+                }
+                bytes.limit(bytes.limit() + read);
+            }
+        }
+    }
+
+    /**
+     * Thrown by the exit handler of a session to end it when its kiosk exits
+     * from the menu, instead of exiting the application.
+     */
+    private static final class SessionExit extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SessionExit() {
+            super(null, null, false, false);
+        }
+    }
+}
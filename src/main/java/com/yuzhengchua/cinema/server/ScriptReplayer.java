@@ -0,0 +1,174 @@
+package com.yuzhengchua.cinema.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.yuzhengchua.cinema.models.SeatLayout;
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.PlanningSession;
+import com.yuzhengchua.cinema.util.InputValidator;
+import com.yuzhengchua.cinema.util.MovieSeatMapGenerator;
+
+/**
+ * The ScriptReplayer class replays a script of booking commands without the
+ * console, such as a day of production traffic for capacity testing. The
+ * script is read a line at a time, so scripts of millions of commands replay
+ * in constant memory, and every command is answered by one result line:
+ *
+ * <pre>
+ * HALL &lt;title&gt; &lt;rows&gt; &lt;seats per row&gt;   OK                 opens a new, empty hall
+ * LAYOUT &lt;title&gt; &lt;seat layout&gt;          OK                 opens a hall with a {@link SeatLayout}
+ * </pre>
+ *
+ * followed by the requests of {@link BookingProtocol}, executed against the
+ * hall opened last in a single planning session, such as {@code BOOK 4 B03}
+ * or {@code CANCEL GIC0001}. A command that fails is answered with
+ * {@code ERR} followed by the reason and the replay goes on. Blank lines and
+ * lines starting with {@code #} are skipped and have no result.
+ * <p>
+ * No seat map is rendered; results are written through a buffer and flushed
+ * once at the end.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class ScriptReplayer {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(ScriptReplayer.class);
+
+    /**
+     * The protocol of the hall opened last, or null before the first hall.
+     */
+    private BookingProtocol protocol;
+
+    /**
+     * The planning session of the script in the hall opened last.
+     */
+    private PlanningSession session;
+
+    /**
+     * The number of commands replayed.
+     */
+    private long commands;
+
+    /**
+     * The number of commands answered with an error.
+     */
+    private long errors;
+
+    /**
+     * Replays a script, writing the result of every command as a line.
+     *
+     * @param script  The script, one command per line.
+     * @param results The writer of the results, flushed but not closed.
+     * @throws IOException if the script cannot be read or the results cannot be
+     *                     written.
+     */
+    public void replay(BufferedReader script, Writer results) throws IOException {
+        String line;
+        while ((line = script.readLine()) != null) {
+            String command = line.trim();
+            if (command.isEmpty() || command.charAt(0) == '#') {
+                continue;
+            }
+            String result = execute(command);
+            commands++;
+            if (result.startsWith("ERR")) {
+                errors++;
+            }
+            results.write(result);
+            results.write('\n');
+        }
+        results.flush();
+        logger.info("Replayed {} command(s), {} failed", commands, errors);
+    }
+
+    /**
+     * Executes a command of the script.
+     *
+     * @param command The command, trimmed.
+     * @return The result line.
+     */
+    private String execute(String command) {
+        if (command.regionMatches(true, 0, "HALL", 0, 4) && (command.length() == 4 || command.charAt(4) == ' ')) {
+            return openHall(command.substring(4).trim());
+        }
+        if (command.regionMatches(true, 0, "LAYOUT", 0, 6) && (command.length() == 6 || command.charAt(6) == ' ')) {
+            return openLayout(command.substring(6).trim());
+        }
+        if (protocol == null) {
+            return "ERR No hall defined";
+        }
+        return protocol.execute(session, command);
+    }
+
+    /**
+     * Opens a new hall, replacing the hall opened last.
+     *
+     * @param definition The title, rows and seats per row of the hall, as typed
+     *                   on the console.
+     * @return The result line.
+     */
+    private String openHall(String definition) {
+        String[] parts = definition.split(" +");
+        if (!InputValidator.isValidSeatMapFormat(parts)) {
+            return "ERR Invalid hall: " + definition;
+        }
+        String[] movieString = MovieSeatMapGenerator.generateMovieSeatMap(parts);
+        int rows = Integer.parseInt(movieString[1]);
+        int seatsPerRow = Integer.parseInt(movieString[2]);
+        if (!InputValidator.isValidRowAndSeats(rows, seatsPerRow)) {
+            return "ERR Invalid hall size: " + rows + " x " + seatsPerRow;
+        }
+        return open(new SeatMap(rows, seatsPerRow));
+    }
+
+    /**
+     * Opens a new hall with a seat layout, replacing the hall opened last.
+     *
+     * @param definition The title and seat layout descriptor of the hall.
+     * @return The result line.
+     */
+    private String openLayout(String definition) {
+        int separator = definition.lastIndexOf(' ');
+        if (separator < 0 || !definition.substring(0, separator).trim().matches("[a-zA-Z0-9 ]+")) {
+            return "ERR Invalid hall: " + definition;
+        }
+        SeatLayout layout;
+        try {
+            layout = SeatLayout.parse(definition.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        }
+        return open(new SeatMap(layout));
+    }
+
+    private String open(SeatMap seatMap) {
+        protocol = new BookingProtocol(new BookingServiceImpl(seatMap));
+        session = protocol.openSession();
+        return "OK";
+    }
+
+    /**
+     * Gets the number of commands replayed.
+     *
+     * @return The number of commands replayed.
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Gets the number of commands answered with an error.
+     *
+     * @return The number of failed commands.
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
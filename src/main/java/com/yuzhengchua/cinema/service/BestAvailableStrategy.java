@@ -0,0 +1,474 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code BestAvailableStrategy} class seats a party in the best seats of
+ * the whole hall instead of filling it row by row. Every row with enough free
+ * seats is scored, and the party is seated in the row with the lowest score:
+ * <ul>
+ * <li>Row preference: how far the row is from the preferred row, as a fraction
+ * of the hall depth.</li>
+ * <li>Centre distance: the mean distance of the seats from the centre of the
+ * hall, as a fraction of half its width.</li>
+ * <li>Split penalty: added for every extra block the party is split into.</li>
+ * </ul>
+ * In each row two candidates are scored: the contiguous block of free seats
+ * closest to the centre, and the free seats nearest the centre even if they
+ * are split by booked seats. Blocks are found from the free runs of the booking
+ * service, so scoring a row costs one step per free block of the row, rows
+ * too fragmented to beat the best score are skipped without scanning them, and
+ * rows are scored outwards from the preferred row only until no row left can beat
+ * the best score.
+ * <p>
+ * In halls of at least {@link #DEFAULT_PARALLEL_THRESHOLD} seats, the rows
+ * around the preferred row are searched first; when rows further out could
+ * still beat them, the rows are split into ranges searched in parallel on a
+ * fork/join pool, the common pool unless another is given, and the best seats
+ * of every range are reduced to the best of the hall. The ranges are reduced in
+ * the order the sequential search visits rows, so both searches pick the same
+ * seats.
+ * </p>
+ * <p>
+ * A party larger than the free seats of any single row is planned by the rules
+ * of {@link SeatAllocationStrategy#BACK_ROW_FIRST}, starting in the row with
+ * the most free seats.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class BestAvailableStrategy implements SeatAllocationStrategy {
+
+    /**
+     * The number of seats from which a hall is searched in parallel. In
+     * {@code BestSeatSearchBenchmark}, halls from this size take over 100
+     * microseconds to search sequentially when few rows can be pruned, many
+     * times the few microseconds a fork/join search costs.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 20_000;
+
+    /**
+     * The fewest rows a parallel search task scans on its own.
+     */
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    /**
+     * The preferred row, as a fraction of the hall depth from row A at the back (0)
+     * to the front row, closest to the screen (1).
+     */
+    private final double preferredRow;
+
+    /**
+     * The weight of the distance from the preferred row.
+     */
+    private final double rowWeight;
+
+    /**
+     * The weight of the distance from the centre of the hall.
+     */
+    private final double centreWeight;
+
+    /**
+     * The score added for every extra block a party is split into.
+     */
+    private final double splitPenalty;
+
+    /**
+     * The number of seats from which a hall is searched in parallel.
+     */
+    private final int parallelThreshold;
+
+    /**
+     * The pool the rows are searched in parallel on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a strategy preferring the row two thirds of the way from row A at
+     * the back towards the screen, with rows and centre distance weighted equally and a split costing
+     * half the hall depth, searching halls in parallel from
+     * {@link #DEFAULT_PARALLEL_THRESHOLD} seats.
+     */
+    public BestAvailableStrategy() {
+        this(2.0 / 3, 1, 1, 0.5);
+    }
+
+    /**
+     * Constructs a strategy with the given scoring weights, searching halls in
+     * parallel from {@link #DEFAULT_PARALLEL_THRESHOLD} seats.
+     *
+     * @param preferredRow The preferred row, as a fraction of the hall depth from
+     *                     row A at the back (0) to the front row (1).
+     * @param rowWeight    The weight of the distance from the preferred row.
+     * @param centreWeight The weight of the distance from the centre of the hall.
+     * @param splitPenalty The score added for every extra block a party is split
+     *                     into.
+     * @throws IllegalArgumentException if the preferred row is not between 0 and
+     *                                  1 or a weight is negative.
+     */
+    public BestAvailableStrategy(double preferredRow, double rowWeight, double centreWeight, double splitPenalty)
+            throws IllegalArgumentException {
+        this(preferredRow, rowWeight, centreWeight, splitPenalty, DEFAULT_PARALLEL_THRESHOLD,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a strategy with the given scoring weights, searching halls in
+     * parallel on the given pool.
+     *
+     * @param preferredRow      The preferred row, as a fraction of the hall depth
+     *                          from row A at the back (0) to the front row (1).
+     * @param rowWeight         The weight of the distance from the preferred row.
+     * @param centreWeight      The weight of the distance from the centre of the
+     *                          hall.
+     * @param splitPenalty      The score added for every extra block a party is
+     *                          split into.
+     * @param parallelThreshold The number of seats from which a hall is searched
+     *                          in parallel: 0 to always search in parallel,
+     *                          {@link Integer#MAX_VALUE} to never.
+     * @param pool              The pool to search in parallel on; a pool of
+     *                          parallelism 1 always searches sequentially.
+     * @throws IllegalArgumentException if the preferred row is not between 0 and
+     *                                  1, a weight is negative or the threshold
+     *                                  is negative.
+     */
+    public BestAvailableStrategy(double preferredRow, double rowWeight, double centreWeight, double splitPenalty,
+            int parallelThreshold, ForkJoinPool pool) throws IllegalArgumentException {
+        if (!(preferredRow >= 0 && preferredRow <= 1)) {
+            throw new IllegalArgumentException("Preferred row must be between 0 and 1: " + preferredRow);
+        }
+        if (!(rowWeight >= 0 && centreWeight >= 0 && splitPenalty >= 0)) {
+            throw new IllegalArgumentException("Scoring weights cannot be negative");
+        }
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("Parallel threshold cannot be negative: " + parallelThreshold);
+        }
+        this.preferredRow = preferredRow;
+        this.rowWeight = rowWeight;
+        this.centreWeight = centreWeight;
+        this.splitPenalty = splitPenalty;
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+    }
+
+    @Override
+    public void allocate(SeatAllocation allocation, int seatsToBook) {
+        int rows = allocation.getRows();
+        int seatsPerRow = allocation.getSeatsPerRow();
+        Candidate best;
+        if ((long) rows * seatsPerRow >= parallelThreshold && rows > MIN_ROWS_PER_TASK
+                && pool.getParallelism() > 1) {
+            // the rows around the preferred row settle most plans without forking
+            int preferred = preferredRow(rows);
+            int bandFrom = Math.max(0, Math.min(rows - MIN_ROWS_PER_TASK, preferred - MIN_ROWS_PER_TASK / 2));
+            int bandTo = bandFrom + MIN_ROWS_PER_TASK;
+            best = search(allocation, seatsToBook, bandFrom, bandTo);
+            double outsideScore = Math.min(bandFrom > 0 ? rowScore(bandFrom - 1, rows) : Double.POSITIVE_INFINITY,
+                    bandTo < rows ? rowScore(bandTo, rows) : Double.POSITIVE_INFINITY);
+            if (outsideScore + idealScore(seatsToBook, seatsPerRow) < best.score) {
+                int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, rows / (4 * pool.getParallelism()));
+                best = pool.invoke(new RowSearch(allocation, seatsToBook, 0, rows, rowsPerTask));
+                allocation.countScanSteps(best.scanSteps);
+            }
+        } else {
+            best = search(allocation, seatsToBook, 0, rows);
+        }
+        if (best.row < 0) {
+            allocation.spill(best.roomiestRow, allocation.getCentredColumn(best.roomiestRow));
+            return;
+        }
+        for (int col = allocation.nextFreeSeat(best.row, best.start); allocation.getAllocatedSeatCount() < seatsToBook;
+                col = allocation.nextFreeSeat(best.row, col + 1)) {
+            allocation.take(best.row, col);
+        }
+    }
+
+    /**
+     * Finds the best seats for a party in a range of rows.
+     *
+     * @param allocation  The allocation to query.
+     * @param seatsToBook The number of seats to be booked.
+     * @param fromRow     The first row of the range.
+     * @param toRow       The row after the last row of the range.
+     * @return The best seats of the range.
+     */
+    private Candidate search(SeatAllocation allocation, int seatsToBook, int fromRow, int toRow) {
+        int rows = allocation.getRows();
+        int seatsPerRow = allocation.getSeatsPerRow();
+        double idealScore = idealScore(seatsToBook, seatsPerRow);
+        Candidate best = new Candidate();
+        // visit rows outwards from the preferred row, the row closer to row A first on
+        // ties, until no row left can beat the best score
+        int front = Math.max(fromRow, Math.min(toRow - 1, preferredRow(rows)));
+        int back = front - 1;
+        while (front < toRow || back >= fromRow) {
+            int row;
+            if (back < fromRow || front < toRow && rowScore(front, rows) <= rowScore(back, rows)) {
+                row = front++;
+            } else {
+                row = back--;
+            }
+            double rowScore = rowScore(row, rows);
+            if (rowScore + idealScore >= best.score) {
+                break;
+            }
+            int freeSeats = allocation.getFreeSeats(row);
+            if (freeSeats > best.roomiestFreeSeats || freeSeats == best.roomiestFreeSeats && row > best.roomiestRow) {
+                best.roomiestRow = row;
+                best.roomiestFreeSeats = freeSeats;
+            }
+            if (freeSeats < seatsToBook) {
+                continue;
+            }
+            // the contiguous block closest to the centre
+            int maxBlock = allocation.getMaxFreeBlock(row);
+            for (int col = maxBlock < seatsToBook ? -1 : allocation.nextFreeSeat(row, 0); col >= 0; ) {
+                int end = allocation.freeBlockEnd(row, col);
+                if (end - col >= seatsToBook) {
+                    int start = Math.max(col, Math.min(end - seatsToBook, (seatsPerRow - seatsToBook) / 2));
+                    double score = rowScore + centreWeight * centreDistance(start, seatsToBook, seatsPerRow);
+                    if (score < best.score) {
+                        best.set(score, rowScore, row, start);
+                    } else if (start > (seatsPerRow - seatsToBook) / 2) {
+                        // blocks further right are further from the centre
+                        break;
+                    }
+                }
+                col = end < seatsPerRow ? allocation.nextFreeSeat(row, end) : -1;
+            }
+            // the free seats nearest the centre, split into at least as many blocks as
+            // the longest block allows
+            int minBlocks = Math.max(2, (seatsToBook + maxBlock - 1) / maxBlock);
+            if (rowScore + splitPenalty * (minBlocks - 1) + idealScore < best.score) {
+                int start = nearestFreeSeats(allocation, row, seatsToBook);
+                int blocks = 0;
+                double distance = 0;
+                int counted = 0;
+                for (int col = allocation.nextFreeSeat(row, start); counted < seatsToBook; ) {
+                    int end = Math.min(allocation.freeBlockEnd(row, col), col + seatsToBook - counted);
+                    blocks++;
+                    distance += centreDistance(col, end - col, seatsPerRow) * (end - col);
+                    counted += end - col;
+                    col = counted < seatsToBook ? allocation.nextFreeSeat(row, end) : -1;
+                }
+                double score = rowScore + splitPenalty * (blocks - 1)
+                        + centreWeight * distance / seatsToBook;
+                if (blocks > 1 && score < best.score) {
+                    best.set(score, rowScore, row, start);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the preferred row of a hall.
+     *
+     * @param rows The number of rows in the cinema hall.
+     * @return The preferred row, with the front row first like the seat map.
+     */
+    private int preferredRow(int rows) {
+        return rows - 1 - (int) Math.round(preferredRow * (rows - 1));
+    }
+
+    /**
+     * Gets the lowest centre distance score a party can have, as no seats are
+     * closer to the centre than a block centred in the row.
+     *
+     * @param seatsToBook The number of seats to be booked.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return The weighted centre distance of a centred block.
+     */
+    private double idealScore(int seatsToBook, int seatsPerRow) {
+        return centreWeight * centreDistance((seatsPerRow - seatsToBook) / 2, seatsToBook, seatsPerRow);
+    }
+
+    /**
+     * Gets the score of a row for its distance from the preferred row.
+     *
+     * @param row  The row, with the front row first like the seat map.
+     * @param rows The number of rows in the cinema hall.
+     * @return The weighted distance, as a fraction of the hall depth.
+     */
+    private double rowScore(int row, int rows) {
+        return rows == 1 ? 0 : rowWeight * Math.abs((double) (rows - 1 - row) / (rows - 1) - preferredRow);
+    }
+
+    /**
+     * Gets the mean distance of a block of seats from the centre of the hall.
+     *
+     * @param start       The column of the first seat of the block.
+     * @param seats       The number of seats in the block.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return The mean distance, as a fraction of half the hall width.
+     */
+    private static double centreDistance(int start, int seats, int seatsPerRow) {
+        double centre = seatsPerRow / 2.0;
+        double total = 0;
+        for (int col = start; col < start + seats; col++) {
+            total += Math.abs(col + 0.5 - centre);
+        }
+        return total / seats / centre;
+    }
+
+    /**
+     * Finds the window of columns, growing outwards from the centre of a row,
+     * that holds the given number of free seats.
+     *
+     * @param allocation The allocation to search.
+     * @param row        The row to search, holding at least that many free
+     *                   seats.
+     * @param seats      The number of free seats.
+     * @return The first column of the window.
+     */
+    private static int nearestFreeSeats(SeatAllocation allocation, int row, int seats) {
+        int seatsPerRow = allocation.getSeatsPerRow();
+        int right = seatsPerRow / 2;
+        int left = right - 1;
+        int start = right;
+        int found = 0;
+        while (found < seats) {
+            // the seat right of the centre wins ties, as seatsPerRow / 2 does
+            if (right < seatsPerRow && (left < 0 || right - seatsPerRow / 2.0 <= seatsPerRow / 2.0 - left - 1)) {
+                if (allocation.nextFreeSeat(row, right) == right) {
+                    found++;
+                }
+                right++;
+            } else {
+                if (allocation.nextFreeSeat(row, left) == left) {
+                    found++;
+                    start = left;
+                }
+                left--;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * The best seats found in a range of rows, and the row with the most free
+     * seats in case no row fits the party.
+     */
+    private static final class Candidate {
+
+        /**
+         * The score of the seats, or infinity if no row fits the party.
+         */
+        double score = Double.POSITIVE_INFINITY;
+
+        /**
+         * The score of the row of the seats for its distance from the preferred
+         * row.
+         */
+        double rowScore;
+
+        /**
+         * The row of the seats, or -1 if no row fits the party.
+         */
+        int row = -1;
+
+        /**
+         * The column the seats are taken from.
+         */
+        int start = -1;
+
+        /**
+         * The row with the most free seats, the row closer to row A on ties.
+         */
+        int roomiestRow = -1;
+
+        /**
+         * The number of free seats in the roomiest row.
+         */
+        int roomiestFreeSeats = -1;
+
+        /**
+         * The number of rows visited by the parallel search.
+         */
+        int scanSteps;
+
+        void set(double score, double rowScore, int row, int start) {
+            this.score = score;
+            this.rowScore = rowScore;
+            this.row = row;
+            this.start = start;
+        }
+
+        /**
+         * Keeps the better of this and another candidate, preferring the one the
+         * sequential search visits first on equal scores: the row closer to the
+         * preferred row, then the row closer to row A.
+         */
+        Candidate merge(Candidate other) {
+            Candidate best = this;
+            if (other.score < score || other.score == score && other.row >= 0
+                    && (other.rowScore < rowScore || other.rowScore == rowScore && other.row > row)) {
+                best = other;
+            }
+            Candidate roomiest = other.roomiestFreeSeats > roomiestFreeSeats
+                    || other.roomiestFreeSeats == roomiestFreeSeats && other.roomiestRow > roomiestRow ? other : this;
+            best.roomiestRow = roomiest.roomiestRow;
+            best.roomiestFreeSeats = roomiest.roomiestFreeSeats;
+            best.scanSteps = scanSteps + other.scanSteps;
+            return best;
+        }
+    }
+
+    /**
+     * A fork/join task searching a range of rows, splitting it in halves until
+     * a half is small enough to search on its own.
+     */
+    private final class RowSearch extends RecursiveTask<Candidate> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The allocation forked into a view by every task searching rows.
+         */
+        private final transient SeatAllocation allocation;
+
+        /**
+         * The number of seats to be booked.
+         */
+        private final int seatsToBook;
+
+        /**
+         * The first row of the range.
+         */
+        private final int fromRow;
+
+        /**
+         * The row after the last row of the range.
+         */
+        private final int toRow;
+
+        /**
+         * The most rows a task searches without splitting.
+         */
+        private final int rowsPerTask;
+
+        RowSearch(SeatAllocation allocation, int seatsToBook, int fromRow, int toRow, int rowsPerTask) {
+            this.allocation = allocation;
+            this.seatsToBook = seatsToBook;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected Candidate compute() {
+            if (toRow - fromRow <= rowsPerTask) {
+                SeatAllocation view = allocation.fork();
+                Candidate best = search(view, seatsToBook, fromRow, toRow);
+                best.scanSteps = view.getForkedScanSteps();
+                return best;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            RowSearch back = new RowSearch(allocation, seatsToBook, fromRow, middle, rowsPerTask);
+            back.fork();
+            Candidate front = new RowSearch(allocation, seatsToBook, middle, toRow, rowsPerTask).compute();
+            return front.merge(back.join());
+        }
+    }
+}
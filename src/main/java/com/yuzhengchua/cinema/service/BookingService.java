@@ -1,5 +1,8 @@
 package com.yuzhengchua.cinema.service;
 
+import java.io.PrintStream;
+import java.util.Map;
+
 public interface BookingService {
     public boolean confirmBooking(int[][] plannedCoordinates) throws IllegalArgumentException;
 
@@ -15,4 +18,24 @@ public interface BookingService {
 
     public String printSeatMapPlan();
 
+    public default void printSeatMapPlan(PrintStream out) {
+        out.print(printSeatMapPlan());
+    }
+
+    public String[] bookBatch(int[] partySizes) throws IllegalArgumentException;
+
+    public String getBookingId();
+
+    /**
+     * Gets how long planned seats are held from other customers, in milliseconds.
+     * Expired holds are released by the next call to the service, not on a timer.
+     *
+     * @return The hold duration, or 0 if planning does not hold seats.
+     */
+    public default long getHoldMillis() {
+        return 0;
+    }
+
+    public Map<String, int[][]> getBookingIdCache();
+
 }
@@ -1,11 +1,30 @@
 package com.yuzhengchua.cinema.service;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
+import com.yuzhengchua.cinema.constants.Constants;
+import com.yuzhengchua.cinema.events.SeatEvent;
+import com.yuzhengchua.cinema.events.SeatEventBus;
+import com.yuzhengchua.cinema.metrics.BookingMetrics;
+import com.yuzhengchua.cinema.metrics.BookingMetrics.Operation;
+import com.yuzhengchua.cinema.metrics.BookingMetrics.Outcome;
+import com.yuzhengchua.cinema.models.BookingIndex;
+import com.yuzhengchua.cinema.models.FreeRunIndex;
+import com.yuzhengchua.cinema.models.SeatBitmap;
 import com.yuzhengchua.cinema.models.SeatMap;
-import com.yuzhengchua.cinema.util.InputValidator;
+import com.yuzhengchua.cinema.persistence.BookingSnapshot;
+import com.yuzhengchua.cinema.persistence.BookingStore;
+import com.yuzhengchua.cinema.util.BookingIds;
+import com.yuzhengchua.cinema.util.HashedTimerWheel;
 
 public class BookingServiceImpl implements BookingService {
     /**
@@ -14,30 +33,141 @@ public class BookingServiceImpl implements BookingService {
     private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
             .getLogger(BookingServiceImpl.class);
     /**
-     * Fixed Booking Id prefix
+     * The designated seat passed to
+     * {@link #planSeats(PlanningSession, int, int, int[])} to plan from the back
+     * row
      */
-    private static final String BOOKING_ID_PREFIX = "GIC";
+    public static final int NO_DESIGNATED_SEAT = -1;
     /**
      * Seat Map model to represent a cinema seating plan.
      */
     private SeatMap seatMap;
 
     /**
-     * A 2D array to mark seats that are reserved during planning
+     * The planning session used by the single-customer planning methods
      */
-    private int[][] seatMapPlanArr;
+    private final PlanningSession defaultSession;
 
     /**
-     * A in-memory cache of the booking ids against the seats reserved for that
-     * booking id
+     * The planning session batches are planned in, never held
      */
-    private Map<String, int[][]> bookingIdCache;
+    private final PlanningSession batchSession;
+
+    /**
+     * The seats held by the plans of all planning sessions
+     */
+    private final SeatBitmap heldSeats;
+
+    /**
+     * The seats already seen while validating the coordinates of a booking,
+     * cleared after every validation
+     */
+    private final SeatBitmap validatedSeats;
+
+    /**
+     * The number of seats held by the plans of all planning sessions
+     */
+    private int heldSeatCount;
+
+    /**
+     * The hold expiry timers, one per session holding seats
+     */
+    private final HashedTimerWheel<PlanningSession> holdTimers;
+
+    /**
+     * How long a plan holds its seats, in milliseconds
+     */
+    private final long holdTtlMillis;
+
+    /**
+     * The clock used to expire holds, in milliseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Releases an expired hold, kept in a field so reaping holds does not
+     * allocate a callback on every call
+     */
+    private final Consumer<PlanningSession> expireHold = this::expireHold;
+
+    /**
+     * An index of the runs of free seats in every row, kept in step with the
+     * seat map on confirm and cancel
+     */
+    private final FreeRunIndex freeRunIndex;
+
+    /**
+     * The rendered seat map, patched in step with the seat map on confirm and
+     * cancel
+     */
+    private final SeatMapRenderer seatMapRenderer;
+
+    /**
+     * The seat map modification count the free run index and the rendered seat
+     * map were last synced with
+     */
+    private int indexedModCount;
+
+    /**
+     * The planner placing seats against the free run index
+     */
+    private final SeatPlanner seatPlanner;
+
+    /**
+     * The seats reserved for every booking, keyed by booking number
+     */
+    private final BookingIndex bookings;
+
+    /**
+     * A view of the bookings keyed by booking id
+     */
+    private final Map<String, int[][]> bookingIdCache;
 
     /**
      * Booking id counter starting from 1
      */
     private int bookingIdCounter = 1;
 
+    /**
+     * Booking numbers below the counter that were reserved and given back
+     * unused, which later reservations take first.
+     */
+    private final BitSet returnedBookingNumbers = new BitSet();
+
+    /**
+     * The store bookings and cancellations are recorded in, or null if bookings
+     * are kept in memory only
+     */
+    private BookingStore bookingStore;
+
+    /**
+     * The metrics of the booking operations
+     */
+    private BookingMetrics metrics = BookingMetrics.NOOP;
+
+    /**
+     * The bus seat changes are published on, or null if they are not published
+     */
+    private SeatEventBus seatEventBus;
+
+    /**
+     * The strategy choosing the seats of bookings without a designated seat.
+     */
+    private SeatAllocationStrategy seatAllocationStrategy = SeatAllocationStrategy.BACK_ROW_FIRST;
+
+    /**
+     * The lock held around every call by callers sharing this service between
+     * threads
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The sequence number of the last record written to the booking store while
+     * a caller held the lock, which that caller waits for in
+     * {@link #unlockAndAwaitDurable()}; 0 if there is none. Guarded by the lock.
+     */
+    private long undurableSeq;
+
     /**
      * Constructor to initialize the booking service with a seat map.
      *
@@ -45,18 +175,261 @@ public class BookingServiceImpl implements BookingService {
      *                cinema.
      */
     public BookingServiceImpl(SeatMap seatMap) {
-        this.seatMap = seatMap;
-        this.seatMapPlanArr = new int[seatMap.getRows()][seatMap.getSeatsPerRow()];
-        for (int i = 0; i < seatMap.getRows(); i++) {
-            for (int j = 0; j < seatMap.getSeatsPerRow(); j++) {
-                this.seatMapPlanArr[i][j] = seatMap.getSeatMapArr()[i][j];
-            }
+        this(seatMap, Constants.HOLD_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor to initialize the booking service with a seat map and a seat
+     * hold duration.
+     *
+     * @param seatMap       The seat map that represents the seating arrangement of
+     *                      the cinema.
+     * @param holdTtlMillis How long a plan holds its seats, in milliseconds.
+     * @param clock         The clock used to expire holds, in milliseconds.
+     * @throws IllegalArgumentException if the hold duration is not positive.
+     */
+    public BookingServiceImpl(SeatMap seatMap, long holdTtlMillis, LongSupplier clock)
+            throws IllegalArgumentException {
+        if (holdTtlMillis <= 0) {
+            throw new IllegalArgumentException("Seat hold duration must be positive: " + holdTtlMillis);
         }
-        this.bookingIdCache = new HashMap<>();
+        this.seatMap = seatMap;
+        this.defaultSession = new PlanningSession(seatMap.getRows(), seatMap.getSeatsPerRow());
+        this.batchSession = new PlanningSession(seatMap.getRows(), seatMap.getSeatsPerRow());
+        this.heldSeats = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+        this.validatedSeats = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+        this.holdTtlMillis = holdTtlMillis;
+        this.clock = clock;
+        this.holdTimers = new HashedTimerWheel<>(Constants.HOLD_WHEEL_TICK_MILLIS, Constants.HOLD_WHEEL_TICKS,
+                clock.getAsLong());
+        this.freeRunIndex = new FreeRunIndex(seatMap.getRows(), seatMap.getSeatsPerRow());
+        this.freeRunIndex.rebuild(seatMap.getOccupancy());
+        this.seatMapRenderer = new SeatMapRenderer(seatMap.getRows(), seatMap.getSeatsPerRow(), seatMap.getLayout());
+        this.seatMapRenderer.repaint(seatMap.getOccupancy());
+        this.indexedModCount = seatMap.getModCount();
+        this.seatPlanner = new SeatPlanner(freeRunIndex, heldSeats, seatMap);
+        this.bookings = new BookingIndex();
+        this.bookingIdCache = bookings.asMap(BookingIds::format, BookingIds::parse);
         logger.info("Initialized BookingServiceImpl with {} rows and {} seats per row",
                 seatMap.getRows(), seatMap.getSeatsPerRow());
     }
 
+    /**
+     * Records the latency and outcome of every plan, confirmation, cancellation,
+     * check and batch booking of this service in the given metrics, which may be
+     * shared with the services of other screenings.
+     *
+     * @param metrics The metrics to record in.
+     */
+    public void setMetrics(BookingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Publishes every change of seats made through this service on the given
+     * bus, as a {@link SeatEvent} per plan, release, confirmation, cancellation
+     * and expired hold. This service is the only producer of the bus; events a
+     * back-pressure subscriber loses because its spill queue is full are counted
+     * in the metrics and the booking goes ahead.
+     *
+     * @param seatEventBus The bus to publish on, or null to stop publishing.
+     */
+    public void setSeatEventBus(SeatEventBus seatEventBus) {
+        this.seatEventBus = seatEventBus;
+    }
+
+    /**
+     * Gets the lock callers sharing this service between threads hold around
+     * every call, as the service is not thread-safe. The service never takes the
+     * lock itself. It is a {@link ReentrantLock} rather than the monitor of the
+     * service, so a virtual thread waiting for it does not pin its carrier.
+     *
+     * @return The lock of the service.
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Releases the {@link #getLock() lock} and then waits until the bookings and
+     * cancellations recorded while holding it are on disk. Callers holding the
+     * lock around a confirm, batch or cancel release it with this rather than
+     * {@link ReentrantLock#unlock()}, so the lock is not held across an fsync and
+     * concurrent callers share one. A caller that does not hold the lock waits
+     * for every record before the call returns.
+     * <p>
+     * Seats booked while holding the lock can be seen by other callers before
+     * they are on disk. If the log cannot be forced, it fails: this call throws,
+     * every later booking is refused, and the records that were not on disk are
+     * gone when the store is reopened.
+     * </p>
+     *
+     * @throws UncheckedIOException if the records cannot be forced to disk.
+     */
+    public void unlockAndAwaitDurable() {
+        long seq = 0;
+        BookingStore store = bookingStore;
+        if (lock.getHoldCount() == 1) {
+            seq = undurableSeq;
+            undurableSeq = 0;
+        }
+        lock.unlock();
+        if (seq != 0) {
+            try {
+                store.awaitDurable(seq);
+            } catch (IOException e) {
+                logger.error("Failed to force booking records up to {}", seq, e);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Waits until a record written to the booking store is on disk, or leaves the
+     * wait to {@link #unlockAndAwaitDurable()} if the caller holds the lock.
+     *
+     * @param seq The sequence number of the record.
+     * @throws IOException if the record cannot be forced to disk.
+     */
+    private void awaitDurable(long seq) throws IOException {
+        if (lock.isHeldByCurrentThread()) {
+            undurableSeq = seq;
+        } else {
+            bookingStore.awaitDurable(seq);
+        }
+    }
+
+    /**
+     * Gets the bus seat changes are published on.
+     *
+     * @return The seat event bus, or null if seat changes are not published.
+     */
+    public SeatEventBus getSeatEventBus() {
+        return seatEventBus;
+    }
+
+    /**
+     * Sets the strategy choosing the seats of bookings and batches made without a
+     * designated seat. Seats are planned from a designated seat by the default
+     * rules whatever the strategy.
+     *
+     * @param seatAllocationStrategy The strategy, by default
+     *                               {@link SeatAllocationStrategy#BACK_ROW_FIRST}.
+     */
+    public void setSeatAllocationStrategy(SeatAllocationStrategy seatAllocationStrategy) {
+        this.seatAllocationStrategy = seatAllocationStrategy;
+    }
+
+    /**
+     * Gets the strategy choosing the seats of bookings without a designated seat.
+     *
+     * @return The seat allocation strategy.
+     */
+    public SeatAllocationStrategy getSeatAllocationStrategy() {
+        return seatAllocationStrategy;
+    }
+
+    /**
+     * Opens the booking store of the seat map, snapshotting it every
+     * {@link Constants#SNAPSHOT_INTERVAL_RECORDS} records.
+     *
+     * @param logFile The file the log and snapshot names are derived from.
+     * @return The opened store, which the caller closes on shutdown.
+     * @throws IOException              if the store cannot be read or written.
+     * @throws IllegalArgumentException if the store belongs to a seat map of
+     *                                  another size.
+     * @see #openBookingLog(Path, int)
+     */
+    public BookingStore openBookingLog(Path logFile) throws IOException {
+        return openBookingLog(logFile, Constants.SNAPSHOT_INTERVAL_RECORDS);
+    }
+
+    /**
+     * Opens the booking store of the seat map, restores its newest snapshot,
+     * replays the bookings logged after it and records every later booking and
+     * cancellation in it before it takes effect. A seat map kept on the heap must
+     * not have any bookings yet. A memory-mapped seat map keeps its occupancy
+     * across restarts but not the bookings behind it, so the log is replayed into
+     * it as well: seats already booked stay booked, the seats of bookings logged
+     * but not yet written to the mapped file are booked and the available seats
+     * are counted again from the occupancy.
+     *
+     * @param logFile          The file the log and snapshot names are derived
+     *                         from.
+     * @param snapshotInterval The number of bookings and cancellations between
+     *                         snapshots.
+     * @return The opened store, which the caller closes on shutdown.
+     * @throws IOException              if the store cannot be read or written.
+     * @throws IllegalArgumentException if the snapshot interval is not positive or
+     *                                  the store belongs to a seat map of another
+     *                                  size.
+     */
+    public BookingStore openBookingLog(Path logFile, int snapshotInterval) throws IOException {
+        BookingStore store = BookingStore.open(logFile, seatMap.getRows(), seatMap.getSeatsPerRow(),
+                snapshotInterval, new BookingStore.Recovery() {
+                    @Override
+                    public void restore(BookingSnapshot snapshot) {
+                        seatMap.setOccupancy(snapshot.getOccupancy());
+                        bookings.copyFrom(snapshot.getBookings());
+                        bookingIdCounter = snapshot.getNextBookingNumber();
+                    }
+
+                    @Override
+                    public void confirmed(int bookingNumber, int[][] seats) {
+                        for (int[] seat : seats) {
+                            seatMap.bookSeat(seat[0], seat[1]);
+                        }
+                        bookings.put(bookingNumber, seats);
+                        bookingIdCounter = Math.max(bookingIdCounter, bookingNumber + 1);
+                    }
+
+                    @Override
+                    public void cancelled(int bookingNumber) {
+                        int offset = bookings.find(bookingNumber);
+                        if (offset >= 0) {
+                            int seatCount = bookings.seatCount(offset);
+                            for (int i = 0; i < seatCount; i++) {
+                                seatMap.releaseSeat(bookings.seatRow(offset, i), bookings.seatCol(offset, i));
+                            }
+                            bookings.remove(bookingNumber);
+                        }
+                    }
+                });
+        // replaying into a mapped seat map books seats it may already hold, so count them afresh
+        seatMap.setAvailableSeats(seatMap.getRows() * seatMap.getSeatsPerRow()
+                - seatMap.getOccupancy().cardinality());
+        seatMap.commit();
+        syncIndexes();
+        this.bookingStore = store;
+        logger.info("Recovered {} booking(s) from {}", bookings.size(), logFile);
+        return store;
+    }
+
+    /**
+     * Opens a new planning session. Each session holds its own tentative plan on
+     * top of the seat map and holds the planned seats until the hold expires, so
+     * several customers can plan seats at the same time without planning the
+     * same seats.
+     *
+     * @return A new planning session without any planned seats.
+     */
+    public PlanningSession openSession() {
+        return new PlanningSession(seatMap.getRows(), seatMap.getSeatsPerRow());
+    }
+
+    /**
+     * Closes a planning session, releasing the seats it holds and discarding its
+     * plan instead of waiting for the hold to expire.
+     *
+     * @param session The planning session to close.
+     */
+    public void closeSession(PlanningSession session) {
+        if (releaseHold(session)) {
+            publishHold(SeatEvent.Type.RELEASED, session);
+        }
+        clearPlan(session);
+    }
+
     /**
      * Confirms the booking by marking the seats as booked and updating the seat
      * map.
@@ -64,46 +437,477 @@ public class BookingServiceImpl implements BookingService {
      * @param plannedCoordinates A 2D array representing the coordinates of the
      *                           booked seats.
      * @return true if the booking is confirmed successfully.
-     * @throws IllegalArgumentException if the coordinates are invalid.
+     * @throws IllegalArgumentException if the coordinates are invalid or a seat has
+     *                                  already been booked or is held by another
+     *                                  planning session.
      */
     public boolean confirmBooking(int[][] plannedCoordinates) throws IllegalArgumentException {
+        reapExpiredHolds();
+        return confirmBooking(defaultSession, plannedCoordinates, bookingIdCounter);
+    }
+
+    /**
+     * Books the seats on behalf of a planning session under the given booking
+     * number, releasing the hold of the session.
+     *
+     * @param owner              The session confirming the seats.
+     * @param plannedCoordinates The coordinates of the seats to book.
+     * @param bookingNumber      The number of the booking, either the next one or
+     *                           one reserved earlier.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the coordinates are invalid or a seat is
+     *                                  booked or held by another session.
+     */
+    private boolean confirmBooking(PlanningSession owner, int[][] plannedCoordinates, int bookingNumber)
+            throws IllegalArgumentException {
+        long start = metrics.start();
+        try {
+            book(owner, plannedCoordinates, bookingNumber);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CONFIRM, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CONFIRM, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CONFIRM, Outcome.SUCCESS, start);
+        return true;
+    }
+
+    /**
+     * Books the seats of a confirmed booking, as described by
+     * {@link #confirmBooking(PlanningSession, int[][], int)}.
+     *
+     * @param owner              The session confirming the seats.
+     * @param plannedCoordinates The coordinates of the seats to book.
+     * @param bookingNumber      The number of the booking.
+     * @throws IllegalArgumentException if the coordinates are invalid or a seat is
+     *                                  booked or held by another session.
+     */
+    private void book(PlanningSession owner, int[][] plannedCoordinates, int bookingNumber)
+            throws IllegalArgumentException {
         logger.debug("Attempting to confirm booking");
+        validateCoordinates(plannedCoordinates, validatedSeats);
+        for (int[] coord : plannedCoordinates) {
+            if (seatMap.isBooked(coord[0], coord[1]) || isHeldByOthers(owner, coord[0], coord[1])) {
+                logger.error("Seat already booked or held: {}", Arrays.toString(coord));
+                throw new IllegalArgumentException("Seat no longer available: " + Arrays.toString(coord));
+            }
+        }
+        if (bookingStore != null) {
+            try {
+                awaitDurable(bookingStore.writeConfirm(bookingNumber, plannedCoordinates));
+            } catch (IOException e) {
+                logger.error("Failed to record booking {}", BookingIds.format(bookingNumber), e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        syncIndexes();
+        for (int[] coord : plannedCoordinates) {
+            seatMap.bookSeat(coord[0], coord[1]);
+            freeRunIndex.occupy(coord[0], coord[1]);
+            seatMapRenderer.draw(coord[0], coord[1], true);
+        }
+        indexedModCount = seatMap.getModCount();
+        seatMap.commit();
+        if (releaseHold(owner) && !isPlanOf(owner, plannedCoordinates)) {
+            publishHold(SeatEvent.Type.RELEASED, owner);
+        }
+        owner.clear();
+        seatMap.setAvailableSeats(seatMap.getAvailableSeats() - plannedCoordinates.length);
+        insertBookingIdSeats(bookingNumber, plannedCoordinates);
+        if (seatEventBus != null) {
+            int seatsPerRow = seatMap.getSeatsPerRow();
+            int[] seats = new int[plannedCoordinates.length];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = plannedCoordinates[i][0] * seatsPerRow + plannedCoordinates[i][1];
+            }
+            publish(SeatEvent.Type.CONFIRMED, BookingIds.format(bookingNumber), seats);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Booking confirmed with ID: {}", BookingIds.format(bookingNumber));
+        }
+        if (bookingNumber == bookingIdCounter) {
+            incrementBookingIdCounter();
+        }
+        if (bookingStore != null) {
+            bookingStore.maybeSnapshot(this::captureSnapshot);
+        }
+    }
+
+    /**
+     * Confirms the current plan of a planning session and discards the plan.
+     *
+     * @param session The planning session to confirm.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the session has no plan or its hold has
+     *                                  expired and a seat was taken since.
+     */
+    public boolean confirmSession(PlanningSession session) throws IllegalArgumentException {
+        reapExpiredHolds();
+        if (!session.hasPlan()) {
+            logger.error("No seats planned or seat hold expired");
+            throw new IllegalArgumentException("No seats planned or seat hold expired");
+        }
+        return confirmBooking(session, session.getPlannedCoordinates(), bookingIdCounter);
+    }
+
+    /**
+     * Confirms the current plan of a planning session under a booking ID
+     * reserved for it with {@link #reserveBookingId()}, and discards the plan.
+     *
+     * @param session   The planning session to confirm.
+     * @param bookingId The reserved booking ID.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the booking ID was not reserved or is
+     *                                  already used, the session has no plan or
+     *                                  its hold has expired and a seat was taken
+     *                                  since.
+     */
+    public boolean confirmSession(PlanningSession session, String bookingId) throws IllegalArgumentException {
+        int bookingNumber = reservedBookingNumber(bookingId);
+        reapExpiredHolds();
+        if (!session.hasPlan()) {
+            logger.error("No seats planned or seat hold expired");
+            throw new IllegalArgumentException("No seats planned or seat hold expired");
+        }
+        return confirmBooking(session, session.getPlannedCoordinates(), bookingNumber);
+    }
+
+    /**
+     * Books the given seats on behalf of a planning session under a booking ID
+     * reserved for it with {@link #reserveBookingId()}, as
+     * {@link #confirmBooking(int[][])} does for the default session. The seats
+     * may be held by the session itself but not by another one, and the hold of
+     * the session is released.
+     *
+     * @param session            The planning session confirming the seats.
+     * @param plannedCoordinates The coordinates of the seats to book.
+     * @param bookingId          The reserved booking ID.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the booking ID was not reserved or is
+     *                                  already used, the coordinates are invalid
+     *                                  or a seat is booked or held by another
+     *                                  session.
+     */
+    public boolean confirmBooking(PlanningSession session, int[][] plannedCoordinates, String bookingId)
+            throws IllegalArgumentException {
+        int bookingNumber = reservedBookingNumber(bookingId);
+        reapExpiredHolds();
+        return confirmBooking(session, plannedCoordinates, bookingNumber);
+    }
+
+    /**
+     * Gets the number of a booking ID reserved with {@link #reserveBookingId()}
+     * and not used yet.
+     *
+     * @param bookingId The reserved booking ID.
+     * @return The booking number.
+     * @throws IllegalArgumentException if the booking ID was not reserved or is
+     *                                  already used.
+     */
+    private int reservedBookingNumber(String bookingId) throws IllegalArgumentException {
+        int bookingNumber = BookingIds.parse(bookingId);
+        if (bookingNumber < 0 || bookingNumber >= bookingIdCounter || returnedBookingNumbers.get(bookingNumber)
+                || bookings.find(bookingNumber) >= 0) {
+            logger.error("Booking ID not reserved: {}", bookingId);
+            throw new IllegalArgumentException("Booking ID not reserved: " + bookingId);
+        }
+        return bookingNumber;
+    }
+
+    /**
+     * Reserves the next booking ID, so that a customer can be shown the ID of a
+     * booking before confirming it while other sessions confirm bookings of
+     * their own. The booking is confirmed with
+     * {@link #confirmSession(PlanningSession, String)}. A booking ID given back
+     * with {@link #releaseBookingId(String)} is reserved again first.
+     *
+     * @return The reserved booking ID.
+     */
+    public String reserveBookingId() {
+        int returned = returnedBookingNumbers.nextSetBit(0);
+        if (returned >= 0) {
+            returnedBookingNumbers.clear(returned);
+            return BookingIds.format(returned);
+        }
+        String bookingId = BookingIds.format(bookingIdCounter);
+        incrementBookingIdCounter();
+        return bookingId;
+    }
+
+    /**
+     * Gives back a booking ID reserved with {@link #reserveBookingId()} that will
+     * not be confirmed, such as the ID of a customer who walked away, so that it
+     * does not leave a gap in the booking IDs.
+     *
+     * @param bookingId The reserved booking ID.
+     * @throws IllegalArgumentException if the booking ID was not reserved or is
+     *                                  already used.
+     */
+    public void releaseBookingId(String bookingId) throws IllegalArgumentException {
+        int bookingNumber = reservedBookingNumber(bookingId);
+        returnedBookingNumbers.set(bookingNumber);
+        // the numbers given back at the top are handed out by the counter again
+        while (returnedBookingNumbers.get(bookingIdCounter - 1)) {
+            bookingIdCounter--;
+            returnedBookingNumbers.clear(bookingIdCounter);
+        }
+    }
+
+    /**
+     * Books a batch of parties at once, such as a school or corporate booking,
+     * all or nothing. The parties are planned together in a single pass from
+     * the back row, every party in a block of adjacent seats of one row next to
+     * the party before it where the free seats allow it. The seat allocation
+     * strategy is not used, as it plans single bookings. Every party gets a
+     * booking ID of its own, numbered consecutively, and the whole batch is
+     * recorded as a single entry of the booking log.
+     *
+     * @param partySizes The number of seats of every party.
+     * @return The booking IDs of the parties, in the order of the parties.
+     * @throws IllegalArgumentException if there are no parties, a party is
+     *                                  empty, there are not enough available
+     *                                  seats for all of them or a party does not
+     *                                  fit in any block of adjacent free seats.
+     */
+    public String[] bookBatch(int[] partySizes) throws IllegalArgumentException {
+        long start = metrics.start();
+        String[] bookingIds;
+        try {
+            bookingIds = batch(partySizes);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.BATCH, isTooLargeForHall(partySizes, seatMap.getAvailableSeats() - heldSeatCount)
+                    ? Outcome.NOT_ENOUGH_SEATS : Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.BATCH, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.BATCH, Outcome.SUCCESS, start);
+        return bookingIds;
+    }
+
+    /**
+     * Validates that every coordinate is within the hall and appears only once.
+     *
+     * @param plannedCoordinates The coordinates to validate.
+     * @param seen               A bitmap of the size of the hall without any seats
+     *                           set, used to find repeated seats and left without
+     *                           any seats set.
+     * @throws IllegalArgumentException if the coordinates are invalid.
+     */
+    static void validateCoordinates(int[][] plannedCoordinates, SeatBitmap seen) throws IllegalArgumentException {
         if (plannedCoordinates == null || plannedCoordinates.length == 0) {
             logger.error("Invalid booking attempt: coordinates are null or empty");
             throw new IllegalArgumentException("Invalid planned coordinates. Cannot be empty or null");
         }
+        int validated = 0;
+        try {
+            for (int[] coord : plannedCoordinates) {
+                if ((coord == null || coord.length < 2)
+                        || (coord[0] < 0 || coord[0] >= seen.getRows())
+                        || (coord[1] < 0 || coord[1] >= seen.getSeatsPerRow())
+                        || seen.get(coord[0], coord[1])) {
+                    logger.error("Booking coordinate out of bounds or repeated");
+                    throw new IllegalArgumentException("Invalid planned coordinates: " + Arrays.toString(coord));
+                }
+                seen.set(coord[0], coord[1]);
+                validated++;
+            }
+        } finally {
+            for (int i = 0; i < validated; i++) {
+                seen.clear(plannedCoordinates[i][0], plannedCoordinates[i][1]);
+            }
+        }
+    }
 
-        for (int[] coord : plannedCoordinates) {
-            if ((coord.length == 0)
-                    || (coord[0] >= this.seatMap.getRows() || coord[1] >= this.seatMap.getSeatsPerRow())) {
-                logger.error("Booking coordinate out of bounds");
-                throw new IllegalArgumentException("Invalid planned coordinates: " + Arrays.toString(coord));
+    /**
+     * Checks whether a valid batch of parties has more seats than are available.
+     *
+     * @param partySizes     The number of seats of every party.
+     * @param availableSeats The number of seats available to the batch.
+     * @return true if every party has seats and together they need more than
+     *         the available seats.
+     */
+    static boolean isTooLargeForHall(int[] partySizes, int availableSeats) {
+        if (partySizes == null || partySizes.length == 0) {
+            return false;
+        }
+        long totalSeats = 0;
+        for (int partySize : partySizes) {
+            if (partySize <= 0) {
+                return false;
             }
-            seatMapPlanArr[coord[0]][coord[1]] = 1;
+            totalSeats += partySize;
         }
-        seatMap.setSeatMapArr(seatMapPlanArr);
-        seatMap.setAvailableSeats(seatMap.getAvailableSeats() - plannedCoordinates.length);
-        insertBookingIdSeats(getBookingId(), plannedCoordinates);
-        logger.info("Booking confirmed with ID: {}", getBookingId());
-        incrementBookingIdCounter();
+        return totalSeats > availableSeats;
+    }
 
-        return true;
+    /**
+     * Books a batch of parties at once, as described by {@link #bookBatch}.
+     *
+     * @param partySizes The number of seats of every party.
+     * @return The booking IDs of the parties, in the order of the parties.
+     * @throws IllegalArgumentException if there are no parties, a party is
+     *                                  empty or there are not enough available
+     *                                  seats for all of them.
+     */
+    private String[] batch(int[] partySizes) throws IllegalArgumentException {
+        reapExpiredHolds();
+        if (partySizes == null || partySizes.length == 0) {
+            logger.error("Invalid batch booking: no parties");
+            throw new IllegalArgumentException("No parties to book");
+        }
+        long totalSeats = 0;
+        for (int partySize : partySizes) {
+            if (!checkSeatsMoreThanZero(partySize)) {
+                logger.error("Invalid party size: {}", partySize);
+                throw new IllegalArgumentException("Party size must be positive: " + partySize);
+            }
+            totalSeats += partySize;
+        }
+        if (totalSeats > seatMap.getAvailableSeats() - heldSeatCount) {
+            logger.error("Not enough seats available for batch of {} seat(s)", totalSeats);
+            throw new IllegalArgumentException("Not enough seats available to book: " + totalSeats);
+        }
+        int seatCount = (int) totalSeats;
+        syncIndexes();
+        int[] seatIndexes = batchSession.plannedSeatBuffer(seatCount);
+        try {
+            seatPlanner.planParties(partySizes, seatCount, batchSession.plannedSeatsForWrite(), seatIndexes);
+            batchSession.setPlannedSeatCount(seatCount);
+            int seatsPerRow = seatMap.getSeatsPerRow();
+            int[][][] partySeats = new int[partySizes.length][][];
+            for (int party = 0, seat = 0; party < partySizes.length; party++) {
+                partySeats[party] = new int[partySizes[party]][];
+                for (int i = 0; i < partySizes[party]; i++, seat++) {
+                    partySeats[party][i] = new int[] { seatIndexes[seat] / seatsPerRow,
+                            seatIndexes[seat] % seatsPerRow };
+                }
+            }
+            int firstBookingNumber = bookingIdCounter;
+            if (bookingStore != null) {
+                try {
+                    awaitDurable(bookingStore.writeConfirmBatch(firstBookingNumber, partySeats));
+                } catch (IOException e) {
+                    logger.error("Failed to record batch from {}", BookingIds.format(firstBookingNumber), e);
+                    throw new UncheckedIOException(e);
+                }
+            }
+            for (int i = 0; i < seatCount; i++) {
+                int row = seatIndexes[i] / seatsPerRow;
+                int col = seatIndexes[i] % seatsPerRow;
+                seatMap.bookSeat(row, col);
+                freeRunIndex.occupy(row, col);
+                seatMapRenderer.draw(row, col, true);
+            }
+            indexedModCount = seatMap.getModCount();
+            seatMap.commit();
+            seatMap.setAvailableSeats(seatMap.getAvailableSeats() - seatCount);
+            String[] bookingIds = new String[partySizes.length];
+            for (int party = 0, seat = 0; party < partySizes.length; party++) {
+                insertBookingIdSeats(bookingIdCounter, partySeats[party]);
+                bookingIds[party] = getBookingId();
+                incrementBookingIdCounter();
+                if (seatEventBus != null) {
+                    publish(SeatEvent.Type.CONFIRMED, bookingIds[party],
+                            Arrays.copyOfRange(seatIndexes, seat, seat + partySizes[party]));
+                }
+                seat += partySizes[party];
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("Batch of {} booking(s) confirmed with IDs {} to {}", bookingIds.length, bookingIds[0],
+                        bookingIds[bookingIds.length - 1]);
+            }
+            if (bookingStore != null) {
+                bookingStore.maybeSnapshot(this::captureSnapshot);
+            }
+            return bookingIds;
+        } finally {
+            batchSession.clear();
+        }
     }
 
     public void cancelBooking(String bookingId) {
-        if (!bookingIdCache.containsKey(bookingId)) {
+        long start = metrics.start();
+        try {
+            cancel(bookingId);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CANCEL, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CANCEL, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CANCEL, Outcome.SUCCESS, start);
+    }
+
+    /**
+     * Cancels a booking and frees its seats.
+     *
+     * @param bookingId The booking ID to cancel.
+     * @throws IllegalArgumentException if the booking ID cannot be found.
+     */
+    private void cancel(String bookingId) throws IllegalArgumentException {
+        int bookingNumber = BookingIds.parse(bookingId);
+        int offset = bookings.find(bookingNumber);
+        if (offset < 0) {
             throw new IllegalArgumentException("Booking ID not found: " + bookingId);
         }
-        int[][] seats = bookingIdCache.get(bookingId);
+        if (bookingStore != null) {
+            try {
+                awaitDurable(bookingStore.writeCancel(bookingNumber));
+            } catch (IOException e) {
+                logger.error("Failed to record cancellation of {}", bookingId, e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        syncIndexes();
         // Free up seats
-        for (int[] seat : seats) {
-            seatMapPlanArr[seat[0]][seat[1]] = 0;
-            seatMap.getSeatMapArr()[seat[0]][seat[1]] = 0;
+        int seatCount = bookings.seatCount(offset);
+        int[] seats = seatEventBus == null ? null : new int[seatCount];
+        for (int i = 0; i < seatCount; i++) {
+            int row = bookings.seatRow(offset, i);
+            int col = bookings.seatCol(offset, i);
+            if (seats != null) {
+                seats[i] = row * seatMap.getSeatsPerRow() + col;
+            }
+            seatMap.releaseSeat(row, col);
+            freeRunIndex.release(row, col);
+            seatMapRenderer.draw(row, col, false);
         }
+        indexedModCount = seatMap.getModCount();
+        seatMap.commit();
         // Update available seats
-        seatMap.setAvailableSeats(seatMap.getAvailableSeats() + seats.length);
-        // Remove booking from cache
-        bookingIdCache.remove(bookingId);
+        seatMap.setAvailableSeats(seatMap.getAvailableSeats() + seatCount);
+        // Remove booking from the index
+        bookings.remove(bookingNumber);
+        if (seats != null) {
+            publish(SeatEvent.Type.CANCELLED, bookingId, seats);
+        }
+        if (bookingStore != null) {
+            bookingStore.maybeSnapshot(this::captureSnapshot);
+        }
+    }
+
+    /**
+     * Captures a copy of the booked seats and the bookings for a snapshot of
+     * everything recorded in the booking store so far. Both are copied in bulk
+     * on the confirm that triggers the snapshot, with the service lock held: a
+     * bit per seat of the hall and an int per booked seat and booking, which for
+     * a full hall of the largest size is about 88 KB of seats and 3 MB of
+     * bookings. That is a few array copies once per snapshot interval rather
+     * than a copy of every booking.
+     *
+     * @return The snapshot to write.
+     */
+    private BookingSnapshot captureSnapshot() {
+        SeatBitmap occupancy = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+        occupancy.copyFrom(seatMap.getOccupancy());
+        BookingIndex snapshotBookings = new BookingIndex();
+        snapshotBookings.copyFrom(bookings);
+        return new BookingSnapshot(bookingStore.getLastSeq(), bookingIdCounter, occupancy, snapshotBookings);
     }
 
     /**
@@ -117,36 +921,164 @@ public class BookingServiceImpl implements BookingService {
      *                                  if there are not enough available seats.
      */
     public int[][] planSeats(int seatsToBook, String designatedSeat) throws IllegalArgumentException {
+        return planSeats(defaultSession, seatsToBook, designatedSeat);
+    }
+
+    /**
+     * Plans the seats to be booked in a planning session, replacing the previous
+     * plan of the session. Only the seats of the previous and the new plan are
+     * touched, so planning does not copy the hall.
+     *
+     * @param session        The planning session to plan in.
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The seat designated by the user (if any).
+     * @return A 2D array with the coordinates of the planned seats.
+     * @throws IllegalArgumentException if the number of seats to book is invalid or
+     *                                  if there are not enough available seats.
+     */
+    public int[][] planSeats(PlanningSession session, int seatsToBook, String designatedSeat)
+            throws IllegalArgumentException {
         logger.debug("Planning {} seat(s) with designated seat: {}", seatsToBook, designatedSeat);
+        int seat = NO_DESIGNATED_SEAT;
+        if (designatedSeat != null && !designatedSeat.isEmpty()) {
+            long start = metrics.start();
+            try {
+                seat = seatPlanner.locateDesignatedSeat(designatedSeat);
+            } catch (IllegalArgumentException e) {
+                metrics.record(Operation.PLAN, Outcome.REJECTED, start);
+                throw e;
+            } catch (RuntimeException e) {
+                metrics.record(Operation.PLAN, Outcome.ERROR, start);
+                throw e;
+            }
+        }
+        plan(session, seatsToBook, seat);
+        int[][] plannedCoordinates = session.getPlannedCoordinates();
+        if (logger.isTraceEnabled()) {
+            logger.trace("Planned coordinates: {}", Arrays.deepToString(plannedCoordinates));
+        }
+        return plannedCoordinates;
+    }
+
+    /**
+     * Plans the seats to be booked in a planning session, replacing the previous
+     * plan of the session, and copies the packed seat indexes
+     * {@code row * seatsPerRow + col} of the plan into a buffer supplied by the
+     * caller. The session reuses its own buffers from plan to plan, so with a
+     * reused session and seat buffer planning does not allocate.
+     *
+     * @param session        The planning session to plan in.
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The packed index of the seat designated by the user,
+     *                       as returned by {@link #locateSeat(String)}, or
+     *                       {@link #NO_DESIGNATED_SEAT}.
+     * @param seatBuffer     The buffer receiving the packed seat indexes.
+     * @return The number of seats planned into the buffer.
+     * @throws IllegalArgumentException if the number of seats to book is invalid,
+     *                                  if there are not enough available seats or
+     *                                  if the buffer cannot hold the seats.
+     */
+    public int planSeats(PlanningSession session, int seatsToBook, int designatedSeat, int[] seatBuffer)
+            throws IllegalArgumentException {
+        if (seatBuffer.length < seatsToBook) {
+            logger.error("Seat buffer too small: {}", seatBuffer.length);
+            throw new IllegalArgumentException("Seat buffer cannot hold " + seatsToBook + " seats");
+        }
+        if (designatedSeat != NO_DESIGNATED_SEAT
+                && (designatedSeat < 0 || designatedSeat >= seatMap.getRows() * seatMap.getSeatsPerRow())) {
+            logger.error("Designated seat exceeded boundaries: {}", designatedSeat);
+            throw new IllegalArgumentException("Designated seat exceeded boundaries: " + designatedSeat);
+        }
+        plan(session, seatsToBook, designatedSeat);
+        int plannedSeatCount = session.getPlannedSeatCount();
+        for (int i = 0; i < plannedSeatCount; i++) {
+            seatBuffer[i] = session.getPlannedSeat(i);
+        }
+        return plannedSeatCount;
+    }
+
+    /**
+     * Converts a seat code such as "B03" into the packed seat index
+     * {@code row * seatsPerRow + col} accepted by
+     * {@link #planSeats(PlanningSession, int, int, int[])}.
+     *
+     * @param seatCode The seat code.
+     * @return The packed index of the seat.
+     * @throws IllegalArgumentException if the seat is invalid or outside the hall.
+     */
+    public int locateSeat(String seatCode) throws IllegalArgumentException {
+        return seatPlanner.locateDesignatedSeat(seatCode);
+    }
+
+    /**
+     * Plans the seats to be booked into the overlay mask and the seat buffer of
+     * a planning session, replacing its previous plan, and holds them.
+     *
+     * @param session        The planning session to plan in.
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The packed index of the designated seat, or
+     *                       {@link #NO_DESIGNATED_SEAT}.
+     * @throws IllegalArgumentException if the number of seats to book is invalid or
+     *                                  if there are not enough available seats.
+     */
+    private void plan(PlanningSession session, int seatsToBook, int designatedSeat)
+            throws IllegalArgumentException {
+        long start = metrics.start();
+        try {
+            planAndHold(session, seatsToBook, designatedSeat);
+        } catch (IllegalArgumentException e) {
+            boolean notEnoughSeats = seatsToBook > 0 && seatsToBook > getAvailableSeats(session);
+            metrics.record(Operation.PLAN, notEnoughSeats ? Outcome.NOT_ENOUGH_SEATS : Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.PLAN, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.recordPlan(seatPlanner.getScanSteps(), start);
+    }
+
+    /**
+     * Plans the seats to be booked in a planning session and holds them, as
+     * described by {@link #plan(PlanningSession, int, int)}.
+     *
+     * @param session        The planning session to plan in.
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The packed index of the designated seat, or
+     *                       {@link #NO_DESIGNATED_SEAT}.
+     * @throws IllegalArgumentException if the number of seats to book is invalid or
+     *                                  if there are not enough available seats.
+     */
+    private void planAndHold(PlanningSession session, int seatsToBook, int designatedSeat)
+            throws IllegalArgumentException {
+        reapExpiredHolds();
         if (!checkSeatsMoreThanZero(seatsToBook)) {
             logger.error("Invalid seat count: {}", seatsToBook);
             throw new IllegalArgumentException("Seats to book cannot be negative: " + seatsToBook);
         }
-        if (!checkSeatsAvailability(seatsToBook)) {
+        if (!checkSeatsAvailability(session, seatsToBook)) {
             logger.error("Not enough seats available. Requested: {}, Available: {}", seatsToBook,
-                    seatMap.getAvailableSeats());
+                    getAvailableSeats(session));
             throw new IllegalArgumentException("Not enough seats available to book: " + seatsToBook);
         }
-        int[][] plannedCoordinates;
-        copySeatMap();
-        if (designatedSeat == null || designatedSeat.isEmpty()) {
-            logger.info("Planning without designated seat");
-            plannedCoordinates = this.planSeatsWithoutDesignatedSeat(seatsToBook);
-        } else if (InputValidator.isValidChosenSeat(designatedSeat)) {
-            int row = seatMap.getRows() - 1 - (designatedSeat.toUpperCase().charAt(0) - 'A');
-            int col = Integer.parseInt(designatedSeat.substring(1)) - 1;
-            logger.debug("Parsed designated seat to coordinates: row={}, col={}", row, col);
-            if (row < 0 || col >= seatMap.getSeatsPerRow()) {
-                logger.error("Designated seat exceeded boundaries: {}", designatedSeat);
-                throw new IllegalArgumentException("Designated seat exceeded boundaries: " + designatedSeat);
+        if (releaseHold(session)) {
+            publishHold(SeatEvent.Type.RELEASED, session);
+        }
+        clearPlan(session);
+        syncIndexes();
+        SeatBitmap plannedSeats = session.plannedSeatsForWrite();
+        int[] seatIndexes = session.plannedSeatBuffer(seatsToBook);
+        if (designatedSeat == NO_DESIGNATED_SEAT) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Planning without designated seat");
             }
-            plannedCoordinates = this.planSeatsWithDesignatedSeat(seatsToBook, row, col);
+            this.planSeatsWithoutDesignatedSeat(seatsToBook, plannedSeats, seatIndexes);
         } else {
-            logger.error("Invalid designated seat: {}", designatedSeat);
-            throw new IllegalArgumentException("Invalid designated seat: " + designatedSeat);
+            int seatsPerRow = seatMap.getSeatsPerRow();
+            this.planSeatsWithDesignatedSeat(seatsToBook, designatedSeat / seatsPerRow,
+                    designatedSeat % seatsPerRow, plannedSeats, seatIndexes);
         }
-        logger.trace("Planned coordinates: {}", Arrays.deepToString(plannedCoordinates));
-        return plannedCoordinates;
+        session.setPlannedSeatCount(seatsToBook);
+        hold(session);
     }
 
     /**
@@ -166,7 +1098,20 @@ public class BookingServiceImpl implements BookingService {
      * @return true if there are enough available seats, false otherwise.
      */
     public boolean checkSeatsAvailability(int seatsToBook) {
-        if (seatsToBook > seatMap.getAvailableSeats()) {
+        return checkSeatsAvailability(defaultSession, seatsToBook);
+    }
+
+    /**
+     * Checks if there are enough available seats to book for a planning session.
+     * Seats held by other sessions are not available.
+     *
+     * @param session     The planning session to book for.
+     * @param seatsToBook The number of seats to be booked.
+     * @return true if there are enough available seats, false otherwise.
+     */
+    public boolean checkSeatsAvailability(PlanningSession session, int seatsToBook) {
+        reapExpiredHolds();
+        if (seatsToBook > getAvailableSeats(session)) {
             logger.error("Not enough seats available to book: {}", seatsToBook);
             return false;
         }
@@ -174,22 +1119,67 @@ public class BookingServiceImpl implements BookingService {
     }
 
     /**
-     * Checks the booking status using the booking ID and updates the seat map
-     * accordingly.
+     * Gets the number of seats a planning session can plan: the available seats
+     * of the seat map less the seats held by other sessions.
+     *
+     * @param session The planning session.
+     * @return The number of seats available to the session.
+     */
+    private int getAvailableSeats(PlanningSession session) {
+        int heldByOthers = heldSeatCount - (session.isHeld() ? session.getPlannedSeatCount() : 0);
+        return seatMap.getAvailableSeats() - heldByOthers;
+    }
+
+    /**
+     * Checks the booking status using the booking ID and renders the seat map
+     * with the seats of the booking highlighted. Plans in progress are left
+     * untouched.
      *
      * @param bookingId The booking ID to check.
      * @return A string representation of the updated seat map.
      * @throws IllegalArgumentException if the bookingId is null/empty or cannot be found in booking id cache
      */
     public String checkBooking(String bookingId) throws IllegalArgumentException {
-        logger.info("Checking booking for ID: {}", bookingId);
+        long start = metrics.start();
+        String seatMapPlan;
+        try {
+            seatMapPlan = renderBooking(bookingId);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CHECK, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CHECK, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CHECK, Outcome.SUCCESS, start);
+        return seatMapPlan;
+    }
+
+    /**
+     * Renders the seat map with the seats of a booking highlighted.
+     *
+     * @param bookingId The booking ID to check.
+     * @return A string representation of the updated seat map.
+     * @throws IllegalArgumentException if the bookingId is null/empty or cannot be found in booking id cache
+     */
+    private String renderBooking(String bookingId) throws IllegalArgumentException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Checking booking for ID: {}", bookingId);
+        }
         if (bookingId != null && !bookingId.isEmpty()) {
-            int[][] coordinates = getBookingIdCache().get(bookingId);
-            if (coordinates != null) {
+            int offset = bookings.find(BookingIds.parse(bookingId));
+            if (offset >= 0) {
                 logger.debug("Booking ID found, highlighting reserved seats");
-                for (int[] coordinate : coordinates) {
-                    seatMapPlanArr[coordinate[0]][coordinate[1]] = 2;
+                syncIndexes();
+                int seatCount = bookings.seatCount(offset);
+                for (int i = 0; i < seatCount; i++) {
+                    seatMapRenderer.highlight(bookings.seatRow(offset, i), bookings.seatCol(offset, i));
+                }
+                String seatMapPlan = seatMapRenderer.render();
+                for (int i = 0; i < seatCount; i++) {
+                    seatMapRenderer.draw(bookings.seatRow(offset, i), bookings.seatCol(offset, i), true);
                 }
+                return seatMapPlan;
             } else {
                 logger.error("Booking Id not found: {}", bookingId);
                 throw new IllegalArgumentException("Booking ID not found: " + bookingId);
@@ -198,122 +1188,202 @@ public class BookingServiceImpl implements BookingService {
             logger.error("Booking Id should not be null or empty");
             throw new IllegalArgumentException("Booking Id should not be null or empty");
         }
-        String seatMapPlan = printSeatMapPlan();
-        copySeatMap();
-        return seatMapPlan;
     }
 
     /**
      * Plans the seats with a designated seat (starting point for the booking).
      *
-     * @param seatsToBook The number of seats to be booked.
-     * @param row         The row where the first seat will be booked.
-     * @param col         The column where the first seat will be booked.
-     * @return A 2D array of coordinates representing the booked seats.
+     * @param seatsToBook  The number of seats to be booked.
+     * @param row          The row where the first seat will be booked.
+     * @param col          The column where the first seat will be booked.
+     * @param plannedSeats The planned seat mask of the session.
+     * @param seatIndexes  The seat buffer of the session.
      */
-    private int[][] planSeatsWithDesignatedSeat(int seatsToBook, int row, int col) {
-        logger.trace("Planning {} seats: at row {} and col {}", seatsToBook, row, col);
-        return assignSeats(seatsToBook, row, col);
+    private void planSeatsWithDesignatedSeat(int seatsToBook, int row, int col, SeatBitmap plannedSeats,
+            int[] seatIndexes) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Planning {} seats: at row {} and col {}", seatsToBook, row, col);
+        }
+        seatPlanner.assignSeats(seatsToBook, row, col, plannedSeats, seatIndexes);
     }
 
     /**
-     * Plans the seats without a designated seat, starting from the last row.
+     * Plans the seats without a designated seat with the seat allocation
+     * strategy.
      *
-     * @param seatsToBook The number of seats to be booked.
-     * @return A 2D array of coordinates representing the booked seats.
+     * @param seatsToBook  The number of seats to be booked.
+     * @param plannedSeats The planned seat mask of the session.
+     * @param seatIndexes  The seat buffer of the session.
+     */
+    private void planSeatsWithoutDesignatedSeat(int seatsToBook, SeatBitmap plannedSeats, int[] seatIndexes) {
+        seatPlanner.plan(seatAllocationStrategy, seatsToBook, plannedSeats, seatIndexes);
+    }
+
+    /**
+     * Rebuilds the free run index and redraws the rendered seat map if the seat
+     * map was changed outside of this service since they were last updated.
      */
-    private int[][] planSeatsWithoutDesignatedSeat(int seatsToBook) {
-        logger.trace("Planning {} seats without designated seats", seatsToBook);
-        int row = seatMap.getRows() - 1;
-        int availableSeats = getAvailableSeatsInRow(row, seatMap.getSeatMapArr());
-        int col = seatsToBook < availableSeats ? availableSeats / 2 - seatsToBook / 2 : 0;
+    private void syncIndexes() {
+        if (indexedModCount != seatMap.getModCount()) {
+            logger.debug("Rebuilding free run index");
+            freeRunIndex.rebuild(seatMap.getOccupancy());
+            seatMapRenderer.repaint(seatMap.getOccupancy());
+            indexedModCount = seatMap.getModCount();
+        }
+    }
 
-        return assignSeats(seatsToBook, row, col);
+    /**
+     * Holds the planned seats of a session until the hold duration has passed.
+     *
+     * @param session The planning session to hold the plan of.
+     */
+    private void hold(PlanningSession session) {
+        int seatsPerRow = seatMap.getSeatsPerRow();
+        int plannedSeatCount = session.getPlannedSeatCount();
+        for (int i = 0; i < plannedSeatCount; i++) {
+            int seat = session.getPlannedSeat(i);
+            heldSeats.set(seat / seatsPerRow, seat % seatsPerRow);
+        }
+        heldSeatCount += plannedSeatCount;
+        holdTimers.schedule(session, clock.getAsLong() + holdTtlMillis);
+        publishHold(SeatEvent.Type.HELD, session);
     }
 
     /**
-     * Assigns seats to the user based on the number of seats, row, and column.
+     * Releases the hold of a session, if any, keeping its plan.
      *
-     * @param seatsToBook The number of seats to be booked.
-     * @param row         The row where the seats will be booked.
-     * @param col         The column where the seats will be booked.
-     * @return A 2D array of coordinates representing the booked seats.
-     */
-    private int[][] assignSeats(int seatsToBook, int row, int col) {
-        logger.trace("Assigning {} seat(s) starting at row {}, col {}", seatsToBook, row, col);
-        int[] nextAvailableSeat = new int[] { row, col };
-        int remainingSeats = seatsToBook;
-        int i = 0;
-        int[][] coords = new int[seatsToBook][2];
-        while (i < seatsToBook) {
-            if (this.seatMapPlanArr[nextAvailableSeat[0]][nextAvailableSeat[1]] == 0) {
-                this.seatMapPlanArr[nextAvailableSeat[0]][nextAvailableSeat[1]] = 2;
-                remainingSeats--;
-                coords[i][0] = nextAvailableSeat[0];
-                coords[i][1] = nextAvailableSeat[1];
-                i++;
-                continue;
-            }
-            nextAvailableSeat = getNextAvailableSeat(nextAvailableSeat[0], nextAvailableSeat[1], remainingSeats,
-                    this.seatMapPlanArr);
+     * @param session The planning session to release the hold of.
+     * @return true if the session held seats.
+     */
+    private boolean releaseHold(PlanningSession session) {
+        if (holdTimers.cancel(session)) {
+            releaseHeldSeats(session);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases the seats held by the expired holds and discards their plans.
+     */
+    private void reapExpiredHolds() {
+        holdTimers.advance(clock.getAsLong(), expireHold);
+    }
+
+    /**
+     * Releases the seats held by an expired hold and discards its plan.
+     *
+     * @param session The planning session whose hold expired.
+     */
+    private void expireHold(PlanningSession session) {
+        if (logger.isInfoEnabled()) {
+            logger.info("Seat hold expired for {} seat(s)", session.getPlannedSeatCount());
         }
-        return coords;
+        metrics.recordHoldExpiry();
+        releaseHeldSeats(session);
+        publishHold(SeatEvent.Type.EXPIRED, session);
+        clearPlan(session);
     }
 
     /**
-     * Gets the next available seat for booking.
+     * Clears the planned seats of a session from the held seats.
      *
-     * @param row            The current row.
-     * @param col            The current column.
-     * @param remainingSeats The number of remaining seats to be booked.
-     * @param seats          The current seat map.
-     * @return The coordinates of the next available seat.
+     * @param session The planning session whose seats are no longer held.
      */
-    private int[] getNextAvailableSeat(int row, int col, int remainingSeats, int[][] seats) {
-        logger.trace("Get next available seat");
-        int totalColumns = seatMap.getSeatsPerRow();
-        if (col < totalColumns - 1) {
-            col++;
-        } else {
-            row = row <= 0 ? seatMap.getRows() - 1 : row - 1;
-            int availableSeatsInRow = getAvailableSeatsInRow(row, seats);
-            col = remainingSeats < availableSeatsInRow ? availableSeatsInRow / 2 - remainingSeats / 2
-                    : 0;
+    private void releaseHeldSeats(PlanningSession session) {
+        int seatsPerRow = seatMap.getSeatsPerRow();
+        int plannedSeatCount = session.getPlannedSeatCount();
+        for (int i = 0; i < plannedSeatCount; i++) {
+            int seat = session.getPlannedSeat(i);
+            heldSeats.clear(seat / seatsPerRow, seat % seatsPerRow);
         }
-        return new int[] { row, col };
+        heldSeatCount -= plannedSeatCount;
     }
 
     /**
-     * Gets the number of available seats in a specific row.
+     * Checks whether the seats being confirmed are exactly the plan of a session.
      *
-     * @param row   The row to check for available seats.
-     * @param seats The seat map to check.
-     * @return The number of available seats in the row.
+     * @param session     The planning session confirming the seats.
+     * @param coordinates The coordinates of the seats being confirmed.
+     * @return true if every seat is planned in the session and no other is.
      */
-    private int getAvailableSeatsInRow(int row, int[][] seats) {
-        logger.trace("Get number of available seats in row");
-        int totalColumns = seatMap.getSeatsPerRow();
-        int seatsAvailableInRow = 0;
-        for (int j = 0; j < totalColumns; j++) {
-            if (seats[row][j] == 0) {
-                seatsAvailableInRow++;
+    private static boolean isPlanOf(PlanningSession session, int[][] coordinates) {
+        if (coordinates.length != session.getPlannedSeatCount()) {
+            return false;
+        }
+        for (int[] coord : coordinates) {
+            if (!session.isPlanned(coord[0], coord[1])) {
+                return false;
             }
         }
-        return seatsAvailableInRow;
+        return true;
     }
 
     /**
-     * Creates a copy of the seat map for use in planning the booking.
+     * Publishes a change of the seats planned in a session, if seat changes are
+     * published.
+     *
+     * @param type    What happened to the seats.
+     * @param session The planning session whose planned seats changed.
      */
-    private void copySeatMap() {
-        logger.debug("Copying seat map array for planning");
-        for (int i = 0; i < this.seatMap.getRows(); i++) {
-            for (int j = 0; j < this.seatMap.getSeatsPerRow(); j++) {
-                this.seatMapPlanArr[i][j] = this.seatMap.getSeatMapArr()[i][j];
+    private void publishHold(SeatEvent.Type type, PlanningSession session) {
+        if (seatEventBus != null) {
+            int[] seats = new int[session.getPlannedSeatCount()];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = session.getPlannedSeat(i);
             }
+            publish(type, null, seats);
         }
     }
 
+    /**
+     * Publishes a change of seats on the seat event bus, counting the event if a
+     * back-pressure subscriber lost an event to it.
+     *
+     * @param type      What happened to the seats.
+     * @param bookingId The ID of the booking, or null for holds.
+     * @param seats     The packed indexes of the seats.
+     */
+    private void publish(SeatEvent.Type type, String bookingId, int[] seats) {
+        if (!seatEventBus.publish(type, bookingId, seats, seatMap.getSeatsPerRow(), clock.getAsLong())) {
+            logger.debug("Seat event overran a slow subscriber: {}", type);
+            metrics.recordOverrunEvent();
+        }
+    }
+
+    /**
+     * Checks whether a seat is held by a session other than the given one.
+     *
+     * @param session The planning session asking.
+     * @param row     The row of the seat.
+     * @param col     The column of the seat.
+     * @return true if another session holds the seat.
+     */
+    private boolean isHeldByOthers(PlanningSession session, int row, int col) {
+        return heldSeats.get(row, col) && !(session.isHeld() && session.isPlanned(row, col));
+    }
+
+    /**
+     * Discards the plan of a session, clearing only the seats it holds.
+     *
+     * @param session The planning session to reset.
+     */
+    private void clearPlan(PlanningSession session) {
+        logger.debug("Clearing planned seats");
+        session.clear();
+    }
+
+    /**
+     * Gets how long a plan holds its seats. Holds expire lazily: an expired hold
+     * is released when the next call to the service reaps it.
+     *
+     * @return The hold duration, in milliseconds.
+     */
+    @Override
+    public long getHoldMillis() {
+        return holdTtlMillis;
+    }
+
     /**
      * Generates the booking ID in the format "GICxxxx", where xxxx is a 4-digit
      * number.
@@ -321,7 +1391,7 @@ public class BookingServiceImpl implements BookingService {
      * @return The generated booking ID.
      */
     public String getBookingId() {
-        return BOOKING_ID_PREFIX + String.format("%04d", bookingIdCounter);
+        return BookingIds.format(bookingIdCounter);
     }
 
     /**
@@ -332,14 +1402,16 @@ public class BookingServiceImpl implements BookingService {
     }
 
     /**
-     * Stores the coordinates of booked seats in the booking ID cache.
+     * Stores the coordinates of booked seats in the booking index.
      *
-     * @param bookingId   The booking ID associated with the seats.
-     * @param coordinates The coordinates of the booked seats.
+     * @param bookingNumber The booking number associated with the seats.
+     * @param coordinates   The coordinates of the booked seats.
      */
-    private void insertBookingIdSeats(String bookingId, int[][] coordinates) {
-        logger.debug("Storing booking coordinates for ID: {}", bookingId);
-        this.bookingIdCache.put(bookingId, coordinates);
+    private void insertBookingIdSeats(int bookingNumber, int[][] coordinates) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Storing booking coordinates for number: {}", bookingNumber);
+        }
+        this.bookings.put(bookingNumber, coordinates);
     }
 
     /**
@@ -349,55 +1421,97 @@ public class BookingServiceImpl implements BookingService {
      * @return A string representation of the seat map.
      */
     public String printSeatMapPlan() {
-        logger.trace("Incrementing booking ID counter from {}", bookingIdCounter);
+        return printSeatMapPlan(defaultSession);
+    }
+
+    /**
+     * Prints the seat map with the booked seats and the current plan of a
+     * planning session.
+     *
+     * @param session The planning session whose plan is shown.
+     * @return A string representation of the seat map.
+     */
+    public String printSeatMapPlan(PlanningSession session) {
         logger.debug("Generating visual representation of the seat map");
-        StringBuilder seatMapVisual = new StringBuilder();
-        String screenName = "SCREEN";
-
-        int screenLength = this.seatMap.getSeatsPerRow() * 4;
-        int padding = (screenLength - screenName.length()) / 2;
-        seatMapVisual.append(" ".repeat(padding));
-        seatMapVisual.append("SCREEN\n");
-        seatMapVisual.append("-".repeat(screenLength));
-
-        seatMapVisual.append("\n");
-
-        for (int i = 0; i < this.seatMap.getRows(); i++) {
-            char rowLabel = (char) ('A' + (this.seatMap.getRows() - i - 1));
-            seatMapVisual.append(rowLabel + "\s\s");
-            for (int j = 0; j < this.seatMap.getSeatsPerRow(); j++) {
-                if (seatMapPlanArr[i][j] == 1) {
-                    seatMapVisual.append("#\s\s\s");
-                } else if ((seatMapPlanArr[i][j] == 2)) {
-                    seatMapVisual.append("O\s\s\s");
-                } else {
-                    seatMapVisual.append(".\s\s\s");
-                }
-            }
-            seatMapVisual.append("\n");
+        highlightPlan(session);
+        String seatMapPlan = seatMapRenderer.render();
+        unhighlightPlan(session);
+        return seatMapPlan;
+    }
+
+    /**
+     * Writes the seat map with the current booking status to a stream, copying
+     * the rendered map straight to it.
+     *
+     * @param out The stream to write to.
+     */
+    public void printSeatMapPlan(PrintStream out) {
+        printSeatMapPlan(defaultSession, out);
+    }
+
+    /**
+     * Writes the seat map with the booked seats and the current plan of a
+     * planning session to a stream, copying the rendered map straight to it.
+     *
+     * @param session The planning session whose plan is shown.
+     * @param out     The stream to write to.
+     */
+    public void printSeatMapPlan(PlanningSession session, PrintStream out) {
+        highlightPlan(session);
+        seatMapRenderer.writeTo(out);
+        unhighlightPlan(session);
+    }
+
+    /**
+     * Draws the planned seats of a session as highlighted on the rendered seat
+     * map.
+     *
+     * @param session The planning session whose plan is shown.
+     */
+    private void highlightPlan(PlanningSession session) {
+        syncIndexes();
+        int seatsPerRow = seatMap.getSeatsPerRow();
+        int plannedSeatCount = session.getPlannedSeatCount();
+        for (int i = 0; i < plannedSeatCount; i++) {
+            int seat = session.getPlannedSeat(i);
+            seatMapRenderer.highlight(seat / seatsPerRow, seat % seatsPerRow);
         }
+    }
 
-        seatMapVisual.append("\s\s\s");
-        for (int j = 1; j <= this.seatMap.getSeatsPerRow(); j++) {
-            seatMapVisual.append(j);
-            String space = j < 10 ? "\s\s\s" : "\s\s";
-            seatMapVisual.append(space);
+    /**
+     * Draws the planned seats of a session as they are on the seat map again.
+     *
+     * @param session The planning session whose plan was shown.
+     */
+    private void unhighlightPlan(PlanningSession session) {
+        int seatsPerRow = seatMap.getSeatsPerRow();
+        int plannedSeatCount = session.getPlannedSeatCount();
+        for (int i = 0; i < plannedSeatCount; i++) {
+            int seat = session.getPlannedSeat(i);
+            int row = seat / seatsPerRow;
+            int col = seat % seatsPerRow;
+            seatMapRenderer.draw(row, col, seatMap.isBooked(row, col));
         }
-        seatMapVisual.append("\n");
-        return seatMapVisual.toString();
     }
 
     /**
-     * Gets the seat map plan array.
+     * Gets the seat map plan array, materialised from the booked and planned
+     * seats. Each element is 0 for an available seat, 1 for a booked seat and 2
+     * for a planned seat.
      *
      * @return The seat map plan array.
      */
     public int[][] getSeatMapPlanArr() {
-        return this.seatMapPlanArr;
+        int[][] seatMapPlanArr = this.seatMap.getOccupancy().toArray(1);
+        for (int[] coord : this.defaultSession.getPlannedCoordinates()) {
+            seatMapPlanArr[coord[0]][coord[1]] = 2;
+        }
+        return seatMapPlanArr;
     }
 
     /**
-     * Gets the booking ID cache which holds the coordinates of booked seats.
+     * Gets the booking ID cache which holds the coordinates of booked seats. The
+     * cache is a view of the booking index: values are copies of the booked seats.
      *
      * @return The booking ID cache.
      */
@@ -1,5 +1,6 @@
 package com.yuzhengchua.cinema.service;
 
+import java.io.PrintStream;
 import java.util.Scanner;
 
 import com.yuzhengchua.cinema.enums.Actions;
@@ -39,10 +40,15 @@ public class CinemaWorkflowService {
      */
     private final Scanner scanner;
 
+    /**
+     * The stream prompts and results are printed to.
+     */
+    private final PrintStream out;
+
     /**
      * The booking service used to handle seat bookings.
      */
-    private final BookingServiceImpl bookingService;
+    private final BookingService bookingService;
 
     /**
      * The seat map representing the seating arrangement in the cinema.
@@ -60,13 +66,30 @@ public class CinemaWorkflowService {
     private final ExitHandler exitHandler;
 
     // Production constructor
-    public CinemaWorkflowService(Scanner scanner, BookingServiceImpl bookingService, SeatMap seatMap, String title) {
+    public CinemaWorkflowService(Scanner scanner, BookingService bookingService, SeatMap seatMap, String title) {
         this(scanner, bookingService, seatMap, title, new SystemExitHandler());
     }
 
     // Testable constructor
-    public CinemaWorkflowService(Scanner scanner, BookingServiceImpl bookingService, SeatMap seatMap, String title, ExitHandler exitHandler) {
+    public CinemaWorkflowService(Scanner scanner, BookingService bookingService, SeatMap seatMap, String title, ExitHandler exitHandler) {
+        this(scanner, System.out, bookingService, seatMap, title, exitHandler);
+    }
+
+    /**
+     * Constructs a workflow session reading from its own scanner and printing to
+     * its own stream, such as one of many kiosks sharing a booking service.
+     *
+     * @param scanner        The scanner user input is read from.
+     * @param out            The stream prompts and results are printed to.
+     * @param bookingService The booking service used to handle seat bookings.
+     * @param seatMap        The seat map of the cinema hall.
+     * @param title          The title of the movie being shown.
+     * @param exitHandler    The handler called when the user exits.
+     */
+    public CinemaWorkflowService(Scanner scanner, PrintStream out, BookingService bookingService, SeatMap seatMap,
+            String title, ExitHandler exitHandler) {
         this.scanner = scanner;
+        this.out = out;
         this.bookingService = bookingService;
         this.seatMap = seatMap;
         this.title = title;
@@ -78,6 +101,9 @@ public class CinemaWorkflowService {
      * Handles the booking process for the first use case: booking tickets.
      * The user is prompted to enter the number of tickets to book, and then seats
      * are selected for booking.
+     * The seats are reported reserved once the first plan holds them, with how
+     * long the hold lasts. A hold is only released once it has expired and
+     * another call reaches the booking service; nothing reaps holds on a timer.
      * After successful seat selection, the booking is confirmed.
      */
     public void runCaseOne() {
@@ -86,7 +112,7 @@ public class CinemaWorkflowService {
         String input;
 
         while (numberOfTickets.equalsIgnoreCase("")) {
-            System.out.println("Enter number of tickets to book, or enter blank to go back to main menu:");
+            out.println("Enter number of tickets to book, or enter blank to go back to main menu:");
 
             numberOfTickets = scanner.nextLine();
             if (numberOfTickets.trim().isEmpty()) {
@@ -95,7 +121,7 @@ public class CinemaWorkflowService {
             }
 
             if (!InputValidator.isNumeric(numberOfTickets)) {
-                System.out.println("Please enter a valid number of tickets.");
+                out.println("Please enter a valid number of tickets.");
                 logger.warn("Invalid number input: {}", numberOfTickets);
                 numberOfTickets = "";
                 continue;
@@ -107,13 +133,18 @@ public class CinemaWorkflowService {
             if (bookingService.checkSeatsAvailability(seatsToBook)
                     && bookingService.checkSeatsMoreThanZero(seatsToBook)) {
                 logger.info("Seats available and valid number of tickets");
-                System.out.printf("Successfully reserved %s %s tickets.%n", seatsToBook, title);
-                String bookingId = bookingService.getBookingId();
-                logger.debug("Get booking ID: {}", bookingId);
+                String bookingId = null;
                 String designatedSeats = "";
                 while (true) {
                     try {
-                        int[][] plannedCoordinates = bookingFlow(seatsToBook, designatedSeats, bookingId);
+                        int[][] plannedCoordinates = bookingService.planSeats(seatsToBook, designatedSeats);
+                        if (bookingId == null) {
+                            // only a plan that holds its seats takes a booking ID
+                            printReservation(seatsToBook);
+                            bookingId = bookingService.getBookingId();
+                            logger.debug("Get booking ID: {}", bookingId);
+                        }
+                        printPlan(plannedCoordinates, bookingId);
                         input = scanner.nextLine();
                         if (input.trim().isEmpty()) {
                             confirmBooking(plannedCoordinates, bookingId);
@@ -121,7 +152,7 @@ public class CinemaWorkflowService {
                             break;
                         } else {
                             while (!InputValidator.isValidChosenSeat(input)) {
-                                System.out.println("Invalid seat selection. Please try again.");
+                                out.println("Invalid seat selection. Please try again.");
                                 logger.warn("User entered invalid designated seat: {}", input);
                                 input = scanner.nextLine();
                             }
@@ -129,7 +160,7 @@ public class CinemaWorkflowService {
                             logger.info("User designated seat input: {}", designatedSeats);
                         }
                     } catch (IllegalArgumentException e) {
-                        System.out.println("Unexpected error ocurred. Please try again");
+                        out.println("Unexpected error ocurred. Please try again");
                         logger.error("Unexpected error ocurred. {}", e.getMessage());
                         designatedSeats = "";
                     }
@@ -137,11 +168,11 @@ public class CinemaWorkflowService {
                 }
 
             } else if (!bookingService.checkSeatsAvailability(seatsToBook)) {
-                System.out.println("Sorry, there are only " + seatMap.getAvailableSeats() + " seats available.");
+                out.println("Sorry, there are only " + seatMap.getAvailableSeats() + " seats available.");
                 logger.warn("Requested {} seats, but only {} available", seatsToBook, seatMap.getAvailableSeats());
                 numberOfTickets = "";
             } else {
-                System.out.println("Cannot enter 0 tickets");
+                out.println("Cannot enter 0 tickets");
                 logger.warn("User attempted to book 0 or negative number of tickets");
                 numberOfTickets = "";
             }
@@ -155,14 +186,14 @@ public class CinemaWorkflowService {
      * displayed.
      */
     public void runCaseTwo() {
-        System.out.println("Enter booking id, or enter to go back to main menu:");
+        out.println("Enter booking id, or enter to go back to main menu:");
         String input = scanner.nextLine();
         while (true) {
             if (input != null && !input.isEmpty() && bookingService.getBookingIdCache().containsKey(input)) {
                 logger.info("User checking booking for ID: {}", input);
                 try {
                     String bookingStatus = bookingService.checkBooking(input);
-                    System.out.println(bookingStatus);
+                    out.println(bookingStatus);
                     promptCancellation();
                     String cancel = scanner.nextLine();
                     if (cancel.equalsIgnoreCase("Y")) {
@@ -170,7 +201,7 @@ public class CinemaWorkflowService {
                     }
                     break;
                 } catch (IllegalArgumentException e) {
-                    System.out.println("Unexpected error ocurred. Please try again");
+                    out.println("Unexpected error ocurred. Please try again");
                     logger.error("Unexpected error ocurred." + e.getMessage());
                     input = scanner.nextLine();
                 }
@@ -179,7 +210,7 @@ public class CinemaWorkflowService {
                 logger.info("User exited booking status check.");
                 break;
             } else {
-                System.out.println("Invalid booking id. Please try again.");
+                out.println("Invalid booking id. Please try again.");
                 logger.warn("Invalid booking ID entered: {}", input);
                 input = scanner.nextLine();
             }
@@ -187,30 +218,42 @@ public class CinemaWorkflowService {
     }
 
     /**
-     * Initiates the booking flow, prompting the user for seat selections, and
-     * returns the planned seat coordinates.
+     * Shows the planned seats of a booking and prompts the user to accept them
+     * or choose a new seating position.
      * 
-     * @param seatsToBook     The number of seats to book.
-     * @param designatedSeats The designated seats as a string.
-     * @param bookingId       The booking ID.
-     * @return A 2D array representing the planned seat coordinates.
-     * @throws IllegalArgumentException when designated seats exceeds the cinema
-     *                                  boundaries.
+     * @param plannedCoordinates The planned seat coordinates.
+     * @param bookingId          The booking ID.
      */
-    private int[][] bookingFlow(int seatsToBook, String designatedSeats, String bookingId)
-            throws IllegalArgumentException {
-        int[][] plannedCoordinates = bookingService.planSeats(seatsToBook, designatedSeats);
+    private void printPlan(int[][] plannedCoordinates, String bookingId) {
         logger.info("Planned seats for booking ID {}: {}", bookingId, (Object) plannedCoordinates);
-        System.out.println("Booking id:" + bookingId);
-        System.out.println("Selected seats:");
-        System.out.println(bookingService.printSeatMapPlan());
-        System.out.println("Enter blank to accept seat selection, or enter new seating position:");
+        out.println("Booking id:" + bookingId);
+        out.println("Selected seats:");
+        bookingService.printSeatMapPlan(out);
+        out.println();
+        out.println("Enter blank to accept seat selection, or enter new seating position:");
+    }
 
-        return plannedCoordinates;
+    /**
+     * Reports the seats of a new plan reserved, with how long they are held when
+     * the booking service holds planned seats.
+     *
+     * @param seatsToBook The number of seats planned.
+     */
+    private void printReservation(int seatsToBook) {
+        out.printf("Successfully reserved %s %s tickets.%n", seatsToBook, title);
+        long holdMillis = bookingService.getHoldMillis();
+        if (holdMillis > 0) {
+            long holdSeconds = (holdMillis + 999) / 1000;
+            if (holdSeconds % 60 == 0) {
+                out.printf("Your seats are held for %d minute(s).%n", holdSeconds / 60);
+            } else {
+                out.printf("Your seats are held for %d second(s).%n", holdSeconds);
+            }
+        }
     }
 
     private void promptCancellation() {
-        System.out.println("Would you like to cancel this booking? Y to confirm:");
+        out.println("Would you like to cancel this booking? Y to confirm:");
     }
 
     private void confirmCancellation(String bookingId) {
@@ -228,7 +271,7 @@ public class CinemaWorkflowService {
     private void confirmBooking(int[][] plannedCoordinates, String bookingId) throws IllegalArgumentException {
         bookingService.confirmBooking(plannedCoordinates);
         logger.info("Booking confirmed for ID: {}", bookingId);
-        System.out.println("Booking id: " + bookingId + " confirmed.\n");
+        out.println("Booking id: " + bookingId + " confirmed.\n");
     }
 
     /**
@@ -237,11 +280,11 @@ public class CinemaWorkflowService {
      */
     public void listActions() {
         while (true) {
-            System.out.println("Welcome to GIC Cinemas");
-            System.out.println(Actions.ACTION1 + title + " " + "(" + seatMap.getAvailableSeats() + " seats available)");
-            System.out.println(Actions.ACTION2);
-            System.out.println(Actions.ACTION3);
-            System.out.println("Please enter your selection:");
+            out.println("Welcome to GIC Cinemas");
+            out.println(Actions.ACTION1 + title + " " + "(" + seatMap.getAvailableSeats() + " seats available)");
+            out.println(Actions.ACTION2);
+            out.println(Actions.ACTION3);
+            out.println("Please enter your selection:");
             runActions();
         }
     }
@@ -266,16 +309,16 @@ public class CinemaWorkflowService {
                     break;
                 case "3":
                     logger.info("User exited the system.");
-                    System.out.println("Thank you for using GIC Cinemas system. Bye!");
+                    out.println("Thank you for using GIC Cinemas system. Bye!");
                     exitHandler.exit();
                     break;
                 default:
                     logger.warn("User entered invalid menu option: {}", input);
-                    System.out.println("Invalid selection. Please enter a number between 1 and 3.");
+                    out.println("Invalid selection. Please enter a number between 1 and 3.");
             }
         } else {
             logger.warn("User entered non-numeric menu option: {}", input);
-            System.out.println("Invalid selection. Please enter a number between 1 and 3.");
+            out.println("Invalid selection. Please enter a number between 1 and 3.");
         }
     }
 }
@@ -0,0 +1,885 @@
+package com.yuzhengchua.cinema.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.yuzhengchua.cinema.metrics.BookingMetrics;
+import com.yuzhengchua.cinema.metrics.BookingMetrics.Operation;
+import com.yuzhengchua.cinema.metrics.BookingMetrics.Outcome;
+import com.yuzhengchua.cinema.models.FreeRunIndex;
+import com.yuzhengchua.cinema.models.SeatBitmap;
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.persistence.BookingLog;
+import com.yuzhengchua.cinema.util.BookingIds;
+
+/**
+ * The {@code ConcurrentBookingServiceImpl} class is a thread-safe
+ * {@link BookingService} for a seat map shared by several terminals.
+ * <p>
+ * Seats are protected by striped row locks: every row belongs to one stripe, and
+ * confirming or cancelling a booking only locks the stripes of the rows it
+ * touches, in ascending order, so bookings in different rows of the same hall
+ * run in parallel. Planning works on a private snapshot of the hall taken one
+ * row at a time, and confirmation re-checks every seat under the stripe locks,
+ * so a seat is never confirmed twice.
+ * </p>
+ * <p>
+ * Snapshots and the free run indexes built from them are kept between plans in
+ * a pool of at most one per processor, owned by the service. Every plan borrows
+ * one for the length of the call. Every change of a row bumps the version of
+ * the row, and a plan copies and re-indexes only the rows changed since its
+ * snapshot was last used, so planning in a quiet hall does not touch the rows
+ * at all. Checking a booking renders from a borrowed snapshot in the same way.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class ConcurrentBookingServiceImpl implements BookingService {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(ConcurrentBookingServiceImpl.class);
+    /**
+     * Seat Map model to represent a cinema seating plan.
+     */
+    private final SeatMap seatMap;
+
+    /**
+     * The row lock stripes. Row {@code r} is guarded by stripe
+     * {@code r % rowLocks.length}.
+     */
+    private final ReentrantLock[] rowLocks;
+
+    /**
+     * A concurrent cache of the booking ids against the seats reserved for that
+     * booking id
+     */
+    private final Map<String, int[][]> bookingIdCache = new ConcurrentHashMap<>();
+
+    /**
+     * Booking id counter starting from 1
+     */
+    private final AtomicInteger bookingIdCounter = new AtomicInteger(1);
+
+    /**
+     * The booking numbers given back by bookings that could not be recorded in
+     * the log after the counter moved on, handed out again lowest first
+     */
+    private final ConcurrentSkipListSet<Integer> unusedBookingNumbers = new ConcurrentSkipListSet<>();
+
+    /**
+     * The write-ahead log bookings and cancellations are recorded in, or null if
+     * bookings are kept in memory only
+     */
+    private volatile BookingLog bookingLog;
+
+    /**
+     * The metrics of the booking operations
+     */
+    private volatile BookingMetrics metrics = BookingMetrics.NOOP;
+
+    /**
+     * The version of every row, bumped after every change of its seats.
+     */
+    private final AtomicLongArray rowVersions;
+
+    /**
+     * The version of the hall, bumped after the rows of every change are bumped.
+     */
+    private final AtomicLong hallVersion = new AtomicLong();
+
+    /**
+     * The planning states not in use, at most one per processor. A call that
+     * finds none plans on a new state, which is dropped if the pool is full when
+     * the call gives it back.
+     */
+    private final AtomicReferenceArray<PlanningState> idlePlanningStates = new AtomicReferenceArray<>(
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The empty seat map, laid out once and copied for every rendering.
+     */
+    private final SeatMapRenderer blankSeatMap;
+
+    /**
+     * The {@code PlanningState} class is a private copy of the hall a call plans
+     * on, with the versions of the rows it was copied at. A state is used by one
+     * call at a time.
+     */
+    private final class PlanningState {
+        /**
+         * The copy of the booked seats.
+         */
+        final SeatBitmap occupancy = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+
+        /**
+         * The free runs of the copy.
+         */
+        final FreeRunIndex freeRunIndex = new FreeRunIndex(seatMap.getRows(), seatMap.getSeatsPerRow());
+
+        /**
+         * The planner over the free runs.
+         */
+        final SeatPlanner seatPlanner = new SeatPlanner(freeRunIndex, seatMap);
+
+        /**
+         * The version of every row when it was copied, -1 before the first copy.
+         */
+        final long[] rowVersions = new long[seatMap.getRows()];
+
+        /**
+         * The version of the hall when the rows were last checked.
+         */
+        long hallVersion = -1;
+
+        /**
+         * The mask of the seats being planned, cleared after every plan.
+         */
+        SeatBitmap plannedSeats = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+
+        PlanningState() {
+            Arrays.fill(rowVersions, -1);
+        }
+
+        /**
+         * Copies and re-indexes the rows changed since the last plan. A row's
+         * version is read before the row is copied, so a change made during the
+         * copy is copied again by the next plan.
+         */
+        void refresh() {
+            long current = ConcurrentBookingServiceImpl.this.hallVersion.get();
+            if (current == hallVersion) {
+                return;
+            }
+            for (int row = 0; row < rowVersions.length; row++) {
+                long version = ConcurrentBookingServiceImpl.this.rowVersions.get(row);
+                if (version != rowVersions[row]) {
+                    copyRow(occupancy, row);
+                    freeRunIndex.rebuildRow(occupancy, row);
+                    rowVersions[row] = version;
+                }
+            }
+            hallVersion = current;
+        }
+    }
+
+    /**
+     * Constructor to initialize the booking service with one lock per row.
+     *
+     * @param seatMap The seat map that represents the seating arrangement of the
+     *                cinema.
+     */
+    public ConcurrentBookingServiceImpl(SeatMap seatMap) {
+        this(seatMap, seatMap.getRows());
+    }
+
+    /**
+     * Constructor to initialize the booking service with a fixed number of row
+     * lock stripes, grouping rows that share a stripe.
+     *
+     * @param seatMap The seat map that represents the seating arrangement of the
+     *                cinema.
+     * @param stripes The number of row lock stripes.
+     * @throws IllegalArgumentException if the number of stripes is not positive.
+     */
+    public ConcurrentBookingServiceImpl(SeatMap seatMap, int stripes) throws IllegalArgumentException {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Lock stripes must be more than zero: " + stripes);
+        }
+        this.seatMap = seatMap;
+        this.rowVersions = new AtomicLongArray(seatMap.getRows());
+        this.blankSeatMap = new SeatMapRenderer(seatMap.getRows(), seatMap.getSeatsPerRow(), seatMap.getLayout());
+        this.rowLocks = new ReentrantLock[Math.min(stripes, Math.max(1, seatMap.getRows()))];
+        for (int i = 0; i < rowLocks.length; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+        logger.info("Initialized ConcurrentBookingServiceImpl with {} rows, {} seats per row and {} lock stripes",
+                seatMap.getRows(), seatMap.getSeatsPerRow(), rowLocks.length);
+    }
+
+    /**
+     * Records the latency and outcome of every plan, confirmation, cancellation,
+     * check and batch booking of this service in the given metrics, which may be
+     * shared with the services of other screenings.
+     *
+     * @param metrics The metrics to record in.
+     */
+    public void setMetrics(BookingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Opens the write-ahead log of the seat map, replays the bookings recorded in
+     * it and records every later booking and cancellation in it before it is
+     * acknowledged. Concurrent bookings share fsyncs through the group commit of
+     * the log. The log must be opened before the service is shared, and while
+     * the seat map has no bookings unless it is memory-mapped: the log is
+     * replayed into a mapped seat map as well, to restore the bookings behind its
+     * occupancy, and its available seats are counted again afterwards.
+     *
+     * @param logFile The file of the log, created if it does not exist.
+     * @return The opened log, which the caller closes on shutdown.
+     * @throws IOException              if the log cannot be read or written.
+     * @throws IllegalArgumentException if the log belongs to a seat map of another
+     *                                  size.
+     */
+    public BookingLog openBookingLog(Path logFile) throws IOException {
+        BookingLog log = BookingLog.open(logFile, seatMap.getRows(), seatMap.getSeatsPerRow(),
+                new BookingLog.Replay() {
+                    @Override
+                    public void confirmed(int bookingNumber, int[][] seats) {
+                        for (int[] seat : seats) {
+                            seatMap.bookSeat(seat[0], seat[1]);
+                        }
+                        bookingIdCache.put(BookingIds.format(bookingNumber), seats);
+                        bookingIdCounter.accumulateAndGet(bookingNumber + 1, Math::max);
+                    }
+
+                    @Override
+                    public void cancelled(int bookingNumber) {
+                        int[][] seats = bookingIdCache.remove(BookingIds.format(bookingNumber));
+                        if (seats != null) {
+                            for (int[] seat : seats) {
+                                seatMap.releaseSeat(seat[0], seat[1]);
+                            }
+                        }
+                    }
+                });
+        // replaying into a mapped seat map books seats it may already hold, so count them afresh
+        seatMap.setAvailableSeats(seatMap.getRows() * seatMap.getSeatsPerRow()
+                - seatMap.getOccupancy().cardinality());
+        seatMap.commit();
+        this.bookingLog = log;
+        logger.info("Recovered {} booking(s) from {}", bookingIdCache.size(), logFile);
+        return log;
+    }
+
+    /**
+     * Confirms the booking by marking the seats as booked and updating the seat
+     * map. Either every seat is booked or, if any of them has been booked by
+     * another terminal in the meantime, none is.
+     *
+     * @param plannedCoordinates A 2D array representing the coordinates of the
+     *                           booked seats.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the coordinates are invalid or any of
+     *                                  the seats has already been booked.
+     */
+    public boolean confirmBooking(int[][] plannedCoordinates) throws IllegalArgumentException {
+        bookSeats(plannedCoordinates);
+        return true;
+    }
+
+    /**
+     * Confirms the booking like {@link #confirmBooking(int[][])} and returns the
+     * booking ID it was given, which other terminals cannot predict with
+     * {@link #getBookingId()}.
+     *
+     * @param plannedCoordinates A 2D array representing the coordinates of the
+     *                           booked seats.
+     * @return The booking ID of the confirmed booking.
+     * @throws IllegalArgumentException if the coordinates are invalid or any of
+     *                                  the seats has already been booked.
+     */
+    public String bookSeats(int[][] plannedCoordinates) throws IllegalArgumentException {
+        BookingMetrics metrics = this.metrics;
+        long start = metrics.start();
+        String bookingId;
+        try {
+            bookingId = book(plannedCoordinates);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CONFIRM, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CONFIRM, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CONFIRM, Outcome.SUCCESS, start);
+        return bookingId;
+    }
+
+    /**
+     * Books the seats of a confirmed booking, as described by
+     * {@link #bookSeats(int[][])}.
+     *
+     * @param plannedCoordinates A 2D array representing the coordinates of the
+     *                           booked seats.
+     * @return The booking ID of the confirmed booking.
+     * @throws IllegalArgumentException if the coordinates are invalid or any of
+     *                                  the seats has already been booked.
+     */
+    private String book(int[][] plannedCoordinates) throws IllegalArgumentException {
+        logger.debug("Attempting to confirm booking");
+        // the planned seat mask of a borrowed state is clear between calls, so it can spot repeated seats
+        PlanningState state = borrowPlanningState();
+        try {
+            BookingServiceImpl.validateCoordinates(plannedCoordinates, state.plannedSeats);
+        } finally {
+            returnPlanningState(state);
+        }
+        reserveSeats(plannedCoordinates);
+        int bookingNumber = takeBookingNumber();
+        BookingLog log = bookingLog;
+        if (log != null) {
+            try {
+                log.appendConfirm(bookingNumber, plannedCoordinates);
+            } catch (IOException e) {
+                releaseSeats(plannedCoordinates);
+                returnBookingNumbers(bookingNumber, 1);
+                logger.error("Failed to record booking {}", BookingIds.format(bookingNumber), e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        seatMap.commit();
+        seatMap.addAvailableSeats(-plannedCoordinates.length);
+        String bookingId = BookingIds.format(bookingNumber);
+        bookingIdCache.put(bookingId, plannedCoordinates);
+        if (logger.isInfoEnabled()) {
+            logger.info("Booking confirmed with ID: {}", bookingId);
+        }
+        return bookingId;
+    }
+
+    /**
+     * Cancels a booking and frees its seats. The booking is removed from the
+     * cache first, so concurrent cancellations of the same booking free its seats
+     * only once.
+     *
+     * @param bookingId The booking ID to cancel.
+     * @throws IllegalArgumentException if the booking ID cannot be found.
+     */
+    public void cancelBooking(String bookingId) throws IllegalArgumentException {
+        BookingMetrics metrics = this.metrics;
+        long start = metrics.start();
+        try {
+            cancel(bookingId);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CANCEL, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CANCEL, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CANCEL, Outcome.SUCCESS, start);
+    }
+
+    /**
+     * Cancels a booking and frees its seats, as described by
+     * {@link #cancelBooking(String)}.
+     *
+     * @param bookingId The booking ID to cancel.
+     * @throws IllegalArgumentException if the booking ID cannot be found.
+     */
+    private void cancel(String bookingId) throws IllegalArgumentException {
+        int[][] seats = bookingId == null ? null : bookingIdCache.remove(bookingId);
+        if (seats == null) {
+            throw new IllegalArgumentException("Booking ID not found: " + bookingId);
+        }
+        BookingLog log = bookingLog;
+        if (log != null) {
+            try {
+                log.appendCancel(BookingIds.parse(bookingId));
+            } catch (IOException e) {
+                bookingIdCache.put(bookingId, seats);
+                logger.error("Failed to record cancellation of {}", bookingId, e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        releaseSeats(seats);
+        seatMap.commit();
+        seatMap.addAvailableSeats(seats.length);
+        if (logger.isInfoEnabled()) {
+            logger.info("Booking cancelled with ID: {}", bookingId);
+        }
+    }
+
+    /**
+     * Plans the seats to be booked based on the number of seats and the designated
+     * seat. Planning runs on a snapshot of the hall and does not hold any seat, so
+     * the plan may be rejected at confirmation if another terminal books one of
+     * its seats first.
+     *
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The seat designated by the user (if any).
+     * @return A 2D array with the coordinates of the planned seats.
+     * @throws IllegalArgumentException if the number of seats to book is invalid or
+     *                                  if there are not enough available seats.
+     */
+    public int[][] planSeats(int seatsToBook, String designatedSeat) throws IllegalArgumentException {
+        BookingMetrics metrics = this.metrics;
+        long start = metrics.start();
+        PlanningState state = borrowPlanningState();
+        int[][] plannedCoordinates;
+        int scanSteps;
+        try {
+            plannedCoordinates = plan(state, seatsToBook, designatedSeat);
+            scanSteps = state.seatPlanner.getScanSteps();
+        } catch (IllegalArgumentException e) {
+            boolean notEnoughSeats = seatsToBook > 0 && seatsToBook > seatMap.getAvailableSeats();
+            metrics.record(Operation.PLAN, notEnoughSeats ? Outcome.NOT_ENOUGH_SEATS : Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.PLAN, Outcome.ERROR, start);
+            throw e;
+        } finally {
+            returnPlanningState(state);
+        }
+        metrics.recordPlan(scanSteps, start);
+        return plannedCoordinates;
+    }
+
+    /**
+     * Plans the seats to be booked on a borrowed planning state, as described by
+     * {@link #planSeats(int, String)}.
+     *
+     * @param state          The planning state to plan on.
+     * @param seatsToBook    The number of seats to be booked.
+     * @param designatedSeat The seat designated by the user (if any).
+     * @return A 2D array with the coordinates of the planned seats.
+     * @throws IllegalArgumentException if the number of seats to book is invalid or
+     *                                  if there are not enough available seats.
+     */
+    private int[][] plan(PlanningState state, int seatsToBook, String designatedSeat)
+            throws IllegalArgumentException {
+        logger.debug("Planning {} seat(s) with designated seat: {}", seatsToBook, designatedSeat);
+        if (!checkSeatsMoreThanZero(seatsToBook)) {
+            logger.error("Invalid seat count: {}", seatsToBook);
+            throw new IllegalArgumentException("Seats to book cannot be negative: " + seatsToBook);
+        }
+        if (!checkSeatsAvailability(seatsToBook)) {
+            throw new IllegalArgumentException("Not enough seats available to book: " + seatsToBook);
+        }
+        state.refresh();
+        int[][] plannedCoordinates;
+        try {
+            if (designatedSeat == null || designatedSeat.isEmpty()) {
+                plannedCoordinates = state.seatPlanner.planFromBackRow(seatsToBook, state.plannedSeats);
+            } else {
+                int seat = state.seatPlanner.locateDesignatedSeat(designatedSeat);
+                plannedCoordinates = state.seatPlanner.assignSeats(seatsToBook, seat / seatMap.getSeatsPerRow(),
+                        seat % seatMap.getSeatsPerRow(), state.plannedSeats);
+            }
+        } catch (RuntimeException e) {
+            // the seats planned before the failure are unknown
+            state.plannedSeats = new SeatBitmap(seatMap.getRows(), seatMap.getSeatsPerRow());
+            throw e;
+        }
+        for (int[] seat : plannedCoordinates) {
+            state.plannedSeats.clear(seat[0], seat[1]);
+        }
+        return plannedCoordinates;
+    }
+
+    /**
+     * Books a batch of parties at once, all or nothing. The parties are planned
+     * together in a single pass from the back row on a snapshot of the hall,
+     * every party in a block of adjacent seats of one row next to the party
+     * before it where the free seats allow it. All the seats are
+     * booked under the stripe locks together, and every party gets a booking ID
+     * of its own, numbered consecutively.
+     *
+     * @param partySizes The number of seats of every party.
+     * @return The booking IDs of the parties, in the order of the parties.
+     * @throws IllegalArgumentException if there are no parties, a party is
+     *                                  empty, there are not enough available seats
+     *                                  or another terminal booked a planned seat
+     *                                  first.
+     */
+    public String[] bookBatch(int[] partySizes) throws IllegalArgumentException {
+        BookingMetrics metrics = this.metrics;
+        long start = metrics.start();
+        String[] bookingIds;
+        try {
+            bookingIds = batch(partySizes);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.BATCH, BookingServiceImpl.isTooLargeForHall(partySizes,
+                    seatMap.getAvailableSeats()) ? Outcome.NOT_ENOUGH_SEATS : Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.BATCH, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.BATCH, Outcome.SUCCESS, start);
+        return bookingIds;
+    }
+
+    /**
+     * Books a batch of parties at once, as described by {@link #bookBatch}.
+     *
+     * @param partySizes The number of seats of every party.
+     * @return The booking IDs of the parties, in the order of the parties.
+     * @throws IllegalArgumentException if there are no parties, a party is
+     *                                  empty, there are not enough available
+     *                                  seats, a party does not fit in any block
+     *                                  of adjacent free seats or another terminal
+     *                                  booked a planned seat first.
+     */
+    private String[] batch(int[] partySizes) throws IllegalArgumentException {
+        if (partySizes == null || partySizes.length == 0) {
+            logger.error("Invalid batch booking: no parties");
+            throw new IllegalArgumentException("No parties to book");
+        }
+        long totalSeats = 0;
+        for (int partySize : partySizes) {
+            if (!checkSeatsMoreThanZero(partySize)) {
+                logger.error("Invalid party size: {}", partySize);
+                throw new IllegalArgumentException("Party size must be positive: " + partySize);
+            }
+            totalSeats += partySize;
+        }
+        if (!checkSeatsAvailability((int) Math.min(totalSeats, Integer.MAX_VALUE))) {
+            throw new IllegalArgumentException("Not enough seats available to book: " + totalSeats);
+        }
+        int seatCount = (int) totalSeats;
+        int[] seatIndexes = new int[seatCount];
+        PlanningState state = borrowPlanningState();
+        try {
+            state.refresh();
+            state.seatPlanner.planParties(partySizes, seatCount, state.plannedSeats, seatIndexes);
+            for (int seat : seatIndexes) {
+                state.plannedSeats.clear(seat / seatMap.getSeatsPerRow(), seat % seatMap.getSeatsPerRow());
+            }
+        } finally {
+            returnPlanningState(state);
+        }
+        int[][] plannedCoordinates = SeatPlanner.toCoordinates(seatIndexes, seatCount, seatMap.getSeatsPerRow());
+        int[][][] partySeats = new int[partySizes.length][][];
+        for (int party = 0, seat = 0; party < partySizes.length; seat += partySizes[party], party++) {
+            partySeats[party] = Arrays.copyOfRange(plannedCoordinates, seat, seat + partySizes[party]);
+        }
+        reserveSeats(plannedCoordinates);
+        int firstBookingNumber = bookingIdCounter.getAndAdd(partySizes.length);
+        BookingLog log = bookingLog;
+        if (log != null) {
+            try {
+                log.appendConfirmBatch(firstBookingNumber, partySeats);
+            } catch (IOException e) {
+                releaseSeats(plannedCoordinates);
+                returnBookingNumbers(firstBookingNumber, partySizes.length);
+                logger.error("Failed to record batch from {}", BookingIds.format(firstBookingNumber), e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        seatMap.commit();
+        seatMap.addAvailableSeats(-plannedCoordinates.length);
+        String[] bookingIds = new String[partySizes.length];
+        for (int party = 0; party < partySizes.length; party++) {
+            bookingIds[party] = BookingIds.format(firstBookingNumber + party);
+            bookingIdCache.put(bookingIds[party], partySeats[party]);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Batch of {} booking(s) confirmed with IDs {} to {}", bookingIds.length, bookingIds[0],
+                    bookingIds[bookingIds.length - 1]);
+        }
+        return bookingIds;
+    }
+
+    /**
+     * Checks if the number of seats to book is greater than zero.
+     *
+     * @param seatsToBook The number of seats to be booked.
+     * @return true if the number of seats to book is greater than zero.
+     */
+    public boolean checkSeatsMoreThanZero(int seatsToBook) {
+        return seatsToBook > 0;
+    }
+
+    /**
+     * Checks if there are enough available seats to book.
+     *
+     * @param seatsToBook The number of seats to be booked.
+     * @return true if there are enough available seats, false otherwise.
+     */
+    public boolean checkSeatsAvailability(int seatsToBook) {
+        if (seatsToBook > seatMap.getAvailableSeats()) {
+            logger.error("Not enough seats available to book: {}", seatsToBook);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the booking status using the booking ID and renders the seat map
+     * with the seats of the booking highlighted.
+     *
+     * @param bookingId The booking ID to check.
+     * @return A string representation of the seat map.
+     * @throws IllegalArgumentException if the bookingId is null/empty or cannot be found in booking id cache
+     */
+    public String checkBooking(String bookingId) throws IllegalArgumentException {
+        BookingMetrics metrics = this.metrics;
+        long start = metrics.start();
+        String seatMapView;
+        try {
+            seatMapView = check(bookingId);
+        } catch (IllegalArgumentException e) {
+            metrics.record(Operation.CHECK, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.record(Operation.CHECK, Outcome.ERROR, start);
+            throw e;
+        }
+        metrics.record(Operation.CHECK, Outcome.SUCCESS, start);
+        return seatMapView;
+    }
+
+    /**
+     * Renders the seat map with the seats of a booking highlighted, as described
+     * by {@link #checkBooking(String)}.
+     *
+     * @param bookingId The booking ID to check.
+     * @return A string representation of the seat map.
+     * @throws IllegalArgumentException if the bookingId is null/empty or cannot be found in booking id cache
+     */
+    private String check(String bookingId) throws IllegalArgumentException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Checking booking for ID: {}", bookingId);
+        }
+        if (bookingId == null || bookingId.isEmpty()) {
+            logger.error("Booking Id should not be null or empty");
+            throw new IllegalArgumentException("Booking Id should not be null or empty");
+        }
+        int[][] coordinates = bookingIdCache.get(bookingId);
+        if (coordinates == null) {
+            logger.error("Booking Id not found: {}", bookingId);
+            throw new IllegalArgumentException("Booking ID not found: " + bookingId);
+        }
+        return render(coordinates);
+    }
+
+    /**
+     * Prints the seat map with the booked and available seats. Plans are private
+     * to each caller, so no planned seats are shown.
+     *
+     * @return A string representation of the seat map.
+     */
+    public String printSeatMapPlan() {
+        return render(null);
+    }
+
+    /**
+     * Renders the seat map from a borrowed planning state, which copies only the
+     * rows changed since it was last used.
+     *
+     * @param highlightedSeats The coordinates of the seats to highlight, or null
+     *                         to highlight none.
+     * @return A string representation of the seat map.
+     */
+    private String render(int[][] highlightedSeats) {
+        SeatMapRenderer renderer = new SeatMapRenderer(blankSeatMap);
+        PlanningState state = borrowPlanningState();
+        try {
+            state.refresh();
+            renderer.repaint(state.occupancy);
+        } finally {
+            returnPlanningState(state);
+        }
+        if (highlightedSeats != null) {
+            for (int[] seat : highlightedSeats) {
+                renderer.highlight(seat[0], seat[1]);
+            }
+        }
+        return renderer.render();
+    }
+
+    /**
+     * Generates the booking ID the next confirmed booking will receive if no
+     * other booking is confirmed first, in the format "GICxxxx".
+     *
+     * @return The next booking ID.
+     */
+    public String getBookingId() {
+        Integer unused = unusedBookingNumbers.ceiling(0);
+        return BookingIds.format(unused != null ? unused : bookingIdCounter.get());
+    }
+
+    /**
+     * Gets the booking ID cache which holds the coordinates of booked seats.
+     *
+     * @return The booking ID cache.
+     */
+    public Map<String, int[][]> getBookingIdCache() {
+        return this.bookingIdCache;
+    }
+
+    /**
+     * Gets the seat map.
+     *
+     * @return The seat map.
+     */
+    public SeatMap getSeatMap() {
+        return this.seatMap;
+    }
+
+    /**
+     * Marks the planned seats as booked, holding the stripes of every affected row
+     * while the seats are checked and booked.
+     *
+     * @param plannedCoordinates The validated coordinates of the seats to book.
+     * @throws IllegalArgumentException if any of the seats is already booked.
+     */
+    protected void reserveSeats(int[][] plannedCoordinates) throws IllegalArgumentException {
+        boolean[] stripes = lockStripes(plannedCoordinates);
+        try {
+            for (int[] coord : plannedCoordinates) {
+                if (seatMap.isBooked(coord[0], coord[1])) {
+                    logger.warn("Seat already booked: {}", Arrays.toString(coord));
+                    throw new IllegalArgumentException("Seat no longer available: " + Arrays.toString(coord));
+                }
+            }
+            for (int[] coord : plannedCoordinates) {
+                seatMap.bookSeat(coord[0], coord[1]);
+            }
+            rowsChanged(plannedCoordinates);
+        } finally {
+            unlockStripes(stripes);
+        }
+    }
+
+    /**
+     * Marks the seats of a cancelled booking as available, holding the stripes of
+     * every affected row.
+     *
+     * @param seats The coordinates of the seats to free.
+     */
+    protected void releaseSeats(int[][] seats) {
+        boolean[] stripes = lockStripes(seats);
+        try {
+            for (int[] seat : seats) {
+                seatMap.releaseSeat(seat[0], seat[1]);
+            }
+            rowsChanged(seats);
+        } finally {
+            unlockStripes(stripes);
+        }
+    }
+
+    /**
+     * Bumps the versions of the rows of changed seats, after the seats are
+     * changed, so planning threads copy the rows again.
+     *
+     * @param seats The coordinates of the changed seats.
+     */
+    protected void rowsChanged(int[][] seats) {
+        for (int[] seat : seats) {
+            rowVersions.incrementAndGet(seat[0]);
+        }
+        hallVersion.incrementAndGet();
+    }
+
+    /**
+     * Copies the booked seats of one row, holding the stripe of the row.
+     *
+     * @param target The bitmap to copy the row into.
+     * @param row    The row to copy.
+     */
+    protected void copyRow(SeatBitmap target, int row) {
+        ReentrantLock lock = rowLocks[row % rowLocks.length];
+        lock.lock();
+        try {
+            target.copyRowFrom(seatMap.getOccupancy(), row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes an idle planning state from the pool, or makes a new one if none is
+     * idle.
+     *
+     * @return The planning state, to be given back with
+     *         {@link #returnPlanningState(PlanningState)}.
+     */
+    private PlanningState borrowPlanningState() {
+        for (int i = 0; i < idlePlanningStates.length(); i++) {
+            if (idlePlanningStates.get(i) != null) {
+                PlanningState state = idlePlanningStates.getAndSet(i, null);
+                if (state != null) {
+                    return state;
+                }
+            }
+        }
+        return new PlanningState();
+    }
+
+    /**
+     * Gives a planning state back to the pool, dropping it if the pool is full.
+     *
+     * @param state The planning state, no longer used by the caller.
+     */
+    private void returnPlanningState(PlanningState state) {
+        for (int i = 0; i < idlePlanningStates.length(); i++) {
+            if (idlePlanningStates.compareAndSet(i, null, state)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the number of a new booking: the lowest number given back by a
+     * booking that could not be recorded, or else the next number of the
+     * counter.
+     *
+     * @return The booking number.
+     */
+    private int takeBookingNumber() {
+        Integer unused = unusedBookingNumbers.pollFirst();
+        return unused != null ? unused : bookingIdCounter.getAndIncrement();
+    }
+
+    /**
+     * Gives back the numbers of bookings that could not be recorded, so booking
+     * IDs have no gaps. The counter is wound back if no other booking took a
+     * number since; otherwise the numbers are handed out again by
+     * {@link #takeBookingNumber()}.
+     *
+     * @param firstBookingNumber The first number to give back.
+     * @param count              The number of consecutive numbers to give back.
+     */
+    private void returnBookingNumbers(int firstBookingNumber, int count) {
+        if (!bookingIdCounter.compareAndSet(firstBookingNumber + count, firstBookingNumber)) {
+            for (int i = 0; i < count; i++) {
+                unusedBookingNumbers.add(firstBookingNumber + i);
+            }
+        }
+    }
+
+    /**
+     * Locks the stripes of every row in the coordinates in ascending stripe
+     * order, so that two bookings can never wait on each other.
+     *
+     * @param coordinates The seat coordinates.
+     * @return The stripes that were locked.
+     */
+    private boolean[] lockStripes(int[][] coordinates) {
+        boolean[] stripes = new boolean[rowLocks.length];
+        for (int[] coord : coordinates) {
+            stripes[coord[0] % rowLocks.length] = true;
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            if (stripes[i]) {
+                rowLocks[i].lock();
+            }
+        }
+        return stripes;
+    }
+
+    private void unlockStripes(boolean[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            if (stripes[i]) {
+                rowLocks[i].unlock();
+            }
+        }
+    }
+}
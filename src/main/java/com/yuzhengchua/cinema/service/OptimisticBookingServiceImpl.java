@@ -0,0 +1,156 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.Arrays;
+
+import com.yuzhengchua.cinema.models.SeatBitmap;
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * The {@code OptimisticBookingServiceImpl} class is a lock-free variant of
+ * {@link ConcurrentBookingServiceImpl}. Instead of locking row stripes, seats are
+ * booked and freed with compare-and-set on the packed occupancy words.
+ * <p>
+ * Confirmation groups the planned seats by occupancy word and claims the words in
+ * ascending order. A failed compare-and-set caused by another seat of the same
+ * word changing is simply retried; if one of the planned seats itself has been
+ * booked in the meantime, the words already claimed are released again and the
+ * booking is rejected so the caller can re-plan.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class OptimisticBookingServiceImpl extends ConcurrentBookingServiceImpl {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(OptimisticBookingServiceImpl.class);
+
+    /**
+     * Number of seats that fit in a single occupancy word.
+     */
+    private static final int BITS_PER_WORD = Long.SIZE;
+
+    /**
+     * Constructor to initialize the booking service with a seat map.
+     *
+     * @param seatMap The seat map that represents the seating arrangement of the
+     *                cinema.
+     */
+    public OptimisticBookingServiceImpl(SeatMap seatMap) {
+        super(seatMap, 1);
+    }
+
+    /**
+     * Marks the planned seats as booked by claiming their occupancy words with
+     * compare-and-set.
+     *
+     * @param plannedCoordinates The validated coordinates of the seats to book.
+     * @throws IllegalArgumentException if any of the seats is already booked.
+     */
+    @Override
+    protected void reserveSeats(int[][] plannedCoordinates) throws IllegalArgumentException {
+        SeatMap seatMap = getSeatMap();
+        long[] wordMasks = groupByWord(plannedCoordinates);
+        int wordsPerRow = seatMap.getOccupancy().getWordsPerRow();
+        for (int i = 0; i < wordMasks.length; i += 2) {
+            int row = (int) wordMasks[i] / wordsPerRow;
+            int word = (int) wordMasks[i] % wordsPerRow;
+            long mask = wordMasks[i + 1];
+            while (true) {
+                long current = seatMap.getOccupancy().getWordVolatile(row, word);
+                if ((current & mask) != 0) {
+                    releaseWords(wordMasks, i);
+                    // planners may have copied the words claimed in the meantime
+                    rowsChanged(plannedCoordinates);
+                    logger.warn("Seat already booked in row {}", row);
+                    throw new IllegalArgumentException("Seat no longer available: "
+                            + Arrays.toString(new int[] { row, word * BITS_PER_WORD
+                                    + Long.numberOfTrailingZeros(current & mask) }));
+                }
+                if (seatMap.compareAndSetOccupancyWord(row, word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+        rowsChanged(plannedCoordinates);
+    }
+
+    /**
+     * Marks the seats of a cancelled booking as available by clearing their bits
+     * with compare-and-set.
+     *
+     * @param seats The coordinates of the seats to free.
+     */
+    @Override
+    protected void releaseSeats(int[][] seats) {
+        long[] wordMasks = groupByWord(seats);
+        releaseWords(wordMasks, wordMasks.length);
+        rowsChanged(seats);
+    }
+
+    /**
+     * Copies the booked seats of one row with volatile reads of its occupancy
+     * words, without taking any lock.
+     *
+     * @param target The bitmap to copy the row into.
+     * @param row    The row to copy.
+     */
+    @Override
+    protected void copyRow(SeatBitmap target, int row) {
+        SeatBitmap occupancy = getSeatMap().getOccupancy();
+        for (int word = 0; word < occupancy.getWordsPerRow(); word++) {
+            target.setWord(row, word, occupancy.getWordVolatile(row, word));
+        }
+    }
+
+    /**
+     * Clears the seat bits of the first words of a grouped seat list.
+     *
+     * @param wordMasks The seats grouped by word, as returned by
+     *                  {@link #groupByWord(int[][])}.
+     * @param end       The exclusive end offset in the grouped list.
+     */
+    private void releaseWords(long[] wordMasks, int end) {
+        SeatMap seatMap = getSeatMap();
+        int wordsPerRow = seatMap.getOccupancy().getWordsPerRow();
+        for (int i = 0; i < end; i += 2) {
+            int row = (int) wordMasks[i] / wordsPerRow;
+            int word = (int) wordMasks[i] % wordsPerRow;
+            long mask = wordMasks[i + 1];
+            long current;
+            do {
+                current = seatMap.getOccupancy().getWordVolatile(row, word);
+            } while (!seatMap.compareAndSetOccupancyWord(row, word, current, current & ~mask));
+        }
+    }
+
+    /**
+     * Groups seat coordinates by occupancy word, in ascending word order.
+     *
+     * @param coordinates The seat coordinates.
+     * @return Pairs of (global word index, seat bit mask) laid out flat.
+     */
+    private long[] groupByWord(int[][] coordinates) {
+        int wordsPerRow = getSeatMap().getOccupancy().getWordsPerRow();
+        long[] keys = new long[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            long wordIndex = (long) coordinates[i][0] * wordsPerRow + coordinates[i][1] / BITS_PER_WORD;
+            keys[i] = wordIndex * BITS_PER_WORD + coordinates[i][1] % BITS_PER_WORD;
+        }
+        Arrays.sort(keys);
+        long[] grouped = new long[coordinates.length * 2];
+        int size = 0;
+        for (long key : keys) {
+            long wordIndex = key / BITS_PER_WORD;
+            long bit = 1L << (key % BITS_PER_WORD);
+            if (size > 0 && grouped[size - 2] == wordIndex) {
+                grouped[size - 1] |= bit;
+            } else {
+                grouped[size++] = wordIndex;
+                grouped[size++] = bit;
+            }
+        }
+        return Arrays.copyOf(grouped, size);
+    }
+}
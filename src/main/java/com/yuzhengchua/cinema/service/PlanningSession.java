@@ -0,0 +1,189 @@
+package com.yuzhengchua.cinema.service;
+
+import com.yuzhengchua.cinema.models.SeatBitmap;
+import com.yuzhengchua.cinema.util.HashedTimerWheel;
+
+/**
+ * The {@code PlanningSession} class holds the tentative seat plan of one
+ * customer. It is an overlay on top of the committed seat map that records only
+ * the seats planned by this session, so several customers can plan seats for the
+ * same screen at the same time without copying the hall.
+ * <p>
+ * The overlay mask and the seat buffer are allocated on the first plan and
+ * reused by later plans, and replacing or discarding a plan only clears the
+ * seats it recorded, so the cost of planning follows the number of seats
+ * requested rather than the size of the hall.
+ * </p>
+ * <p>
+ * While a plan is in place its seats are held for the session until the hold
+ * expires, so other sessions plan around them. The session itself is the timer
+ * node of its hold, which makes renewing a hold free of allocation.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class PlanningSession extends HashedTimerWheel.Timeout {
+
+    /**
+     * An empty plan.
+     */
+    private static final int[][] NO_SEATS = new int[0][];
+
+    /**
+     * An empty seat buffer.
+     */
+    private static final int[] NO_SEAT_INDEXES = new int[0];
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats in each row of the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The planned seats of this session, allocated on first write.
+     */
+    private SeatBitmap plannedSeats;
+
+    /**
+     * The packed indexes ({@code row * seatsPerRow + col}) of the seats of the
+     * current plan, in planning order, reused from plan to plan.
+     */
+    private int[] plannedSeatIndexes = NO_SEAT_INDEXES;
+
+    /**
+     * The number of seats of the current plan.
+     */
+    private int plannedSeatCount;
+
+    /**
+     * The coordinates of the current plan, materialised on first request, or
+     * null if they have not been materialised yet.
+     */
+    private int[][] plannedCoordinates = NO_SEATS;
+
+    /**
+     * Constructs an empty planning session for a hall.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     */
+    PlanningSession(int rows, int seatsPerRow) {
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+    }
+
+    /**
+     * Gets the coordinates of the current plan.
+     *
+     * @return The planned coordinates, empty if nothing is planned.
+     */
+    public int[][] getPlannedCoordinates() {
+        if (this.plannedCoordinates == null) {
+            this.plannedCoordinates = SeatPlanner.toCoordinates(plannedSeatIndexes, plannedSeatCount, seatsPerRow);
+        }
+        return this.plannedCoordinates;
+    }
+
+    /**
+     * Gets the number of seats of the current plan.
+     *
+     * @return The number of planned seats.
+     */
+    public int getPlannedSeatCount() {
+        return this.plannedSeatCount;
+    }
+
+    /**
+     * Gets a seat of the current plan as a packed index
+     * {@code row * seatsPerRow + col}.
+     *
+     * @param seat The position of the seat in the plan.
+     * @return The packed index of the seat.
+     */
+    public int getPlannedSeat(int seat) {
+        return this.plannedSeatIndexes[seat];
+    }
+
+    /**
+     * Checks whether a seat is part of the current plan.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     * @return true if the seat is planned by this session.
+     */
+    public boolean isPlanned(int row, int col) {
+        return this.plannedSeats != null && this.plannedSeats.get(row, col);
+    }
+
+    /**
+     * Checks whether the session currently has a plan.
+     *
+     * @return true if at least one seat is planned.
+     */
+    public boolean hasPlan() {
+        return this.plannedSeatCount > 0;
+    }
+
+    /**
+     * Checks whether the seats of the current plan are held for this session.
+     *
+     * @return true if the plan is held and the hold has not been released.
+     */
+    public boolean isHeld() {
+        return isScheduled();
+    }
+
+    /**
+     * Gets the overlay mask to plan into, allocating it on first use.
+     *
+     * @return The planned seat mask.
+     */
+    SeatBitmap plannedSeatsForWrite() {
+        if (this.plannedSeats == null) {
+            this.plannedSeats = new SeatBitmap(rows, seatsPerRow);
+        }
+        return this.plannedSeats;
+    }
+
+    /**
+     * Gets the buffer to plan the packed seat indexes into, growing it if it
+     * cannot hold the given number of seats.
+     *
+     * @param capacity The number of seats to be planned.
+     * @return The seat buffer.
+     */
+    int[] plannedSeatBuffer(int capacity) {
+        if (this.plannedSeatIndexes.length < capacity) {
+            this.plannedSeatIndexes = new int[capacity];
+        }
+        return this.plannedSeatIndexes;
+    }
+
+    /**
+     * Records the number of seats of a plan made into the overlay mask and the
+     * seat buffer.
+     *
+     * @param plannedSeatCount The number of planned seats.
+     */
+    void setPlannedSeatCount(int plannedSeatCount) {
+        this.plannedSeatCount = plannedSeatCount;
+        this.plannedCoordinates = null;
+    }
+
+    /**
+     * Discards the current plan, clearing only the seats it recorded.
+     */
+    void clear() {
+        for (int i = 0; i < this.plannedSeatCount; i++) {
+            int seatIndex = this.plannedSeatIndexes[i];
+            this.plannedSeats.clear(seatIndex / seatsPerRow, seatIndex % seatsPerRow);
+        }
+        this.plannedSeatCount = 0;
+        this.plannedCoordinates = NO_SEATS;
+    }
+}
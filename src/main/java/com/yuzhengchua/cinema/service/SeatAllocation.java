@@ -0,0 +1,263 @@
+package com.yuzhengchua.cinema.service;
+
+import com.yuzhengchua.cinema.models.SeatBitmap;
+
+/**
+ * The {@code SeatAllocation} class is the plan a {@link SeatAllocationStrategy}
+ * fills in. It answers which seats are free to plan, reading the free run index
+ * of the booking service, the seats held by other sessions and the seats
+ * already planned, and records every seat the strategy takes.
+ * <p>
+ * Rows are indexed with the front row, closest to the screen, first like the
+ * seat map, so row A, the back row, is row {@code getRows() - 1}. An allocation is
+ * only valid during the call to {@link SeatAllocationStrategy#allocate} it is
+ * passed to, and is reused by the next plan.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SeatAllocation {
+
+    /**
+     * The planner answering the queries.
+     */
+    private final SeatPlanner planner;
+
+    /**
+     * The mask recording the planned seats.
+     */
+    private SeatBitmap plannedSeats;
+
+    /**
+     * The buffer receiving the packed seat indexes.
+     */
+    private int[] seatIndexes;
+
+    /**
+     * The number of seats to be booked.
+     */
+    private int seatsToBook;
+
+    /**
+     * The number of seats taken so far.
+     */
+    private int allocated;
+
+    /**
+     * The row queried last, to count the rows visited.
+     */
+    private int lastRow;
+
+    /**
+     * Whether this is a read-only view of another allocation.
+     */
+    private final boolean forked;
+
+    /**
+     * The rows visited through a forked view, counted when it is joined.
+     */
+    private int forkedScanSteps;
+
+    SeatAllocation(SeatPlanner planner) {
+        this.planner = planner;
+        this.forked = false;
+    }
+
+    private SeatAllocation(SeatAllocation parent) {
+        this.planner = parent.planner;
+        this.plannedSeats = parent.plannedSeats;
+        this.seatIndexes = parent.seatIndexes;
+        this.seatsToBook = parent.seatsToBook;
+        this.allocated = parent.allocated;
+        this.lastRow = -1;
+        this.forked = true;
+    }
+
+    /**
+     * Creates a view of this allocation for a strategy to query from another
+     * thread while the plan is not changing. The view counts the rows it visits
+     * on its own, so views can be queried concurrently; seats are only taken into
+     * the allocation itself.
+     *
+     * @return The forked view.
+     */
+    SeatAllocation fork() {
+        return new SeatAllocation(this);
+    }
+
+    /**
+     * Gets the number of rows visited through a forked view.
+     *
+     * @return The number of rows visited.
+     */
+    int getForkedScanSteps() {
+        return forkedScanSteps;
+    }
+
+    /**
+     * Counts rows visited through forked views as scan steps of the plan.
+     *
+     * @param steps The number of rows visited.
+     */
+    void countScanSteps(int steps) {
+        planner.countScanSteps(steps);
+    }
+
+    /**
+     * Starts a new plan.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param plannedSeats The mask recording the planned seats.
+     * @param seatIndexes  The buffer receiving the packed seat indexes.
+     */
+    void reset(int seatsToBook, SeatBitmap plannedSeats, int[] seatIndexes) {
+        this.seatsToBook = seatsToBook;
+        this.plannedSeats = plannedSeats;
+        this.seatIndexes = seatIndexes;
+        this.allocated = 0;
+        this.lastRow = -1;
+    }
+
+    /**
+     * Clears the seats taken so far from the planned seat mask.
+     */
+    void undo() {
+        int seatsPerRow = planner.getSeatsPerRow();
+        for (int i = 0; i < allocated; i++) {
+            plannedSeats.clear(seatIndexes[i] / seatsPerRow, seatIndexes[i] % seatsPerRow);
+        }
+        allocated = 0;
+    }
+
+    /**
+     * Gets the number of rows in the cinema hall.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return planner.getRows();
+    }
+
+    /**
+     * Gets the number of seats per row in the cinema hall.
+     *
+     * @return The number of seats per row.
+     */
+    public int getSeatsPerRow() {
+        return planner.getSeatsPerRow();
+    }
+
+    /**
+     * Gets the number of seats taken so far.
+     *
+     * @return The number of seats taken.
+     */
+    public int getAllocatedSeatCount() {
+        return allocated;
+    }
+
+    /**
+     * Gets the number of seats of a row that are free to plan.
+     *
+     * @param row The row to check.
+     * @return The number of free seats in the row.
+     */
+    public int getFreeSeats(int row) {
+        visit(row);
+        return planner.getFreeSeats(row, plannedSeats);
+    }
+
+    /**
+     * Finds the first seat of a row at or after a column that is free to plan.
+     *
+     * @param row The row to search.
+     * @param col The column to search from.
+     * @return The column of the seat, or -1 if there is none.
+     */
+    public int nextFreeSeat(int row, int col) {
+        visit(row);
+        return planner.nextFreeSeat(row, col, plannedSeats);
+    }
+
+    /**
+     * Gets an upper bound of the longest block of seats free to plan in a row,
+     * without scanning the row.
+     *
+     * @param row The row to check.
+     * @return The bound, or 0 if the row has no free seats.
+     */
+    public int getMaxFreeBlock(int row) {
+        visit(row);
+        return planner.maxFreeBlock(row);
+    }
+
+    /**
+     * Finds the end of the block of seats free to plan that starts at a free
+     * seat, as returned by {@link #nextFreeSeat(int, int)}.
+     *
+     * @param row The row of the block.
+     * @param col The column of the first seat of the block.
+     * @return The column after the last seat of the block.
+     */
+    public int freeBlockEnd(int row, int col) {
+        visit(row);
+        return planner.freeBlockEnd(row, col, plannedSeats);
+    }
+
+    /**
+     * Takes a free seat into the plan.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     * @throws IllegalArgumentException if the seat is not free to plan or every
+     *                                  seat to be booked is already taken.
+     */
+    public void take(int row, int col) throws IllegalArgumentException {
+        if (allocated == seatsToBook) {
+            throw new IllegalArgumentException("All " + seatsToBook + " seats are already planned");
+        }
+        if (planner.nextFreeSeat(row, col, plannedSeats) != col) {
+            throw new IllegalArgumentException("Seat is not free: " + row + ", " + col);
+        }
+        plannedSeats.set(row, col);
+        seatIndexes[allocated++] = row * planner.getSeatsPerRow() + col;
+    }
+
+    /**
+     * Takes the seats still needed by the rules of
+     * {@link SeatAllocationStrategy#BACK_ROW_FIRST}: free seats from left to right
+     * starting at the given seat and, when the row is exhausted, in the row in
+     * front centred on the seats still needed, wrapping around to the back row.
+     *
+     * @param row The row to start in.
+     * @param col The column to start from.
+     * @throws IllegalArgumentException if the hall runs out of free seats.
+     */
+    public void spill(int row, int col) throws IllegalArgumentException {
+        planner.assignSeats(seatsToBook, row, col, plannedSeats, seatIndexes, allocated);
+        allocated = seatsToBook;
+    }
+
+    /**
+     * Gets the column the seats still needed start from in a row under the rules
+     * of {@link SeatAllocationStrategy#BACK_ROW_FIRST}, centred on the free seats
+     * of the row.
+     *
+     * @param row The row to start in.
+     * @return The starting column.
+     */
+    public int getCentredColumn(int row) {
+        return planner.getStartColumn(row, seatsToBook - allocated, plannedSeats);
+    }
+
+    private void visit(int row) {
+        if (row != lastRow) {
+            lastRow = row;
+            if (forked) {
+                forkedScanSteps++;
+            } else {
+                planner.countScanSteps(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.yuzhengchua.cinema.service;
+
+/**
+ * The {@code SeatAllocationStrategy} interface chooses the seats of a booking
+ * made without a designated seat. {@link BookingServiceImpl} checks that enough
+ * seats are available, then hands the strategy a {@link SeatAllocation} to take
+ * exactly the requested number of free seats into.
+ *
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface SeatAllocationStrategy {
+
+    /**
+     * The default rules of the booking service: start in row A, the back row and
+     * the last row of the seat map, centred on the requested seats, take free
+     * seats from left to right and continue in the row in front when a row is
+     * exhausted.
+     */
+    SeatAllocationStrategy BACK_ROW_FIRST = (allocation, seatsToBook) -> {
+        int row = allocation.getRows() - 1;
+        allocation.spill(row, allocation.getCentredColumn(row));
+    };
+
+    /**
+     * Takes the seats of a booking into an allocation.
+     *
+     * @param allocation  The allocation to take the seats into.
+     * @param seatsToBook The number of seats to take, never more than the seats
+     *                    free to plan.
+     * @throws IllegalArgumentException if the seats cannot be allocated.
+     */
+    void allocate(SeatAllocation allocation, int seatsToBook) throws IllegalArgumentException;
+}
@@ -0,0 +1,229 @@
+package com.yuzhengchua.cinema.service;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import com.yuzhengchua.cinema.models.SeatBitmap;
+import com.yuzhengchua.cinema.models.SeatLayout;
+import com.yuzhengchua.cinema.util.RowLabels;
+
+/**
+ * The {@code SeatMapRenderer} class draws the ASCII seat map shown to the user,
+ * with the screen at the top, the front row closest to the screen, row A at the
+ * back and the seat numbers at the bottom. Booked seats are drawn as {@code #}, highlighted seats (planned
+ * seats or the seats of a booking being checked) as {@code O} and available
+ * seats as {@code .}. Positions that are not seats in the layout of the hall are
+ * left blank.
+ * <p>
+ * The map is laid out once into a byte template, including the screen line, row
+ * labels and seat numbers, and every seat has a fixed cell in it. Booking,
+ * releasing or highlighting a seat patches only its cell, so rendering the map
+ * is a single copy of the template.
+ * </p>
+ *
+ * @since 1.1
+ */
+final class SeatMapRenderer {
+
+    /**
+     * The cell of an available seat.
+     */
+    private static final byte AVAILABLE = '.';
+
+    /**
+     * The cell of a booked seat.
+     */
+    private static final byte BOOKED = '#';
+
+    /**
+     * The cell of a highlighted seat.
+     */
+    private static final byte HIGHLIGHTED = 'O';
+
+    /**
+     * The cell of a position that is not a seat.
+     */
+    private static final byte NO_SEAT = ' ';
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats per row in the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The layout of the hall, or null if every position is a seat.
+     */
+    private final SeatLayout layout;
+
+    /**
+     * The rendered map.
+     */
+    private final byte[] template;
+
+    /**
+     * The offset of the cell of the first seat of the first row.
+     */
+    private final int firstCell;
+
+    /**
+     * The distance between the cells of the same seat in adjacent rows.
+     */
+    private final int rowStride;
+
+    /**
+     * Lays out the map of a hall with every seat available.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     */
+    SeatMapRenderer(int rows, int seatsPerRow) {
+        this(rows, seatsPerRow, null);
+    }
+
+    /**
+     * Lays out the map of a hall with every seat available. Row labels are
+     * padded to the longest label, and seat numbers to the width of a cell.
+     *
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @param layout      The seat layout of the hall, or null if every position
+     *                    is a seat.
+     */
+    SeatMapRenderer(int rows, int seatsPerRow, SeatLayout layout) {
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        this.layout = layout;
+        int labelWidth = RowLabels.length(rows - 1) + 2;
+        StringBuilder seatMapVisual = new StringBuilder();
+        String screenName = "SCREEN";
+
+        int screenLength = seatsPerRow * 4;
+        int padding = (screenLength - screenName.length()) / 2;
+        seatMapVisual.append(" ".repeat(Math.max(0, padding)));
+        seatMapVisual.append("SCREEN\n");
+        seatMapVisual.append("-".repeat(screenLength));
+
+        seatMapVisual.append("\n");
+        this.firstCell = seatMapVisual.length() + labelWidth;
+        this.rowStride = labelWidth + seatsPerRow * 4 + 1;
+
+        for (int i = 0; i < rows; i++) {
+            String rowLabel = RowLabels.label(rows - i - 1);
+            seatMapVisual.append(rowLabel).append(" ".repeat(labelWidth - rowLabel.length()));
+            for (int j = 0; j < seatsPerRow; j++) {
+                seatMapVisual.append(layout == null || layout.isSeat(i, j) ? ".\s\s\s" : "\s\s\s\s");
+            }
+            seatMapVisual.append("\n");
+        }
+
+        seatMapVisual.append(" ".repeat(labelWidth));
+        for (int j = 1; j <= seatsPerRow; j++) {
+            seatMapVisual.append(j);
+            String space = j < 10 ? "\s\s\s" : j < 100 ? "\s\s" : "\s";
+            seatMapVisual.append(space);
+        }
+        seatMapVisual.append("\n");
+        this.template = seatMapVisual.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Copies the map drawn by another renderer, without laying it out again.
+     *
+     * @param other The renderer to copy.
+     */
+    SeatMapRenderer(SeatMapRenderer other) {
+        this.rows = other.rows;
+        this.seatsPerRow = other.seatsPerRow;
+        this.layout = other.layout;
+        this.template = other.template.clone();
+        this.firstCell = other.firstCell;
+        this.rowStride = other.rowStride;
+    }
+
+    /**
+     * Renders the seat map of the given seats, laying out a new map.
+     *
+     * @param bookedSeats      The booked seats.
+     * @param highlightedSeats The seats to highlight, drawn over booked seats, or
+     *                         null to highlight none.
+     * @return A string representation of the seat map.
+     */
+    static String render(SeatBitmap bookedSeats, SeatBitmap highlightedSeats) {
+        SeatMapRenderer renderer = new SeatMapRenderer(bookedSeats.getRows(), bookedSeats.getSeatsPerRow());
+        renderer.repaint(bookedSeats);
+        if (highlightedSeats != null) {
+            for (int i = 0; i < renderer.rows; i++) {
+                for (int j = highlightedSeats.nextMarkedSeat(i, 0); j >= 0;
+                        j = highlightedSeats.nextMarkedSeat(i, j + 1)) {
+                    renderer.highlight(i, j);
+                }
+            }
+        }
+        return renderer.render();
+    }
+
+    /**
+     * Redraws every seat from the booked seats, clearing any highlight.
+     *
+     * @param bookedSeats The booked seats.
+     */
+    void repaint(SeatBitmap bookedSeats) {
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < seatsPerRow; j++) {
+                if (layout == null || layout.isSeat(i, j)) {
+                    template[cell(i, j)] = bookedSeats.get(i, j) ? BOOKED : AVAILABLE;
+                } else {
+                    template[cell(i, j)] = NO_SEAT;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a seat as booked or available.
+     *
+     * @param row    The row of the seat.
+     * @param col    The column of the seat.
+     * @param booked Whether the seat is booked.
+     */
+    void draw(int row, int col, boolean booked) {
+        template[cell(row, col)] = booked ? BOOKED : AVAILABLE;
+    }
+
+    /**
+     * Draws a seat as highlighted, until it is drawn again.
+     *
+     * @param row The row of the seat.
+     * @param col The column of the seat.
+     */
+    void highlight(int row, int col) {
+        template[cell(row, col)] = HIGHLIGHTED;
+    }
+
+    /**
+     * Renders the seat map as drawn.
+     *
+     * @return A string representation of the seat map.
+     */
+    String render() {
+        return new String(template, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the seat map as drawn to a stream.
+     *
+     * @param out The stream to write to.
+     */
+    void writeTo(PrintStream out) {
+        out.write(template, 0, template.length);
+    }
+
+    private int cell(int row, int col) {
+        return firstCell + row * rowStride + col * 4;
+    }
+}
@@ -0,0 +1,504 @@
+package com.yuzhengchua.cinema.service;
+
+import com.yuzhengchua.cinema.models.FreeRunIndex;
+import com.yuzhengchua.cinema.models.SeatBitmap;
+import com.yuzhengchua.cinema.models.SeatLayout;
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.util.SeatCodes;
+
+/**
+ * The {@code SeatPlanner} class holds the seat placement rules shared by the
+ * booking service implementations. It places seats against a
+ * {@link FreeRunIndex} of the committed seats and records every seat it picks in
+ * the planned-seat mask passed in by the caller, so the committed seats are never
+ * modified while planning and each planning session can keep its own mask.
+ * Seats held by other sessions are skipped as if they were booked.
+ * <p>
+ * Without a designated seat, planning starts in the back row centred on the
+ * requested seats. Free seats are taken from left to right and, when a row is
+ * exhausted, the search continues in the row in front, wrapping around to the
+ * back row.
+ * </p>
+ * <p>
+ * Seats are planned into a caller-provided buffer of packed seat indexes
+ * {@code row * seatsPerRow + col}, so planning does not allocate. The methods
+ * returning coordinate arrays are adapters over the packed ones.
+ * </p>
+ *
+ * @since 1.1
+ */
+final class SeatPlanner {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(SeatPlanner.class);
+
+    /**
+     * The free runs of the committed seats.
+     */
+    private final FreeRunIndex freeRunIndex;
+
+    /**
+     * The seats held by planning sessions, or null if holds are not tracked.
+     */
+    private final SeatBitmap heldSeats;
+
+    /**
+     * The number of rows in the cinema hall.
+     */
+    private final int rows;
+
+    /**
+     * The number of seats in each row of the cinema hall.
+     */
+    private final int seatsPerRow;
+
+    /**
+     * The layout of the cinema hall, or null if every position is a seat.
+     */
+    private final SeatLayout layout;
+
+    /**
+     * The number of rows visited by the last plan.
+     */
+    private int scanSteps;
+
+    /**
+     * The allocation handed to allocation strategies, reused by every plan.
+     */
+    private final SeatAllocation allocation = new SeatAllocation(this);
+
+    /**
+     * Constructs a planner over a free run index.
+     *
+     * @param freeRunIndex The free runs of the committed seats.
+     * @param seatMap      The seat map the index was built from.
+     */
+    SeatPlanner(FreeRunIndex freeRunIndex, SeatMap seatMap) {
+        this(freeRunIndex, null, seatMap);
+    }
+
+    /**
+     * Constructs a planner over a free run index that plans around held seats.
+     * The caller releases the hold of the session being planned before
+     * planning, so only the seats held by other sessions are avoided.
+     *
+     * @param freeRunIndex The free runs of the committed seats.
+     * @param heldSeats    The held seats, which must all be free in the index.
+     * @param seatMap      The seat map the index was built from.
+     */
+    SeatPlanner(FreeRunIndex freeRunIndex, SeatBitmap heldSeats, SeatMap seatMap) {
+        this.freeRunIndex = freeRunIndex;
+        this.heldSeats = heldSeats;
+        this.rows = seatMap.getRows();
+        this.seatsPerRow = seatMap.getSeatsPerRow();
+        this.layout = seatMap.getLayout();
+    }
+
+    /**
+     * Converts a designated seat such as "B03" into a packed seat index, where row
+     * A is the back row, farthest from the screen, and therefore the last array
+     * row.
+     *
+     * @param designatedSeat The seat designated by the user.
+     * @return The packed index {@code row * seatsPerRow + col} of the designated
+     *         seat.
+     * @throws IllegalArgumentException if the seat is invalid or outside the hall.
+     */
+    int locateDesignatedSeat(String designatedSeat) throws IllegalArgumentException {
+        int seat = designatedSeat == null ? SeatCodes.MALFORMED : SeatCodes.parse(designatedSeat, rows, seatsPerRow);
+        if (seat == SeatCodes.MALFORMED) {
+            logger.error("Invalid designated seat: {}", designatedSeat);
+            throw new IllegalArgumentException("Invalid designated seat: " + designatedSeat);
+        }
+        if (seat == SeatCodes.OUTSIDE_HALL) {
+            logger.error("Designated seat exceeded boundaries: {}", designatedSeat);
+            throw new IllegalArgumentException("Designated seat exceeded boundaries: " + designatedSeat);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Parsed designated seat to coordinates: row={}, col={}", seat / seatsPerRow,
+                    seat % seatsPerRow);
+        }
+        return seat;
+    }
+
+    /**
+     * Plans the seats without a designated seat, starting from the last row.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @return A 2D array of coordinates representing the planned seats.
+     */
+    int[][] planFromBackRow(int seatsToBook, SeatBitmap plannedSeats) {
+        int[] seatIndexes = new int[seatsToBook];
+        planFromBackRow(seatsToBook, plannedSeats, seatIndexes);
+        return toCoordinates(seatIndexes, seatsToBook, seatsPerRow);
+    }
+
+    /**
+     * Plans the seats without a designated seat, starting from the last row, into
+     * a buffer of packed seat indexes.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @param seatIndexes  The buffer receiving the packed seat indexes, holding
+     *                     at least {@code seatsToBook} seats.
+     * @throws IllegalArgumentException if the hall runs out of free seats.
+     */
+    void planFromBackRow(int seatsToBook, SeatBitmap plannedSeats, int[] seatIndexes) {
+        logger.trace("Planning {} seats without designated seats", seatsToBook);
+        int row = rows - 1;
+        assignSeats(seatsToBook, row, getStartColumn(row, seatsToBook, plannedSeats), plannedSeats, seatIndexes);
+    }
+
+    /**
+     * Plans the seats without a designated seat with an allocation strategy, into
+     * a buffer of packed seat indexes. If the strategy fails or plans the wrong
+     * number of seats, the seats it planned are cleared from the mask again.
+     *
+     * @param strategy     The strategy choosing the seats.
+     * @param seatsToBook  The number of seats to be booked.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @param seatIndexes  The buffer receiving the packed seat indexes, holding
+     *                     at least {@code seatsToBook} seats.
+     * @throws IllegalArgumentException if the strategy cannot plan the seats.
+     */
+    void plan(SeatAllocationStrategy strategy, int seatsToBook, SeatBitmap plannedSeats, int[] seatIndexes) {
+        scanSteps = 0;
+        allocation.reset(seatsToBook, plannedSeats, seatIndexes);
+        try {
+            strategy.allocate(allocation, seatsToBook);
+        } catch (RuntimeException e) {
+            allocation.undo();
+            throw e;
+        }
+        int allocated = allocation.getAllocatedSeatCount();
+        if (allocated != seatsToBook) {
+            allocation.undo();
+            logger.error("Seat allocation strategy planned {} of {} seats", allocated, seatsToBook);
+            throw new IllegalArgumentException("Seat allocation planned " + allocated + " of " + seatsToBook
+                    + " seats");
+        }
+    }
+
+    /**
+     * Plans a batch of parties in a single pass from the back row into a buffer
+     * of packed seat indexes, every party in a block of adjacent free seats of
+     * one row. The first party starts at the column centring the whole batch in
+     * the back row; every later party takes the first block that fits it after
+     * the party before, continuing in the rows in front and wrapping around to
+     * the back row, so the parties sit next to each other where the free seats
+     * allow it.
+     *
+     * @param partySizes   The number of seats of every party.
+     * @param totalSeats   The number of seats of all parties.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @param seatIndexes  The buffer receiving the packed seat indexes, party
+     *                     after party, holding at least {@code totalSeats} seats.
+     * @throws IllegalArgumentException if a party does not fit in any block of
+     *                                  free seats, in which case the seats planned
+     *                                  for the parties before it are cleared from
+     *                                  the mask again.
+     */
+    void planParties(int[] partySizes, int totalSeats, SeatBitmap plannedSeats, int[] seatIndexes) {
+        scanSteps = 1;
+        int row = rows - 1;
+        int col = getStartColumn(row, totalSeats, plannedSeats);
+        int assigned = 0;
+        for (int partySize : partySizes) {
+            int start = findBlock(row, col, partySize, plannedSeats);
+            // coming back to the row the search started in, the row is searched again from its first seat
+            for (int rowsVisited = 0; start < 0; ) {
+                if (++rowsVisited > rows) {
+                    for (int i = 0; i < assigned; i++) {
+                        plannedSeats.clear(seatIndexes[i] / seatsPerRow, seatIndexes[i] % seatsPerRow);
+                    }
+                    logger.error("No block of {} adjacent free seats for a party", partySize);
+                    throw new IllegalArgumentException("No block of " + partySize + " adjacent seats available");
+                }
+                row = row <= 0 ? rows - 1 : row - 1;
+                scanSteps++;
+                start = findBlock(row, 0, partySize, plannedSeats);
+            }
+            for (int c = start; c < start + partySize; c++) {
+                plannedSeats.set(row, c);
+                seatIndexes[assigned++] = row * seatsPerRow + c;
+            }
+            col = start + partySize;
+        }
+    }
+
+    /**
+     * Finds the first block of a row at or after a column with enough adjacent
+     * seats free to plan.
+     *
+     * @param row          The row to search.
+     * @param col          The column to search from.
+     * @param size         The number of adjacent seats needed.
+     * @param plannedSeats The mask recording the planned seats.
+     * @return The column of the first seat of the block, or -1 if there is none.
+     */
+    private int findBlock(int row, int col, int size, SeatBitmap plannedSeats) {
+        if (col >= seatsPerRow || size > maxFreeBlock(row)) {
+            return -1;
+        }
+        int start = nextFreeSeat(row, col, plannedSeats);
+        while (start >= 0) {
+            int end = freeBlockEnd(row, start, plannedSeats);
+            if (end - start >= size) {
+                return start;
+            }
+            start = end < seatsPerRow ? nextFreeSeat(row, end, plannedSeats) : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Assigns seats to the user based on the number of seats, row, and column.
+     * Free seats are taken from left to right starting at the given column; when
+     * a row is exhausted the search continues in the row in front, centred on the
+     * seats that are still needed.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param row          The row where the seats will be booked.
+     * @param col          The column where the seats will be booked.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @return A 2D array of coordinates representing the planned seats.
+     * @throws IllegalArgumentException if the hall runs out of free seats.
+     */
+    int[][] assignSeats(int seatsToBook, int row, int col, SeatBitmap plannedSeats) {
+        int[] seatIndexes = new int[seatsToBook];
+        assignSeats(seatsToBook, row, col, plannedSeats, seatIndexes);
+        return toCoordinates(seatIndexes, seatsToBook, seatsPerRow);
+    }
+
+    /**
+     * Assigns seats starting at the given row and column into a buffer of packed
+     * seat indexes, following the same rules as
+     * {@link #assignSeats(int, int, int, SeatBitmap)}.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param row          The row where the seats will be booked.
+     * @param col          The column where the seats will be booked.
+     * @param plannedSeats The mask recording the planned seats, which must all be
+     *                     free in the index.
+     * @param seatIndexes  The buffer receiving the packed seat indexes, holding
+     *                     at least {@code seatsToBook} seats.
+     * @throws IllegalArgumentException if the hall runs out of free seats.
+     */
+    void assignSeats(int seatsToBook, int row, int col, SeatBitmap plannedSeats, int[] seatIndexes) {
+        scanSteps = 0;
+        assignSeats(seatsToBook, row, col, plannedSeats, seatIndexes, 0);
+    }
+
+    /**
+     * Assigns the seats still needed after some seats were already assigned,
+     * following the same rules as {@link #assignSeats(int, int, int, SeatBitmap)}
+     * and adding the rows visited to the scan steps.
+     *
+     * @param seatsToBook  The number of seats to be booked.
+     * @param row          The row to continue in.
+     * @param col          The column to continue from.
+     * @param plannedSeats The mask recording the planned seats.
+     * @param seatIndexes  The buffer of packed seat indexes.
+     * @param assigned     The number of seats already in the buffer.
+     * @throws IllegalArgumentException if the hall runs out of free seats.
+     */
+    void assignSeats(int seatsToBook, int row, int col, SeatBitmap plannedSeats, int[] seatIndexes, int assigned) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Assigning {} seat(s) starting at row {}, col {}", seatsToBook - assigned, row, col);
+        }
+        int rowsWithoutSeats = 0;
+        while (true) {
+            scanSteps++;
+            int assignedBefore = assigned;
+            assigned = assignSeatsInRow(row, col, seatIndexes, seatsToBook, assigned, plannedSeats);
+            if (assigned == seatsToBook) {
+                return;
+            }
+            rowsWithoutSeats = assigned == assignedBefore ? rowsWithoutSeats + 1 : 0;
+            if (rowsWithoutSeats > rows) {
+                logger.error("Ran out of free seats after assigning {} of {}", assigned, seatsToBook);
+                throw new IllegalArgumentException("Not enough seats available to book: " + seatsToBook);
+            }
+            row = row <= 0 ? rows - 1 : row - 1;
+            col = getStartColumn(row, seatsToBook - assigned, plannedSeats);
+        }
+    }
+
+    /**
+     * Gets the number of rows visited by the last plan, the row it started in
+     * included.
+     *
+     * @return The number of rows visited.
+     */
+    int getScanSteps() {
+        return scanSteps;
+    }
+
+    /**
+     * Plans the free seats of a row from the given column to the end of the row,
+     * using the free run index to jump straight to each free block.
+     *
+     * @param row          The row to assign seats in.
+     * @param col          The column to start from.
+     * @param seatIndexes  The packed seat indexes assigned so far.
+     * @param seatsToBook  The number of seats to be booked.
+     * @param assigned     The number of seats assigned so far.
+     * @param plannedSeats The mask recording the planned seats.
+     * @return The number of seats assigned after this row.
+     */
+    private int assignSeatsInRow(int row, int col, int[] seatIndexes, int seatsToBook, int assigned,
+            SeatBitmap plannedSeats) {
+        int runCount = freeRunIndex.getRunCount(row);
+        for (int run = freeRunIndex.findRun(row, col); run < runCount && assigned < seatsToBook; run++) {
+            int end = freeRunIndex.getRunEnd(row, run);
+            for (int c = Math.max(col, freeRunIndex.getRunStart(row, run)); c < end && assigned < seatsToBook; c++) {
+                if (!plannedSeats.get(row, c) && (heldSeats == null || !heldSeats.get(row, c))) {
+                    plannedSeats.set(row, c);
+                    seatIndexes[assigned++] = row * seatsPerRow + c;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Converts packed seat indexes into row and column coordinates.
+     *
+     * @param seatIndexes The packed seat indexes.
+     * @param count       The number of seats to convert.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return A 2D array of coordinates of the seats.
+     */
+    static int[][] toCoordinates(int[] seatIndexes, int count, int seatsPerRow) {
+        int[][] coords = new int[count][];
+        for (int i = 0; i < count; i++) {
+            coords[i] = new int[] { seatIndexes[i] / seatsPerRow, seatIndexes[i] % seatsPerRow };
+        }
+        return coords;
+    }
+
+    /**
+     * Gets the column to start from in a row so that the remaining seats are
+     * centred on the free seats of the row, or the first column if the row cannot
+     * hold them all. In a hall with a seat layout, columns count from the first
+     * seat of the row, so the seats of a shorter row are centred too.
+     *
+     * @param row            The row to start in.
+     * @param remainingSeats The number of remaining seats to be booked.
+     * @param plannedSeats   The mask recording the planned seats.
+     * @return The starting column.
+     */
+    int getStartColumn(int row, int remainingSeats, SeatBitmap plannedSeats) {
+        int availableSeatsInRow = getFreeSeats(row, plannedSeats);
+        int firstSeat = layout == null ? 0 : layout.getFirstSeat(row);
+        return firstSeat + (remainingSeats < availableSeatsInRow ? availableSeatsInRow / 2 - remainingSeats / 2 : 0);
+    }
+
+    /**
+     * Gets the number of seats of a row that are free to plan: not booked, held
+     * by another session or planned.
+     *
+     * @param row          The row to check.
+     * @param plannedSeats The mask recording the planned seats.
+     * @return The number of free seats in the row.
+     */
+    int getFreeSeats(int row, SeatBitmap plannedSeats) {
+        int freeSeats = freeRunIndex.getFreeSeats(row) - plannedSeats.cardinality(row);
+        if (heldSeats != null) {
+            freeSeats -= heldSeats.cardinality(row);
+        }
+        return freeSeats;
+    }
+
+    /**
+     * Finds the first seat of a row at or after a column that is free to plan.
+     *
+     * @param row          The row to search.
+     * @param col          The column to search from.
+     * @param plannedSeats The mask recording the planned seats.
+     * @return The column of the seat, or -1 if there is none.
+     */
+    int nextFreeSeat(int row, int col, SeatBitmap plannedSeats) {
+        int runCount = freeRunIndex.getRunCount(row);
+        for (int run = freeRunIndex.findRun(row, col); run < runCount; run++) {
+            int end = freeRunIndex.getRunEnd(row, run);
+            for (int c = Math.max(col, freeRunIndex.getRunStart(row, run)); c < end; c++) {
+                if (!plannedSeats.get(row, c) && (heldSeats == null || !heldSeats.get(row, c))) {
+                    return c;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets an upper bound of the longest block of free seats in a row: every
+     * free run but the longest holds at least one seat.
+     *
+     * @param row The row to check.
+     * @return The bound, or 0 if the row has no free seats.
+     */
+    int maxFreeBlock(int row) {
+        int runCount = freeRunIndex.getRunCount(row);
+        return runCount == 0 ? 0 : freeRunIndex.getFreeSeats(row) - runCount + 1;
+    }
+
+    /**
+     * Finds the end of the block of seats free to plan that starts at a free
+     * seat.
+     *
+     * @param row          The row of the block.
+     * @param col          The column of a seat free to plan.
+     * @param plannedSeats The mask recording the planned seats.
+     * @return The column after the last seat of the block.
+     */
+    int freeBlockEnd(int row, int col, SeatBitmap plannedSeats) {
+        int end = freeRunIndex.getRunEnd(row, freeRunIndex.findRun(row, col));
+        int planned = plannedSeats.nextMarkedSeat(row, col);
+        if (planned >= 0 && planned < end) {
+            end = planned;
+        }
+        if (heldSeats != null) {
+            int held = heldSeats.nextMarkedSeat(row, col);
+            if (held >= 0 && held < end) {
+                end = held;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Counts rows visited by an allocation strategy as scan steps.
+     *
+     * @param steps The number of rows visited.
+     */
+    void countScanSteps(int steps) {
+        scanSteps += steps;
+    }
+
+    /**
+     * Gets the number of rows in the cinema hall.
+     *
+     * @return The number of rows.
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of seats per row in the cinema hall.
+     *
+     * @return The number of seats per row.
+     */
+    int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+}
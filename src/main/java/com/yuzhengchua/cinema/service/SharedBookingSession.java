@@ -0,0 +1,249 @@
+package com.yuzhengchua.cinema.service;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code SharedBookingSession} class is the {@link BookingService} of one
+ * customer among many sharing a {@link BookingServiceImpl}, such as one of many
+ * kiosks. Every customer plans in a planning session of their own, and every
+ * call runs while holding the {@link BookingServiceImpl#getLock() lock} of the
+ * shared service, so customers can book from different threads at the same
+ * time. Calls that record bookings release the lock before waiting for them
+ * to be on disk, so concurrent customers share an fsync.
+ * <p>
+ * The booking ID shown to a customer before confirming is reserved for them,
+ * so it stays the ID of their booking when other customers confirm first. A
+ * reserved ID the customer never confirms is given back when the session
+ * closes, so abandoned bookings leave no gaps in the booking IDs.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class SharedBookingSession implements BookingService {
+
+    /**
+     * The booking service shared by every session.
+     */
+    private final BookingServiceImpl bookingService;
+
+    /**
+     * The lock of the shared booking service.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The planning session of the customer.
+     */
+    private final PlanningSession session;
+
+    /**
+     * A view of the booking IDs of the shared service read under its lock.
+     */
+    private final Map<String, int[][]> bookingIdCache = new LockedBookingIds();
+
+    /**
+     * The booking ID reserved for the next booking of the customer, or null.
+     */
+    private String reservedBookingId;
+
+    /**
+     * Opens a session on a shared booking service.
+     *
+     * @param bookingService The shared booking service.
+     */
+    public SharedBookingSession(BookingServiceImpl bookingService) {
+        this.bookingService = bookingService;
+        this.lock = bookingService.getLock();
+        lock.lock();
+        try {
+            this.session = bookingService.openSession();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books the given seats, which may be the plan of the customer or seats of
+     * their own choosing, and releases the hold of their plan.
+     *
+     * @param plannedCoordinates The coordinates of the seats to book.
+     * @return true if the booking is confirmed successfully.
+     * @throws IllegalArgumentException if the coordinates are invalid or a seat is
+     *                                  booked or held by another customer.
+     */
+    @Override
+    public boolean confirmBooking(int[][] plannedCoordinates) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            String bookingId = reservedBookingId != null ? reservedBookingId : bookingService.reserveBookingId();
+            reservedBookingId = bookingId;
+            boolean confirmed = bookingService.confirmBooking(session, plannedCoordinates, bookingId);
+            reservedBookingId = null;
+            return confirmed;
+        } finally {
+            bookingService.unlockAndAwaitDurable();
+        }
+    }
+
+    @Override
+    public void cancelBooking(String bookingId) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            bookingService.cancelBooking(bookingId);
+        } finally {
+            bookingService.unlockAndAwaitDurable();
+        }
+    }
+
+    @Override
+    public int[][] planSeats(int seatsToBook, String designatedSeats) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            return bookingService.planSeats(session, seatsToBook, designatedSeats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String[] bookBatch(int[] partySizes) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            return bookingService.bookBatch(partySizes);
+        } finally {
+            bookingService.unlockAndAwaitDurable();
+        }
+    }
+
+    @Override
+    public boolean checkSeatsMoreThanZero(int seatsToBook) {
+        return bookingService.checkSeatsMoreThanZero(seatsToBook);
+    }
+
+    @Override
+    public boolean checkSeatsAvailability(int seatsToBook) {
+        lock.lock();
+        try {
+            return bookingService.checkSeatsAvailability(session, seatsToBook);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String checkBooking(String bookingId) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            return bookingService.checkBooking(bookingId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String printSeatMapPlan() {
+        lock.lock();
+        try {
+            return bookingService.printSeatMapPlan(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the booking ID of the next booking of the customer, reserving it on
+     * first use.
+     *
+     * @return The booking ID.
+     */
+    @Override
+    public String getBookingId() {
+        lock.lock();
+        try {
+            if (reservedBookingId == null) {
+                reservedBookingId = bookingService.reserveBookingId();
+            }
+            return reservedBookingId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getHoldMillis() {
+        return bookingService.getHoldMillis();
+    }
+
+    @Override
+    public Map<String, int[][]> getBookingIdCache() {
+        return bookingIdCache;
+    }
+
+    /**
+     * Closes the session, releasing the seats held by its plan and giving back
+     * the booking ID reserved for it, if any.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (reservedBookingId != null) {
+                bookingService.releaseBookingId(reservedBookingId);
+                reservedBookingId = null;
+            }
+            bookingService.closeSession(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A view of the booking IDs of the shared service: lookups run under its
+     * lock, and iteration runs over a copy taken under it.
+     */
+    private final class LockedBookingIds extends AbstractMap<String, int[][]> {
+
+        @Override
+        public boolean containsKey(Object key) {
+            lock.lock();
+            try {
+                return bookingService.getBookingIdCache().containsKey(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int[][] get(Object key) {
+            lock.lock();
+            try {
+                return bookingService.getBookingIdCache().get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            lock.lock();
+            try {
+                return bookingService.getBookingIdCache().size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<String, int[][]>> entrySet() {
+            lock.lock();
+            try {
+                return new HashMap<>(bookingService.getBookingIdCache()).entrySet();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.yuzhengchua.cinema.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.yuzhengchua.cinema.metrics.BookingMetrics;
+import com.yuzhengchua.cinema.metrics.MeterRegistry;
+import com.yuzhengchua.cinema.models.SeatLayout;
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.models.Showtime;
+import com.yuzhengchua.cinema.persistence.BookingStore;
+import com.yuzhengchua.cinema.util.InputValidator;
+
+/**
+ * The {@code ShowtimeRegistry} class owns the seat maps of every screening on
+ * sale, keyed by screen and showtime. Screenings can be registered, looked up
+ * and removed concurrently; lookup by {@link Showtime} is a single hash map
+ * access.
+ * <p>
+ * A screening keeps only its packed seat map resident. Its booking service, with
+ * the planning and hold state that goes with it, is created on first use, so a
+ * full week of screenings stays compact. Aggregate availability is summed from
+ * the per-screening seat counters, without reading any seats.
+ * </p>
+ * <p>
+ * A registry created with a log directory keeps a {@link BookingStore} per
+ * screening in that directory. Registering a screening whose store already
+ * exists recovers it from its latest snapshot and log, so the bookings of a
+ * screening survive a restart.
+ * </p>
+ *
+ * @since 1.1
+ */
+public class ShowtimeRegistry implements Closeable {
+    /**
+     * Logger
+     */
+    private static final org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager
+            .getLogger(ShowtimeRegistry.class);
+
+    /**
+     * The start time format used in log file names.
+     */
+    private static final DateTimeFormatter LOG_FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm");
+
+    /**
+     * The name of the gauge of the share of the seats of a screening booked.
+     */
+    private static final String OCCUPANCY_GAUGE = "booking.occupancy";
+
+    /**
+     * A screening registered in the registry.
+     */
+    public static final class Screening {
+        /**
+         * The screen and start time of the screening.
+         */
+        private final Showtime showtime;
+
+        /**
+         * The title of the movie being shown.
+         */
+        private final String title;
+
+        /**
+         * The seat map of the screening.
+         */
+        private final SeatMap seatMap;
+
+        /**
+         * The booking service of the screening, created on first use.
+         */
+        private volatile BookingServiceImpl bookingService;
+
+        /**
+         * The booking store of the screening, or null if bookings are not logged.
+         */
+        private BookingStore bookingStore;
+
+        /**
+         * The metrics the booking service records in.
+         */
+        private final BookingMetrics metrics;
+
+        private Screening(Showtime showtime, String title, SeatMap seatMap, BookingMetrics metrics) {
+            this.showtime = showtime;
+            this.title = title;
+            this.seatMap = seatMap;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Gets the screen and start time of the screening.
+         *
+         * @return The showtime.
+         */
+        public Showtime getShowtime() {
+            return showtime;
+        }
+
+        /**
+         * Gets the title of the movie being shown.
+         *
+         * @return The movie title.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets the seat map of the screening.
+         *
+         * @return The seat map.
+         */
+        public SeatMap getSeatMap() {
+            return seatMap;
+        }
+
+        /**
+         * Gets the booking service of the screening, creating it on first use. The
+         * booking service is not thread-safe; callers sharing a screening must
+         * coordinate access to it.
+         *
+         * @return The booking service.
+         */
+        public BookingServiceImpl getBookingService() {
+            BookingServiceImpl service = bookingService;
+            if (service == null) {
+                synchronized (this) {
+                    service = bookingService;
+                    if (service == null) {
+                        service = new BookingServiceImpl(seatMap);
+                        service.setMetrics(metrics);
+                        bookingService = service;
+                    }
+                }
+            }
+            return service;
+        }
+    }
+
+    /**
+     * The screenings by showtime.
+     */
+    private final Map<Showtime, Screening> screenings = new ConcurrentHashMap<>();
+
+    /**
+     * The screenings of every screen, ordered by start time.
+     */
+    private final Map<String, NavigableMap<LocalDateTime, Screening>> screens = new ConcurrentHashMap<>();
+
+    /**
+     * The directory of the booking logs, or null if bookings are not logged.
+     */
+    private final Path logDirectory;
+
+    /**
+     * The registry of the occupancy gauges of the screenings.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The metrics shared by the booking services of all screenings.
+     */
+    private final BookingMetrics metrics;
+
+    /**
+     * Constructs a registry keeping bookings in memory only.
+     */
+    public ShowtimeRegistry() {
+        this.logDirectory = null;
+        this.meterRegistry = MeterRegistry.NOOP;
+        this.metrics = BookingMetrics.NOOP;
+    }
+
+    /**
+     * Constructs a registry recording the bookings of every screening in a
+     * booking log in the given directory.
+     *
+     * @param logDirectory The directory of the booking logs, created if needed.
+     * @throws IOException if the directory cannot be created.
+     */
+    public ShowtimeRegistry(Path logDirectory) throws IOException {
+        this(logDirectory, MeterRegistry.NOOP);
+    }
+
+    /**
+     * Constructs a registry recording the metrics of the booking operations of
+     * every screening, and a {@code booking.occupancy} gauge per screening
+     * tagged with its screen and start time, in a meter registry.
+     *
+     * @param logDirectory  The directory of the booking logs, created if needed,
+     *                      or null to keep bookings in memory only.
+     * @param meterRegistry The registry to record metrics in.
+     * @throws IOException if the directory cannot be created.
+     */
+    public ShowtimeRegistry(Path logDirectory, MeterRegistry meterRegistry) throws IOException {
+        this.logDirectory = logDirectory == null ? null : Files.createDirectories(logDirectory);
+        this.meterRegistry = meterRegistry;
+        this.metrics = meterRegistry == MeterRegistry.NOOP ? BookingMetrics.NOOP : new BookingMetrics(meterRegistry);
+    }
+
+    /**
+     * Registers a new screening with an empty seat map.
+     *
+     * @param showtime    The screen and start time of the screening.
+     * @param title       The title of the movie being shown.
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return The registered screening.
+     * @throws IllegalArgumentException if the hall size is invalid, the showtime
+     *                                  is already registered or its booking log
+     *                                  belongs to a hall of another size.
+     * @throws UncheckedIOException     if the booking log cannot be opened.
+     */
+    public Screening register(Showtime showtime, String title, int rows, int seatsPerRow)
+            throws IllegalArgumentException {
+        if (!InputValidator.isValidRowAndSeats(rows, seatsPerRow)) {
+            throw new IllegalArgumentException("Invalid seating map: " + rows + " x " + seatsPerRow);
+        }
+        return register(showtime, title, new SeatMap(rows, seatsPerRow));
+    }
+
+    /**
+     * Registers a new screening in a hall with aisles, missing seats or curved
+     * rows, with every seat available.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @param title    The title of the movie being shown.
+     * @param layout   The seat layout of the cinema hall.
+     * @return The registered screening.
+     * @throws IllegalArgumentException if the showtime is already registered or
+     *                                  its booking log belongs to a hall of
+     *                                  another size.
+     * @throws UncheckedIOException     if the booking log cannot be opened.
+     */
+    public Screening register(Showtime showtime, String title, SeatLayout layout) throws IllegalArgumentException {
+        return register(showtime, title, new SeatMap(layout));
+    }
+
+    private Screening register(Showtime showtime, String title, SeatMap seatMap) throws IllegalArgumentException {
+        Screening screening = new Screening(showtime, title, seatMap, metrics);
+        if (screenings.putIfAbsent(showtime, screening) != null) {
+            logger.error("Showtime already registered: {}", showtime);
+            throw new IllegalArgumentException("Showtime already registered: " + showtime);
+        }
+        if (logDirectory != null) {
+            try {
+                screening.bookingStore = screening.getBookingService().openBookingLog(getLogFile(showtime));
+            } catch (IOException e) {
+                screenings.remove(showtime, screening);
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                screenings.remove(showtime, screening);
+                throw e;
+            }
+        }
+        screens.computeIfAbsent(showtime.getScreen(), screen -> new ConcurrentSkipListMap<>())
+                .put(showtime.getStartTime(), screening);
+        double capacity = seatMap.getCapacity();
+        meterRegistry.gauge(OCCUPANCY_GAUGE, () -> 1 - seatMap.getAvailableSeats() / capacity,
+                occupancyTags(showtime));
+        logger.info("Registered {} for {} with {} rows and {} seats", title, showtime, seatMap.getRows(),
+                seatMap.getCapacity());
+        return screening;
+    }
+
+    /**
+     * Gets a registered screening.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @return The screening, or null if it is not registered.
+     */
+    public Screening get(Showtime showtime) {
+        return screenings.get(showtime);
+    }
+
+    /**
+     * Gets a registered screening.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @return The screening.
+     * @throws IllegalArgumentException if the showtime is not registered.
+     */
+    public Screening getScreening(Showtime showtime) throws IllegalArgumentException {
+        Screening screening = screenings.get(showtime);
+        if (screening == null) {
+            logger.error("Showtime not found: {}", showtime);
+            throw new IllegalArgumentException("Showtime not found: " + showtime);
+        }
+        return screening;
+    }
+
+    /**
+     * Removes a screening from sale.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @return The removed screening, or null if it was not registered.
+     */
+    public Screening remove(Showtime showtime) {
+        Screening screening = screenings.remove(showtime);
+        if (screening != null) {
+            NavigableMap<LocalDateTime, Screening> screen = screens.get(showtime.getScreen());
+            if (screen != null) {
+                screen.remove(showtime.getStartTime(), screening);
+            }
+            closeLog(screening);
+            meterRegistry.remove(OCCUPANCY_GAUGE, occupancyTags(showtime));
+            logger.info("Removed screening {}", showtime);
+        }
+        return screening;
+    }
+
+    /**
+     * Gets the tags of the occupancy gauge of a screening.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @return The tags, as alternating keys and values.
+     */
+    private static String[] occupancyTags(Showtime showtime) {
+        return new String[] { "screen", showtime.getScreen(), "start", showtime.getStartTime().toString() };
+    }
+
+    /**
+     * Gets the file the booking log segments and snapshots of a screening are
+     * named after.
+     *
+     * @param showtime The screen and start time of the screening.
+     * @return The log file in the log directory, or null if bookings are not
+     *         logged.
+     */
+    public Path getLogFile(Showtime showtime) {
+        if (logDirectory == null) {
+            return null;
+        }
+        String screen = showtime.getScreen().replaceAll("[^A-Za-z0-9-]", "_");
+        return logDirectory.resolve(screen + "_" + LOG_FILE_TIME.format(showtime.getStartTime()) + ".wal");
+    }
+
+    /**
+     * Closes the booking logs of all screenings.
+     */
+    @Override
+    public void close() {
+        for (Screening screening : screenings.values()) {
+            closeLog(screening);
+        }
+    }
+
+    /**
+     * Closes the booking log of a screening, if any.
+     *
+     * @param screening The screening.
+     */
+    private static void closeLog(Screening screening) {
+        if (screening.bookingStore != null) {
+            try {
+                screening.bookingStore.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close booking log of {}", screening.showtime, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the screenings of a screen ordered by start time.
+     *
+     * @param screen The name of the screen.
+     * @return The screenings of the screen.
+     */
+    public List<Screening> getScreenings(String screen) {
+        NavigableMap<LocalDateTime, Screening> screenings = screens.get(screen);
+        if (screenings == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(screenings.values());
+    }
+
+    /**
+     * Gets the number of registered screenings.
+     *
+     * @return The number of screenings.
+     */
+    public int size() {
+        return screenings.size();
+    }
+
+    /**
+     * Gets the number of available seats across all screenings.
+     *
+     * @return The available seats of all screenings.
+     */
+    public long getAvailableSeats() {
+        long availableSeats = 0;
+        for (Screening screening : screenings.values()) {
+            availableSeats += screening.seatMap.getAvailableSeats();
+        }
+        return availableSeats;
+    }
+
+    /**
+     * Gets the number of available seats across the screenings of a screen.
+     *
+     * @param screen The name of the screen.
+     * @return The available seats of the screen.
+     */
+    public long getAvailableSeats(String screen) {
+        NavigableMap<LocalDateTime, Screening> screenings = screens.get(screen);
+        long availableSeats = 0;
+        if (screenings != null) {
+            for (Screening screening : screenings.values()) {
+                availableSeats += screening.seatMap.getAvailableSeats();
+            }
+        }
+        return availableSeats;
+    }
+
+    /**
+     * Gets the number of available seats across the screenings starting in a time
+     * window, over all screens.
+     *
+     * @param from The inclusive start of the window.
+     * @param to   The exclusive end of the window.
+     * @return The available seats of the screenings in the window.
+     */
+    public long getAvailableSeats(LocalDateTime from, LocalDateTime to) {
+        long availableSeats = 0;
+        for (NavigableMap<LocalDateTime, Screening> screenings : screens.values()) {
+            for (Screening screening : screenings.subMap(from, true, to, false).values()) {
+                availableSeats += screening.seatMap.getAvailableSeats();
+            }
+        }
+        return availableSeats;
+    }
+
+    /**
+     * Gets the total number of seats across all screenings.
+     *
+     * @return The capacity of all screenings.
+     */
+    public long getCapacity() {
+        long capacity = 0;
+        for (Screening screening : screenings.values()) {
+            capacity += screening.seatMap.getCapacity();
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yuzhengchua.cinema.util;
+
+/**
+ * The {@code BookingIds} class converts between booking numbers and the booking
+ * IDs shown to users, such as {@code GIC0001}: the prefix {@code GIC} followed
+ * by the booking number, zero-padded to four digits.
+ * <p>
+ * IDs are parsed in a single pass over their characters, without allocating and
+ * without exceptions, so looking a booking up by its ID costs no garbage;
+ * failures are reported as {@link #MALFORMED}.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class BookingIds {
+
+    /**
+     * The result of parsing a string that is not a booking ID.
+     */
+    public static final int MALFORMED = -1;
+
+    /**
+     * The prefix of every booking ID.
+     */
+    public static final String PREFIX = "GIC";
+
+    /**
+     * The number of digits booking numbers are zero-padded to.
+     */
+    private static final int MIN_DIGITS = 4;
+
+    /**
+     * The number of digits of the highest booking number.
+     */
+    private static final int MAX_DIGITS = 10;
+
+    /**
+     * Private constructor to prevent instantiation, as this is a utility class.
+     *
+     * @throws UnsupportedOperationException If this constructor is called.
+     */
+    private BookingIds() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Formats a booking number as a booking ID.
+     *
+     * @param bookingNumber The booking number, which must be positive.
+     * @return The booking ID.
+     */
+    public static String format(int bookingNumber) {
+        int digits = 1;
+        for (int n = bookingNumber; n >= 10; n /= 10) {
+            digits++;
+        }
+        char[] id = new char[PREFIX.length() + Math.max(digits, MIN_DIGITS)];
+        PREFIX.getChars(0, PREFIX.length(), id, 0);
+        int n = bookingNumber;
+        for (int i = id.length - 1; i >= PREFIX.length(); i--) {
+            id[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        return new String(id);
+    }
+
+    /**
+     * Parses the booking number out of a booking ID. Only IDs in the form
+     * produced by {@link #format(int)} are accepted: four digits zero-padded, or
+     * more without leading zeros.
+     *
+     * @param bookingId The booking ID, which may be null.
+     * @return The booking number, or {@link #MALFORMED} if the string is not a
+     *         booking ID.
+     */
+    public static int parse(String bookingId) {
+        if (bookingId == null || !bookingId.startsWith(PREFIX)) {
+            return MALFORMED;
+        }
+        int digits = bookingId.length() - PREFIX.length();
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS
+                || (digits > MIN_DIGITS && bookingId.charAt(PREFIX.length()) == '0')) {
+            return MALFORMED;
+        }
+        long bookingNumber = 0;
+        for (int i = PREFIX.length(); i < bookingId.length(); i++) {
+            char c = bookingId.charAt(i);
+            if (c < '0' || c > '9') {
+                return MALFORMED;
+            }
+            bookingNumber = bookingNumber * 10 + (c - '0');
+        }
+        return bookingNumber > 0 && bookingNumber <= Integer.MAX_VALUE ? (int) bookingNumber : MALFORMED;
+    }
+}
@@ -0,0 +1,254 @@
+package com.yuzhengchua.cinema.util;
+
+import java.util.function.Consumer;
+
+/**
+ * The {@code HashedTimerWheel} class schedules timeouts in a ring of buckets,
+ * one bucket per tick. Scheduling and cancelling a timeout are O(1), and
+ * advancing the wheel only visits the buckets of the ticks that have passed.
+ * <p>
+ * Timeouts are intrusive: the caller's own objects extend {@link Timeout} and
+ * are linked directly into the buckets, so a timeout can be rescheduled any
+ * number of times without allocating. The wheel is driven by the caller, who
+ * passes the current time to {@link #advance(long, Consumer)}; it starts no
+ * threads and is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of the timeouts held by the wheel.
+ * @since 1.1
+ */
+public class HashedTimerWheel<T extends HashedTimerWheel.Timeout> {
+
+    /**
+     * A node that can be scheduled on a {@link HashedTimerWheel}.
+     */
+    public abstract static class Timeout {
+        /**
+         * The time at which the timeout expires.
+         */
+        private long deadline;
+
+        /**
+         * The tick at which the timeout expires.
+         */
+        private long deadlineTick;
+
+        /**
+         * The bucket the timeout is linked into, or -1 if it is not scheduled.
+         */
+        private int bucket = -1;
+
+        /**
+         * The previous timeout in the bucket.
+         */
+        private Timeout prev;
+
+        /**
+         * The next timeout in the bucket.
+         */
+        private Timeout next;
+
+        /**
+         * Checks whether the timeout is scheduled on a wheel.
+         *
+         * @return true if the timeout is scheduled.
+         */
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+
+        /**
+         * Gets the time at which the timeout expires.
+         *
+         * @return The deadline of the last schedule.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    /**
+     * The duration of one tick.
+     */
+    private final long tickDuration;
+
+    /**
+     * The time of tick zero.
+     */
+    private final long startTime;
+
+    /**
+     * The heads of the bucket lists.
+     */
+    private final Timeout[] buckets;
+
+    /**
+     * Mask turning a tick into a bucket index.
+     */
+    private final int mask;
+
+    /**
+     * The last tick processed by {@link #advance(long, Consumer)}.
+     */
+    private long currentTick;
+
+    /**
+     * The number of scheduled timeouts.
+     */
+    private int size;
+
+    /**
+     * Constructs an empty timer wheel.
+     *
+     * @param tickDuration  The duration of one tick, in the unit of the times
+     *                      passed to the wheel.
+     * @param ticksPerWheel The number of buckets, rounded up to a power of two.
+     * @param startTime     The current time.
+     * @throws IllegalArgumentException if the tick duration or the number of
+     *                                  buckets is not positive.
+     */
+    public HashedTimerWheel(long tickDuration, int ticksPerWheel, long startTime) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("Invalid ticks per wheel: " + ticksPerWheel);
+        }
+        int wheelSize = Integer.highestOneBit(ticksPerWheel);
+        if (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.tickDuration = tickDuration;
+        this.startTime = startTime;
+        this.buckets = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+    }
+
+    /**
+     * Schedules a timeout, moving it if it is already scheduled. A deadline in
+     * the past expires on the next tick.
+     *
+     * @param timeout  The timeout to schedule.
+     * @param deadline The time at which the timeout expires.
+     */
+    public void schedule(T timeout, long deadline) {
+        cancel(timeout);
+        Timeout node = timeout;
+        long deadlineTick = Math.max(-Math.floorDiv(startTime - deadline, tickDuration), currentTick + 1);
+        node.deadline = deadline;
+        node.deadlineTick = deadlineTick;
+        node.bucket = (int) (deadlineTick & mask);
+        Timeout head = buckets[node.bucket];
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        buckets[node.bucket] = node;
+        size++;
+    }
+
+    /**
+     * Cancels a timeout.
+     *
+     * @param timeout The timeout to cancel.
+     * @return true if the timeout was scheduled.
+     */
+    public boolean cancel(T timeout) {
+        if (!timeout.isScheduled()) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Advances the wheel to the given time and hands every timeout whose
+     * deadline has passed to the callback. Each expired timeout is unscheduled
+     * before it is handed over, so the callback may reschedule the timeout it
+     * receives.
+     *
+     * @param now     The current time.
+     * @param expired The callback receiving the expired timeouts.
+     * @return The number of expired timeouts.
+     */
+    @SuppressWarnings("unchecked")
+    public int advance(long now, Consumer<? super T> expired) {
+        long nowTick = Math.floorDiv(now - startTime, tickDuration);
+        if (nowTick <= currentTick) {
+            return 0;
+        }
+        Timeout expiredHead = null;
+        if (nowTick - currentTick > mask) {
+            // A full turn or more has passed: every bucket is due once
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                expiredHead = collectExpired(bucket, nowTick, expiredHead);
+            }
+        } else {
+            for (long tick = currentTick + 1; tick <= nowTick; tick++) {
+                expiredHead = collectExpired((int) (tick & mask), tick, expiredHead);
+            }
+        }
+        currentTick = nowTick;
+        int count = 0;
+        while (expiredHead != null) {
+            Timeout timeout = expiredHead;
+            expiredHead = timeout.next;
+            timeout.next = null;
+            expired.accept((T) timeout);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of scheduled timeouts.
+     *
+     * @return The number of scheduled timeouts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Unlinks the expired timeouts of a bucket and pushes them onto a list.
+     *
+     * @param bucket      The bucket to scan.
+     * @param tick        The tick being processed.
+     * @param expiredHead The head of the expired list.
+     * @return The new head of the expired list.
+     */
+    private Timeout collectExpired(int bucket, long tick, Timeout expiredHead) {
+        Timeout timeout = buckets[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineTick <= tick) {
+                unlink(timeout);
+                timeout.next = expiredHead;
+                expiredHead = timeout;
+            }
+            timeout = next;
+        }
+        return expiredHead;
+    }
+
+    /**
+     * Removes a scheduled timeout from its bucket.
+     *
+     * @param timeout The timeout to remove.
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+}
@@ -74,16 +74,7 @@ public class InputValidator {
      */
     public static boolean isNumeric(String str) {
         logger.debug("Checking if value is numeric");
-        if (str != null) {
-            try {
-                Integer.parseInt(str);
-            } catch (NumberFormatException e) {
-                return false;
-            }
-        } else {
-            return false;
-        }
-        return true;
+        return SeatCodes.isInteger(str);
     }
 
     /**
@@ -109,15 +100,16 @@ public class InputValidator {
      * Validates the format of a chosen seat. The seat format must match a specific
      * pattern,
      * which allows seats to be represented as:
-     * - A letter followed by a number (e.g., A1, B12).
-     * - Specific patterns (e.g., A01, A50).
+     * - A row label of one or two letters followed by a seat number from 1 to
+     * 999 (e.g., A1, B12, AB120).
+     * - Seat numbers padded with zeros to two or three digits (e.g., A01, A001).
      * 
      * @param seat The seat string to be validated.
      * @return {@code true} if the seat format is valid; {@code false} otherwise.
      */
     public static boolean isValidChosenSeat(String seat) {
         logger.debug("Validating chosen seat format: {}", seat);
-        if (seat != null && seat.matches("^[A-Z]0[1-9]$|^[A-Z][1-9]$|^[A-Z][1-4][\\d]$|^[A-Z]50$")) {
+        if (SeatCodes.isValid(seat)) {
             return true;
         } else {
             logger.error("Invalid seat format: {}", seat);
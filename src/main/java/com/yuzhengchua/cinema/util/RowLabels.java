@@ -0,0 +1,103 @@
+package com.yuzhengchua.cinema.util;
+
+/**
+ * The {@code RowLabels} class converts between row labels and row indexes. Rows
+ * are labelled from the back row, farthest from the screen, like spreadsheet
+ * columns: {@code A} to {@code Z}, then {@code AA}, {@code AB} and so on up to
+ * {@code ZZ}.
+ * <p>
+ * Indexes here count from row A; the seat map stores its rows from the front
+ * row, closest to the screen, so the row at index {@code r} of a hall with
+ * {@code rows} rows is labelled {@code label(rows - 1 - r)}.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class RowLabels {
+
+    /**
+     * The number of letters a row label can use.
+     */
+    private static final int LETTERS = 26;
+
+    /**
+     * Private constructor to prevent instantiation, as this is a utility class.
+     *
+     * @throws UnsupportedOperationException If this constructor is called.
+     */
+    private RowLabels() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Gets the label of a row.
+     *
+     * @param index The index of the row, counting from row A.
+     * @return The label of the row, such as {@code A} or {@code AB}.
+     */
+    public static String label(int index) {
+        if (index < LETTERS) {
+            return String.valueOf((char) ('A' + index));
+        }
+        char[] label = new char[length(index)];
+        int n = index + 1;
+        for (int i = label.length - 1; i >= 0; i--) {
+            n--;
+            label[i] = (char) ('A' + n % LETTERS);
+            n /= LETTERS;
+        }
+        return new String(label);
+    }
+
+    /**
+     * Gets the number of letters in the label of a row.
+     *
+     * @param index The index of the row, counting from row A.
+     * @return The length of the label of the row.
+     */
+    public static int length(int index) {
+        int length = 1;
+        for (long first = LETTERS; index >= first; first = (first + 1) * LETTERS) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Gets the position in the alphabet of a letter of a row label, accepting
+     * either case without allocating.
+     *
+     * @param c The character.
+     * @return 0 for {@code A} or {@code a} up to 25 for {@code Z} or {@code z},
+     *         or -1 if the character is not a letter.
+     */
+    public static int letter(char c) {
+        // clearing bit 5 folds a-z onto A-Z and moves no other character into A-Z
+        int upper = c & ~0x20;
+        return upper >= 'A' && upper <= 'Z' ? upper - 'A' : -1;
+    }
+
+    /**
+     * Parses a row label within a string, in either case.
+     *
+     * @param label The string containing the label.
+     * @param start The index of the first letter of the label.
+     * @param end   The index after the last letter of the label.
+     * @return The index of the row, counting from row A, or -1 if the characters
+     *         are not all letters or the label is too long.
+     */
+    public static int parse(CharSequence label, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            int letter = letter(label.charAt(i));
+            if (letter < 0 || n > (Integer.MAX_VALUE - LETTERS) / LETTERS) {
+                return -1;
+            }
+            n = n * LETTERS + letter + 1;
+        }
+        return n - 1;
+    }
+}
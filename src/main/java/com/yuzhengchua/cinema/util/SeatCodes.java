@@ -0,0 +1,145 @@
+package com.yuzhengchua.cinema.util;
+
+/**
+ * The {@code SeatCodes} class parses the seat codes typed by users, such as
+ * {@code B03} or {@code AB120}: a row label of one or two letters, in either
+ * case, followed by a seat number from 1 to 999 of up to three digits.
+ * <p>
+ * Codes are validated and decoded in a single pass over their characters,
+ * without allocating and without exceptions; failures are reported as negative
+ * results.
+ * </p>
+ *
+ * @since 1.1
+ */
+public final class SeatCodes {
+
+    /**
+     * The result of parsing a code that is not a seat code.
+     */
+    public static final int MALFORMED = -1;
+
+    /**
+     * The result of parsing a seat code of a seat outside the hall.
+     */
+    public static final int OUTSIDE_HALL = -2;
+
+    /**
+     * The maximum number of letters in a row label.
+     */
+    private static final int MAX_LETTERS = 2;
+
+    /**
+     * The maximum number of digits in a seat number.
+     */
+    private static final int MAX_DIGITS = 3;
+
+    /**
+     * The number of row labels of up to two letters, {@code A} to {@code ZZ}.
+     */
+    private static final int MAX_LABELS = 26 + 26 * 26;
+
+    /**
+     * The highest seat number of up to three digits.
+     */
+    private static final int MAX_SEAT_NUMBER = 999;
+
+    /**
+     * Private constructor to prevent instantiation, as this is a utility class.
+     *
+     * @throws UnsupportedOperationException If this constructor is called.
+     */
+    private SeatCodes() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Checks whether a string is a seat code, whatever the size of the hall.
+     *
+     * @param code The string to check, which may be null.
+     * @return true if the string is a seat code.
+     */
+    public static boolean isValid(CharSequence code) {
+        return code != null && parse(code, MAX_LABELS, MAX_SEAT_NUMBER) >= 0;
+    }
+
+    /**
+     * Decodes a seat code into the packed seat index {@code row * seatsPerRow +
+     * col}, where row A is the back row, farthest from the screen, and therefore
+     * the last array row.
+     *
+     * @param code        The seat code.
+     * @param rows        The number of rows in the cinema hall.
+     * @param seatsPerRow The number of seats per row in the cinema hall.
+     * @return The packed index of the seat, {@link #MALFORMED} if the string is
+     *         not a seat code or {@link #OUTSIDE_HALL} if the seat is not in the
+     *         hall.
+     */
+    public static int parse(CharSequence code, int rows, int seatsPerRow) {
+        int length = code.length();
+        int letters = 0;
+        int label = 0;
+        while (letters < length && letters <= MAX_LETTERS) {
+            int letter = RowLabels.letter(code.charAt(letters));
+            if (letter < 0) {
+                break;
+            }
+            label = label * 26 + letter + 1;
+            letters++;
+        }
+        int digits = length - letters;
+        if (letters == 0 || letters > MAX_LETTERS || digits == 0 || digits > MAX_DIGITS) {
+            return MALFORMED;
+        }
+        int seatNumber = 0;
+        for (int i = letters; i < length; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return MALFORMED;
+            }
+            seatNumber = seatNumber * 10 + (c - '0');
+        }
+        if (seatNumber == 0) {
+            return MALFORMED;
+        }
+        // the label counts from 1 for row A
+        if (label > rows || seatNumber > seatsPerRow) {
+            return OUTSIDE_HALL;
+        }
+        return (rows - label) * seatsPerRow + seatNumber - 1;
+    }
+
+    /**
+     * Checks whether a string is an integer of ASCII digits that fits in an
+     * {@code int}, with an optional sign.
+     *
+     * @param str The string to check, which may be null.
+     * @return true if the string is an integer.
+     */
+    public static boolean isInteger(CharSequence str) {
+        if (str == null || str.isEmpty()) {
+            return false;
+        }
+        int i = 0;
+        boolean negative = str.charAt(0) == '-';
+        if (negative || str.charAt(0) == '+') {
+            i++;
+        }
+        if (i == str.length()) {
+            return false;
+        }
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+            if (value > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -10,6 +10,10 @@ import java.util.Scanner;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import org.junit.jupiter.api.AfterEach;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import com.yuzhengchua.cinema.constants.Constants;
+import com.yuzhengchua.cinema.models.Showtime;
 import com.yuzhengchua.cinema.service.BookingServiceImpl;
 import com.yuzhengchua.cinema.models.SeatMap;
 import com.yuzhengchua.cinema.service.CinemaWorkflowService;
@@ -51,7 +55,7 @@ class CinemaAppRunnerTest {
                     cinemaWorkflowService = new CinemaWorkflowService(mockScanner, bookingService, seatMap, title, new TestExitHandler());
                     cinemaWorkflowService.listActions();
                 } else {
-                    System.out.println("Invalid input. Rows should be > 0 and <= 26 while seats per row should be > 0 and <= 50");
+                    System.out.println("Invalid input. Rows should be > 0 and <= 702 while seats per row should be > 0 and <= 999");
                 }
             } else {
                 System.out.println("Invalid input. Please provide a valid format: [Title] [Row] [SeatsPerRow].");
@@ -79,7 +83,7 @@ class CinemaAppRunnerTest {
         Mockito.when(mockScanner.nextLine()).thenReturn("Movie 0 100");
         runner.initialiseCinema();
         String output = outContent.toString();
-        assertTrue(output.contains("Invalid input. Rows should be > 0 and <= 26 while seats per row should be > 0 and <= 50"));
+        assertTrue(output.contains("Invalid input. Rows should be > 0 and <= 702 while seats per row should be > 0 and <= 999"));
     }
 
     @Test
@@ -88,11 +92,32 @@ class CinemaAppRunnerTest {
         assertThrows(TestExitException.class, () -> runner.initialiseCinema());
         String output = outContent.toString();
         assertFalse(output.contains("Invalid input. Please provide a valid format"));
-        assertFalse(output.contains("Invalid input. Rows should be > 0 and <= 26 while seats per row should be > 0 and <= 50"));
+        assertFalse(output.contains("Invalid input. Rows should be > 0 and <= 702 while seats per row should be > 0 and <= 999"));
+    }
+
+    @Test
+    void testConsoleShowtimeDependsOnHallDefinition() {
+        Showtime showtime = CinemaAppRunner.consoleShowtime("Inception", 8, 10);
+        assertEquals(new Showtime("Inception-8x10", LocalDate.now().atStartOfDay()), showtime);
+        assertNotEquals(showtime, CinemaAppRunner.consoleShowtime("Inception", 10, 8));
+        assertNotEquals(showtime, CinemaAppRunner.consoleShowtime("Tenet", 8, 10));
+    }
+
+    @Test
+    void testConsoleShowtimeCanBeNamedByOperator() {
+        System.setProperty(Constants.SCREEN_PROPERTY, "3");
+        System.setProperty(Constants.SHOWTIME_PROPERTY, "2026-10-18T19:30");
+        assertEquals(new Showtime("3", LocalDateTime.of(2026, 10, 18, 19, 30)),
+                CinemaAppRunner.consoleShowtime("Inception", 8, 10));
+
+        System.setProperty(Constants.SHOWTIME_PROPERTY, "tonight");
+        assertThrows(IllegalArgumentException.class, () -> CinemaAppRunner.consoleShowtime("Inception", 8, 10));
     }
 
     @AfterEach
     void tearDown() {
+        System.clearProperty(Constants.SCREEN_PROPERTY);
+        System.clearProperty(Constants.SHOWTIME_PROPERTY);
         System.setOut(originalOut);
     }
 } 
\ No newline at end of file
@@ -9,9 +9,11 @@ class ConstantsTest {
     @Test
     void testConstantValues() {
         assertEquals(1, Constants.MIN_ROWS);
-        assertEquals(26, Constants.MAX_ROWS);
+        assertEquals(702, Constants.MAX_ROWS);
         assertEquals(1, Constants.MIN_SEATS_PER_ROW);
-        assertEquals(50, Constants.MAX_SEATS_PER_ROW);
+        assertEquals(999, Constants.MAX_SEATS_PER_ROW);
+        assertEquals(300_000L, Constants.HOLD_TTL_MILLIS);
+        assertEquals(1024, Constants.SEAT_EVENT_BUFFER_SIZE);
     }
     @Test
     void testPrivateConstructor() throws Exception {
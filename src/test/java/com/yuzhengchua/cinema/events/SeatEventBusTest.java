@@ -0,0 +1,191 @@
+package com.yuzhengchua.cinema.events;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.yuzhengchua.cinema.events.SeatEventBus.OverflowPolicy;
+import com.yuzhengchua.cinema.events.SeatEventBus.Subscription;
+
+class SeatEventBusTest {
+
+    private static boolean publish(SeatEventBus bus, int seat) {
+        return bus.publish(SeatEvent.Type.HELD, null, new int[] { seat }, 10, seat);
+    }
+
+    @Test
+    void testEverySubscriberReadsEventsInOrder() {
+        SeatEventBus bus = new SeatEventBus(8);
+        publish(bus, 99);
+        Subscription display = bus.subscribe(OverflowPolicy.DROP_OLDEST);
+        Subscription audit = bus.subscribe(OverflowPolicy.BACK_PRESSURE);
+        assertTrue(bus.publish(SeatEvent.Type.CONFIRMED, "GIC0001", new int[] { 12, 13 }, 10, 5));
+        publish(bus, 3);
+
+        SeatEvent confirmed = display.poll();
+        assertEquals(1, confirmed.getSequence());
+        assertEquals(SeatEvent.Type.CONFIRMED, confirmed.getType());
+        assertEquals("GIC0001", confirmed.getBookingId());
+        assertArrayEquals(new int[][] { { 1, 2 }, { 1, 3 } }, confirmed.getSeats());
+        assertEquals(5, confirmed.getTimeMillis());
+        assertEquals(2, display.poll().getSequence());
+        assertNull(display.poll());
+
+        List<SeatEvent> events = new ArrayList<>();
+        assertEquals(2, audit.drain(events::add, 10));
+        assertEquals(confirmed, events.get(0));
+        assertEquals(0, audit.getLag());
+    }
+
+    @Test
+    void testDropOldestSkipsOverwrittenEvents() {
+        SeatEventBus bus = new SeatEventBus(4);
+        Subscription slow = bus.subscribe(OverflowPolicy.DROP_OLDEST);
+        for (int seat = 0; seat < 10; seat++) {
+            assertTrue(publish(bus, seat));
+        }
+
+        assertEquals(10, slow.getLag());
+        assertEquals(6, slow.poll().getSequence());
+        assertEquals(6, slow.getDroppedCount());
+        assertEquals(3, slow.drain(event -> { }, 10));
+        assertEquals(0, bus.getOverrunCount());
+    }
+
+    @Test
+    void testBackPressureSubscriberLosesNothingWithinItsSpillQueue() {
+        SeatEventBus bus = new SeatEventBus(4);
+        Subscription audit = bus.subscribe(OverflowPolicy.BACK_PRESSURE);
+        Subscription display = bus.subscribe(OverflowPolicy.DROP_OLDEST);
+        // two rings' worth: the ring holds four and the spill queue the four overwritten
+        for (int seat = 0; seat < 8; seat++) {
+            assertTrue(publish(bus, seat));
+        }
+
+        assertEquals(8, audit.getLag());
+        for (int sequence = 0; sequence < 8; sequence++) {
+            assertEquals(sequence, audit.poll().getSequence());
+        }
+        assertNull(audit.poll());
+        assertEquals(0, audit.getDroppedCount());
+        assertEquals(0, bus.getOverrunCount());
+        assertEquals(4, display.poll().getSequence());
+        assertEquals(4, display.getDroppedCount());
+
+        // once it has caught up, it can fall two rings behind again
+        for (int seat = 8; seat < 16; seat++) {
+            assertTrue(publish(bus, seat));
+        }
+        assertEquals(8, audit.drain(event -> { }, 10));
+        for (int seat = 16; seat < 20; seat++) {
+            assertTrue(publish(bus, seat));
+        }
+        List<SeatEvent> events = new ArrayList<>();
+        audit.drain(events::add, 100);
+        assertEquals(20 - 16, events.size());
+        assertEquals(16, events.get(0).getSequence());
+        assertEquals(0, audit.getDroppedCount());
+    }
+
+    @Test
+    void testStalledBackPressureSubscriberDoesNotHoldBackOthers() {
+        SeatEventBus bus = new SeatEventBus(4);
+        Subscription slow = bus.subscribe(OverflowPolicy.BACK_PRESSURE);
+        Subscription fast = bus.subscribe(OverflowPolicy.DROP_OLDEST);
+        for (int seat = 0; seat < 8; seat++) {
+            assertTrue(publish(bus, seat));
+            assertEquals(seat, fast.poll().getSequence());
+        }
+
+        // the slow subscriber's spill queue is full, so the producer is told
+        assertFalse(publish(bus, 8));
+        assertFalse(publish(bus, 9));
+        assertEquals(2, bus.getOverrunCount());
+        assertEquals(8, fast.poll().getSequence());
+        assertEquals(9, fast.poll().getSequence());
+        assertEquals(0, fast.getDroppedCount());
+
+        // the slow subscriber reads its spill queue, then sees the loss as a jump in sequence
+        for (int sequence = 0; sequence < 4; sequence++) {
+            assertEquals(sequence, slow.poll().getSequence());
+        }
+        assertEquals(6, slow.poll().getSequence());
+        assertEquals(2, slow.getDroppedCount());
+        assertEquals(3, slow.drain(event -> { }, 10));
+        assertTrue(publish(bus, 10));
+        assertEquals(10, slow.poll().getSequence());
+
+        slow.close();
+        assertNull(slow.poll());
+        for (int seat = 0; seat < 16; seat++) {
+            assertTrue(publish(bus, seat));
+        }
+        assertEquals(2, bus.getOverrunCount());
+    }
+
+    @Test
+    void testRejectsCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new SeatEventBus(0));
+        assertThrows(IllegalArgumentException.class, () -> new SeatEventBus(100));
+        assertEquals(1024, new SeatEventBus().getCapacity());
+    }
+
+    @Test
+    void testConcurrentSubscribersSeeOrderedStreams() throws InterruptedException {
+        SeatEventBus bus = new SeatEventBus(64);
+        int events = 20_000;
+        AtomicBoolean done = new AtomicBoolean();
+        Subscription[] subscriptions = { bus.subscribe(OverflowPolicy.BACK_PRESSURE),
+                bus.subscribe(OverflowPolicy.DROP_OLDEST), bus.subscribe(OverflowPolicy.DROP_OLDEST) };
+        long[] received = new long[subscriptions.length];
+        boolean[] ordered = new boolean[subscriptions.length];
+        Thread[] consumers = new Thread[subscriptions.length];
+        for (int i = 0; i < consumers.length; i++) {
+            int consumer = i;
+            consumers[i] = new Thread(() -> {
+                long last = -1;
+                boolean inOrder = true;
+                while (!done.get() || subscriptions[consumer].getLag() > 0) {
+                    SeatEvent event = subscriptions[consumer].poll();
+                    if (event != null) {
+                        inOrder &= event.getSequence() > last && event.getRow(0) * 10 + event.getCol(0)
+                                == (int) (event.getSequence() % 10);
+                        last = event.getSequence();
+                        received[consumer]++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                ordered[consumer] = inOrder;
+            });
+            consumers[i].start();
+        }
+        for (int published = 0; published < events; published++) {
+            // slow down while the back-pressure subscriber is nearly two rings behind
+            while (subscriptions[0].getLag() >= 2 * 64 - 1) {
+                Thread.yield();
+            }
+            assertTrue(bus.publish(SeatEvent.Type.HELD, null, new int[] { published % 10 }, 10, 0));
+        }
+        done.set(true);
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+
+        for (int i = 0; i < subscriptions.length; i++) {
+            assertTrue(ordered[i]);
+            assertEquals(events, received[i] + subscriptions[i].getDroppedCount());
+        }
+        assertEquals(events, received[0]);
+        assertEquals(0, bus.getOverrunCount());
+    }
+}
@@ -0,0 +1,137 @@
+package com.yuzhengchua.cinema.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.persistence.BookingStore;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.OptimisticBookingServiceImpl;
+import com.yuzhengchua.cinema.service.PlanningSession;
+
+class BookingMetricsTest {
+    SimpleMeterRegistry registry;
+    long[] now = { 0 };
+    BookingServiceImpl bookingService;
+
+    @BeforeEach
+    void init() {
+        registry = new SimpleMeterRegistry();
+        bookingService = new BookingServiceImpl(new SeatMap(5, 5), 60_000, () -> now[0]);
+        bookingService.setMetrics(new BookingMetrics(registry));
+    }
+
+    private long requests(String operation, String outcome) {
+        return registry.getCount("booking.requests", "operation", operation, "outcome", outcome);
+    }
+
+    @Test
+    void testRecordsOutcomeOfEveryOperation() {
+        String bookingId = bookingService.getBookingId();
+        bookingService.confirmBooking(bookingService.planSeats(3, "B02"));
+        bookingService.checkBooking(bookingId);
+        assertThrows(IllegalArgumentException.class, () -> bookingService.planSeats(30, null));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.planSeats(0, null));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.planSeats(1, "Z01"));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.checkBooking("GIC0009"));
+        bookingService.cancelBooking(bookingId);
+        assertThrows(IllegalArgumentException.class, () -> bookingService.cancelBooking(bookingId));
+
+        assertEquals(1, requests("plan", "success"));
+        assertEquals(1, requests("plan", "not_enough_seats"));
+        assertEquals(2, requests("plan", "rejected"));
+        assertEquals(1, requests("confirm", "success"));
+        assertEquals(1, requests("check", "success"));
+        assertEquals(1, requests("check", "rejected"));
+        assertEquals(1, requests("cancel", "success"));
+        assertEquals(1, requests("cancel", "rejected"));
+        assertEquals(4, registry.getCount("booking.latency", "operation", "plan"));
+        assertEquals(2, registry.getCount("booking.latency", "operation", "cancel"));
+    }
+
+    @Test
+    void testRecordsBatchBookings() {
+        bookingService.bookBatch(new int[] { 3, 4 });
+        assertThrows(IllegalArgumentException.class, () -> bookingService.bookBatch(new int[] { 10, 9 }));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.bookBatch(new int[] { 2, 0 }));
+
+        assertEquals(1, requests("batch", "success"));
+        assertEquals(1, requests("batch", "not_enough_seats"));
+        assertEquals(1, requests("batch", "rejected"));
+        assertEquals(0, requests("plan", "success"));
+        assertEquals(0, requests("confirm", "success"));
+    }
+
+    @Test
+    void testRecordsOperationsOfConcurrentServices() {
+        OptimisticBookingServiceImpl concurrentService = new OptimisticBookingServiceImpl(new SeatMap(5, 5));
+        concurrentService.setMetrics(new BookingMetrics(registry));
+        int[][] plannedCoordinates = concurrentService.planSeats(3, "B02");
+        String bookingId = concurrentService.bookSeats(plannedCoordinates);
+        assertThrows(IllegalArgumentException.class, () -> concurrentService.confirmBooking(plannedCoordinates));
+        concurrentService.checkBooking(bookingId);
+        concurrentService.bookBatch(new int[] { 2, 2 });
+        assertThrows(IllegalArgumentException.class, () -> concurrentService.planSeats(30, null));
+        concurrentService.cancelBooking(bookingId);
+
+        assertEquals(1, requests("plan", "success"));
+        assertEquals(1, requests("plan", "not_enough_seats"));
+        assertEquals(1, requests("confirm", "success"));
+        assertEquals(1, requests("confirm", "rejected"));
+        assertEquals(1, requests("check", "success"));
+        assertEquals(1, requests("batch", "success"));
+        assertEquals(1, requests("cancel", "success"));
+        assertEquals(1, registry.getCount("booking.plan.scan.steps"));
+    }
+
+    @Test
+    void testRecordsFailedWritesAsErrors(@TempDir Path directory) throws IOException {
+        BookingStore store = bookingService.openBookingLog(directory.resolve("screen.wal"), 100);
+        String bookingId = bookingService.getBookingId();
+        bookingService.confirmBooking(bookingService.planSeats(2, null));
+        store.close();
+
+        int[][] plannedCoordinates = bookingService.planSeats(2, null);
+        assertThrows(UncheckedIOException.class, () -> bookingService.confirmBooking(plannedCoordinates));
+        assertThrows(UncheckedIOException.class, () -> bookingService.bookBatch(new int[] { 1, 1 }));
+        assertThrows(UncheckedIOException.class, () -> bookingService.cancelBooking(bookingId));
+
+        assertEquals(1, requests("confirm", "error"));
+        assertEquals(1, requests("batch", "error"));
+        assertEquals(1, requests("cancel", "error"));
+        assertEquals(0, requests("confirm", "rejected"));
+        assertEquals(2, registry.getCount("booking.latency", "operation", "confirm"));
+        assertEquals(1, registry.getCount("booking.latency", "operation", "cancel"));
+    }
+
+    @Test
+    void testRecordsScanStepsAndHoldExpiries() {
+        bookingService.confirmBooking(bookingService.planSeats(5, null));
+        // every plan starts in the back row, so planning walks over the full rows
+        bookingService.confirmBooking(bookingService.planSeats(6, null));
+        PlanningSession session = bookingService.openSession();
+        bookingService.planSeats(session, 2, null);
+        now[0] = 61_000;
+        bookingService.planSeats(1, null);
+
+        assertEquals(1 + 3 + 3 + 3, registry.getCount("booking.plan.scan.steps"));
+        assertEquals(10 / 4.0, registry.getGauge("booking.plan.scan.steps.mean"));
+        assertEquals(1, registry.getCount("booking.hold.expiries"));
+    }
+
+    @Test
+    void testNoopRecordsNothing() {
+        BookingMetrics.NOOP.record(BookingMetrics.Operation.PLAN, BookingMetrics.Outcome.SUCCESS,
+                BookingMetrics.NOOP.start());
+        assertEquals(0, BookingMetrics.NOOP.start());
+        assertEquals(0, MeterRegistry.NOOP.counter("booking.requests").count());
+    }
+}
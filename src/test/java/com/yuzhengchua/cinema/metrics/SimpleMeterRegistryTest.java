@@ -0,0 +1,94 @@
+package com.yuzhengchua.cinema.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class SimpleMeterRegistryTest {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testMetersAreIdentifiedByNameAndTags() {
+        MeterRegistry.Counter counter = registry.counter("booking.requests", "operation", "plan");
+        counter.increment();
+        counter.increment(2);
+
+        assertSame(counter, registry.counter("booking.requests", "operation", "plan"));
+        assertEquals(3, registry.getCount("booking.requests", "operation", "plan"));
+        assertEquals(0, registry.counter("booking.requests", "operation", "cancel").count());
+        assertThrows(IllegalArgumentException.class, () -> registry.timer("booking.requests", "operation", "plan"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("booking.requests", "operation"));
+        assertThrows(IllegalArgumentException.class, () -> registry.getCount("booking.missing"));
+    }
+
+    @Test
+    void testTimerKeepsDistribution() {
+        MeterRegistry.Timer timer = registry.timer("booking.latency");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i * 1000L);
+        }
+        Histogram first = registry.getHistogram("booking.latency");
+        timer.record(1_000_000);
+
+        Histogram histogram = registry.getHistogram("booking.latency");
+        assertEquals(100, first.getTotalCount());
+        assertEquals(101, histogram.getTotalCount());
+        assertEquals(51_000, histogram.getValueAtPercentile(50), 51);
+        assertEquals(1_000_000, histogram.getMaxValue(), 1000);
+        assertEquals(101, timer.count());
+    }
+
+    @Test
+    void testGaugesAreReadOnExport() {
+        int[] booked = { 0 };
+        registry.gauge("booking.occupancy", () -> booked[0] / 4.0, "screen", "1");
+        registry.counter("booking.hold.expiries").increment();
+        registry.timer("booking.latency", "operation", "check").record(250);
+        booked[0] = 1;
+
+        assertEquals(0.25, registry.getGauge("booking.occupancy", "screen", "1"));
+        assertEquals("""
+                booking.hold.expiries 1
+                booking.latency{operation=check} count=1 mean=250.0 p50=250 p99=250 max=250
+                booking.occupancy{screen=1} 0.25
+                """, registry.scrape());
+
+        registry.remove("booking.occupancy", "screen", "1");
+        assertThrows(IllegalArgumentException.class, () -> registry.getGauge("booking.occupancy", "screen", "1"));
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNothing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        registry.counter("booking.requests").increment();
+                        registry.timer("booking.latency").record(i);
+                        if (i % 1000 == 0) {
+                            registry.getHistogram("booking.latency");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(80_000, registry.getCount("booking.requests"));
+        assertEquals(80_000, registry.getCount("booking.latency"));
+    }
+}
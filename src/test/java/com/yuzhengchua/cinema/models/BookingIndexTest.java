@@ -0,0 +1,129 @@
+package com.yuzhengchua.cinema.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class BookingIndexTest {
+
+    @Test
+    void testPutFindAndRemove() {
+        BookingIndex index = new BookingIndex();
+        index.put(1, new int[][] { { 0, 0 }, { 25, 49 } });
+        index.put(2, new int[][] { { 3, 4 } });
+
+        int offset = index.find(1);
+        assertEquals(2, index.seatCount(offset));
+        assertEquals(25, index.seatRow(offset, 1));
+        assertEquals(49, index.seatCol(offset, 1));
+        assertArrayEquals(new int[][] { { 3, 4 } }, index.get(2));
+        assertEquals(-1, index.find(3));
+        assertEquals(-1, index.find(0));
+
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+        assertFalse(index.contains(1));
+        assertEquals(1, index.size());
+        assertThrows(IllegalArgumentException.class, () -> index.put(0, new int[][] { { 0, 0 } }));
+    }
+
+    @Test
+    void testManyBookingsWithChurn() {
+        BookingIndex index = new BookingIndex();
+        for (int number = 1; number <= 100_000; number++) {
+            index.put(number, new int[][] { { number % 26, number % 50 }, { (number + 1) % 26, 0 } });
+            if (number > 1_000) {
+                assertTrue(index.remove(number - 1_000));
+            }
+        }
+        assertEquals(1_000, index.size());
+        for (int number = 99_001; number <= 100_000; number++) {
+            assertArrayEquals(new int[][] { { number % 26, number % 50 }, { (number + 1) % 26, 0 } },
+                    index.get(number));
+        }
+        assertNull(index.get(99_000));
+        int[] seen = { 0 };
+        index.forEach((seats, number) -> seen[0]++);
+        assertEquals(1_000, seen[0]);
+    }
+
+    @Test
+    void testReplaceBooking() {
+        BookingIndex index = new BookingIndex();
+        index.put(7, new int[][] { { 1, 1 } });
+        index.put(7, new int[][] { { 2, 2 }, { 2, 3 } });
+        assertEquals(1, index.size());
+        assertArrayEquals(new int[][] { { 2, 2 }, { 2, 3 } }, index.get(7));
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get(7));
+    }
+
+    @Test
+    void testCopyAndSerialiseInBulk() {
+        BookingIndex index = new BookingIndex();
+        for (int number = 1; number <= 100; number++) {
+            index.put(number, new int[][] { { number, 40_000 }, { 0, number } });
+        }
+        for (int number = 1; number <= 50; number++) {
+            index.remove(number);
+        }
+
+        BookingIndex copy = new BookingIndex();
+        copy.copyFrom(index);
+        index.put(51, new int[][] { { 9, 9 } });
+        assertArrayEquals(new int[][] { { 51, 40_000 }, { 0, 51 } }, copy.get(51));
+        copy.put(101, new int[][] { { 1, 1 } });
+        assertFalse(index.contains(101));
+
+        ByteBuffer buffer = ByteBuffer.allocate(copy.serializedSize());
+        copy.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        BookingIndex read = BookingIndex.readFrom(buffer);
+        assertEquals(51, read.size());
+        assertArrayEquals(new int[][] { { 100, 40_000 }, { 0, 100 } }, read.get(100));
+        assertArrayEquals(new int[][] { { 1, 1 } }, read.get(101));
+        assertNull(read.get(50));
+
+        buffer.clear();
+        buffer.putInt(1).putInt(7).putInt(-1).flip();
+        assertThrows(IllegalArgumentException.class, () -> BookingIndex.readFrom(buffer));
+    }
+
+    @Test
+    void testMapView() {
+        BookingIndex index = new BookingIndex();
+        Map<String, int[][]> view = index.asMap(number -> "B" + number,
+                id -> id.startsWith("B") ? Integer.parseInt(id.substring(1)) : -1);
+        view.put("B5", new int[][] { { 1, 2 } });
+        index.put(6, new int[][] { { 3, 4 } });
+
+        assertEquals(2, view.size());
+        assertTrue(view.containsKey("B6"));
+        assertFalse(view.containsKey("X6"));
+        assertFalse(view.containsKey(6));
+        assertArrayEquals(new int[][] { { 1, 2 } }, view.get("B5"));
+        assertEquals(Set.of("B5", "B6"), view.keySet());
+        assertThrows(IllegalArgumentException.class, () -> view.put("X1", new int[][] { { 0, 0 } }));
+
+        Iterator<String> keys = view.keySet().iterator();
+        String removed = keys.next();
+        keys.remove();
+        assertEquals(1, index.size());
+        assertFalse(view.containsKey(removed));
+        String remaining = removed.equals("B5") ? "B6" : "B5";
+        assertArrayEquals(view.get(remaining), view.remove(remaining));
+        assertTrue(view.isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.yuzhengchua.cinema.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class FreeRunIndexTest {
+
+    @Test
+    void testEmptyHallHasOneRunPerRow() {
+        FreeRunIndex index = new FreeRunIndex(3, 10);
+        for (int row = 0; row < 3; row++) {
+            assertEquals(1, index.getRunCount(row));
+            assertEquals(0, index.getRunStart(row, 0));
+            assertEquals(10, index.getRunEnd(row, 0));
+            assertEquals(10, index.getFreeSeats(row));
+        }
+    }
+
+    @Test
+    void testOccupySplitsAndReleaseMergesRuns() {
+        FreeRunIndex index = new FreeRunIndex(1, 10);
+        index.occupy(0, 4);
+        assertEquals(List.of(List.of(0, 4), List.of(5, 10)), runs(index, 0));
+        index.occupy(0, 0);
+        index.occupy(0, 9);
+        assertEquals(List.of(List.of(1, 4), List.of(5, 9)), runs(index, 0));
+        assertEquals(7, index.getFreeSeats(0));
+        index.release(0, 4);
+        assertEquals(List.of(List.of(1, 9)), runs(index, 0));
+        index.release(0, 0);
+        index.release(0, 9);
+        assertEquals(List.of(List.of(0, 10)), runs(index, 0));
+        assertEquals(10, index.getFreeSeats(0));
+    }
+
+    @Test
+    void testOccupyAndReleaseAreIdempotent() {
+        FreeRunIndex index = new FreeRunIndex(1, 5);
+        index.occupy(0, 2);
+        index.occupy(0, 2);
+        assertEquals(4, index.getFreeSeats(0));
+        index.release(0, 1);
+        assertEquals(4, index.getFreeSeats(0));
+    }
+
+    @Test
+    void testFindRun() {
+        FreeRunIndex index = new FreeRunIndex(1, 10);
+        index.occupy(0, 2);
+        index.occupy(0, 3);
+        index.occupy(0, 7);
+        assertEquals(0, index.findRun(0, 0));
+        assertEquals(1, index.findRun(0, 2));
+        assertEquals(1, index.findRun(0, 6));
+        assertEquals(2, index.findRun(0, 7));
+        assertEquals(3, index.findRun(0, 10));
+    }
+
+    @Test
+    void testRandomUpdatesMatchRebuild() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            int rows = 1 + random.nextInt(4);
+            int seatsPerRow = 1 + random.nextInt(130);
+            FreeRunIndex index = new FreeRunIndex(rows, seatsPerRow);
+            SeatBitmap occupancy = new SeatBitmap(rows, seatsPerRow);
+            for (int step = 0; step < 300; step++) {
+                int row = random.nextInt(rows);
+                int col = random.nextInt(seatsPerRow);
+                if (random.nextBoolean()) {
+                    occupancy.set(row, col);
+                    index.occupy(row, col);
+                } else {
+                    occupancy.clear(row, col);
+                    index.release(row, col);
+                }
+            }
+            FreeRunIndex rebuilt = new FreeRunIndex(rows, seatsPerRow);
+            rebuilt.rebuild(occupancy);
+            for (int row = 0; row < rows; row++) {
+                assertEquals(runs(rebuilt, row), runs(index, row));
+                assertEquals(seatsPerRow - occupancy.cardinality(row), index.getFreeSeats(row));
+            }
+        }
+    }
+
+    private static List<List<Integer>> runs(FreeRunIndex index, int row) {
+        List<List<Integer>> runs = new ArrayList<>();
+        for (int run = 0; run < index.getRunCount(row); run++) {
+            runs.add(List.of(index.getRunStart(row, run), index.getRunEnd(row, run)));
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yuzhengchua.cinema.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.MappedSeatBitmap.Durability;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+
+class MappedSeatBitmapTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSeatsSurviveRemapping() throws IOException {
+        Path file = directory.resolve("hall.seats");
+        MappedSeatBitmap bitmap = MappedSeatBitmap.open(file, 2, 130, Durability.FORCE);
+        assertEquals(3, bitmap.getWordsPerRow());
+        bitmap.set(0, 63);
+        bitmap.set(1, 129);
+        bitmap.commit();
+
+        MappedSeatBitmap remapped = MappedSeatBitmap.open(file, 2, 130, Durability.ASYNC);
+        assertTrue(remapped.get(0, 63));
+        assertTrue(remapped.get(1, 129));
+        assertFalse(remapped.get(0, 64));
+        assertEquals(2, remapped.cardinality());
+        assertEquals(16 + 2 * 3 * 8, Files.size(file));
+    }
+
+    @Test
+    void testAtomicWordUpdates() throws IOException {
+        MappedSeatBitmap bitmap = MappedSeatBitmap.open(directory.resolve("hall.seats"), 3, 50, Durability.ASYNC);
+        assertTrue(bitmap.compareAndSetWord(1, 0, 0L, 0b101L));
+        assertFalse(bitmap.compareAndSetWord(1, 0, 0L, 0b1L));
+        assertEquals(0b101L, bitmap.getWordVolatile(1, 0));
+
+        SeatBitmap copy = new SeatBitmap(3, 50);
+        copy.copyFrom(bitmap);
+        assertArrayEquals(bitmap.toArray(1), copy.toArray(1));
+        bitmap.clear();
+        assertEquals(0, bitmap.cardinality());
+        bitmap.copyRowFrom(copy, 1);
+        assertTrue(bitmap.get(1, 2));
+    }
+
+    @Test
+    void testRejectsFileOfAnotherHall() throws IOException {
+        Path file = directory.resolve("hall.seats");
+        MappedSeatBitmap.open(file, 5, 10, Durability.FORCE);
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> MappedSeatBitmap.open(file, 5, 11, Durability.FORCE));
+        assertTrue(exception.getMessage().contains("5 x 10 seat map, not 5 x 11"));
+
+        Path other = directory.resolve("other.seats");
+        Files.write(other, new byte[16 + 5 * 8]);
+        assertThrows(IllegalArgumentException.class, () -> MappedSeatBitmap.open(other, 5, 10, Durability.FORCE));
+    }
+
+    @Test
+    void testMappedSeatMapRestartsWithoutReplay() throws IOException {
+        Path file = directory.resolve("hall.seats");
+        SeatMap seatMap = SeatMap.map(file, 5, 5, Durability.FORCE);
+        assertTrue(seatMap.isMapped());
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        bookingService.confirmBooking(bookingService.planSeats(3, "B02"));
+        bookingService.confirmBooking(bookingService.planSeats(2, null));
+        bookingService.cancelBooking("GIC0002");
+
+        SeatMap restarted = SeatMap.map(file, 5, 5, Durability.ASYNC);
+        assertArrayEquals(seatMap.getSeatMapArr(), restarted.getSeatMapArr());
+        assertEquals(22, restarted.getAvailableSeats());
+        assertFalse(new SeatMap(5, 5).isMapped());
+    }
+}
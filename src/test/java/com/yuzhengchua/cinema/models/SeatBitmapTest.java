@@ -0,0 +1,81 @@
+package com.yuzhengchua.cinema.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SeatBitmapTest {
+
+    @Test
+    void testSetGetAndClear() {
+        SeatBitmap bitmap = new SeatBitmap(3, 5);
+        bitmap.set(1, 2);
+        assertTrue(bitmap.get(1, 2));
+        assertFalse(bitmap.get(1, 3));
+        assertEquals(1, bitmap.cardinality(1));
+        assertEquals(0, bitmap.cardinality(0));
+        bitmap.clear(1, 2);
+        assertFalse(bitmap.get(1, 2));
+        assertEquals(0, bitmap.cardinality());
+    }
+
+    @Test
+    void testSingleWordPerRow() {
+        SeatBitmap bitmap = new SeatBitmap(26, 50);
+        assertEquals(1, bitmap.getWordsPerRow());
+        bitmap.set(25, 49);
+        assertEquals(1L << 49, bitmap.getWord(25, 0));
+    }
+
+    @Test
+    void testMultiWordRows() {
+        SeatBitmap bitmap = new SeatBitmap(2, 130);
+        assertEquals(3, bitmap.getWordsPerRow());
+        bitmap.set(0, 63);
+        bitmap.set(0, 64);
+        bitmap.set(0, 129);
+        bitmap.set(1, 0);
+        assertEquals(3, bitmap.cardinality(0));
+        assertEquals(1, bitmap.cardinality(1));
+        assertTrue(bitmap.get(0, 64));
+        assertFalse(bitmap.get(1, 64));
+    }
+
+    @Test
+    void testNextClearSeat() {
+        SeatBitmap bitmap = new SeatBitmap(1, 70);
+        for (int col = 0; col < 66; col++) {
+            bitmap.set(0, col);
+        }
+        assertEquals(66, bitmap.nextClearSeat(0, 0));
+        assertEquals(69, bitmap.nextClearSeat(0, 69));
+        bitmap.set(0, 66);
+        bitmap.set(0, 67);
+        bitmap.set(0, 68);
+        bitmap.set(0, 69);
+        assertEquals(-1, bitmap.nextClearSeat(0, 0));
+    }
+
+    @Test
+    void testSetWordIgnoresSeatsOutsideTheRow() {
+        SeatBitmap bitmap = new SeatBitmap(1, 5);
+        bitmap.setWord(0, 0, -1L);
+        assertEquals(5, bitmap.cardinality(0));
+        assertEquals(-1, bitmap.nextClearSeat(0, 0));
+    }
+
+    @Test
+    void testCopyFromAndToArray() {
+        SeatBitmap source = new SeatBitmap(2, 3);
+        source.set(0, 1);
+        source.set(1, 2);
+        SeatBitmap target = new SeatBitmap(2, 3);
+        target.copyFrom(source);
+        assertArrayEquals(new int[][] { { 0, 1, 0 }, { 0, 0, 1 } }, target.toArray(1));
+        target.clear();
+        assertEquals(0, target.cardinality());
+    }
+}
@@ -0,0 +1,72 @@
+package com.yuzhengchua.cinema.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SeatLayoutTest {
+    @Test
+    void testAislesAndRepeatedRows() {
+        SeatLayout layout = SeatLayout.parse("2x3,_1,3/7");
+
+        assertEquals(3, layout.getRows());
+        assertEquals(7, layout.getSeatsPerRow());
+        assertEquals(19, layout.getCapacity());
+        assertEquals("2x3,_1,3/7", layout.toString());
+        for (int row = 1; row < 3; row++) {
+            assertTrue(layout.isSeat(row, 2));
+            assertFalse(layout.isSeat(row, 3));
+            assertTrue(layout.isSeat(row, 4));
+        }
+        assertTrue(layout.isSeat(0, 3));
+    }
+
+    @Test
+    void testShorterRowsAreCentred() {
+        SeatLayout layout = SeatLayout.parse("2/4/_1,2,_2");
+
+        assertEquals(5, layout.getSeatsPerRow());
+        assertEquals(8, layout.getCapacity());
+        // row A, the back row, is the last row of the seat map
+        assertFalse(layout.isSeat(2, 0));
+        assertTrue(layout.isSeat(2, 1));
+        assertTrue(layout.isSeat(2, 2));
+        assertFalse(layout.isSeat(2, 3));
+        assertTrue(layout.isSeat(1, 0));
+        assertFalse(layout.isSeat(1, 4));
+        assertFalse(layout.isSeat(0, 0));
+        assertTrue(layout.isSeat(0, 1));
+        assertFalse(layout.isSeat(0, 3));
+        assertEquals(1, layout.getFirstSeat(2));
+        assertEquals(0, layout.getFirstSeat(1));
+        assertEquals(1, layout.getFirstSeat(0));
+    }
+
+    @Test
+    void testMissingSeatsAreBookedInTheSeatMap() {
+        SeatMap seatMap = new SeatMap(SeatLayout.parse("2x3,_1,3/7"));
+
+        assertEquals(19, seatMap.getCapacity());
+        assertEquals(19, seatMap.getAvailableSeats());
+        assertTrue(seatMap.isBooked(1, 3));
+        assertEquals(6, seatMap.getAvailableSeatsInRow(2));
+        seatMap.setSeatMapArr(new int[3][7]);
+        assertTrue(seatMap.isBooked(2, 3));
+        assertEquals(35, new SeatMap(5, 7).getCapacity());
+    }
+
+    @Test
+    void testInvalidLayouts() {
+        for (String descriptor : new String[] { null, " ", "3x", "x3", "0", "3,,3", "3,_0", "3/", "a", "-3",
+                "3x3;3" }) {
+            assertThrows(IllegalArgumentException.class, () -> SeatLayout.parse(descriptor), descriptor);
+        }
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.parse("_5"));
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.parse("703x1"));
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.parse("500,_500"));
+        assertEquals(702 * 999, SeatLayout.parse("702x999").getCapacity());
+    }
+}
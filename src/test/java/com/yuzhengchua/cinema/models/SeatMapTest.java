@@ -1,6 +1,9 @@
 package com.yuzhengchua.cinema.models;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -37,8 +40,29 @@ class SeatMapTest {
         assertArrayEquals(newMap, seatMap.getSeatMapArr());
     }
     @Test
+    void testSeatMapArrIsSnapshot() {
+        SeatMap map = new SeatMap(2, 3);
+        int[][] snapshot = map.getSeatMapArr();
+        snapshot[0][1] = 1;
+        assertFalse(map.isBooked(0, 1));
+        assertArrayEquals(new int[][] {{0,0,0},{0,0,0}}, map.getSeatMapArr());
+        map.bookSeat(1, 0);
+        assertArrayEquals(new int[][] {{0,1,0},{0,0,0}}, snapshot);
+    }
+    @Test
     void testGetRowsAndSeatsPerRow() {
         assert(seatMap.getRows() == 2);
         assert(seatMap.getSeatsPerRow() == 2);
     }
+    @Test
+    void testBookAndReleaseSeat() {
+        SeatMap map = new SeatMap(2, 3);
+        map.bookSeat(1, 2);
+        assertTrue(map.isBooked(1, 2));
+        assertEquals(2, map.getAvailableSeatsInRow(1));
+        assertArrayEquals(new int[][] {{0,0,0},{0,0,1}}, map.getSeatMapArr());
+        map.releaseSeat(1, 2);
+        assertFalse(map.isBooked(1, 2));
+        assertArrayEquals(new int[][] {{0,0,0},{0,0,0}}, map.getSeatMapArr());
+    }
 }
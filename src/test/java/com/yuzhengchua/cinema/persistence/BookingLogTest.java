@@ -0,0 +1,573 @@
+package com.yuzhengchua.cinema.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.MappedSeatBitmap.Durability;
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+import com.yuzhengchua.cinema.service.ConcurrentBookingServiceImpl;
+
+class BookingLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Collects the replayed events as strings.
+     */
+    static class Recorder implements BookingLog.Replay {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void confirmed(int bookingNumber, int[][] seats) {
+            StringBuilder event = new StringBuilder("confirm " + bookingNumber);
+            for (int[] seat : seats) {
+                event.append(' ').append(seat[0]).append(',').append(seat[1]);
+            }
+            events.add(event.toString());
+        }
+
+        @Override
+        public void cancelled(int bookingNumber) {
+            events.add("cancel " + bookingNumber);
+        }
+    }
+
+    /**
+     * Passes everything through to a segment channel, except that writes can be
+     * torn and fsyncs can fail on demand.
+     */
+    static class FailingChannel extends FileChannel {
+        final FileChannel delegate;
+        boolean failWrites;
+        boolean failForces;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Replaces the channel of a log with a failing one.
+         */
+        static FailingChannel install(BookingLog log) throws ReflectiveOperationException {
+            Field field = BookingLog.class.getDeclaredField("channel");
+            field.setAccessible(true);
+            FailingChannel channel = new FailingChannel((FileChannel) field.get(log));
+            field.set(log, channel);
+            return channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failWrites) {
+                ByteBuffer torn = src.slice();
+                torn.limit(Math.min(5, torn.remaining()));
+                src.position(src.position() + delegate.write(torn));
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForces) {
+                throw new IOException("Input/output error");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    @Test
+    void testReplaysRecordsInOrder() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 26, 50, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 0, 0 }, { 25, 49 } });
+            log.appendCancel(1);
+            log.appendConfirm(2, new int[][] { { 3, 4 } });
+        }
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(file, 26, 50, recorder)) {
+            log.appendCancel(2);
+        }
+        assertEquals(List.of("confirm 1 0,0 25,49", "cancel 1", "confirm 2 3,4"), recorder.events);
+
+        recorder = new Recorder();
+        BookingLog.open(file, 26, 50, recorder).close();
+        assertEquals(4, recorder.events.size());
+        assertEquals("cancel 2", recorder.events.get(3));
+    }
+
+    @Test
+    void testReplaysBatchAsConsecutiveBookings() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 26, 50, new Recorder())) {
+            log.appendConfirmBatch(4, new int[][][] { { { 0, 0 }, { 0, 1 } }, { { 1, 2 } } });
+            log.appendCancel(5);
+        }
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 26, 50, recorder).close();
+        assertEquals(List.of("confirm 4 0,0 0,1", "confirm 5 1,2", "cancel 5"), recorder.events);
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.appendConfirm(2, new int[][] { { 2, 2 }, { 2, 3 } });
+        }
+        Path segment = directory.resolve("screen.wal.0000000001");
+        long intactSize = Files.size(segment);
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.setLength(intactSize - 3);
+        }
+
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(file, 5, 5, recorder)) {
+            log.appendConfirm(3, new int[][] { { 4, 4 } });
+        }
+        assertEquals(List.of("confirm 1 1,1"), recorder.events);
+
+        recorder = new Recorder();
+        BookingLog.open(file, 5, 5, recorder).close();
+        assertEquals(List.of("confirm 1 1,1", "confirm 3 4,4"), recorder.events);
+    }
+
+    @Test
+    void testCorruptRecordEndsReplay() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.appendConfirm(2, new int[][] { { 2, 2 } });
+        }
+        Path segment = directory.resolve("screen.wal.0000000001");
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.seek(Files.size(segment) - 6);
+            raf.write(7);
+        }
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 5, 5, recorder).close();
+        assertEquals(List.of("confirm 1 1,1"), recorder.events);
+    }
+
+    @Test
+    void testCorruptRecordInEarlierSegmentFailsOpen() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.appendConfirm(2, new int[][] { { 1, 2 } });
+            log.appendConfirm(3, new int[][] { { 1, 3 } });
+            log.rollSegment();
+            log.appendConfirm(4, new int[][] { { 2, 2 } });
+            log.rollSegment();
+            log.appendConfirm(5, new int[][] { { 3, 3 } });
+        }
+        Path segment = directory.resolve("screen.wal.0000000001");
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            // the seat of the second record: header, first frame, length, type, number and count
+            raf.seek(22 + 21 + 4 + 9);
+            raf.write(7);
+        }
+        byte[] corrupt = Files.readAllBytes(segment);
+
+        Exception exception = assertThrows(IOException.class, () -> BookingLog.open(file, 5, 5, new Recorder()));
+        assertTrue(exception.getMessage().contains("corrupt"));
+        assertArrayEquals(corrupt, Files.readAllBytes(segment));
+        assertTrue(Files.exists(directory.resolve("screen.wal.0000000004")));
+        assertTrue(Files.exists(directory.resolve("screen.wal.0000000005")));
+    }
+
+    @Test
+    void testTornWriteIsCutOffBeforeNextRecord() throws Exception {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            FailingChannel channel = FailingChannel.install(log);
+            channel.failWrites = true;
+            assertThrows(IOException.class, () -> log.appendConfirm(2, new int[][] { { 2, 2 } }));
+            assertEquals(1, log.getLastSeq());
+
+            channel.failWrites = false;
+            assertEquals(2, log.appendConfirm(2, new int[][] { { 3, 3 } }));
+        }
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 5, 5, recorder).close();
+        assertEquals(List.of("confirm 1 1,1", "confirm 2 3,3"), recorder.events);
+    }
+
+    @Test
+    void testFailedFsyncFailsLogAndDropsUnsyncedRecords() throws Exception {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            FailingChannel channel = FailingChannel.install(log);
+            channel.failForces = true;
+            assertThrows(IOException.class, () -> log.appendConfirm(2, new int[][] { { 2, 2 } }));
+
+            channel.failForces = false;
+            assertThrows(IOException.class, () -> log.appendConfirm(2, new int[][] { { 3, 3 } }));
+            assertThrows(IOException.class, log::rollSegment);
+            assertEquals(1, log.getLastSeq());
+        }
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(file, 5, 5, recorder)) {
+            assertEquals(2, log.appendConfirm(2, new int[][] { { 3, 3 } }));
+        }
+        assertEquals(List.of("confirm 1 1,1"), recorder.events);
+    }
+
+    @Test
+    void testSegmentWithIncompleteHeaderIsRecreated() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.rollSegment();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // both segments and no temporary header file
+            assertEquals(2, files.count());
+        }
+        Path segment = directory.resolve("screen.wal.0000000002");
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.setLength(10);
+        }
+
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(file, 5, 5, recorder)) {
+            assertEquals(2, log.appendConfirm(2, new int[][] { { 2, 2 } }));
+        }
+        assertEquals(List.of("confirm 1 1,1"), recorder.events);
+        recorder = new Recorder();
+        BookingLog.open(file, 5, 5, recorder).close();
+        assertEquals(List.of("confirm 1 1,1", "confirm 2 2,2"), recorder.events);
+    }
+
+    @Test
+    void testRejectsLogOfAnotherSeatMap() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        BookingLog.open(file, 5, 5, new Recorder()).close();
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> BookingLog.open(file, 6, 5, new Recorder()));
+        assertTrue(exception.getMessage().contains("5 x 5 seat map, not 6 x 5"));
+
+        Path other = directory.resolve("other.wal");
+        Files.write(directory.resolve("other.wal.0000000001"), new byte[32]);
+        assertThrows(IllegalArgumentException.class, () -> BookingLog.open(other, 5, 5, new Recorder()));
+    }
+
+    @Test
+    void testConcurrentAppendsShareFsyncs() throws Exception {
+        Path file = directory.resolve("screen.wal");
+        int threads = 8;
+        int appendsPerThread = 50;
+        try (BookingLog log = BookingLog.open(file, 26, 50, new Recorder())) {
+            long syncs = log.getSyncCount();
+            // every appender writes its record, then waits at the barrier until all have written before forcing
+            CyclicBarrier written = new CyclicBarrier(threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        long seq = log.writeConfirm(thread * appendsPerThread + i, new int[][] { { thread, i } });
+                        written.await();
+                        log.awaitDurable(seq);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            // the first appender of every round forces the records of all of them
+            assertTrue(log.getSyncCount() - syncs < threads * appendsPerThread);
+            assertEquals(appendsPerThread, log.getSyncCount() - syncs);
+        }
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 26, 50, recorder).close();
+        assertEquals(threads * appendsPerThread, recorder.events.size());
+    }
+
+    @Test
+    void testRollingOverForcesNothingUntilNextSync() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        Path segment = directory.resolve("screen.wal.0000000002");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            long syncs = log.getSyncCount();
+
+            assertEquals(1, log.rollSegment());
+            assertEquals(syncs, log.getSyncCount());
+            assertEquals(1, log.rollSegment());
+            // the new segment keeps its temporary name until the segment before it is on disk
+            assertFalse(Files.exists(segment));
+            long seq = log.writeConfirm(2, new int[][] { { 2, 2 } });
+            assertEquals(1, log.rollSegment());
+
+            log.syncRolledSegment();
+            assertEquals(syncs + 1, log.getSyncCount());
+            assertTrue(Files.exists(segment));
+            assertFalse(Files.exists(directory.resolve("screen.wal.0000000002.tmp")));
+            log.awaitDurable(seq);
+            assertEquals(syncs + 1, log.getSyncCount());
+        }
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 5, 5, recorder).close();
+        assertEquals(List.of("confirm 1 1,1", "confirm 2 2,2"), recorder.events);
+    }
+
+    @Test
+    void testCrashBeforeRolledSegmentIsRenamedLosesOnlyItsRecords() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.rollSegment();
+            log.writeConfirm(2, new int[][] { { 2, 2 } });
+            // the files as a crash would leave them, before any fsync
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(Files::isRegularFile).toList()) {
+                    Files.copy(path, crashed.resolve(path.getFileName()));
+                }
+            }
+        }
+        assertTrue(Files.exists(crashed.resolve("screen.wal.0000000002.tmp")));
+
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(crashed.resolve("screen.wal"), 5, 5, recorder)) {
+            assertEquals(2, log.appendConfirm(2, new int[][] { { 3, 3 } }));
+        }
+        assertEquals(List.of("confirm 1 1,1"), recorder.events);
+        assertFalse(Files.exists(crashed.resolve("screen.wal.0000000002.tmp")));
+    }
+
+    @Test
+    void testReplaysOnlyRecordsAfterSequence() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            assertEquals(1, log.rollSegment());
+            log.appendConfirm(2, new int[][] { { 2, 2 } });
+            log.appendCancel(1);
+            assertEquals(3, log.getLastSeq());
+        }
+        Recorder recorder = new Recorder();
+        try (BookingLog log = BookingLog.open(file, 5, 5, 2, recorder)) {
+            assertEquals(3, log.getLastSeq());
+            assertEquals(2, log.getSegments().size());
+        }
+        assertEquals(List.of("cancel 1"), recorder.events);
+    }
+
+    @Test
+    void testDeletesSegmentsCoveredBySequence() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        try (BookingLog log = BookingLog.open(file, 5, 5, new Recorder())) {
+            log.appendConfirm(1, new int[][] { { 1, 1 } });
+            log.rollSegment();
+            log.appendConfirm(2, new int[][] { { 2, 2 } });
+            log.rollSegment();
+            log.appendConfirm(3, new int[][] { { 3, 3 } });
+
+            assertEquals(0, log.deleteSegmentsThrough(0));
+            assertEquals(1, log.deleteSegmentsThrough(1));
+            assertEquals(1, log.deleteSegmentsThrough(5));
+            assertEquals(List.of(directory.resolve("screen.wal.0000000003")), log.getSegments());
+        }
+        assertFalse(Files.exists(directory.resolve("screen.wal.0000000001")));
+        Exception exception = assertThrows(IOException.class,
+                () -> BookingLog.open(file, 5, 5, new Recorder()));
+        assertTrue(exception.getMessage().contains("missing records 1 to 2"));
+
+        Recorder recorder = new Recorder();
+        BookingLog.open(file, 5, 5, 2, recorder).close();
+        assertEquals(List.of("confirm 3 3,3"), recorder.events);
+    }
+
+    @Test
+    void testBookingServiceRecoversFromLog() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        SeatMap seatMap = new SeatMap(5, 5);
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        try (BookingStore store = bookingService.openBookingLog(file)) {
+            bookingService.confirmBooking(bookingService.planSeats(3, "B02"));
+            bookingService.confirmBooking(bookingService.planSeats(2, null));
+            bookingService.cancelBooking("GIC0001");
+            bookingService.confirmBooking(bookingService.planSeats(1, "A01"));
+            bookingService.bookBatch(new int[] { 2, 1 });
+        }
+
+        SeatMap recoveredMap = new SeatMap(5, 5);
+        BookingServiceImpl recovered = new BookingServiceImpl(recoveredMap);
+        try (BookingStore store = recovered.openBookingLog(file)) {
+            assertArrayEquals(seatMap.getSeatMapArr(), recoveredMap.getSeatMapArr());
+            assertEquals(seatMap.getAvailableSeats(), recoveredMap.getAvailableSeats());
+            assertNull(recovered.getBookingIdCache().get("GIC0001"));
+            assertArrayEquals(bookingService.getBookingIdCache().get("GIC0002"),
+                    recovered.getBookingIdCache().get("GIC0002"));
+            assertArrayEquals(bookingService.getBookingIdCache().get("GIC0005"),
+                    recovered.getBookingIdCache().get("GIC0005"));
+            assertEquals("GIC0006", recovered.getBookingId());
+            assertArrayEquals(bookingService.planSeats(2, null), recovered.planSeats(2, null));
+        }
+    }
+
+    @Test
+    void testConcurrentBookingServiceRecoversFromLog() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        SeatMap seatMap = new SeatMap(5, 5);
+        ConcurrentBookingServiceImpl bookingService = new ConcurrentBookingServiceImpl(seatMap);
+        try (BookingLog log = bookingService.openBookingLog(file)) {
+            String first = bookingService.bookSeats(bookingService.planSeats(4, null));
+            bookingService.bookSeats(bookingService.planSeats(2, "C01"));
+            bookingService.cancelBooking(first);
+            bookingService.bookBatch(new int[] { 1, 2 });
+        }
+
+        SeatMap recoveredMap = new SeatMap(5, 5);
+        ConcurrentBookingServiceImpl recovered = new ConcurrentBookingServiceImpl(recoveredMap);
+        recovered.openBookingLog(file).close();
+        assertArrayEquals(seatMap.getSeatMapArr(), recoveredMap.getSeatMapArr());
+        assertEquals(20, recoveredMap.getAvailableSeats());
+        assertFalse(recovered.getBookingIdCache().containsKey("GIC0001"));
+        assertEquals(2, recovered.getBookingIdCache().get("GIC0004").length);
+        assertEquals("GIC0005", recovered.getBookingId());
+    }
+
+    @Test
+    void testMappedSeatMapRecoversBookingsFromLog() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        Path seats = directory.resolve("hall.seats");
+        SeatMap seatMap = SeatMap.map(seats, 5, 5, Durability.ASYNC);
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        try (BookingStore store = bookingService.openBookingLog(file)) {
+            bookingService.confirmBooking(bookingService.planSeats(3, null));
+            bookingService.confirmBooking(bookingService.planSeats(2, "C01"));
+        }
+
+        SeatMap restartedMap = SeatMap.map(seats, 5, 5, Durability.ASYNC);
+        BookingServiceImpl restarted = new BookingServiceImpl(restartedMap);
+        try (BookingStore store = restarted.openBookingLog(file)) {
+            assertEquals(20, restartedMap.getAvailableSeats());
+            assertEquals(bookingService.checkBooking("GIC0001"), restarted.checkBooking("GIC0001"));
+            restarted.cancelBooking("GIC0001");
+            assertEquals(23, restartedMap.getAvailableSeats());
+            assertFalse(restartedMap.isBooked(0, 0));
+            assertEquals("GIC0003", restarted.getBookingId());
+        }
+
+        SeatMap concurrentMap = SeatMap.map(seats, 5, 5, Durability.ASYNC);
+        ConcurrentBookingServiceImpl concurrent = new ConcurrentBookingServiceImpl(concurrentMap);
+        concurrent.openBookingLog(file).close();
+        assertEquals(23, concurrentMap.getAvailableSeats());
+        assertTrue(concurrent.getBookingIdCache().containsKey("GIC0002"));
+        assertFalse(concurrent.getBookingIdCache().containsKey("GIC0001"));
+        assertEquals("GIC0003", concurrent.getBookingId());
+    }
+}
@@ -0,0 +1,69 @@
+package com.yuzhengchua.cinema.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.BookingIndex;
+import com.yuzhengchua.cinema.models.SeatBitmap;
+
+class BookingSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static BookingSnapshot snapshot(long lastSeq, int... bookedColumns) {
+        SeatBitmap occupancy = new SeatBitmap(3, 70);
+        BookingIndex bookings = new BookingIndex();
+        for (int i = 0; i < bookedColumns.length; i++) {
+            occupancy.set(1, bookedColumns[i]);
+            bookings.put(i + 1, new int[][] { { 1, bookedColumns[i] } });
+        }
+        return new BookingSnapshot(lastSeq, bookedColumns.length + 1, occupancy, bookings);
+    }
+
+    @Test
+    void testWriteAndLoadRoundTrip() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        assertNull(BookingSnapshot.loadLatest(file, 3, 70));
+        Path written = snapshot(42, 0, 65).write(file);
+        assertEquals(directory.resolve("screen.wal.snap.0000000042"), written);
+
+        BookingSnapshot loaded = BookingSnapshot.loadLatest(file, 3, 70);
+        assertEquals(42, loaded.getLastSeq());
+        assertEquals(3, loaded.getNextBookingNumber());
+        assertEquals(2, loaded.getOccupancy().cardinality());
+        assertTrue(loaded.getOccupancy().get(1, 65));
+        assertArrayEquals(new int[][] { { 1, 65 } }, loaded.getBookings().get(2));
+        assertThrows(IllegalArgumentException.class, () -> BookingSnapshot.loadLatest(file, 3, 71));
+    }
+
+    @Test
+    void testTornSnapshotFallsBackToPrevious() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        snapshot(10, 5).write(file);
+        Path newest = snapshot(20, 5, 6).write(file);
+        try (RandomAccessFile raf = new RandomAccessFile(newest.toFile(), "rw")) {
+            raf.setLength(Files.size(newest) / 2);
+        }
+
+        BookingSnapshot loaded = BookingSnapshot.loadLatest(file, 3, 70);
+        assertEquals(10, loaded.getLastSeq());
+        assertEquals(1, loaded.getBookings().size());
+        assertEquals(2, BookingSnapshot.list(file).size());
+
+        Files.write(directory.resolve("screen.wal.snap.tmp"), new byte[8]);
+        assertEquals(List.of(directory.resolve("screen.wal.snap.0000000010"), newest), BookingSnapshot.list(file));
+    }
+}
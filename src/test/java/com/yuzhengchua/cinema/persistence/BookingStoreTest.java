@@ -0,0 +1,126 @@
+package com.yuzhengchua.cinema.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+
+class BookingStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Books single seats one by one and cancels every third booking.
+     */
+    private static void book(BookingServiceImpl bookingService, int bookings) {
+        for (int i = 0; i < bookings; i++) {
+            String bookingId = bookingService.getBookingId();
+            bookingService.confirmBooking(bookingService.planSeats(1, null));
+            if (i % 3 == 2) {
+                bookingService.cancelBooking(bookingId);
+            }
+        }
+    }
+
+    @Test
+    void testRecoversFromSnapshotAndTail() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        SeatMap seatMap = new SeatMap(10, 10);
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        try (BookingStore store = bookingService.openBookingLog(file, 10)) {
+            book(bookingService, 30);
+            store.awaitSnapshot();
+            assertTrue(store.getSnapshotSeq() > 0);
+            assertEquals(40, store.getLastSeq());
+        }
+
+        SeatMap recoveredMap = new SeatMap(10, 10);
+        BookingServiceImpl recovered = new BookingServiceImpl(recoveredMap);
+        try (BookingStore store = recovered.openBookingLog(file, 10)) {
+            assertArrayEquals(seatMap.getSeatMapArr(), recoveredMap.getSeatMapArr());
+            assertEquals(seatMap.getAvailableSeats(), recoveredMap.getAvailableSeats());
+            assertEquals(bookingService.getBookingIdCache().keySet(), recovered.getBookingIdCache().keySet());
+            assertEquals(bookingService.getBookingId(), recovered.getBookingId());
+            assertEquals(40, store.getLastSeq());
+        }
+    }
+
+    @Test
+    void testSnapshotsCompactLog() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        BookingServiceImpl bookingService = new BookingServiceImpl(new SeatMap(10, 10));
+        try (BookingStore store = bookingService.openBookingLog(file, 5)) {
+            for (int i = 0; i < 6; i++) {
+                book(bookingService, 6);
+                store.awaitSnapshot();
+            }
+            assertEquals(48, store.getLastSeq());
+            assertTrue(store.getLog().getSegments().size() <= 3);
+            assertTrue(BookingSnapshot.list(file).size() <= 2);
+            assertFalse(Files.exists(directory.resolve("screen.wal.0000000001")));
+        }
+    }
+
+    @Test
+    void testTornSnapshotFallsBackToPreviousAndLog() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        SeatMap seatMap = new SeatMap(10, 10);
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        try (BookingStore store = bookingService.openBookingLog(file, 5)) {
+            for (int i = 0; i < 4; i++) {
+                book(bookingService, 6);
+                store.awaitSnapshot();
+            }
+        }
+        Path newest = BookingSnapshot.list(file).get(BookingSnapshot.list(file).size() - 1);
+        Files.write(newest, new byte[] { 1, 2, 3 });
+
+        SeatMap recoveredMap = new SeatMap(10, 10);
+        BookingServiceImpl recovered = new BookingServiceImpl(recoveredMap);
+        recovered.openBookingLog(file, 5).close();
+        assertArrayEquals(seatMap.getSeatMapArr(), recoveredMap.getSeatMapArr());
+        assertEquals(bookingService.getBookingId(), recovered.getBookingId());
+    }
+
+    @Test
+    void testLockHoldersWaitForDiskAfterUnlocking() throws IOException {
+        Path file = directory.resolve("screen.wal");
+        BookingServiceImpl bookingService = new BookingServiceImpl(new SeatMap(10, 10));
+        try (BookingStore store = bookingService.openBookingLog(file, 100)) {
+            long syncs = store.getLog().getSyncCount();
+            bookingService.getLock().lock();
+            try {
+                book(bookingService, 3);
+                // nothing is forced while the lock is held
+                assertEquals(syncs, store.getLog().getSyncCount());
+            } finally {
+                bookingService.unlockAndAwaitDurable();
+            }
+            assertFalse(bookingService.getLock().isHeldByCurrentThread());
+            assertEquals(syncs + 1, store.getLog().getSyncCount());
+
+            // without the lock, every booking is on disk when it returns
+            book(bookingService, 1);
+            assertEquals(syncs + 2, store.getLog().getSyncCount());
+        }
+    }
+
+    @Test
+    void testRejectsInvalidInterval() {
+        Path file = directory.resolve("screen.wal");
+        assertThrows(IllegalArgumentException.class,
+                () -> new BookingServiceImpl(new SeatMap(5, 5)).openBookingLog(file, 0));
+    }
+}
@@ -0,0 +1,173 @@
+package com.yuzhengchua.cinema.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A load generator for the {@link BookingServer}: opens many connections from a
+ * single selector thread and has each of them book and cancel seats in rounds,
+ * sending {@code PLAN 2} and {@code CONFIRM} pipelined, then {@code CANCEL} for
+ * the booking made. The latency of every request, from sending it to reading
+ * its response, is recorded and summarised as percentiles.
+ * <p>
+ * Run it against a server with
+ * {@code java ... BookingLoadGenerator <host> <port> <connections> <rounds>}.
+ * </p>
+ */
+public final class BookingLoadGenerator {
+
+    /**
+     * The percentiles of the request latencies of a run.
+     */
+    public record Report(int requests, int errors, long p50Nanos, long p99Nanos, long maxNanos) {
+        @Override
+        public String toString() {
+            return String.format("%d requests, %d errors, p50 %.1f us, p99 %.1f us, max %.1f us", requests, errors,
+                    p50Nanos / 1e3, p99Nanos / 1e3, maxNanos / 1e3);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        System.out.println(run(address, Integer.parseInt(args[2]), Integer.parseInt(args[3])));
+    }
+
+    /**
+     * Runs the load and waits for every connection to finish its rounds.
+     *
+     * @param address     The address of the server.
+     * @param connections The number of concurrent connections.
+     * @param rounds      The number of rounds per connection.
+     * @return The latency report.
+     * @throws IOException if a connection fails.
+     */
+    public static Report run(InetSocketAddress address, int connections, int rounds) throws IOException {
+        long[] latencies = new long[connections * rounds * 3];
+        int recorded = 0;
+        int errors = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                Client client = new Client(channel, rounds);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                client.startRound();
+            }
+            int active = connections;
+            while (active > 0) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    String response;
+                    while ((response = client.readLine()) != null) {
+                        latencies[recorded++] = System.nanoTime() - client.sentAt[client.answered++];
+                        if (response.startsWith("ERR")) {
+                            errors++;
+                        }
+                        if (client.next(response)) {
+                            key.cancel();
+                            client.channel.close();
+                            active--;
+                            break;
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+        Arrays.sort(latencies, 0, recorded);
+        return new Report(recorded, errors, percentile(latencies, recorded, 0.50),
+                percentile(latencies, recorded, 0.99), recorded == 0 ? 0 : latencies[recorded - 1]);
+    }
+
+    private static long percentile(long[] sorted, int count, double percentile) {
+        return count == 0 ? 0 : sorted[(int) Math.ceil(percentile * count) - 1];
+    }
+
+    /**
+     * A connection going through its rounds.
+     */
+    private static final class Client {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private final StringBuilder line = new StringBuilder();
+        private final long[] sentAt;
+        private int sent;
+        private int answered;
+        private int roundsLeft;
+
+        Client(SocketChannel channel, int rounds) {
+            this.channel = channel;
+            this.sentAt = new long[rounds * 3];
+            this.roundsLeft = rounds;
+            this.in.flip();
+        }
+
+        void startRound() throws IOException {
+            roundsLeft--;
+            send("PLAN 2\nCONFIRM\n", 2);
+        }
+
+        /**
+         * Reacts to a response.
+         *
+         * @return true once the last round is complete.
+         */
+        boolean next(String response) throws IOException {
+            if (answered < sent) {
+                return false;
+            }
+            if (response.startsWith("OK GIC")) {
+                send("CANCEL " + response.substring(3) + "\n", 1);
+                return false;
+            }
+            if (roundsLeft == 0) {
+                return true;
+            }
+            startRound();
+            return false;
+        }
+
+        private void send(String requests, int count) throws IOException {
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sentAt[sent++] = now;
+            }
+            ByteBuffer out = ByteBuffer.wrap(requests.getBytes(StandardCharsets.ISO_8859_1));
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+
+        String readLine() throws IOException {
+            while (true) {
+                while (in.hasRemaining()) {
+                    char c = (char) in.get();
+                    if (c == '\n') {
+                        String response = line.toString();
+                        line.setLength(0);
+                        return response;
+                    }
+                    line.append(c);
+                }
+                in.clear();
+                int read = channel.read(in);
+                in.flip();
+                if (read < 0) {
+                    throw new IOException("closed by server");
+                }
+                if (read == 0) {
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.yuzhengchua.cinema.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.persistence.BookingStore;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+
+class BookingServerTest {
+    BookingServiceImpl bookingService;
+    BookingServer server;
+
+    @BeforeEach
+    void init() throws IOException {
+        bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        server = BookingServer.start(bookingService, new InetSocketAddress("127.0.0.1", 0), 2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            out.write("PLAN 2 A01\nCONFIRM\nCHECK GIC0001\r\nCANCEL GIC0001\nCHECK GIC0001\nPLAN x\nBOOK 1 A05\nHOLD\n"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            assertEquals("OK A01 A02", in.readLine());
+            assertEquals("OK GIC0001", in.readLine());
+            assertEquals("OK A01 A02", in.readLine());
+            assertEquals("OK", in.readLine());
+            assertEquals("ERR Booking ID not found: GIC0001", in.readLine());
+            assertTrue(in.readLine().startsWith("ERR "));
+            assertEquals("OK GIC0002 A05", in.readLine());
+            assertEquals("ERR Unknown command: HOLD", in.readLine());
+        }
+    }
+
+    @Test
+    void testClosingConnectionReleasesHeldSeats() throws IOException, InterruptedException {
+        try (Socket socket = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            socket.getOutputStream().write("PLAN 1300\n".getBytes(StandardCharsets.ISO_8859_1));
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            assertTrue(in.readLine().startsWith("OK "));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        boolean released = false;
+        while (!released && System.currentTimeMillis() < deadline) {
+            bookingService.getLock().lock();
+            try {
+                released = bookingService.checkSeatsAvailability(bookingService.openSession(), 1300);
+            } finally {
+                bookingService.getLock().unlock();
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(released);
+    }
+
+    @Test
+    void testFailedBookReleasesItsPlan(@TempDir Path directory) throws IOException {
+        bookingService.getLock().lock();
+        try {
+            BookingStore store = bookingService.openBookingLog(directory.resolve("screen.wal"), 100);
+            store.close();
+        } finally {
+            bookingService.getLock().unlock();
+        }
+        try (Socket booker = new Socket("127.0.0.1", server.getAddress().getPort());
+                Socket planner = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            booker.getOutputStream().write("BOOK 2 A01\n".getBytes(StandardCharsets.ISO_8859_1));
+            BufferedReader bookerIn = new BufferedReader(
+                    new InputStreamReader(booker.getInputStream(), StandardCharsets.ISO_8859_1));
+            assertTrue(bookerIn.readLine().startsWith("ERR "));
+
+            // the booker's connection stays open, so only the failed BOOK can free its seats
+            planner.getOutputStream().write("PLAN 1300\n".getBytes(StandardCharsets.ISO_8859_1));
+            BufferedReader plannerIn = new BufferedReader(
+                    new InputStreamReader(planner.getInputStream(), StandardCharsets.ISO_8859_1));
+            assertTrue(plannerIn.readLine().startsWith("OK "));
+        }
+    }
+
+    @Test
+    void testServesManyConnections() throws IOException {
+        // every connection holds at most two of the 1300 seats, so no request fails
+        BookingLoadGenerator.Report report = BookingLoadGenerator.run(server.getAddress(), 500, 4);
+
+        assertEquals(500 * 4 * 3, report.requests());
+        assertEquals(0, report.errors());
+        assertTrue(report.p50Nanos() <= report.p99Nanos());
+        assertEquals(1300, bookingService.getSeatMap().getAvailableSeats());
+    }
+}
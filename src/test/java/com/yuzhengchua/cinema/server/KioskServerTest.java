@@ -0,0 +1,216 @@
+package com.yuzhengchua.cinema.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.service.BookingServiceImpl;
+
+class KioskServerTest {
+    BookingServiceImpl bookingService;
+    KioskServer server;
+
+    @BeforeEach
+    void init() {
+        bookingService = new BookingServiceImpl(new SeatMap(26, 50));
+        server = new KioskServer(bookingService, "Inception");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void testKiosksKeepTheirBookingIds() throws Exception {
+        Kiosk first = new Kiosk(server);
+        Kiosk second = new Kiosk(server);
+        first.await("Please enter your selection:");
+        second.await("Please enter your selection:");
+
+        first.type("1\n2\n");
+        first.await("Booking id:GIC0001");
+        second.type("1\n2\n");
+        second.await("Booking id:GIC0002");
+
+        // the second kiosk confirms first and keeps the ID it was shown
+        second.type("\n");
+        second.await("Booking id: GIC0002 confirmed.");
+        first.type("\n");
+        first.await("Booking id: GIC0001 confirmed.");
+        first.type("3\n");
+        first.await("Bye!");
+        second.end();
+        first.session.get();
+        second.session.get();
+
+        assertEquals(0, server.getActiveSessions());
+        assertEquals(1296, bookingService.getSeatMap().getAvailableSeats());
+        assertEquals(2, bookingService.getBookingIdCache().get("GIC0001").length);
+        assertEquals(2, bookingService.getBookingIdCache().get("GIC0002").length);
+    }
+
+    @Test
+    void testEndedSessionReleasesHeldSeats() throws Exception {
+        Kiosk kiosk = new Kiosk(server);
+        kiosk.type("1\n1300\n");
+        kiosk.await("Enter blank to accept seat selection");
+        bookingService.getLock().lock();
+        try {
+            assertTrue(!bookingService.checkSeatsAvailability(bookingService.openSession(), 1));
+        } finally {
+            bookingService.getLock().unlock();
+        }
+
+        kiosk.end();
+        kiosk.session.get();
+
+        bookingService.getLock().lock();
+        try {
+            assertTrue(bookingService.checkSeatsAvailability(bookingService.openSession(), 1300));
+        } finally {
+            bookingService.getLock().unlock();
+        }
+    }
+
+    @Test
+    void testServesKioskOverSocket() throws IOException {
+        server.listen(new InetSocketAddress("127.0.0.1", 0));
+        try (Socket socket = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("Welcome to GIC Cinemas", in.readLine());
+            socket.getOutputStream().write("3\n".getBytes(StandardCharsets.UTF_8));
+            String line;
+            String last = null;
+            while ((line = in.readLine()) != null) {
+                last = line;
+            }
+            assertEquals("Thank you for using GIC Cinemas system. Bye!", last);
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void testManyIdleSessionsFitInSmallHeap() throws Exception {
+        assertTrue(KioskServer.usesVirtualThreads());
+        int count = 10_000;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = usedHeap(runtime);
+
+        Kiosk[] kiosks = new Kiosk[count];
+        for (int i = 0; i < count; i++) {
+            kiosks[i] = new Kiosk(server);
+        }
+        for (Kiosk kiosk : kiosks) {
+            kiosk.await("Please enter your selection:");
+        }
+        assertEquals(count, server.getActiveSessions());
+        long perSession = (usedHeap(runtime) - heapBefore) / count;
+        int carriers = threads.getThreadCount() - threadsBefore;
+
+        // a kiosk waiting at the menu holds its scanner, workflow, planning session and parked thread
+        assertTrue(perSession < 16 * 1024, "heap per idle session: " + perSession + " bytes");
+        // idle sessions are parked virtual threads sharing the carriers, which are never pinned
+        assertTrue(carriers <= runtime.availableProcessors(), "platform threads for idle sessions: " + carriers);
+        for (Kiosk kiosk : kiosks) {
+            kiosk.end();
+        }
+        for (Kiosk kiosk : kiosks) {
+            kiosk.session.get();
+        }
+        assertEquals(0, server.getActiveSessions());
+    }
+
+    private static long usedHeap(Runtime runtime) throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A simulated kiosk typing into a session and recording what it prints.
+     * Input is queued rather than piped, as waiting on a pipe polls.
+     */
+    private static final class Kiosk extends InputStream {
+        private static final byte[] END = new byte[0];
+        private final BlockingQueue<byte[]> typed = new LinkedBlockingQueue<>();
+        private final ByteArrayOutputStream printed = new ByteArrayOutputStream(256);
+        private final Future<?> session;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        Kiosk(KioskServer server) {
+            this.session = server.open(this, printed);
+        }
+
+        void type(String text) {
+            typed.add(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void end() {
+            typed.add(END);
+        }
+
+        void await(String text) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!printed.toString(StandardCharsets.UTF_8).contains(text)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError("Kiosk never printed " + text + " but:\n" + printed);
+                }
+                Thread.sleep(1);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (chunk == END) {
+                return -1;
+            }
+            try {
+                while (position == chunk.length) {
+                    chunk = typed.take();
+                    position = 0;
+                    if (chunk == END) {
+                        return -1;
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            int read = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, read);
+            position += read;
+            return read;
+        }
+    }
+}
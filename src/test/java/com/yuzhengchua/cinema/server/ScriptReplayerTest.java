@@ -0,0 +1,105 @@
+package com.yuzhengchua.cinema.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+class ScriptReplayerTest {
+
+    private static String replay(ScriptReplayer replayer, String script) throws IOException {
+        StringWriter results = new StringWriter();
+        replayer.replay(new BufferedReader(new StringReader(script)), results);
+        return results.toString();
+    }
+
+    @Test
+    void testReplaysCommandsAgainstLastHall() throws IOException {
+        ScriptReplayer replayer = new ScriptReplayer();
+        String results = replay(replayer, """
+                BOOK 2
+                # a day of bookings
+                HALL Inception 8 10
+
+                BOOK 4
+                book 2 B03
+                CHECK GIC0002
+                CANCEL GIC0001
+                CHECK GIC0001
+                BOOK 100
+                HALL Tenet 1 2
+                BOOK 2
+                """);
+
+        assertEquals("""
+                ERR No hall defined
+                OK
+                OK GIC0001 A04 A05 A06 A07
+                OK GIC0002 B03 B04
+                OK B03 B04
+                OK
+                ERR Booking ID not found: GIC0001
+                ERR Not enough seats available to book: 100
+                OK
+                OK GIC0001 A01 A02
+                """, results);
+        assertEquals(10, replayer.getCommands());
+        assertEquals(3, replayer.getErrors());
+    }
+
+    @Test
+    void testRejectsInvalidHalls() throws IOException {
+        String results = replay(new ScriptReplayer(), """
+                HALL Inception
+                HALL Inception 703 10
+                HALL
+                HALLWAY 2 2
+                """);
+
+        assertEquals("""
+                ERR Invalid hall: Inception
+                ERR Invalid hall size: 703 x 10
+                ERR Invalid hall:\s
+                ERR No hall defined
+                """, results);
+    }
+
+    @Test
+    void testReplaysArenaLayouts() throws IOException {
+        String results = replay(new ScriptReplayer(), """
+                LAYOUT Finals 6/27x4,_2,4
+                BOOK 2
+                BOOK 2 AA01
+                CHECK GIC0002
+                LAYOUT Finals 2,,2
+                LAYOUT 2x2
+                """);
+
+        assertEquals("""
+                OK
+                OK GIC0001 A05 A06
+                OK GIC0002 AA01 AA02
+                OK AA01 AA02
+                ERR Invalid seat layout: 2,,2
+                ERR Invalid hall: 2x2
+                """, results);
+    }
+
+    @Test
+    void testReplaysLongScript() throws IOException {
+        StringBuilder script = new StringBuilder("HALL Inception 26 50\n");
+        for (int i = 1; i <= 10_000; i++) {
+            script.append("BOOK 3\n").append(String.format("CANCEL GIC%04d%n", i));
+        }
+        ScriptReplayer replayer = new ScriptReplayer();
+        String results = replay(replayer, script.toString());
+
+        assertEquals(20_001, replayer.getCommands());
+        assertEquals(0, replayer.getErrors());
+        assertEquals(20_001, results.lines().count());
+    }
+}
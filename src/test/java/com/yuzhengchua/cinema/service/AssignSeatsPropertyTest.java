@@ -0,0 +1,107 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+/**
+ * Checks that seat placement through the free run index produces exactly the
+ * same seats as the original seat-by-seat walk over a 2D seat array.
+ */
+class AssignSeatsPropertyTest {
+
+    @RepeatedTest(50)
+    void testPlacementMatchesSeatBySeatWalk(RepetitionInfo repetitionInfo) {
+        Random random = new Random(repetitionInfo.getCurrentRepetition());
+        int rows = 1 + random.nextInt(26);
+        int seatsPerRow = 1 + random.nextInt(50);
+        SeatMap seatMap = new SeatMap(rows, seatsPerRow);
+        BookingServiceImpl bookingService = new BookingServiceImpl(seatMap);
+        List<String> bookingIds = new ArrayList<>();
+
+        for (int step = 0; step < 60; step++) {
+            if (seatMap.getAvailableSeats() == 0 || (!bookingIds.isEmpty() && random.nextInt(4) == 0)) {
+                bookingService.cancelBooking(bookingIds.remove(random.nextInt(bookingIds.size())));
+                continue;
+            }
+            int seatsToBook = 1 + random.nextInt(Math.min(seatMap.getAvailableSeats(), seatsPerRow * 2));
+            String designatedSeat = random.nextBoolean() ? null : randomSeat(random, rows, seatsPerRow);
+
+            int[][] expected = referencePlan(seatMap.getSeatMapArr(), seatsToBook, designatedSeat);
+            int[][] actual = bookingService.planSeats(seatsToBook, designatedSeat);
+            assertArrayEquals(expected, actual);
+
+            if (random.nextBoolean()) {
+                bookingIds.add(bookingService.getBookingId());
+                bookingService.confirmBooking(actual);
+            }
+        }
+    }
+
+    private static String randomSeat(Random random, int rows, int seatsPerRow) {
+        char row = (char) ('A' + random.nextInt(rows));
+        int col = 1 + random.nextInt(seatsPerRow);
+        return col < 10 && random.nextBoolean() ? row + "0" + col : row + String.valueOf(col);
+    }
+
+    /**
+     * The original placement: walk seat by seat from the starting seat, and
+     * rescan each new row to centre the remaining seats in it.
+     */
+    private static int[][] referencePlan(int[][] committed, int seatsToBook, String designatedSeat) {
+        int rows = committed.length;
+        int seatsPerRow = committed[0].length;
+        int[][] seats = new int[rows][];
+        for (int i = 0; i < rows; i++) {
+            seats[i] = committed[i].clone();
+        }
+        int row;
+        int col;
+        if (designatedSeat == null) {
+            row = rows - 1;
+            int available = availableInRow(seats[row]);
+            col = seatsToBook < available ? available / 2 - seatsToBook / 2 : 0;
+        } else {
+            row = rows - 1 - (designatedSeat.charAt(0) - 'A');
+            col = Integer.parseInt(designatedSeat.substring(1)) - 1;
+        }
+        int remaining = seatsToBook;
+        int i = 0;
+        int[][] coords = new int[seatsToBook][2];
+        while (i < seatsToBook) {
+            if (seats[row][col] == 0) {
+                seats[row][col] = 2;
+                remaining--;
+                coords[i][0] = row;
+                coords[i][1] = col;
+                i++;
+                continue;
+            }
+            if (col < seatsPerRow - 1) {
+                col++;
+            } else {
+                row = row <= 0 ? rows - 1 : row - 1;
+                int available = availableInRow(seats[row]);
+                col = remaining < available ? available / 2 - remaining / 2 : 0;
+            }
+        }
+        return coords;
+    }
+
+    private static int availableInRow(int[] row) {
+        int available = 0;
+        for (int seat : row) {
+            if (seat == 0) {
+                available++;
+            }
+        }
+        return available;
+    }
+}
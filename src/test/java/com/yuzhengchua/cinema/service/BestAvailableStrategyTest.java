@@ -0,0 +1,121 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+class BestAvailableStrategyTest {
+    SeatMap seatMap;
+    BookingServiceImpl bookingService;
+
+    @BeforeEach
+    void init() {
+        seatMap = new SeatMap(10, 10);
+        bookingService = new BookingServiceImpl(seatMap);
+        bookingService.setSeatAllocationStrategy(new BestAvailableStrategy());
+    }
+
+    @Test
+    void testSeatsPartyCentredInPreferredRow() {
+        // row G is two thirds of the way from row A towards the screen
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 }, { 3, 5 }, { 3, 6 } }, bookingService.planSeats(4, null));
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 }, { 3, 5 } }, bookingService.planSeats(3, null));
+    }
+
+    @Test
+    void testSplitPenaltyDecidesBetweenNeighbouringRowAndSplit() {
+        seatMap.bookSeat(3, 5);
+        assertArrayEquals(new int[][] { { 4, 3 }, { 4, 4 }, { 4, 5 }, { 4, 6 } }, bookingService.planSeats(4, null));
+
+        bookingService.setSeatAllocationStrategy(new BestAvailableStrategy(2.0 / 3, 1, 1, 0));
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 }, { 3, 6 }, { 3, 7 } }, bookingService.planSeats(4, null));
+    }
+
+    @Test
+    void testPlansAroundSeatsHeldByOtherSessions() {
+        PlanningSession first = bookingService.openSession();
+        PlanningSession second = bookingService.openSession();
+        int[][] firstPlan = bookingService.planSeats(first, 6, null);
+        int[][] secondPlan = bookingService.planSeats(second, 6, null);
+
+        assertArrayEquals(new int[][] { { 3, 2 }, { 3, 3 }, { 3, 4 }, { 3, 5 }, { 3, 6 }, { 3, 7 } }, firstPlan);
+        assertArrayEquals(new int[][] { { 4, 2 }, { 4, 3 }, { 4, 4 }, { 4, 5 }, { 4, 6 }, { 4, 7 } }, secondPlan);
+    }
+
+    @Test
+    void testPartyWiderThanEveryRowSpillsOutsideBatchesOnly() {
+        BookingServiceImpl defaultService = new BookingServiceImpl(new SeatMap(10, 10));
+        assertArrayEquals(defaultService.planSeats(25, null), bookingService.planSeats(25, null));
+
+        SeatMap batchSeatMap = new SeatMap(10, 10);
+        BookingServiceImpl batchService = new BookingServiceImpl(batchSeatMap);
+        batchService.setSeatAllocationStrategy(new BestAvailableStrategy());
+        // a batch seats every party together whatever the strategy, so it cannot spill a party across rows
+        assertThrows(IllegalArgumentException.class,
+                () -> batchService.bookBatch(new int[] { 40, 30, 5, 5, 5, 5, 5, 5 }));
+        assertEquals(100, batchSeatMap.getAvailableSeats());
+        assertEquals(12, batchService.bookBatch(new int[] { 10, 10, 10, 10, 10, 10, 10, 10, 5, 5, 5, 5 }).length);
+        assertEquals(0, batchSeatMap.getAvailableSeats());
+    }
+
+    @Test
+    void testStrategyMustPlanEverySeat() {
+        bookingService.setSeatAllocationStrategy((allocation, seatsToBook) -> allocation.take(9, 0));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.planSeats(2, null));
+        bookingService.setSeatAllocationStrategy((allocation, seatsToBook) -> {
+            allocation.take(9, 0);
+            allocation.take(9, 0);
+        });
+        assertThrows(IllegalArgumentException.class, () -> bookingService.planSeats(2, null));
+
+        bookingService.setSeatAllocationStrategy(SeatAllocationStrategy.BACK_ROW_FIRST);
+        assertArrayEquals(new int[][] { { 9, 4 }, { 9, 5 } }, bookingService.planSeats(2, null));
+        assertEquals(100, seatMap.getAvailableSeats());
+    }
+
+    @Test
+    void testRejectsInvalidWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new BestAvailableStrategy(1.5, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BestAvailableStrategy(Double.NaN, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BestAvailableStrategy(0.5, -1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BestAvailableStrategy(0.5, 1, 1, 1, -1, ForkJoinPool.commonPool()));
+    }
+
+    @Test
+    void testParallelSearchPlansSameSeatsAsSequentialSearch() {
+        Random random = new Random(42);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int hall = 0; hall < 20; hall++) {
+            SeatMap sequentialSeatMap = new SeatMap(100, 40);
+            SeatMap parallelSeatMap = new SeatMap(100, 40);
+            for (int seat = 0; seat < 4000; seat++) {
+                if (random.nextInt(100) < 50 + hall * 2) {
+                    sequentialSeatMap.bookSeat(seat / 40, seat % 40);
+                    parallelSeatMap.bookSeat(seat / 40, seat % 40);
+                }
+            }
+            BookingServiceImpl sequential = new BookingServiceImpl(sequentialSeatMap);
+            sequential.setSeatAllocationStrategy(new BestAvailableStrategy(0.5, 1, 1, 0.5, Integer.MAX_VALUE, pool));
+            BookingServiceImpl parallel = new BookingServiceImpl(parallelSeatMap);
+            parallel.setSeatAllocationStrategy(new BestAvailableStrategy(0.5, 1, 1, 0.5, 0, pool));
+            for (int seatsToBook : new int[] { 1, 2, 4, 7, 12, 45 }) {
+                if (seatsToBook > sequentialSeatMap.getAvailableSeats()) {
+                    break;
+                }
+                int[][] plan = sequential.planSeats(seatsToBook, null);
+                assertArrayEquals(plan, parallel.planSeats(seatsToBook, null));
+                sequential.confirmBooking(plan);
+                parallel.confirmBooking(plan);
+            }
+        }
+        pool.shutdown();
+    }
+}
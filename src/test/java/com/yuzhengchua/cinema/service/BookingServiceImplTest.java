@@ -2,15 +2,28 @@ package com.yuzhengchua.cinema.service;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import com.yuzhengchua.cinema.events.SeatEvent;
+import com.yuzhengchua.cinema.events.SeatEventBus;
+import com.yuzhengchua.cinema.metrics.BookingMetrics;
+import com.yuzhengchua.cinema.metrics.SimpleMeterRegistry;
+import com.yuzhengchua.cinema.models.SeatLayout;
 import com.yuzhengchua.cinema.models.SeatMap;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -41,6 +54,13 @@ class BookingServiceImplTest {
 
         }
 
+        @Test
+        void testDesignatedSeatIgnoresCase() {
+                int[][] lower = bookingServiceImpl.planSeats(3, "b02");
+                assertArrayEquals(new int[][] { { 3, 1 }, { 3, 2 }, { 3, 3 } }, lower);
+                assertArrayEquals(lower, bookingServiceImpl.planSeats(3, "B02"));
+        }
+
         @Test
         void testCheckInvalidBookingId() {
                 try {
@@ -95,6 +115,21 @@ class BookingServiceImplTest {
 
         }
 
+        @Test
+        void testConfirmRejectsRepeatedAndShortCoordinates() {
+                Exception e = assertThrows(IllegalArgumentException.class,
+                                () -> bookingServiceImpl.confirmBooking(new int[][] { { 0, 0 }, { 0, 0 } }));
+                assertEquals("Invalid planned coordinates: [0, 0]", e.getMessage());
+                e = assertThrows(IllegalArgumentException.class,
+                                () -> bookingServiceImpl.confirmBooking(new int[][] { { 0 } }));
+                assertEquals("Invalid planned coordinates: [0]", e.getMessage());
+                assertEquals(25, seatMap.getAvailableSeats());
+                assertFalse(seatMap.isBooked(0, 0));
+
+                bookingServiceImpl.confirmBooking(new int[][] { { 0, 0 }, { 0, 1 } });
+                assertEquals(23, seatMap.getAvailableSeats());
+        }
+
         @Test
         void testGetBookingId() {
                 String bookingId = bookingServiceImpl.getBookingId();
@@ -428,4 +463,209 @@ class BookingServiceImplTest {
                 bookingServiceImpl.confirmBooking(planSeats(1, "B03"));
                 assertArrayEquals(new int[][] { { 3, 2 } }, bookingServiceImpl.getBookingIdCache().get("GIC0001"));
         }
+
+        @Test
+        void testOnlyCanonicalBookingIdsMatch() {
+                bookingServiceImpl.confirmBooking(planSeats(1, "B03"));
+                assertTrue(bookingServiceImpl.getBookingIdCache().containsKey("GIC0001"));
+                for (String bookingId : new String[] { "GIC1", "GIC00001", "gic0001", "GIC000A", "GIC99999999999" }) {
+                        assertFalse(bookingServiceImpl.getBookingIdCache().containsKey(bookingId));
+                        assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.checkBooking(bookingId));
+                        assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.cancelBooking(bookingId));
+                }
+        }
+
+        @Test
+        void testRenderedSeatMapFollowsBookings() {
+                String bookingId = bookingServiceImpl.getBookingId();
+                bookingServiceImpl.confirmBooking(planSeats(2, "C02"));
+                planSeats(3, null);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                bookingServiceImpl.printSeatMapPlan(new PrintStream(out, true, StandardCharsets.ISO_8859_1));
+
+                String expected = SeatMapRenderer.render(seatMap.getOccupancy(), null)
+                                .replace("A  .   .   .   .", "A  .   O   O   O");
+                assertEquals(expected, out.toString(StandardCharsets.ISO_8859_1));
+                assertEquals(expected, bookingServiceImpl.printSeatMapPlan());
+                assertTrue(bookingServiceImpl.checkBooking(bookingId).contains("C  .   O   O   .   ."));
+
+                bookingServiceImpl.cancelBooking(bookingId);
+                seatMap.bookSeat(0, 4);
+                assertTrue(bookingServiceImpl.printSeatMapPlan().contains("C  .   .   .   .   ."));
+                assertTrue(bookingServiceImpl.printSeatMapPlan().contains("E  .   .   .   .   #"));
+        }
+
+        @Test
+        void testBookBatchSeatsEveryPartyTogether() {
+                String[] bookingIds = bookingServiceImpl.bookBatch(new int[] { 2, 3, 4 });
+
+                assertArrayEquals(new String[] { "GIC0001", "GIC0002", "GIC0003" }, bookingIds);
+                assertArrayEquals(new int[][] { { 4, 0 }, { 4, 1 } },
+                                bookingServiceImpl.getBookingIdCache().get("GIC0001"));
+                assertArrayEquals(new int[][] { { 4, 2 }, { 4, 3 }, { 4, 4 } },
+                                bookingServiceImpl.getBookingIdCache().get("GIC0002"));
+                assertArrayEquals(new int[][] { { 3, 0 }, { 3, 1 }, { 3, 2 }, { 3, 3 } },
+                                bookingServiceImpl.getBookingIdCache().get("GIC0003"));
+                assertEquals(16, seatMap.getAvailableSeats());
+                assertEquals("GIC0004", bookingServiceImpl.getBookingId());
+
+                // the seat left in row D and the ends of later rows must not split a party across rows
+                for (String bookingId : bookingServiceImpl.bookBatch(new int[] { 3, 3, 1, 3 })) {
+                        assertContiguous(bookingServiceImpl.getBookingIdCache().get(bookingId));
+                }
+                assertEquals(6, seatMap.getAvailableSeats());
+        }
+
+        @Test
+        void testBookBatchRejectsPartyWithoutAdjacentSeats() {
+                bookingServiceImpl.confirmBooking(planSeats(1, "C03"));
+
+                assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.bookBatch(new int[] { 6 }));
+                assertEquals(4, bookingServiceImpl.bookBatch(new int[] { 5, 5, 5, 5 }).length);
+                // four seats remain in row C, but the booked C03 splits them in two
+                assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.bookBatch(new int[] { 4 }));
+                assertEquals(4, seatMap.getAvailableSeats());
+                assertEquals("GIC0006", bookingServiceImpl.getBookingId());
+        }
+
+        private static void assertContiguous(int[][] seats) {
+                for (int i = 1; i < seats.length; i++) {
+                        assertEquals(seats[0][0], seats[i][0]);
+                        assertEquals(seats[i - 1][1] + 1, seats[i][1]);
+                }
+        }
+
+        @Test
+        void testBookBatchIsAllOrNothing() {
+                bookingServiceImpl.confirmBooking(planSeats(20, null));
+                String before = bookingServiceImpl.printSeatMapPlan();
+
+                assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.bookBatch(new int[] { 3, 3 }));
+                assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.bookBatch(new int[] { 2, 0 }));
+                assertThrows(IllegalArgumentException.class, () -> bookingServiceImpl.bookBatch(new int[0]));
+
+                assertEquals(before, bookingServiceImpl.printSeatMapPlan());
+                assertEquals(5, seatMap.getAvailableSeats());
+                assertEquals("GIC0002", bookingServiceImpl.getBookingId());
+                assertEquals(2, bookingServiceImpl.bookBatch(new int[] { 4, 1 }).length);
+                assertEquals(0, seatMap.getAvailableSeats());
+        }
+
+        @Test
+        void testMultiLetterRowLabels() {
+                BookingServiceImpl service = new BookingServiceImpl(new SeatMap(28, 3));
+                assertArrayEquals(new int[][] { { 0, 1 } }, service.planSeats(1, "AB02"));
+                assertThrows(IllegalArgumentException.class, () -> service.planSeats(1, "AC01"));
+
+                String seatMapPlan = service.printSeatMapPlan();
+                assertTrue(seatMapPlan.contains("\nAB  .   O   .   \n"));
+                assertTrue(seatMapPlan.contains("\nZ   .   .   .   \n"));
+                assertTrue(seatMapPlan.endsWith("\nA   .   .   .   \n    1   2   3   \n"));
+        }
+
+        @Test
+        void testLayoutSeatsArePlannedAroundAisles() {
+                seatMap = new SeatMap(SeatLayout.parse("3,_1,3/2,_3,2"));
+                bookingServiceImpl = new BookingServiceImpl(seatMap);
+
+                // planning starts in row A and never plans the aisle
+                assertArrayEquals(new int[][] { { 1, 1 }, { 1, 2 }, { 1, 4 }, { 1, 5 }, { 1, 6 } },
+                                planSeats(5, null));
+                assertArrayEquals(new int[][] { { 1, 4 }, { 1, 5 } }, planSeats(2, "A04"));
+                bookingServiceImpl.confirmBooking(planSeats(10, null));
+                assertEquals(0, seatMap.getAvailableSeats());
+                assertThrows(IllegalArgumentException.class, () -> planSeats(1, null));
+                assertEquals("""
+                                           SCREEN
+                                ----------------------------
+                                B  #   #               #   #   \n\
+                                A  #   #   #       #   #   #   \n\
+                                   1   2   3   4   5   6   7   \n\
+                                """, bookingServiceImpl.printSeatMapPlan());
+        }
+
+        @Test
+        void testArenaLayoutFillsUp() {
+                seatMap = new SeatMap(SeatLayout.parse("320x_2,150,_10,150,_2"));
+                bookingServiceImpl = new BookingServiceImpl(seatMap);
+                assertEquals(96_000, seatMap.getCapacity());
+
+                for (int i = 0; i < 9_600; i++) {
+                        bookingServiceImpl.confirmBooking(planSeats(10, null));
+                }
+                assertEquals(0, seatMap.getAvailableSeats());
+                assertEquals(9_600, bookingServiceImpl.getBookingIdCache().size());
+                assertThrows(IllegalArgumentException.class, () -> planSeats(1, null));
+        }
+
+        @Test
+        void testPublishesSeatEvents() {
+                long[] now = { 0 };
+                BookingServiceImpl bookingService = new BookingServiceImpl(seatMap, 60_000, () -> now[0]);
+                SeatEventBus bus = new SeatEventBus(16);
+                bookingService.setSeatEventBus(bus);
+                SeatEventBus.Subscription subscription = bus.subscribe(SeatEventBus.OverflowPolicy.DROP_OLDEST);
+
+                PlanningSession session = bookingService.openSession();
+                int[][] plan = bookingService.planSeats(session, 2, "A01");
+                bookingService.planSeats(session, 1, "B03");
+                bookingService.closeSession(session);
+                String bookingId = bookingService.getBookingId();
+                bookingService.confirmBooking(bookingService.planSeats(2, "A01"));
+                bookingService.cancelBooking(bookingId);
+                bookingService.planSeats(3, null);
+                now[0] = 61_000;
+                bookingService.checkSeatsAvailability(1);
+                String[] batch = bookingService.bookBatch(new int[] { 1, 2 });
+
+                SeatEvent.Type[] types = { SeatEvent.Type.HELD, SeatEvent.Type.RELEASED, SeatEvent.Type.HELD,
+                                SeatEvent.Type.RELEASED, SeatEvent.Type.HELD, SeatEvent.Type.CONFIRMED,
+                                SeatEvent.Type.CANCELLED, SeatEvent.Type.HELD, SeatEvent.Type.EXPIRED,
+                                SeatEvent.Type.CONFIRMED, SeatEvent.Type.CONFIRMED };
+                SeatEvent[] events = new SeatEvent[types.length];
+                for (int i = 0; i < types.length; i++) {
+                        events[i] = subscription.poll();
+                        assertEquals(types[i], events[i].getType());
+                }
+                assertNull(subscription.poll());
+                assertArrayEquals(plan, events[0].getSeats());
+                assertArrayEquals(plan, events[1].getSeats());
+                assertArrayEquals(new int[][] { { 3, 2 } }, events[3].getSeats());
+                assertNull(events[4].getBookingId());
+                assertEquals(bookingId, events[5].getBookingId());
+                assertArrayEquals(plan, events[5].getSeats());
+                assertEquals(bookingId, events[6].getBookingId());
+                assertArrayEquals(plan, events[6].getSeats());
+                assertArrayEquals(events[7].getSeats(), events[8].getSeats());
+                assertEquals(61_000, events[8].getTimeMillis());
+                assertEquals(batch[0], events[9].getBookingId());
+                assertEquals(1, events[9].getSeatCount());
+                assertEquals(batch[1], events[10].getBookingId());
+                assertEquals(2, events[10].getSeatCount());
+        }
+
+        @Test
+        void testOverrunSeatEventsDoNotBlockBookings() {
+                SimpleMeterRegistry registry = new SimpleMeterRegistry();
+                SeatEventBus bus = new SeatEventBus(2);
+                bookingServiceImpl.setMetrics(new BookingMetrics(registry));
+                bookingServiceImpl.setSeatEventBus(bus);
+                SeatEventBus.Subscription audit = bus.subscribe(SeatEventBus.OverflowPolicy.BACK_PRESSURE);
+
+                for (int i = 0; i < 3; i++) {
+                        bookingServiceImpl.confirmBooking(planSeats(1, null));
+                }
+
+                // six events: the ring and the spill queue keep four, two are lost
+                assertEquals(3, bookingServiceImpl.getBookingIdCache().size());
+                assertEquals(2, registry.getCount("booking.events.overrun"));
+                assertEquals(2, bus.getOverrunCount());
+                List<SeatEvent> events = new ArrayList<>();
+                assertEquals(4, audit.drain(events::add, 10));
+                assertEquals(2, audit.getDroppedCount());
+                assertEquals(0, events.get(0).getSequence());
+                assertEquals(1, events.get(1).getSequence());
+                assertEquals(4, events.get(2).getSequence());
+                assertEquals(SeatEvent.Type.CONFIRMED, events.get(3).getType());
+        }
 }
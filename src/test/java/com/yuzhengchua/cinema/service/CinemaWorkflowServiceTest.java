@@ -1,5 +1,8 @@
 package com.yuzhengchua.cinema.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
@@ -8,6 +11,9 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Scanner;
 
@@ -96,6 +102,33 @@ class CinemaWorkflowServiceTest {
         verify(mockBookingService,times(1)).planSeats(4,"B03");
     }
 
+    @Test
+    void testRunCaseOneReportsReservationOnceSeatsAreHeld() {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(printed, true, StandardCharsets.UTF_8);
+        cinemaWorkflowService = new CinemaWorkflowService(mockScanner, out, mockBookingService, mockSeatMap, TITLE,
+                () -> { });
+        when(mockScanner.nextLine()).thenReturn("4", "B03", "");
+        when(mockBookingService.checkSeatsAvailability(4)).thenReturn(true);
+        when(mockBookingService.checkSeatsMoreThanZero(4)).thenReturn(true);
+        when(mockBookingService.getBookingId()).thenReturn("GIC0001");
+        when(mockBookingService.getHoldMillis()).thenReturn(5 * 60 * 1000L);
+        when(mockBookingService.planSeats(4, "")).thenAnswer(invocation -> {
+            assertFalse(printed.toString(StandardCharsets.UTF_8).contains("reserved"));
+            return new int[][]{{1,1}};
+        });
+        when(mockBookingService.planSeats(4, "B03")).thenReturn(new int[][]{{1,2}});
+
+        cinemaWorkflowService.runCaseOne();
+
+        String output = printed.toString(StandardCharsets.UTF_8);
+        String reserved = "Successfully reserved 4 Avengers tickets." + System.lineSeparator()
+                + "Your seats are held for 5 minute(s)." + System.lineSeparator();
+        assertTrue(output.contains(reserved), output);
+        // a new seating position keeps the hold of the booking rather than reserving again
+        assertEquals(output.indexOf(reserved), output.lastIndexOf(reserved));
+    }
+
     @Test
     void testRunCaseOneWithTooManySeats() {
         when(mockScanner.nextLine()).thenReturn("4","\n", "\n");
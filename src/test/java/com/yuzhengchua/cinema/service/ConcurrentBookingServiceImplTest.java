@@ -0,0 +1,198 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+import com.yuzhengchua.cinema.persistence.BookingLog;
+
+class ConcurrentBookingServiceImplTest {
+    SeatMap seatMap;
+    ConcurrentBookingServiceImpl bookingService;
+
+    @BeforeEach
+    void init() {
+        seatMap = new SeatMap(5, 5);
+        bookingService = new ConcurrentBookingServiceImpl(seatMap);
+    }
+
+    @Test
+    void testPlanAndConfirmMatchesSingleThreadedPlacement() {
+        BookingServiceImpl reference = new BookingServiceImpl(new SeatMap(5, 5));
+        assertArrayEquals(reference.planSeats(3, "B03"), bookingService.planSeats(3, "B03"));
+        bookingService.confirmBooking(bookingService.planSeats(10, null));
+        reference.confirmBooking(reference.planSeats(10, null));
+        assertArrayEquals(reference.getSeatMap().getSeatMapArr(), seatMap.getSeatMapArr());
+        assertEquals(15, seatMap.getAvailableSeats());
+        assertEquals("GIC0002", bookingService.getBookingId());
+    }
+
+    @Test
+    void testBookBatchMatchesSingleThreadedPlacement() {
+        BookingServiceImpl reference = new BookingServiceImpl(new SeatMap(5, 5));
+        assertArrayEquals(reference.bookBatch(new int[] { 3, 4, 2 }),
+                bookingService.bookBatch(new int[] { 3, 4, 2 }));
+        assertArrayEquals(reference.getSeatMap().getSeatMapArr(), seatMap.getSeatMapArr());
+        assertArrayEquals(reference.getBookingIdCache().get("GIC0002"),
+                bookingService.getBookingIdCache().get("GIC0002"));
+        assertEquals(16, seatMap.getAvailableSeats());
+        assertThrows(IllegalArgumentException.class, () -> bookingService.bookBatch(new int[] { 10, 7 }));
+        assertEquals(16, seatMap.getAvailableSeats());
+        assertEquals("GIC0004", bookingService.getBookingId());
+    }
+
+    @Test
+    void testConfirmRejectsSeatsBookedByAnotherTerminal() {
+        int[][] first = bookingService.planSeats(3, null);
+        int[][] second = bookingService.planSeats(3, null);
+        assertTrue(bookingService.confirmBooking(first));
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> bookingService.confirmBooking(second));
+        assertTrue(exception.getMessage().contains("no longer available"));
+        assertEquals(22, seatMap.getAvailableSeats());
+        assertEquals(1, bookingService.getBookingIdCache().size());
+    }
+
+    @Test
+    void testPlansSeeSeatsChangedByOtherThreads() throws Exception {
+        int[][] first = bookingService.planSeats(3, null);
+        Thread terminal = new Thread(() -> bookingService.confirmBooking(bookingService.planSeats(3, null)));
+        terminal.start();
+        terminal.join();
+
+        BookingServiceImpl reference = new BookingServiceImpl(new SeatMap(5, 5));
+        reference.confirmBooking(reference.planSeats(3, null));
+        assertArrayEquals(reference.planSeats(3, null), bookingService.planSeats(3, null));
+
+        terminal = new Thread(() -> bookingService.cancelBooking("GIC0001"));
+        terminal.start();
+        terminal.join();
+        assertArrayEquals(first, bookingService.planSeats(3, null));
+    }
+
+    @Test
+    void testConfirmRejectsRepeatedCoordinates() {
+        assertThrows(IllegalArgumentException.class,
+                () -> bookingService.confirmBooking(new int[][] { { 1, 1 }, { 1, 1 } }));
+        assertFalse(seatMap.isBooked(1, 1));
+    }
+
+    @Test
+    void testFailedLogAppendGivesBookingNumberBack(@TempDir Path directory) throws IOException {
+        Path logFile = directory.resolve("screen.wal");
+        BookingLog log = bookingService.openBookingLog(logFile);
+        assertEquals("GIC0001", bookingService.bookSeats(bookingService.planSeats(2, null)));
+        log.close();
+
+        assertThrows(UncheckedIOException.class, () -> bookingService.bookSeats(bookingService.planSeats(2, null)));
+        assertThrows(UncheckedIOException.class, () -> bookingService.bookBatch(new int[] { 1, 1 }));
+        assertEquals("GIC0002", bookingService.getBookingId());
+        assertEquals(25 - 2, seatMap.getAvailableSeats());
+
+        try (BookingLog reopened = bookingService.openBookingLog(logFile)) {
+            assertEquals("GIC0002", bookingService.bookSeats(bookingService.planSeats(2, null)));
+            assertEquals(25 - 4, seatMap.getAvailableSeats());
+        }
+    }
+
+    @Test
+    void testCancelBookingFreesSeats() {
+        bookingService.confirmBooking(bookingService.planSeats(2, "A01"));
+        bookingService.cancelBooking("GIC0001");
+        assertEquals(25, seatMap.getAvailableSeats());
+        assertEquals(0, seatMap.getOccupancy().cardinality());
+        assertThrows(IllegalArgumentException.class, () -> bookingService.cancelBooking("GIC0001"));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.checkBooking("GIC0001"));
+    }
+
+    @Test
+    void testCheckBookingHighlightsSeats() {
+        bookingService.confirmBooking(bookingService.planSeats(3, "B02"));
+        BookingServiceImpl reference = new BookingServiceImpl(new SeatMap(5, 5));
+        reference.confirmBooking(reference.planSeats(3, "B02"));
+        assertEquals(reference.checkBooking("GIC0001"), bookingService.checkBooking("GIC0001"));
+        assertEquals(reference.printSeatMapPlan(), bookingService.printSeatMapPlan());
+    }
+
+    @Test
+    void testConcurrentBookingsNeverDoubleConfirmSeats() throws Exception {
+        SeatMap hall = new SeatMap(26, 50);
+        ConcurrentBookingServiceImpl service = new ConcurrentBookingServiceImpl(hall, 8);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                List<String> ownBookings = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < 2000; i++) {
+                    if (!ownBookings.isEmpty() && (random.nextInt(3) == 0 || hall.getAvailableSeats() < 20)) {
+                        service.cancelBooking(ownBookings.remove(random.nextInt(ownBookings.size())));
+                        continue;
+                    }
+                    try {
+                        String designatedSeat = random.nextBoolean() ? null
+                                : (char) ('A' + random.nextInt(26)) + String.valueOf(1 + random.nextInt(50));
+                        int[][] plan = service.planSeats(1 + random.nextInt(6), designatedSeat);
+                        service.confirmBooking(plan);
+                        ownBookings.add(findBooking(service, plan));
+                    } catch (IllegalArgumentException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        int bookedSeats = hall.getOccupancy().cardinality();
+        assertEquals(26 * 50 - bookedSeats, hall.getAvailableSeats());
+        int[][] owners = new int[26][50];
+        int seatsInBookings = 0;
+        for (int[][] seats : service.getBookingIdCache().values()) {
+            for (int[] seat : seats) {
+                owners[seat[0]][seat[1]]++;
+                assertEquals(1, owners[seat[0]][seat[1]], "seat confirmed twice");
+                assertTrue(hall.isBooked(seat[0], seat[1]));
+                seatsInBookings++;
+            }
+        }
+        assertEquals(bookedSeats, seatsInBookings);
+    }
+
+    private static String findBooking(ConcurrentBookingServiceImpl service, int[][] plan) {
+        return service.getBookingIdCache().entrySet().stream()
+                .filter(entry -> entry.getValue() == plan)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,106 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+class OptimisticBookingServiceImplTest {
+
+    @Test
+    void testConfirmAndCancel() {
+        SeatMap seatMap = new SeatMap(5, 5);
+        OptimisticBookingServiceImpl bookingService = new OptimisticBookingServiceImpl(seatMap);
+        assertEquals("GIC0001", bookingService.bookSeats(bookingService.planSeats(3, "B02")));
+        assertArrayEquals(new int[][] {
+                { 0, 0, 0, 0, 0 },
+                { 0, 0, 0, 0, 0 },
+                { 0, 0, 0, 0, 0 },
+                { 0, 1, 1, 1, 0 },
+                { 0, 0, 0, 0, 0 }
+        }, seatMap.getSeatMapArr());
+        assertEquals(22, seatMap.getAvailableSeats());
+        bookingService.cancelBooking("GIC0001");
+        assertEquals(0, seatMap.getOccupancy().cardinality());
+        assertEquals(25, seatMap.getAvailableSeats());
+    }
+
+    @Test
+    void testConflictReleasesClaimedWords() {
+        SeatMap seatMap = new SeatMap(2, 130);
+        OptimisticBookingServiceImpl bookingService = new OptimisticBookingServiceImpl(seatMap);
+        bookingService.confirmBooking(new int[][] { { 1, 100 } });
+        int[][] overlapping = { { 0, 5 }, { 0, 70 }, { 1, 99 }, { 1, 100 } };
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> bookingService.confirmBooking(overlapping));
+        assertEquals("Seat no longer available: [1, 100]", exception.getMessage());
+        assertFalse(seatMap.isBooked(0, 5));
+        assertFalse(seatMap.isBooked(0, 70));
+        assertFalse(seatMap.isBooked(1, 99));
+        assertTrue(seatMap.isBooked(1, 100));
+        assertEquals(259, seatMap.getAvailableSeats());
+        assertArrayEquals(new int[][] { { 0, 5 } }, bookingService.planSeats(1, "B06"));
+    }
+
+    @Test
+    void testConcurrentBookingsNeverDoubleConfirmSeats() throws Exception {
+        SeatMap hall = new SeatMap(26, 50);
+        OptimisticBookingServiceImpl service = new OptimisticBookingServiceImpl(hall);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                List<String> ownBookings = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < 2000; i++) {
+                    if (!ownBookings.isEmpty() && (random.nextInt(3) == 0 || hall.getAvailableSeats() < 20)) {
+                        service.cancelBooking(ownBookings.remove(random.nextInt(ownBookings.size())));
+                        continue;
+                    }
+                    try {
+                        ownBookings.add(service.bookSeats(service.planSeats(1 + random.nextInt(6), null)));
+                    } catch (IllegalArgumentException e) {
+                        // Another thread booked one of the planned seats first
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        int bookedSeats = hall.getOccupancy().cardinality();
+        assertEquals(26 * 50 - bookedSeats, hall.getAvailableSeats());
+        boolean[][] owned = new boolean[26][50];
+        int seatsInBookings = 0;
+        for (int[][] seats : service.getBookingIdCache().values()) {
+            for (int[] seat : seats) {
+                assertFalse(owned[seat[0]][seat[1]], "seat confirmed twice");
+                owned[seat[0]][seat[1]] = true;
+                assertTrue(hall.isBooked(seat[0], seat[1]));
+                seatsInBookings++;
+            }
+        }
+        assertEquals(bookedSeats, seatsInBookings);
+    }
+}
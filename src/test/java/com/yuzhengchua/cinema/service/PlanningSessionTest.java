@@ -0,0 +1,149 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+class PlanningSessionTest {
+    BookingServiceImpl bookingService;
+    SeatMap seatMap;
+
+    @BeforeEach
+    void init() {
+        seatMap = new SeatMap(5, 5);
+        bookingService = new BookingServiceImpl(seatMap);
+    }
+
+    @Test
+    void testSessionsHoldIndependentPlans() {
+        PlanningSession first = bookingService.openSession();
+        PlanningSession second = bookingService.openSession();
+        int[][] firstPlan = bookingService.planSeats(first, 2, "A01");
+        int[][] secondPlan = bookingService.planSeats(second, 3, "C02");
+
+        assertArrayEquals(new int[][] { { 4, 0 }, { 4, 1 } }, firstPlan);
+        assertArrayEquals(new int[][] { { 2, 1 }, { 2, 2 }, { 2, 3 } }, secondPlan);
+        assertTrue(first.isPlanned(4, 0));
+        assertFalse(first.isPlanned(2, 1));
+        assertTrue(second.isPlanned(2, 1));
+        assertFalse(second.isPlanned(4, 0));
+        assertEquals(0, seatMap.getOccupancy().cardinality());
+        assertTrue(bookingService.printSeatMapPlan(second).contains("C  .   O   O   O   ."));
+        assertTrue(bookingService.printSeatMapPlan(second).contains("A  .   .   .   .   ."));
+    }
+
+    @Test
+    void testReplanClearsOnlyPreviousPlan() {
+        PlanningSession session = bookingService.openSession();
+        bookingService.planSeats(session, 3, "B01");
+        bookingService.planSeats(session, 2, "D04");
+
+        assertFalse(session.isPlanned(3, 0));
+        assertTrue(session.isPlanned(1, 3));
+        assertTrue(session.isPlanned(1, 4));
+        assertEquals(2, session.getPlannedCoordinates().length);
+    }
+
+    @Test
+    void testConfirmSessionBooksPlanAndDiscardsIt() {
+        PlanningSession session = bookingService.openSession();
+        bookingService.planSeats(session, 2, "E02");
+        assertTrue(bookingService.confirmSession(session));
+
+        assertTrue(seatMap.isBooked(0, 1));
+        assertTrue(seatMap.isBooked(0, 2));
+        assertEquals(23, seatMap.getAvailableSeats());
+        assertFalse(session.hasPlan());
+        assertFalse(session.isPlanned(0, 1));
+    }
+
+    @Test
+    void testOtherSessionsPlanAroundHeldSeats() {
+        PlanningSession first = bookingService.openSession();
+        PlanningSession second = bookingService.openSession();
+        bookingService.planSeats(first, 2, "B02");
+        int[][] secondPlan = bookingService.planSeats(second, 2, "B03");
+
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 } }, secondPlan);
+        assertTrue(first.isHeld());
+        assertTrue(second.isHeld());
+        assertFalse(bookingService.checkSeatsAvailability(bookingService.openSession(), 22));
+        assertTrue(bookingService.checkSeatsAvailability(first, 23));
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> bookingService.confirmBooking(new int[][] { { 3, 2 } }));
+        assertEquals("Seat no longer available: [3, 2]", exception.getMessage());
+    }
+
+    @Test
+    void testExpiredHoldIsReleased() {
+        long[] now = { 0 };
+        bookingService = new BookingServiceImpl(seatMap, 60_000, () -> now[0]);
+        PlanningSession first = bookingService.openSession();
+        PlanningSession second = bookingService.openSession();
+        bookingService.planSeats(first, 2, "B02");
+
+        now[0] = 59_000;
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 } }, bookingService.planSeats(second, 2, "B02"));
+        now[0] = 61_000;
+        assertArrayEquals(new int[][] { { 3, 1 }, { 3, 2 } }, bookingService.planSeats(second, 2, "B02"));
+        assertFalse(first.isHeld());
+        assertFalse(first.hasPlan());
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> bookingService.confirmSession(first));
+        assertEquals("No seats planned or seat hold expired", exception.getMessage());
+        assertTrue(bookingService.confirmSession(second));
+        assertEquals(23, seatMap.getAvailableSeats());
+    }
+
+    @Test
+    void testReplanRenewsHold() {
+        long[] now = { 0 };
+        bookingService = new BookingServiceImpl(seatMap, 60_000, () -> now[0]);
+        PlanningSession session = bookingService.openSession();
+        bookingService.planSeats(session, 2, "B02");
+        now[0] = 50_000;
+        bookingService.planSeats(session, 2, "B02");
+        now[0] = 100_000;
+
+        assertTrue(bookingService.confirmSession(session));
+        assertTrue(seatMap.isBooked(3, 1));
+        assertTrue(seatMap.isBooked(3, 2));
+    }
+
+    @Test
+    void testCheckBookingKeepsPlanInProgress() {
+        bookingService.confirmBooking(bookingService.planSeats(1, "A01"));
+        int[][] plan = bookingService.planSeats(2, "C01");
+        bookingService.checkBooking("GIC0001");
+
+        int[][] seatMapPlanArr = bookingService.getSeatMapPlanArr();
+        assertEquals(1, seatMapPlanArr[4][0]);
+        assertEquals(2, seatMapPlanArr[plan[0][0]][plan[0][1]]);
+        assertEquals(2, seatMapPlanArr[plan[1][0]][plan[1][1]]);
+    }
+
+    @Test
+    void testPackedPlanMatchesCoordinatePlan() {
+        PlanningSession session = bookingService.openSession();
+        int[] seatBuffer = new int[4];
+        int planned = bookingService.planSeats(session, 3, bookingService.locateSeat("B04"), seatBuffer);
+
+        assertEquals(3, planned);
+        assertArrayEquals(new int[] { 18, 19, 12 }, new int[] { seatBuffer[0], seatBuffer[1], seatBuffer[2] });
+        assertArrayEquals(new int[][] { { 3, 3 }, { 3, 4 }, { 2, 2 } }, session.getPlannedCoordinates());
+
+        planned = bookingService.planSeats(session, 2, BookingServiceImpl.NO_DESIGNATED_SEAT, seatBuffer);
+        assertEquals(2, planned);
+        assertArrayEquals(new int[][] { { 4, 1 }, { 4, 2 } }, session.getPlannedCoordinates());
+        assertFalse(session.isPlanned(3, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> bookingService.planSeats(session, 5, BookingServiceImpl.NO_DESIGNATED_SEAT, seatBuffer));
+    }
+}
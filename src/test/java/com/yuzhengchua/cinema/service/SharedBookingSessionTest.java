@@ -0,0 +1,82 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.yuzhengchua.cinema.models.SeatMap;
+
+class SharedBookingSessionTest {
+    BookingServiceImpl bookingService;
+    SeatMap seatMap;
+
+    @BeforeEach
+    void init() {
+        seatMap = new SeatMap(5, 5);
+        bookingService = new BookingServiceImpl(seatMap);
+    }
+
+    @Test
+    void testConfirmBooksGivenSeatsAndReleasesPlan() {
+        SharedBookingSession customer = new SharedBookingSession(bookingService);
+        SharedBookingSession other = new SharedBookingSession(bookingService);
+        customer.planSeats(2, "A01");
+        String bookingId = customer.getBookingId();
+
+        assertTrue(customer.confirmBooking(new int[][] { { 2, 3 }, { 2, 4 } }));
+        assertArrayEquals(new int[][] { { 2, 3 }, { 2, 4 } }, customer.getBookingIdCache().get(bookingId));
+        assertFalse(seatMap.isBooked(4, 0));
+        // the plan is no longer held, so another customer can take its seats
+        assertArrayEquals(new int[][] { { 4, 0 }, { 4, 1 } }, other.planSeats(2, "A01"));
+    }
+
+    @Test
+    void testConfirmRejectsSeatsHeldByAnotherCustomer() {
+        SharedBookingSession customer = new SharedBookingSession(bookingService);
+        SharedBookingSession other = new SharedBookingSession(bookingService);
+        customer.planSeats(2, "A01");
+        other.planSeats(2, "C01");
+
+        assertThrows(IllegalArgumentException.class, () -> customer.confirmBooking(new int[][] { { 2, 0 } }));
+        assertFalse(seatMap.isBooked(2, 0));
+        assertTrue(customer.confirmBooking(new int[][] { { 4, 0 }, { 4, 1 } }));
+    }
+
+    @Test
+    void testClosingGivesUnusedBookingIdBack() {
+        SharedBookingSession first = new SharedBookingSession(bookingService);
+        SharedBookingSession second = new SharedBookingSession(bookingService);
+        assertEquals("GIC0001", first.getBookingId());
+        assertEquals("GIC0001", first.getBookingId());
+        assertEquals("GIC0002", second.getBookingId());
+
+        // a customer walking away leaves no gap, whether or not the ID was the last one reserved
+        first.close();
+        SharedBookingSession third = new SharedBookingSession(bookingService);
+        assertEquals("GIC0001", third.getBookingId());
+        second.close();
+        assertEquals("GIC0002", bookingService.getBookingId());
+
+        third.planSeats(1, "A01");
+        assertTrue(third.confirmBooking(new int[][] { { 4, 0 } }));
+        third.close();
+        assertArrayEquals(new int[][] { { 4, 0 } }, bookingService.getBookingIdCache().get("GIC0001"));
+        assertEquals("GIC0002", bookingService.getBookingId());
+    }
+
+    @Test
+    void testGivenBackBookingIdCannotBeConfirmed() {
+        String bookingId = bookingService.reserveBookingId();
+        bookingService.releaseBookingId(bookingId);
+        PlanningSession session = bookingService.openSession();
+        bookingService.planSeats(session, 1, "A01");
+
+        assertThrows(IllegalArgumentException.class, () -> bookingService.confirmSession(session, bookingId));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.releaseBookingId(bookingId));
+    }
+}
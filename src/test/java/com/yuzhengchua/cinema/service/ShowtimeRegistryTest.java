@@ -0,0 +1,168 @@
+package com.yuzhengchua.cinema.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.yuzhengchua.cinema.metrics.SimpleMeterRegistry;
+import com.yuzhengchua.cinema.models.SeatLayout;
+import com.yuzhengchua.cinema.models.Showtime;
+
+class ShowtimeRegistryTest {
+    static final LocalDateTime MONDAY = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    ShowtimeRegistry registry;
+
+    @BeforeEach
+    void init() {
+        registry = new ShowtimeRegistry();
+    }
+
+    @Test
+    void testRegisterAndLookup() {
+        Showtime showtime = new Showtime("1", MONDAY);
+        ShowtimeRegistry.Screening screening = registry.register(showtime, "Inception", 8, 10);
+
+        assertSame(screening, registry.get(new Showtime("1", MONDAY)));
+        assertSame(screening, registry.getScreening(showtime));
+        assertEquals("Inception", screening.getTitle());
+        assertEquals(80, screening.getSeatMap().getAvailableSeats());
+        assertSame(screening.getBookingService(), screening.getBookingService());
+        assertNull(registry.get(new Showtime("2", MONDAY)));
+    }
+
+    @Test
+    void testRejectsDuplicateAndInvalidScreenings() {
+        Showtime showtime = new Showtime("1", MONDAY);
+        registry.register(showtime, "Inception", 8, 10);
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> registry.register(showtime, "Tenet", 8, 10));
+        assertEquals("Showtime already registered: 1 @ 2024-01-01T10:00", exception.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register(new Showtime("1", MONDAY.plusHours(3)), "Tenet", 703, 10));
+        assertThrows(IllegalArgumentException.class, () -> registry.getScreening(new Showtime("9", MONDAY)));
+        assertThrows(IllegalArgumentException.class, () -> new Showtime("", MONDAY));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void testScreeningsOfScreenAreOrderedByStartTime() {
+        registry.register(new Showtime("1", MONDAY.plusHours(6)), "Late", 2, 2);
+        registry.register(new Showtime("1", MONDAY), "Early", 2, 2);
+        registry.register(new Showtime("2", MONDAY.plusHours(3)), "Other", 2, 2);
+
+        List<ShowtimeRegistry.Screening> screenings = registry.getScreenings("1");
+        assertEquals(2, screenings.size());
+        assertEquals("Early", screenings.get(0).getTitle());
+        assertEquals("Late", screenings.get(1).getTitle());
+        assertTrue(registry.getScreenings("3").isEmpty());
+
+        registry.remove(new Showtime("1", MONDAY));
+        assertEquals(1, registry.getScreenings("1").size());
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void testAggregateAvailability() {
+        ShowtimeRegistry.Screening first = registry.register(new Showtime("1", MONDAY), "A", 5, 5);
+        registry.register(new Showtime("1", MONDAY.plusDays(1)), "B", 4, 5);
+        ShowtimeRegistry.Screening third = registry.register(new Showtime("2", MONDAY), "C", 3, 10);
+
+        BookingServiceImpl bookingService = first.getBookingService();
+        bookingService.confirmBooking(bookingService.planSeats(3, null));
+        third.getBookingService().confirmBooking(third.getBookingService().planSeats(10, null));
+
+        assertEquals(75, registry.getCapacity());
+        assertEquals(62, registry.getAvailableSeats());
+        assertEquals(42, registry.getAvailableSeats("1"));
+        assertEquals(20, registry.getAvailableSeats("2"));
+        assertEquals(42, registry.getAvailableSeats(MONDAY, MONDAY.plusHours(1)));
+    }
+
+    @Test
+    void testOccupancyGaugePerScreening() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registry = new ShowtimeRegistry(null, meterRegistry);
+        Showtime showtime = new Showtime("1", MONDAY);
+        ShowtimeRegistry.Screening screening = registry.register(showtime, "Inception", 4, 5);
+        BookingServiceImpl bookingService = screening.getBookingService();
+        bookingService.confirmBooking(bookingService.planSeats(5, null));
+
+        assertEquals(0.25, meterRegistry.getGauge("booking.occupancy", "screen", "1", "start", "2024-01-01T10:00"));
+        assertEquals(1, meterRegistry.getCount("booking.requests", "operation", "confirm", "outcome", "success"));
+
+        registry.remove(showtime);
+        assertThrows(IllegalArgumentException.class,
+                () -> meterRegistry.getGauge("booking.occupancy", "screen", "1", "start", "2024-01-01T10:00"));
+    }
+
+    @Test
+    void testConcurrentRegistration() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int day = 0; day < 7; day++) {
+            for (int screen = 0; screen < 10; screen++) {
+                for (int show = 0; show < 20; show++) {
+                    Showtime showtime = new Showtime(String.valueOf(screen), MONDAY.plusDays(day).plusMinutes(30L * show));
+                    executor.submit(() -> registry.register(showtime, "Movie", 26, 50));
+                }
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(1400, registry.size());
+        assertEquals(140, registry.getScreenings("3").size());
+        assertEquals(1400L * 26 * 50, registry.getAvailableSeats());
+    }
+
+    @Test
+    void testLoggedScreeningsSurviveRestart(@TempDir Path directory) throws Exception {
+        Showtime showtime = new Showtime("IMAX 1", MONDAY);
+        try (ShowtimeRegistry first = new ShowtimeRegistry(directory)) {
+            BookingServiceImpl bookingService = first.register(showtime, "Dune", 8, 10).getBookingService();
+            bookingService.confirmBooking(bookingService.planSeats(4, "C03"));
+        }
+        assertTrue(directory.resolve("IMAX_1_20240101T1000.wal.0000000001").toFile().exists());
+
+        try (ShowtimeRegistry restarted = new ShowtimeRegistry(directory)) {
+            ShowtimeRegistry.Screening screening = restarted.register(showtime, "Dune", 8, 10);
+            assertEquals(76, screening.getSeatMap().getAvailableSeats());
+            assertEquals("GIC0002", screening.getBookingService().getBookingId());
+            assertThrows(IllegalArgumentException.class,
+                    () -> restarted.register(new Showtime("IMAX 1", MONDAY.plusSeconds(1)), "Dune", 9, 10));
+            assertEquals(1, restarted.size());
+        }
+    }
+
+    @Test
+    void testLayoutScreeningsCountOnlyTheirSeats(@TempDir Path directory) throws Exception {
+        Showtime showtime = new Showtime("Arena", MONDAY);
+        SeatLayout layout = SeatLayout.parse("2x4,_2,4/12");
+        try (ShowtimeRegistry first = new ShowtimeRegistry(directory, new SimpleMeterRegistry())) {
+            BookingServiceImpl bookingService = first.register(showtime, "Finals", layout).getBookingService();
+            bookingService.confirmBooking(bookingService.planSeats(7, null));
+            assertEquals(28, first.getCapacity());
+            assertEquals(21, first.getAvailableSeats());
+        }
+
+        try (ShowtimeRegistry restarted = new ShowtimeRegistry(directory)) {
+            ShowtimeRegistry.Screening screening = restarted.register(showtime, "Finals", layout);
+            assertEquals(21, screening.getSeatMap().getAvailableSeats());
+            assertTrue(screening.getSeatMap().isBooked(2, 4));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.yuzhengchua.cinema.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class BookingIdsTest {
+    @Test
+    void testFormatsZeroPaddedNumbers() {
+        assertEquals("GIC0001", BookingIds.format(1));
+        assertEquals("GIC0420", BookingIds.format(420));
+        assertEquals("GIC9999", BookingIds.format(9999));
+        assertEquals("GIC10000", BookingIds.format(10000));
+        assertEquals("GIC2147483647", BookingIds.format(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testParsesFormattedIds() {
+        for (int bookingNumber : new int[] { 1, 9, 10, 420, 9999, 10000, 123456, Integer.MAX_VALUE }) {
+            assertEquals(bookingNumber, BookingIds.parse(BookingIds.format(bookingNumber)));
+        }
+    }
+
+    @Test
+    void testRejectsMalformedIds() {
+        for (String bookingId : new String[] { "", "GIC", "GIC1", "GIC001", "GIC0000", "GIC01234", "GIC00001",
+                "gic0001", "ABC0001", "GIC00A1", "GIC-001", "GIC0001 ", "GIC2147483648", "GIC99999999999" }) {
+            assertEquals(BookingIds.MALFORMED, BookingIds.parse(bookingId), bookingId);
+        }
+        assertEquals(BookingIds.MALFORMED, BookingIds.parse(null));
+    }
+}
@@ -0,0 +1,117 @@
+package com.yuzhengchua.cinema.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HashedTimerWheelTest {
+
+    static class Hold extends HashedTimerWheel.Timeout {
+        final int id;
+
+        Hold(int id) {
+            this.id = id;
+        }
+    }
+
+    @Test
+    void testExpiresOnlyAfterDeadline() {
+        HashedTimerWheel<Hold> wheel = new HashedTimerWheel<>(10, 8, 0);
+        Hold hold = new Hold(1);
+        wheel.schedule(hold, 25);
+        List<Hold> expired = new ArrayList<>();
+
+        assertEquals(0, wheel.advance(29, expired::add));
+        assertTrue(hold.isScheduled());
+        assertEquals(1, wheel.advance(30, expired::add));
+        assertEquals(List.of(hold), expired);
+        assertFalse(hold.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testDeadlinesBeyondOneTurn() {
+        HashedTimerWheel<Hold> wheel = new HashedTimerWheel<>(10, 4, 0);
+        Hold near = new Hold(1);
+        Hold far = new Hold(2);
+        wheel.schedule(near, 20);
+        wheel.schedule(far, 60);
+        List<Hold> expired = new ArrayList<>();
+
+        wheel.advance(20, expired::add);
+        assertEquals(List.of(near), expired);
+        wheel.advance(59, expired::add);
+        assertEquals(1, expired.size());
+        wheel.advance(1000, expired::add);
+        assertEquals(List.of(near, far), expired);
+    }
+
+    @Test
+    void testCancelAndReschedule() {
+        HashedTimerWheel<Hold> wheel = new HashedTimerWheel<>(10, 8, 0);
+        Hold first = new Hold(1);
+        Hold second = new Hold(2);
+        wheel.schedule(first, 30);
+        wheel.schedule(second, 30);
+        assertTrue(wheel.cancel(first));
+        assertFalse(wheel.cancel(first));
+        wheel.schedule(second, 50);
+        assertEquals(1, wheel.size());
+        assertEquals(50, second.getDeadline());
+
+        List<Hold> expired = new ArrayList<>();
+        wheel.advance(40, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(50, expired::add);
+        assertEquals(List.of(second), expired);
+    }
+
+    @Test
+    void testPastDeadlineExpiresOnNextTick() {
+        HashedTimerWheel<Hold> wheel = new HashedTimerWheel<>(10, 8, 0);
+        wheel.advance(100, hold -> {
+        });
+        Hold hold = new Hold(1);
+        wheel.schedule(hold, 50);
+        List<Hold> expired = new ArrayList<>();
+        wheel.advance(109, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(110, expired::add);
+        assertEquals(List.of(hold), expired);
+    }
+
+    @Test
+    void testRandomDeadlinesMatchExpectedExpiry() {
+        Random random = new Random(7);
+        HashedTimerWheel<Hold> wheel = new HashedTimerWheel<>(10, 16, 0);
+        long[] deadlines = new long[500];
+        Hold[] holds = new Hold[deadlines.length];
+        for (int i = 0; i < holds.length; i++) {
+            holds[i] = new Hold(i);
+            deadlines[i] = random.nextInt(2000);
+            wheel.schedule(holds[i], deadlines[i]);
+        }
+        long now = 0;
+        while (wheel.size() > 0) {
+            now += random.nextInt(300);
+            long time = now;
+            wheel.advance(time, hold -> assertTrue(deadlines[hold.id] <= time));
+            for (int i = 0; i < holds.length; i++) {
+                assertEquals(deadlines[i] > time - time % 10, holds[i].isScheduled());
+            }
+        }
+    }
+
+    @Test
+    void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel<Hold>(0, 8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel<Hold>(10, 0, 0));
+    }
+}
@@ -33,8 +33,8 @@ class InputValidatorTest {
         assert(InputValidator.isValidRowAndSeats(5, 10));
         assertFalse(InputValidator.isValidRowAndSeats(0, 10));
         assertFalse(InputValidator.isValidRowAndSeats(5, 0));
-        assertFalse(InputValidator.isValidRowAndSeats(6, 55));
-        assertFalse(InputValidator.isValidRowAndSeats(27, 11));
+        assertFalse(InputValidator.isValidRowAndSeats(6, 1000));
+        assertFalse(InputValidator.isValidRowAndSeats(703, 11));
     }
 
     @Test
@@ -43,8 +43,12 @@ class InputValidatorTest {
         assert(InputValidator.isValidChosenSeat("B10"));
         assert(InputValidator.isValidChosenSeat("C50"));
         assertFalse(InputValidator.isValidChosenSeat("A0"));
-        assertFalse(InputValidator.isValidChosenSeat("A100"));
-        assertFalse(InputValidator.isValidChosenSeat("Z51"));
+        assert(InputValidator.isValidChosenSeat("A100"));
+        assert(InputValidator.isValidChosenSeat("AB7"));
+        assert(InputValidator.isValidChosenSeat("ZZ999"));
+        assertFalse(InputValidator.isValidChosenSeat("A1000"));
+        assertFalse(InputValidator.isValidChosenSeat("A000"));
+        assertFalse(InputValidator.isValidChosenSeat("ABC1"));
         assertFalse(InputValidator.isValidChosenSeat("B-1"));
         assertFalse(InputValidator.isValidChosenSeat(null));
     }
@@ -0,0 +1,38 @@
+package com.yuzhengchua.cinema.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RowLabelsTest {
+    @Test
+    void testLabelsContinueWithTwoLetters() {
+        assertEquals("A", RowLabels.label(0));
+        assertEquals("Z", RowLabels.label(25));
+        assertEquals("AA", RowLabels.label(26));
+        assertEquals("AZ", RowLabels.label(51));
+        assertEquals("BA", RowLabels.label(52));
+        assertEquals("ZZ", RowLabels.label(701));
+        assertEquals("AAA", RowLabels.label(702));
+        assertEquals(1, RowLabels.length(25));
+        assertEquals(2, RowLabels.length(26));
+        assertEquals(2, RowLabels.length(701));
+        assertEquals(3, RowLabels.length(702));
+    }
+
+    @Test
+    void testParseIsTheInverseOfLabel() {
+        for (int index = 0; index < 1000; index++) {
+            String label = RowLabels.label(index);
+            assertEquals(label.length(), RowLabels.length(index));
+            assertEquals(index, RowLabels.parse("x" + label + "01", 1, 1 + label.length()));
+        }
+        assertEquals(0, RowLabels.parse("a", 0, 1));
+        assertEquals(27, RowLabels.parse("ab", 0, 2));
+        assertEquals(-1, RowLabels.parse("@", 0, 1));
+        assertEquals(-1, RowLabels.parse("{", 0, 1));
+        assertEquals(-1, RowLabels.parse("A1", 0, 2));
+        assertEquals(-1, RowLabels.parse("A", 0, 0));
+        assertEquals(-1, RowLabels.parse("ZZZZZZZZZZ", 0, 10));
+    }
+}
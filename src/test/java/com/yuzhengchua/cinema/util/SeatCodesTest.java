@@ -0,0 +1,58 @@
+package com.yuzhengchua.cinema.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SeatCodesTest {
+    @Test
+    void testDecodesToPackedIndex() {
+        // row A is the last array row
+        assertEquals(4 * 10, SeatCodes.parse("A01", 5, 10));
+        assertEquals(4 * 10 + 9, SeatCodes.parse("A10", 5, 10));
+        assertEquals(2, SeatCodes.parse("E3", 5, 10));
+        assertEquals(2, SeatCodes.parse("E003", 5, 10));
+        assertEquals(119, SeatCodes.parse("AB120", 28, 200));
+        assertEquals(0, SeatCodes.parse("ZZ1", 702, 999));
+    }
+
+    @Test
+    void testLowerCaseRowsMatchUpperCase() {
+        assertEquals(SeatCodes.parse("B03", 5, 10), SeatCodes.parse("b03", 5, 10));
+        assertEquals(SeatCodes.parse("AB120", 28, 200), SeatCodes.parse("aB120", 28, 200));
+        assertEquals(SeatCodes.OUTSIDE_HALL, SeatCodes.parse("f01", 5, 10));
+        assertTrue(SeatCodes.isValid("zz999"));
+        // only a-z fold onto A-Z
+        for (String code : new String[] { "@1", "[1", "`1", "{1", "\u00e11", "\u01411" }) {
+            assertEquals(SeatCodes.MALFORMED, SeatCodes.parse(code, 702, 999), code);
+        }
+    }
+
+    @Test
+    void testRejectsMalformedAndOutsideSeats() {
+        for (String code : new String[] { "", "A", "01", "A0", "A000", "A1000", "ABC1", "aBc1", "A1B", "A-1", "A 1",
+                "AB" }) {
+            assertEquals(SeatCodes.MALFORMED, SeatCodes.parse(code, 702, 999), code);
+            assertFalse(SeatCodes.isValid(code), code);
+        }
+        assertFalse(SeatCodes.isValid(null));
+        assertEquals(SeatCodes.OUTSIDE_HALL, SeatCodes.parse("F01", 5, 10));
+        assertEquals(SeatCodes.OUTSIDE_HALL, SeatCodes.parse("A11", 5, 10));
+        assertEquals(SeatCodes.OUTSIDE_HALL, SeatCodes.parse("AA1", 26, 10));
+        assertTrue(SeatCodes.isValid("ZZ999"));
+    }
+
+    @Test
+    void testIntegersMatchParseInt() {
+        for (String str : new String[] { "0", "-0", "+7", "42", "-2147483648", "2147483647", "007" }) {
+            assertTrue(SeatCodes.isInteger(str), str);
+            Integer.parseInt(str);
+        }
+        for (String str : new String[] { "", "-", "+", "2147483648", "-2147483649", "1.5", "1e3", " 1", "99999999999" }) {
+            assertFalse(SeatCodes.isInteger(str), str);
+        }
+        assertFalse(SeatCodes.isInteger(null));
+    }
+}